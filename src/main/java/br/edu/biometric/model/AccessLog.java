@@ -1,31 +1,39 @@
 package br.edu.biometric.model;
 
+import br.edu.biometric.util.IdGenerator;
+
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.UUID;
 
 /**
  * Classe que representa um log de tentativa de acesso ao sistema
  */
 public class AccessLog {
 
+    private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
+
     private String id;
     private String userId;
     private String userName;
     private AccessLevel accessLevel;
     private LocalDateTime timestamp;
     private AccessStatus status;
-    private String details;
+    private String details; // Texto livre; ausente quando há messageCode
+    private AccessMessage messageCode;
+    private AccessLevel userAccessLevel; // Nível do usuário no momento da tentativa
     private double confidenceScore; // Score de confiança do reconhecimento facial (0-100)
 
+    /**
+     * Registro sem ID nem data/hora, para os decodificadores (Gson e repositórios), que
+     * preenchem os campos lidos; novas tentativas são criadas pelo construtor com os dados
+     */
     public AccessLog() {
-        this.id = UUID.randomUUID().toString();
-        this.timestamp = LocalDateTime.now();
     }
 
     public AccessLog(String userId, String userName, AccessLevel accessLevel, 
                      AccessStatus status, String details, double confidenceScore) {
-        this();
+        this.id = IdGenerator.nextId();
+        this.timestamp = LocalDateTime.now();
         this.userId = userId;
         this.userName = userName;
         this.accessLevel = accessLevel;
@@ -91,6 +99,22 @@ public class AccessLog {
         this.details = details;
     }
 
+    public AccessMessage getMessageCode() {
+        return messageCode;
+    }
+
+    public void setMessageCode(AccessMessage messageCode) {
+        this.messageCode = messageCode;
+    }
+
+    public AccessLevel getUserAccessLevel() {
+        return userAccessLevel;
+    }
+
+    public void setUserAccessLevel(AccessLevel userAccessLevel) {
+        this.userAccessLevel = userAccessLevel;
+    }
+
     public double getConfidenceScore() {
         return confidenceScore;
     }
@@ -99,9 +123,19 @@ public class AccessLog {
         this.confidenceScore = confidenceScore;
     }
 
+    /**
+     * Texto exibido para a tentativa: o texto livre ou, na falta dele, a mensagem
+     * montada a partir do código
+     */
+    public String getMessage() {
+        if (details == null && messageCode != null) {
+            return messageCode.render(userName, confidenceScore, accessLevel, userAccessLevel);
+        }
+        return details;
+    }
+
     public String getFormattedTimestamp() {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
-        return timestamp.format(formatter);
+        return timestamp.format(TIMESTAMP_FORMATTER);
     }
 
     @Override
@@ -112,7 +146,7 @@ public class AccessLog {
                 accessLevel != null ? accessLevel.getDisplayName() : "N/A",
                 status,
                 confidenceScore,
-                details);
+                getMessage());
     }
 }
 
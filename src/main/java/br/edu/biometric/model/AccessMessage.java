@@ -0,0 +1,62 @@
+package br.edu.biometric.model;
+
+/**
+ * Mensagens registradas nas tentativas de acesso
+ *
+ * Em vez do texto formatado, os logs e resultados guardam o código da mensagem;
+ * os parâmetros já são campos da própria tentativa (nome do usuário, confiança,
+ * nível requerido e nível do usuário). O texto só é montado quando exibido.
+ */
+public enum AccessMessage {
+
+    SERVICE_UNAVAILABLE("Serviço de reconhecimento facial não disponível."),
+    NO_USERS("Nenhum usuário cadastrado no sistema."),
+    NO_FACE("Nenhuma face detectada ou reconhecida."),
+    LOW_CONFIDENCE("Confiança insuficiente: %.2f%%") {
+        @Override
+        public String render(String userName, double confidence, AccessLevel required, AccessLevel held) {
+            return String.format(getPattern(), confidence);
+        }
+    },
+    USER_NOT_FOUND("Usuário não encontrado."),
+    INACTIVE_USER("Usuário inativo."),
+    INSUFFICIENT_PERMISSION("Acesso negado. Requer: %s, Possui: %s") {
+        @Override
+        public String render(String userName, double confidence, AccessLevel required, AccessLevel held) {
+            return String.format(getPattern(), displayName(required), displayName(held));
+        }
+    },
+    WELCOME("Bem-vindo(a), %s! Confiança: %.2f%%") {
+        @Override
+        public String render(String userName, double confidence, AccessLevel required, AccessLevel held) {
+            return String.format(getPattern(), userName, confidence);
+        }
+    };
+
+    private final String pattern;
+
+    AccessMessage(String pattern) {
+        this.pattern = pattern;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Monta o texto da mensagem a partir dos dados da tentativa
+     *
+     * @param userName   Nome do usuário reconhecido
+     * @param confidence Confiança do reconhecimento (0-100)
+     * @param required   Nível de acesso requerido
+     * @param held       Nível de acesso do usuário
+     * @return Texto da mensagem
+     */
+    public String render(String userName, double confidence, AccessLevel required, AccessLevel held) {
+        return pattern;
+    }
+
+    private static String displayName(AccessLevel level) {
+        return level != null ? level.getDisplayName() : "-";
+    }
+}
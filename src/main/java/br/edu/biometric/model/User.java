@@ -1,9 +1,10 @@
 package br.edu.biometric.model;
 
+import br.edu.biometric.util.IdGenerator;
+
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 
 /**
  * Classe que representa um usuário do sistema
@@ -20,22 +21,42 @@ public class User {
     private LocalDateTime updatedAt;
     private boolean active;
 
+    /**
+     * Usuário sem ID nem datas, para os decodificadores (Gson e repositórios), que
+     * preenchem os campos lidos; novos usuários são criados pelo construtor com os dados
+     */
     public User() {
-        this.id = UUID.randomUUID().toString();
         this.biometricDataPaths = new ArrayList<>();
-        this.createdAt = LocalDateTime.now();
-        this.updatedAt = LocalDateTime.now();
         this.active = true;
     }
 
     public User(String name, String cpf, String email, AccessLevel accessLevel) {
         this();
+        this.id = IdGenerator.nextId();
+        this.createdAt = LocalDateTime.now();
+        this.updatedAt = this.createdAt;
         this.name = name;
         this.cpf = cpf;
         this.email = email;
         this.accessLevel = accessLevel;
     }
 
+    /**
+     * Cópia independente do usuário, inclusive da lista de imagens
+     */
+    public User(User other) {
+        this.id = other.id;
+        this.name = other.name;
+        this.cpf = other.cpf;
+        this.email = other.email;
+        this.accessLevel = other.accessLevel;
+        this.biometricDataPaths = other.biometricDataPaths != null
+                ? new ArrayList<>(other.biometricDataPaths) : new ArrayList<>();
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+        this.active = other.active;
+    }
+
     // Getters e Setters
     public String getId() {
         return id;
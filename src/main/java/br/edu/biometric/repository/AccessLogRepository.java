@@ -1,137 +1,103 @@
 package br.edu.biometric.repository;
 
+import br.edu.biometric.model.AccessLevel;
 import br.edu.biometric.model.AccessLog;
 import br.edu.biometric.model.AccessStatus;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
-
-import java.io.*;
-import java.lang.reflect.Type;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Collection;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 /**
- * Repositório para gerenciar logs de acesso em arquivo JSON
+ * Contrato de persistência dos logs de acesso
+ * 
+ * Implementações: {@link JsonAccessLogRepository} (arquivo JSON) e
+ * {@link SqlAccessLogRepository} (banco SQL embarcado). A escolha é feita
+ * por configuração em {@link RepositoryFactory}.
  */
-public class AccessLogRepository {
-
-    private static final String DATA_DIR = "data";
-    private static final String LOGS_FILE = DATA_DIR + "/access_logs.json";
-
-    private final Gson gson;
-    private List<AccessLog> logs;
-
-    public AccessLogRepository() {
-        this.gson = new GsonBuilder()
-                .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
-                .setPrettyPrinting()
-                .create();
-        initializeDataDirectory();
-        loadLogs();
-    }
-
-    private void initializeDataDirectory() {
-        try {
-            Files.createDirectories(Paths.get(DATA_DIR));
-        } catch (IOException e) {
-            System.err.println("Erro ao criar diretórios: " + e.getMessage());
+public interface AccessLogRepository {
+
+    /**
+     * @throws java.io.UncheckedIOException se o registro não puder ser gravado; nesse
+     *                                      caso ele não é publicado nas consultas
+     */
+    AccessLog save(AccessLog log);
+
+    /**
+     * Grava vários registros de uma vez, em ordem cronológica
+     * 
+     * @param logs Registros a gravar
+     * @throws java.io.UncheckedIOException se um registro não puder ser gravado; os
+     *                                      anteriores a ele podem já ter sido gravados,
+     *                                      a menos que a implementação grave o lote
+     *                                      inteiro ou nada
+     */
+    default void saveAll(Collection<AccessLog> logs) {
+        for (AccessLog log : logs) {
+            save(log);
         }
     }
 
-    private void loadLogs() {
-        File file = new File(LOGS_FILE);
-        if (file.exists()) {
-            try (Reader reader = new FileReader(file)) {
-                Type listType = new TypeToken<ArrayList<AccessLog>>(){}.getType();
-                logs = gson.fromJson(reader, listType);
-                if (logs == null) {
-                    logs = new ArrayList<>();
-                }
-            } catch (IOException e) {
-                System.err.println("Erro ao carregar logs: " + e.getMessage());
-                logs = new ArrayList<>();
-            }
-        } else {
-            logs = new ArrayList<>();
-        }
-    }
+    /**
+     * Retorna todo o histórico em ordem cronológica.
+     * Prefira {@link #findPage(LogQuery)} ou {@link #forEach(Consumer)} para históricos grandes.
+     */
+    List<AccessLog> findAll();
 
-    private void saveLogs() {
-        try (Writer writer = new FileWriter(LOGS_FILE)) {
-            gson.toJson(logs, writer);
-        } catch (IOException e) {
-            System.err.println("Erro ao salvar logs: " + e.getMessage());
-        }
-    }
+    /**
+     * Percorre todo o histórico em ordem cronológica sem materializá-lo
+     * 
+     * @param action Ação executada para cada registro
+     */
+    void forEach(Consumer<AccessLog> action);
 
-    public AccessLog save(AccessLog log) {
-        logs.add(log);
-        saveLogs();
-        return log;
-    }
+    List<AccessLog> findByUserId(String userId);
 
-    public List<AccessLog> findAll() {
-        return new ArrayList<>(logs);
-    }
+    List<AccessLog> findByStatus(AccessStatus status);
 
-    public List<AccessLog> findByUserId(String userId) {
-        return logs.stream()
-                .filter(log -> userId.equals(log.getUserId()))
-                .sorted(Comparator.comparing(AccessLog::getTimestamp).reversed())
-                .collect(Collectors.toList());
+    default List<AccessLog> findRecent(int limit) {
+        return findPage(new LogQuery(null, limit)).getItems();
     }
 
-    public List<AccessLog> findByStatus(AccessStatus status) {
-        return logs.stream()
-                .filter(log -> log.getStatus() == status)
-                .sorted(Comparator.comparing(AccessLog::getTimestamp).reversed())
-                .collect(Collectors.toList());
-    }
-
-    public List<AccessLog> findRecent(int limit) {
-        return logs.stream()
-                .sorted(Comparator.comparing(AccessLog::getTimestamp).reversed())
-                .limit(limit)
-                .collect(Collectors.toList());
-    }
-
-    public List<AccessLog> findByDateRange(LocalDateTime start, LocalDateTime end) {
-        return logs.stream()
-                .filter(log -> !log.getTimestamp().isBefore(start) && 
-                              !log.getTimestamp().isAfter(end))
-                .sorted(Comparator.comparing(AccessLog::getTimestamp).reversed())
-                .collect(Collectors.toList());
-    }
-
-    public long countByStatus(AccessStatus status) {
-        return logs.stream()
-                .filter(log -> log.getStatus() == status)
-                .count();
-    }
-
-    public long countSuccessful() {
+    /**
+     * Consulta paginada por cursor, do registro mais recente para o mais antigo
+     * (ou o inverso, com {@link LogQuery#setAscending(boolean)})
+     * 
+     * @param query Filtros, cursor e tamanho da página
+     * @return Página de resultados com o cursor da próxima página
+     */
+    LogPage findPage(LogQuery query);
+
+    List<AccessLog> findByDateRange(LocalDateTime start, LocalDateTime end);
+
+    long countByStatus(AccessStatus status);
+
+    /**
+     * Conta as tentativas registradas para um nível de acesso requerido
+     * 
+     * @param level Nível de acesso requerido
+     * @return Quantidade de tentativas
+     */
+    long countByAccessLevel(AccessLevel level);
+
+    /**
+     * Conta as tentativas atribuídas a um usuário identificado
+     * 
+     * @param userId ID do usuário
+     * @return Quantidade de tentativas
+     */
+    long countByUserId(String userId);
+
+    default long countSuccessful() {
         return countByStatus(AccessStatus.SUCCESS);
     }
 
-    public long countFailed() {
-        return logs.stream()
-                .filter(log -> !log.getStatus().isSuccess())
-                .count();
+    default long countFailed() {
+        return count() - countSuccessful();
     }
 
-    public long count() {
-        return logs.size();
-    }
+    long count();
 
-    public void clear() {
-        logs.clear();
-        saveLogs();
-    }
+    void clear();
 }
-
@@ -0,0 +1,301 @@
+package br.edu.biometric.repository;
+
+import br.edu.biometric.model.AccessLog;
+import br.edu.biometric.util.FileUtils;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Agregados de tentativas de acesso por minuto, hora e dia
+ *
+ * Os agregados são atualizados a cada registro gravado e persistidos periodicamente
+ * e no encerramento da aplicação em data/access_rollups.json, junto com a quantidade
+ * de registros já contabilizados. Na inicialização, só os registros gravados depois
+ * da última persistência são lidos do repositório de logs, por páginas que começam
+ * nessa posição; se o arquivo não corresponder ao repositório (outro backend ou logs
+ * apagados), os agregados são reconstruídos.
+ *
+ * A gravação não segura o lock dos agregados enquanto serializa: sob o lock, só os
+ * intervalos alterados desde a última gravação são copiados para uma réplica usada
+ * apenas pela gravação, que é serializada fora dele.
+ *
+ * Consultas sobre meses de histórico usam apenas os agregados, sem ler os logs.
+ */
+public class AccessRollupStore {
+
+    private static final String DATA_DIR = "data";
+    private static final String ROLLUPS_FILE = DATA_DIR + "/access_rollups.json";
+    private static final int FLUSH_INTERVAL_SECONDS = 30;
+    private static final int CATCH_UP_PAGE = 1_000;
+
+    private final Gson gson;
+    private final Map<RollupGranularity, TreeMap<LocalDateTime, RollupBucket>> buckets =
+            new EnumMap<>(RollupGranularity.class);
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "rollup-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private String source;
+    private long eventCount;
+    private boolean dirty;
+    // Intervalos alterados ou descartados desde a última gravação, e se tudo foi apagado
+    private final Map<RollupGranularity, Set<LocalDateTime>> changed = new EnumMap<>(RollupGranularity.class);
+    private boolean cleared;
+
+    // Réplica do que foi gravado, usada só pela gravação (com flushLock)
+    private final Object flushLock = new Object();
+    private final Map<RollupGranularity, TreeMap<LocalDateTime, RollupBucket>> persisted =
+            new EnumMap<>(RollupGranularity.class);
+
+    /**
+     * @param logRepository Repositório cujos registros são agregados
+     */
+    public AccessRollupStore(AccessLogRepository logRepository) {
+        this.gson = new GsonBuilder()
+                .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
+                .create();
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            buckets.put(granularity, new TreeMap<>());
+            changed.put(granularity, new HashSet<>());
+            persisted.put(granularity, new TreeMap<>());
+        }
+        load();
+        catchUp(logRepository);
+        flusher.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_SECONDS, FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "rollup-flush-shutdown"));
+    }
+
+    private void load() {
+        Path file = Paths.get(ROLLUPS_FILE);
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            Snapshot snapshot = gson.fromJson(reader, Snapshot.class);
+            if (snapshot == null || snapshot.buckets == null) {
+                return;
+            }
+            for (Map.Entry<RollupGranularity, List<RollupBucket>> entry : snapshot.buckets.entrySet()) {
+                for (RollupBucket bucket : entry.getValue()) {
+                    if (!bucket.isCompatible()) {
+                        clearBuckets();
+                        return;
+                    }
+                    buckets.get(entry.getKey()).put(bucket.getStart(), bucket);
+                    persisted.get(entry.getKey()).put(bucket.getStart(), bucket.copy());
+                }
+            }
+            source = snapshot.source;
+            eventCount = snapshot.eventCount;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Erro ao carregar agregados de acesso: " + e.getMessage());
+            clearBuckets();
+        }
+    }
+
+    private void catchUp(AccessLogRepository logRepository) {
+        synchronized (this) {
+            String currentSource = logRepository.getClass().getName();
+            long logged = logRepository.count();
+            if (!currentSource.equals(source) || eventCount > logged) {
+                clearBuckets();
+                source = currentSource;
+            }
+            if (eventCount >= logged) {
+                return;
+            }
+            // Os logs só crescem no final: a leitura começa no primeiro registro não
+            // contabilizado e segue pelos cursores, sem percorrer os já contabilizados
+            LogQuery query = new LogQuery();
+            query.setAscending(true);
+            query.setOffset(eventCount);
+            query.setLimit(CATCH_UP_PAGE);
+            LogPage page;
+            do {
+                page = logRepository.findPage(query);
+                for (AccessLog log : page.getItems()) {
+                    apply(log);
+                }
+                query = query.next(page);
+            } while (page.hasNext());
+            dirty = true;
+        }
+        flush();
+    }
+
+    private void clearBuckets() {
+        for (TreeMap<LocalDateTime, RollupBucket> map : buckets.values()) {
+            map.clear();
+        }
+        for (Set<LocalDateTime> starts : changed.values()) {
+            starts.clear();
+        }
+        cleared = true;
+        eventCount = 0;
+        source = null;
+        dirty = true;
+    }
+
+    /**
+     * Contabiliza um registro recém-gravado
+     */
+    public synchronized void record(AccessLog log) {
+        apply(log);
+        dirty = true;
+    }
+
+    private void apply(AccessLog log) {
+        eventCount++;
+        if (log.getTimestamp() == null) {
+            return;
+        }
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            TreeMap<LocalDateTime, RollupBucket> map = buckets.get(granularity);
+            LocalDateTime start = granularity.bucketStart(log.getTimestamp());
+            map.computeIfAbsent(start, RollupBucket::new).add(log);
+            Set<LocalDateTime> starts = changed.get(granularity);
+            starts.add(start);
+            while (map.size() > granularity.getRetainedBuckets()) {
+                starts.add(map.pollFirstEntry().getKey());
+            }
+        }
+    }
+
+    /**
+     * Descarta todos os agregados, acompanhando a limpeza dos logs
+     */
+    public synchronized void reset() {
+        String currentSource = source;
+        clearBuckets();
+        source = currentSource;
+    }
+
+    /**
+     * Agregados de cada intervalo do período, em ordem cronológica.
+     * Intervalos sem tentativas não aparecem.
+     *
+     * @param granularity Tamanho dos intervalos
+     * @param from        Início do período (inclusivo)
+     * @param to          Fim do período (exclusivo)
+     * @return Cópias dos agregados
+     */
+    public synchronized List<RollupBucket> query(RollupGranularity granularity, LocalDateTime from, LocalDateTime to) {
+        List<RollupBucket> result = new ArrayList<>();
+        for (RollupBucket bucket : range(granularity, from, to).values()) {
+            result.add(bucket.copy());
+        }
+        return result;
+    }
+
+    /**
+     * Soma dos agregados do período em um único total
+     */
+    public synchronized RollupBucket summarize(RollupGranularity granularity, LocalDateTime from, LocalDateTime to) {
+        RollupBucket total = new RollupBucket(granularity.bucketStart(from));
+        for (RollupBucket bucket : range(granularity, from, to).values()) {
+            total.merge(bucket);
+        }
+        return total;
+    }
+
+    private NavigableMap<LocalDateTime, RollupBucket> range(RollupGranularity granularity,
+                                                           LocalDateTime from, LocalDateTime to) {
+        LocalDateTime start = granularity.bucketStart(from);
+        if (!to.isAfter(start)) {
+            return Collections.emptyNavigableMap();
+        }
+        return buckets.get(granularity).subMap(start, true, to, false);
+    }
+
+    /**
+     * Grava os agregados se houver alterações desde a última gravação
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            String currentSource;
+            long currentCount;
+            boolean wasCleared;
+            Map<RollupGranularity, Map<LocalDateTime, RollupBucket>> updates = new EnumMap<>(RollupGranularity.class);
+            synchronized (this) {
+                if (!dirty) {
+                    return;
+                }
+                currentSource = source;
+                currentCount = eventCount;
+                wasCleared = cleared;
+                for (RollupGranularity granularity : RollupGranularity.values()) {
+                    TreeMap<LocalDateTime, RollupBucket> map = buckets.get(granularity);
+                    Map<LocalDateTime, RollupBucket> copies = new HashMap<>();
+                    for (LocalDateTime start : changed.get(granularity)) {
+                        RollupBucket bucket = map.get(start);
+                        copies.put(start, bucket != null ? bucket.copy() : null); // null: descartado
+                    }
+                    updates.put(granularity, copies);
+                    changed.get(granularity).clear();
+                }
+                cleared = false;
+                dirty = false;
+            }
+
+            Snapshot snapshot = new Snapshot();
+            snapshot.source = currentSource;
+            snapshot.eventCount = currentCount;
+            snapshot.buckets = new EnumMap<>(RollupGranularity.class);
+            persisted.forEach((granularity, map) -> {
+                if (wasCleared) {
+                    map.clear();
+                }
+                updates.get(granularity).forEach((start, bucket) -> {
+                    if (bucket != null) {
+                        map.put(start, bucket);
+                    } else {
+                        map.remove(start);
+                    }
+                });
+                snapshot.buckets.put(granularity, new ArrayList<>(map.values()));
+            });
+            try {
+                FileUtils.writeAtomically(Paths.get(ROLLUPS_FILE), StandardCharsets.UTF_8,
+                        writer -> gson.toJson(snapshot, writer));
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Erro ao salvar agregados de acesso: " + e.getMessage());
+                // A réplica já inclui as alterações: a próxima gravação a repete
+                synchronized (this) {
+                    dirty = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Formato persistido dos agregados
+     */
+    private static final class Snapshot {
+        private String source;
+        private long eventCount;
+        private Map<RollupGranularity, List<RollupBucket>> buckets;
+    }
+}
@@ -0,0 +1,1184 @@
+package br.edu.biometric.repository;
+
+import br.edu.biometric.model.AccessLevel;
+import br.edu.biometric.model.AccessLog;
+import br.edu.biometric.model.AccessMessage;
+import br.edu.biometric.model.AccessStatus;
+import br.edu.biometric.util.FileUtils;
+import br.edu.biometric.util.IdGenerator;
+import com.google.gson.Gson;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Repositório de logs de acesso em formato binário de registros de tamanho fixo
+ *
+ * Cada tentativa ocupa {@value #RECORD_SIZE} bytes em data/access_logs.bin, lido e
+ * escrito por segmentos mapeados em memória ({@link MappedByteBuffer}). Os textos
+ * repetidos ficam fora do registro: o par (ID, nome) do usuário em um dicionário
+ * (access_logs.users) referenciado por ordinal, e os detalhes em um arquivo de
+ * textos (access_logs.details) referenciado por deslocamento, com os textos mais
+ * frequentes gravados uma única vez.
+ *
+ * Layout do registro:
+ *
+ *  0  long  timestamp (milissegundos da data/hora local, sem fuso)
+ *  8  long  ID (numérico do {@link IdGenerator}, bits altos do UUID ou deslocamento do texto)
+ * 16  long  ID (bits baixos do UUID)
+ * 24  long  deslocamento dos detalhes (-1 se ausentes)
+ * 32  int   ordinal do usuário no dicionário (-1 se ausente)
+ * 36  float score de confiança
+ * 40  byte  status (ordinal, -1 se ausente)
+ * 41  byte  nível de acesso (ordinal, -1 se ausente)
+ * 42  byte  flags do ID
+ * 43  byte  código da mensagem (ordinal + 1, 0 se ausente)
+ * 44  byte  nível de acesso do usuário (ordinal + 1, 0 se ausente)
+ *
+ * Varreduras e agregações ({@link #scan}) leem os campos diretamente do mapeamento,
+ * sem criar objetos por registro. Como os registros são gravados em ordem cronológica,
+ * os filtros por data usam busca binária sobre o próprio arquivo.
+ *
+ * Durabilidade: um lote só é publicado depois que os textos, o dicionário e os
+ * registros foram forçados para o disco; a contagem do cabeçalho é atualizada e
+ * forçada por último. Na abertura, os últimos registros contados são conferidos, e
+ * os que ficaram zerados ou incompletos são descartados. Uma falha de gravação
+ * chega ao chamador, sem publicar nada do lote.
+ *
+ * Os contadores e as marcas de posição de cada geração são gravados em segundo plano
+ * em um checkpoint (access_logs.counters) a cada {@value #CHECKPOINT_INTERVAL}
+ * registros, com a contagem e o último registro que cobrem. A abertura parte do
+ * checkpoint e só percorre os registros gravados depois dele; sem um checkpoint que
+ * corresponda ao arquivo, todos os registros são percorridos, como antes.
+ *
+ * Concorrência: as gravações são serializadas por um lock de escrita; o registro é
+ * escrito antes de a contagem ser publicada, então as leituras não usam lock. A
+ * limpeza não trunca os arquivos em uso: ela passa a gravar em uma nova geração
+ * (access_logs.N.bin, .users e .details, indicada em access_logs.generation), e as
+ * leituras em andamento continuam na geração anterior.
+ */
+public class BinaryAccessLogRepository implements AccessLogRepository {
+
+    private static final String DATA_DIR = "data";
+    private static final String GENERATION_FILE = DATA_DIR + "/access_logs.generation";
+    private static final String[] EXTENSIONS = {"bin", "users", "details", "counters"};
+    private static final int CHECKPOINT_INTERVAL = 1 << 18; // Registros entre checkpoints (um segmento)
+    private static final Gson CHECKPOINT_GSON = new Gson();
+
+    private static final int MAGIC = 0x42414C47; // "BALG"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int COUNT_OFFSET = 16;
+
+    static final int RECORD_SIZE = 48;
+    // Sem conversão de texto por registro, intervalos bem maiores que no JSON são contados
+    private static final int EXACT_COUNT_LIMIT = 1_000_000;
+    private static final int SAMPLE_WINDOWS = 64;
+    private static final int SAMPLE_WINDOW = 4_096;
+
+    private static final int TIMESTAMP = 0;
+    private static final int ID_HIGH = 8;
+    private static final int ID_LOW = 16;
+    private static final int DETAILS = 24;
+    private static final int USER = 32;
+    private static final int CONFIDENCE = 36;
+    private static final int STATUS = 40;
+    private static final int LEVEL = 41;
+    private static final int FLAGS = 42;
+    private static final int MESSAGE = 43;
+    private static final int USER_LEVEL = 44;
+
+    private static final byte ID_UUID = 1;
+    private static final byte ID_TEXT = 2;
+    private static final byte ID_GENERATED = 3;
+
+    private static final int SEGMENT_RECORDS = 1 << 18; // 12 MB por segmento mapeado
+    private static final long SEGMENT_BYTES = (long) SEGMENT_RECORDS * RECORD_SIZE;
+    private static final int INTERNED_DETAILS = 4_096;  // Textos de detalhes reaproveitados
+
+    private static final AccessStatus[] STATUSES = AccessStatus.values();
+    private static final AccessLevel[] LEVELS = AccessLevel.values();
+    private static final AccessMessage[] MESSAGES = AccessMessage.values();
+
+    private final Object writeLock = new Object();
+    private volatile Generation current;
+    private Generation retired; // Geração substituída na última limpeza; fechada na próxima
+
+    // Grava os checkpoints em ordem, fora do lock de escrita
+    private final ExecutorService checkpointExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "binary-log-checkpoint");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public BinaryAccessLogRepository() {
+        try {
+            Files.createDirectories(Paths.get(DATA_DIR));
+            long number = readGenerationNumber();
+            this.current = new Generation(number);
+            deleteStaleGenerations(number);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao abrir logs binários", e);
+        }
+        synchronized (writeLock) {
+            if (current.count - current.checkpointed >= CHECKPOINT_INTERVAL) {
+                scheduleCheckpoint(current);
+            }
+        }
+    }
+
+    /**
+     * Copia os contadores da geração e grava o checkpoint em segundo plano. Deve ser
+     * chamado pelo escritor, com o lock de escrita, para que a cópia corresponda à
+     * contagem publicada.
+     */
+    private void scheduleCheckpoint(Generation g) {
+        if (g.count == 0) {
+            return;
+        }
+        CountersCheckpoint checkpoint = g.checkpoint();
+        g.checkpointed = checkpoint.count;
+        checkpointExecutor.submit(() -> {
+            try {
+                FileUtils.writeAtomically(generationPath(g.number, "counters"), StandardCharsets.UTF_8,
+                        writer -> CHECKPOINT_GSON.toJson(checkpoint, writer));
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Erro ao gravar checkpoint de logs binários: " + e.getMessage());
+            }
+        });
+    }
+
+    private static Path generationPath(long number, String extension) {
+        // A geração 0 usa os nomes originais dos arquivos
+        return Paths.get(number == 0 ? DATA_DIR + "/access_logs." + extension
+                : DATA_DIR + "/access_logs." + number + "." + extension);
+    }
+
+    private static long readGenerationNumber() throws IOException {
+        Path file = Paths.get(GENERATION_FILE);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        String text = new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim();
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            throw new IOException("Geração de logs inválida em " + GENERATION_FILE + ": " + text, e);
+        }
+    }
+
+    /**
+     * Remove os arquivos de gerações que não são a atual: substituídas por uma limpeza
+     * cujos arquivos não puderam ser apagados, ou criadas por uma limpeza interrompida
+     */
+    private static void deleteStaleGenerations(long keep) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get(DATA_DIR), "access_logs.*")) {
+            for (Path file : files) {
+                long number = generationOf(file.getFileName().toString());
+                if (number >= 0 && number != keep) {
+                    deleteQuietly(file);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Erro ao remover gerações antigas de logs: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return Geração a que pertence o arquivo, ou -1 se não é um arquivo de geração
+     */
+    private static long generationOf(String name) {
+        for (String extension : EXTENSIONS) {
+            if (name.equals("access_logs." + extension)) {
+                return 0;
+            }
+            String suffix = "." + extension;
+            if (name.endsWith(suffix)) {
+                String number = name.substring("access_logs.".length(), name.length() - suffix.length());
+                try {
+                    return Long.parseLong(number);
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Arquivo ainda mapeado em alguns sistemas: removido na próxima inicialização
+            System.err.println("Não foi possível remover " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @throws UncheckedIOException se o registro não puder ser gravado; nesse caso ele
+     *                              não é publicado
+     */
+    @Override
+    public AccessLog save(AccessLog log) {
+        saveAll(Collections.singletonList(log));
+        return log;
+    }
+
+    /**
+     * Os registros são publicados juntos, depois de gravados no disco
+     *
+     * @throws UncheckedIOException se o lote não puder ser gravado; nesse caso nenhum
+     *                              registro dele é publicado
+     */
+    @Override
+    public void saveAll(Collection<AccessLog> logs) {
+        if (logs.isEmpty()) {
+            return;
+        }
+        synchronized (writeLock) {
+            Generation g = current;
+            try {
+                g.appendAll(logs);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Erro ao salvar logs: " + e.getMessage(), e);
+            }
+            if (g.count - g.checkpointed >= CHECKPOINT_INTERVAL) {
+                scheduleCheckpoint(g);
+            }
+        }
+    }
+
+    private static long toMillis(LocalDateTime timestamp) {
+        if (timestamp == null) {
+            return Long.MIN_VALUE;
+        }
+        return timestamp.toEpochSecond(ZoneOffset.UTC) * 1000 + timestamp.getNano() / 1_000_000;
+    }
+
+    private static LocalDateTime fromMillis(long millis) {
+        if (millis == Long.MIN_VALUE) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000),
+                Math.floorMod(millis, 1000) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    /**
+     * Percorre os registros em [from, to) sem criar objetos: a mesma {@link RecordView}
+     * é reposicionada a cada registro e só é válida durante a chamada ao consumidor
+     */
+    public void scan(long from, long to, Consumer<RecordView> consumer) {
+        scan(current, from, to, consumer);
+    }
+
+    private static void scan(Generation g, long from, long to, Consumer<RecordView> consumer) {
+        long end = Math.min(to, g.count); // Lida antes dos segmentos, que são publicados primeiro
+        RecordView view = g.view();
+        for (long i = Math.max(0, from); i < end; i++) {
+            view.moveTo(i);
+            consumer.accept(view);
+        }
+    }
+
+    /**
+     * Percorre os registros de um período (limites inclusivos, nulos ignorados)
+     */
+    public void scan(LocalDateTime start, LocalDateTime end, Consumer<RecordView> consumer) {
+        Generation g = current;
+        long n = g.count;
+        long from = start != null ? firstIndexNotBefore(g, toMillis(start), n) : 0;
+        long to = end != null ? firstIndexAfter(g, toMillis(end), n) : n;
+        scan(g, from, to, consumer);
+    }
+
+    private static long timestampAt(MappedByteBuffer[] mapped, long index) {
+        return mapped[(int) (index / SEGMENT_RECORDS)].getLong((int) (index % SEGMENT_RECORDS) * RECORD_SIZE);
+    }
+
+    private static long firstIndexNotBefore(Generation g, long millis, long n) {
+        MappedByteBuffer[] mapped = g.segments;
+        long low = 0;
+        long high = n;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (timestampAt(mapped, mid) < millis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static long firstIndexAfter(Generation g, long millis, long n) {
+        MappedByteBuffer[] mapped = g.segments;
+        long low = 0;
+        long high = n;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (timestampAt(mapped, mid) > millis) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    private List<AccessLog> collectNewestFirst(Generation g, long from, long to, Predicate<RecordView> filter) {
+        List<AccessLog> result = new ArrayList<>();
+        scan(g, from, to, record -> {
+            if (filter.test(record)) {
+                result.add(record.toAccessLog());
+            }
+        });
+        result.sort(Comparator.comparing(AccessLog::getTimestamp,
+                Comparator.nullsFirst(Comparator.<LocalDateTime>naturalOrder())).reversed());
+        return result;
+    }
+
+    @Override
+    public List<AccessLog> findAll() {
+        List<AccessLog> result = new ArrayList<>();
+        forEach(result::add);
+        return result;
+    }
+
+    @Override
+    public void forEach(Consumer<AccessLog> action) {
+        scan(0, Long.MAX_VALUE, record -> action.accept(record.toAccessLog()));
+    }
+
+    @Override
+    public List<AccessLog> findByUserId(String userId) {
+        return collectNewestFirst(current, 0, Long.MAX_VALUE, record -> userId.equals(record.getUserId()));
+    }
+
+    @Override
+    public List<AccessLog> findByStatus(AccessStatus status) {
+        return collectNewestFirst(current, 0, Long.MAX_VALUE, record -> record.getStatus() == status);
+    }
+
+    @Override
+    public List<AccessLog> findByDateRange(LocalDateTime start, LocalDateTime end) {
+        Generation g = current;
+        long n = g.count;
+        return collectNewestFirst(g, firstIndexNotBefore(g, toMillis(start), n),
+                firstIndexAfter(g, toMillis(end), n), record -> true);
+    }
+
+    /**
+     * O cursor é o índice do próximo registro a examinar, na direção da consulta,
+     * seguido do total quando ele exigiu percorrer registros, que então é calculado só
+     * na primeira página
+     */
+    @Override
+    public LogPage findPage(LogQuery query) {
+        Generation g = current;
+        long n = g.count;
+        long lower = query.getStart() != null ? firstIndexNotBefore(g, toMillis(query.getStart()), n) : 0;
+        long upper = query.getEnd() != null ? firstIndexAfter(g, toMillis(query.getEnd()), n) : n;
+        boolean ascending = query.isAscending();
+
+        long index = ascending ? lower : upper - 1;
+        String carriedTotal = null;
+        if (query.getCursor() != null) {
+            String[] parts = query.getCursor().split(":", 2);
+            long cursor = parseCursor(parts[0]);
+            index = ascending ? Math.max(index, cursor) : Math.min(index, cursor);
+            carriedTotal = parts.length > 1 ? parts[1] : null;
+        }
+
+        long skip = query.getOffset();
+        if (skip > 0 && query.getStatus() == null && query.getUserId() == null) {
+            // Sem filtros, todo índice do intervalo corresponde: o deslocamento é direto
+            index = ascending ? Math.min(upper, index + skip) : Math.max(lower - 1, index - skip);
+            skip = 0;
+        } else if (skip > 0 && ascending && query.getCursor() == null
+                && query.getStart() == null && query.getUserId() == null) {
+            // Só status: a marca mais próxima limita o que é percorrido até a página
+            long[] mark = g.positions.seek(query.getStatus(), skip);
+            if (mark != null) {
+                index = mark[0];
+                skip = mark[1];
+            }
+        }
+
+        int step = ascending ? 1 : -1;
+        int limit = Math.max(1, query.getLimit());
+        List<AccessLog> items = new ArrayList<>(limit);
+        RecordView view = g.view();
+        while (index >= lower && index < upper && items.size() < limit) {
+            view.moveTo(index);
+            index += step;
+            if (matches(view, query)) {
+                if (skip > 0) {
+                    skip--;
+                } else {
+                    items.add(view.toAccessLog());
+                }
+            }
+        }
+
+        boolean scanned = needsScan(query);
+        boolean estimated;
+        long total;
+        if (scanned && carriedTotal != null) {
+            estimated = carriedTotal.startsWith("~");
+            total = parseCursor(estimated ? carriedTotal.substring(1) : carriedTotal);
+        } else {
+            estimated = scanned && upper - lower > EXACT_COUNT_LIMIT;
+            total = countMatching(g, query, lower, upper);
+        }
+        String nextCursor = null;
+        if (index >= lower && index < upper) {
+            nextCursor = scanned ? index + ":" + (estimated ? "~" : "") + total : String.valueOf(index);
+        }
+        return new LogPage(items, nextCursor, total, estimated);
+    }
+
+    /**
+     * @return true se os contadores não cobrem os filtros e o total exige olhar os registros
+     */
+    private static boolean needsScan(LogQuery query) {
+        boolean dateFiltered = query.getStart() != null || query.getEnd() != null;
+        return (query.getStatus() != null && query.getUserId() != null)
+                || (dateFiltered && (query.getStatus() != null || query.getUserId() != null));
+    }
+
+    private static boolean matches(RecordView record, LogQuery query) {
+        if (query.getStatus() != null && record.getStatus() != query.getStatus()) {
+            return false;
+        }
+        return query.getUserId() == null || query.getUserId().equals(record.getUserId());
+    }
+
+    /**
+     * Total de registros do intervalo [lower, upper) que atendem aos filtros, como no
+     * {@link JsonAccessLogRepository}: exato até {@value #EXACT_COUNT_LIMIT} registros
+     * percorridos; acima disso, estimado pelas marcas de posição do status ou pela
+     * proporção em {@value #SAMPLE_WINDOWS} janelas distribuídas pelo intervalo
+     */
+    private static long countMatching(Generation g, LogQuery query, long lower, long upper) {
+        if (query.getStatus() == null && query.getUserId() == null) {
+            return Math.max(0, upper - lower);
+        }
+        if (!needsScan(query)) {
+            return query.getStatus() != null
+                    ? g.counters.byStatus(query.getStatus())
+                    : g.counters.byUser(query.getUserId());
+        }
+        if (upper - lower <= EXACT_COUNT_LIMIT) {
+            return countInRange(g, query, lower, upper);
+        }
+        if (query.getUserId() == null) {
+            long matched = g.counters.byStatus(query.getStatus());
+            double before = g.positions.estimateBefore(query.getStatus(), lower, matched, g.count);
+            double through = g.positions.estimateBefore(query.getStatus(), upper, matched, g.count);
+            return Math.max(0, Math.round(through - before));
+        }
+        long sampled = 0;
+        long matched = 0;
+        long step = (upper - lower) / SAMPLE_WINDOWS;
+        for (int i = 0; i < SAMPLE_WINDOWS; i++) {
+            long from = lower + i * step;
+            long to = Math.min(upper, from + SAMPLE_WINDOW);
+            matched += countInRange(g, query, from, to);
+            sampled += to - from;
+        }
+        long estimate = Math.round((double) matched * (upper - lower) / Math.max(1, sampled));
+        return Math.min(estimate, g.counters.byUser(query.getUserId()));
+    }
+
+    private static long countInRange(Generation g, LogQuery query, long from, long to) {
+        long[] total = new long[1];
+        scan(g, from, to, record -> {
+            if (matches(record, query)) {
+                total[0]++;
+            }
+        });
+        return total[0];
+    }
+
+    private long parseCursor(String cursor) {
+        try {
+            return Long.parseLong(cursor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor inválido: " + cursor, e);
+        }
+    }
+
+    @Override
+    public long countByStatus(AccessStatus status) {
+        return current.counters.byStatus(status);
+    }
+
+    @Override
+    public long countByAccessLevel(AccessLevel level) {
+        return current.counters.byLevel(level);
+    }
+
+    @Override
+    public long countByUserId(String userId) {
+        return current.counters.byUser(userId);
+    }
+
+    @Override
+    public long count() {
+        return current.count;
+    }
+
+    /**
+     * Passa a gravar em uma nova geração de arquivos vazios. Os arquivos em uso não são
+     * truncados: leituras que começaram antes da limpeza continuam vendo a geração
+     * anterior, cujos arquivos são fechados na limpeza seguinte.
+     *
+     * @throws UncheckedIOException se a nova geração não puder ser criada; nesse caso
+     *                              os logs continuam como estavam
+     */
+    @Override
+    public void clear() {
+        synchronized (writeLock) {
+            Generation previous = current;
+            Generation next = null;
+            try {
+                long number = previous.number + 1;
+                for (String extension : EXTENSIONS) {
+                    Files.deleteIfExists(generationPath(number, extension));
+                }
+                next = new Generation(number);
+                FileUtils.writeAtomically(Paths.get(GENERATION_FILE), StandardCharsets.UTF_8,
+                        writer -> writer.write(Long.toString(number)));
+            } catch (IOException e) {
+                if (next != null) {
+                    next.close();
+                }
+                throw new UncheckedIOException("Erro ao limpar logs: " + e.getMessage(), e);
+            }
+            current = next;
+            if (retired != null) {
+                retired.close();
+            }
+            retired = previous;
+            for (String extension : EXTENSIONS) {
+                deleteQuietly(generationPath(previous.number, extension));
+            }
+        }
+    }
+
+    /**
+     * Arquivos de uma geração dos logs (registros, dicionário de usuários e textos) e
+     * o estado em memória derivado deles. Os campos mutáveis sem volatile só são
+     * usados pelo escritor, com o lock de escrita.
+     */
+    private static final class Generation {
+        private final long number;
+        private final FileChannel records;
+        private final MappedByteBuffer header;
+        private final FileChannel details;
+        private FileOutputStream usersFile;
+        private DataOutputStream usersOut;
+        private long detailsSize;
+        private boolean detailsDirty;
+        private boolean usersDirty;
+
+        private final Map<String, Integer> userOrdinals = new HashMap<>();
+        private final Map<String, Long> internedDetails = new HashMap<>();
+
+        private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+        private volatile UserDictionary dictionary = new UserDictionary(new String[16], new String[16]);
+        private LogCounters counters = new LogCounters();     // Substituídos só na abertura
+        private PositionMarks positions = new PositionMarks();
+        private volatile long count;
+        private long checkpointed; // Registros cobertos pelo último checkpoint
+
+        Generation(long number) throws IOException {
+            this.number = number;
+            FileChannel recordsChannel = null;
+            FileChannel detailsChannel = null;
+            try {
+                recordsChannel = FileChannel.open(generationPath(number, "bin"),
+                        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                detailsChannel = FileChannel.open(generationPath(number, "details"),
+                        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                this.records = recordsChannel;
+                this.details = detailsChannel;
+                this.header = records.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+                this.detailsSize = details.size();
+                long stored = readHeader();
+                loadDictionary();
+                this.count = validRecords(stored);
+                openUsersOut();
+                loadCounters();
+            } catch (IOException | RuntimeException e) {
+                closeQuietly(recordsChannel);
+                closeQuietly(detailsChannel);
+                throw e;
+            }
+        }
+
+        /**
+         * @return Quantidade de registros gravada no cabeçalho
+         */
+        private long readHeader() throws IOException {
+            if (header.getInt(0) == 0) {
+                header.putInt(0, MAGIC);
+                header.putInt(4, VERSION);
+                header.putInt(8, RECORD_SIZE);
+                header.putLong(COUNT_OFFSET, 0);
+                header.force();
+            } else if (header.getInt(0) != MAGIC || header.getInt(8) != RECORD_SIZE) {
+                throw new IOException("Arquivo de logs binário inválido: " + generationPath(number, "bin"));
+            }
+            long stored = header.getLong(COUNT_OFFSET);
+            int segmentCount = (int) ((stored + SEGMENT_RECORDS - 1) / SEGMENT_RECORDS);
+            MappedByteBuffer[] mapped = new MappedByteBuffer[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                mapped[i] = mapSegment(i);
+            }
+            segments = mapped;
+            return stored;
+        }
+
+        private MappedByteBuffer mapSegment(int segment) throws IOException {
+            return records.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + segment * SEGMENT_BYTES, SEGMENT_BYTES);
+        }
+
+        private void loadDictionary() throws IOException {
+            Path file = generationPath(number, "users");
+            if (!Files.exists(file)) {
+                return;
+            }
+            ByteArrayOutputStream valid = new ByteArrayOutputStream();
+            DataOutputStream validOut = new DataOutputStream(valid);
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                while (true) {
+                    String userId;
+                    String userName;
+                    try {
+                        userId = in.readBoolean() ? in.readUTF() : null;
+                        userName = in.readBoolean() ? in.readUTF() : null;
+                    } catch (EOFException e) {
+                        break; // Fim do arquivo ou última entrada incompleta
+                    }
+                    addToDictionary(userId, userName);
+                    writeOptionalUtf(validOut, userId);
+                    writeOptionalUtf(validOut, userName);
+                }
+            }
+            // Descarta uma entrada incompleta para que as próximas fiquem alinhadas
+            if (valid.size() < Files.size(file)) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(valid.size());
+                }
+            }
+        }
+
+        /**
+         * Confere os últimos registros contados no cabeçalho. Uma queda de energia
+         * durante uma gravação feita antes de os registros serem forçados para o disco
+         * pode deixar registros zerados ou referências a textos e usuários que não
+         * chegaram ao disco; esses registros do final são descartados.
+         *
+         * @return Quantidade de registros válidos
+         */
+        private long validRecords(long stored) {
+            MappedByteBuffer[] mapped = segments;
+            long valid = stored;
+            while (valid > 0 && !isValidRecord(mapped[(int) ((valid - 1) / SEGMENT_RECORDS)],
+                    (int) ((valid - 1) % SEGMENT_RECORDS) * RECORD_SIZE)) {
+                valid--;
+            }
+            if (valid < stored) {
+                System.err.println("Registros incompletos descartados no final de " + generationPath(number, "bin")
+                        + ": " + (stored - valid));
+                header.putLong(COUNT_OFFSET, valid);
+                header.force();
+            }
+            return valid;
+        }
+
+        private boolean isValidRecord(MappedByteBuffer buffer, int base) {
+            long timestamp = buffer.getLong(base + TIMESTAMP);
+            byte status = buffer.get(base + STATUS);
+            byte level = buffer.get(base + LEVEL);
+            byte flags = buffer.get(base + FLAGS);
+            byte message = buffer.get(base + MESSAGE);
+            byte userLevel = buffer.get(base + USER_LEVEL);
+            int user = buffer.getInt(base + USER);
+            // Nenhum registro gravado tem data/hora zero (1970-01-01T00:00): é uma página zerada
+            if (timestamp == 0 || status < -1 || status >= STATUSES.length || level < -1 || level >= LEVELS.length
+                    || message < 0 || message > MESSAGES.length || userLevel < 0 || userLevel > LEVELS.length
+                    || user < -1 || user >= userOrdinals.size()) {
+                return false;
+            }
+            long detailsRef = buffer.getLong(base + DETAILS);
+            if (detailsRef != -1 && !isTextInFile(detailsRef)) {
+                return false;
+            }
+            switch (flags) {
+                case 0:
+                case ID_UUID:
+                    return true;
+                case ID_GENERATED:
+                    return buffer.getLong(base + ID_HIGH) != 0;
+                case ID_TEXT:
+                    return isTextInFile(buffer.getLong(base + ID_HIGH));
+                default:
+                    return false;
+            }
+        }
+
+        private boolean isTextInFile(long offset) {
+            if (offset < 0 || offset + 4 > detailsSize) {
+                return false;
+            }
+            try {
+                ByteBuffer length = ByteBuffer.allocate(4);
+                readFully(length, offset);
+                return length.getInt(0) >= 0 && offset + 4 + length.getInt(0) <= detailsSize;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        private void openUsersOut() throws IOException {
+            usersFile = new FileOutputStream(generationPath(number, "users").toFile(), true);
+            usersOut = new DataOutputStream(new BufferedOutputStream(usersFile));
+        }
+
+        /**
+         * Restaura os contadores do checkpoint e percorre os registros mapeados depois
+         * dele, sem materializá-los
+         */
+        private void loadCounters() {
+            checkpointed = restoreCheckpoint();
+            long[] index = {checkpointed};
+            scan(this, checkpointed, count, record -> {
+                counters.increment(record.getStatus(), record.getAccessLevel(), record.getUserId());
+                positions.add(record.getStatus(), index[0]++);
+            });
+        }
+
+        /**
+         * O checkpoint só é aceito se o registro que ele indica como o último coberto
+         * estiver no arquivo, com a mesma data/hora e o mesmo ID
+         *
+         * @return Registros cobertos pelo checkpoint restaurado (0 se não havia um válido)
+         */
+        private long restoreCheckpoint() {
+            Path file = generationPath(number, "counters");
+            if (!Files.exists(file)) {
+                return 0;
+            }
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                CountersCheckpoint checkpoint = CHECKPOINT_GSON.fromJson(reader, CountersCheckpoint.class);
+                LogCounters restoredCounters = checkpoint != null ? LogCounters.restore(checkpoint.counters) : null;
+                PositionMarks restoredPositions = checkpoint != null
+                        ? PositionMarks.restore(checkpoint.positions) : null;
+                if (restoredCounters == null || restoredPositions == null || checkpoint.count <= 0
+                        || checkpoint.count > count || !matchesRecord(checkpoint)) {
+                    System.err.println("Checkpoint de logs binários não corresponde a "
+                            + generationPath(number, "bin") + "; percorrendo os registros");
+                    return 0;
+                }
+                counters = restoredCounters;
+                positions = restoredPositions;
+                return checkpoint.count;
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Erro ao ler checkpoint de logs binários: " + e.getMessage()
+                        + "; percorrendo os registros");
+                return 0;
+            }
+        }
+
+        private boolean matchesRecord(CountersCheckpoint checkpoint) {
+            MappedByteBuffer buffer = segments[(int) ((checkpoint.count - 1) / SEGMENT_RECORDS)];
+            int base = (int) ((checkpoint.count - 1) % SEGMENT_RECORDS) * RECORD_SIZE;
+            return buffer.getLong(base + TIMESTAMP) == checkpoint.lastTimestamp
+                    && buffer.getLong(base + ID_HIGH) == checkpoint.lastIdHigh
+                    && buffer.getLong(base + ID_LOW) == checkpoint.lastIdLow;
+        }
+
+        /**
+         * Cópia dos contadores e das marcas para o checkpoint. Deve ser chamado pelo
+         * escritor, com o lock de escrita.
+         */
+        CountersCheckpoint checkpoint() {
+            CountersCheckpoint checkpoint = new CountersCheckpoint();
+            checkpoint.count = count;
+            MappedByteBuffer buffer = segments[(int) ((count - 1) / SEGMENT_RECORDS)];
+            int base = (int) ((count - 1) % SEGMENT_RECORDS) * RECORD_SIZE;
+            checkpoint.lastTimestamp = buffer.getLong(base + TIMESTAMP);
+            checkpoint.lastIdHigh = buffer.getLong(base + ID_HIGH);
+            checkpoint.lastIdLow = buffer.getLong(base + ID_LOW);
+            checkpoint.counters = counters.snapshot();
+            checkpoint.positions = positions.snapshot();
+            return checkpoint;
+        }
+
+        private int addToDictionary(String userId, String userName) {
+            UserDictionary current = dictionary;
+            int ordinal = userOrdinals.size();
+            if (ordinal == current.ids.length) {
+                current = new UserDictionary(Arrays.copyOf(current.ids, ordinal * 2),
+                        Arrays.copyOf(current.names, ordinal * 2));
+            }
+            current.ids[ordinal] = userId;
+            current.names[ordinal] = userName;
+            dictionary = current;
+            userOrdinals.put(dictionaryKey(userId, userName), ordinal);
+            return ordinal;
+        }
+
+        private int userOrdinal(AccessLog log) throws IOException {
+            if (log.getUserId() == null && log.getUserName() == null) {
+                return -1;
+            }
+            Integer ordinal = userOrdinals.get(dictionaryKey(log.getUserId(), log.getUserName()));
+            if (ordinal != null) {
+                return ordinal;
+            }
+            // A entrada vai para o disco antes do registro que a referencia
+            writeOptionalUtf(usersOut, log.getUserId());
+            writeOptionalUtf(usersOut, log.getUserName());
+            usersOut.flush();
+            usersDirty = true;
+            return addToDictionary(log.getUserId(), log.getUserName());
+        }
+
+        private long writeText(String text) throws IOException {
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buffer = ByteBuffer.allocate(4 + bytes.length);
+            buffer.putInt(bytes.length).put(bytes).flip();
+            long offset = detailsSize;
+            while (buffer.hasRemaining()) {
+                details.write(buffer, offset + buffer.position());
+            }
+            detailsSize += 4 + bytes.length;
+            detailsDirty = true;
+            return offset;
+        }
+
+        private long detailsOffset(String text) throws IOException {
+            if (text == null) {
+                return -1;
+            }
+            Long offset = internedDetails.get(text);
+            if (offset == null) {
+                offset = writeText(text);
+                if (internedDetails.size() >= INTERNED_DETAILS) {
+                    internedDetails.clear();
+                }
+                internedDetails.put(text, offset);
+            }
+            return offset;
+        }
+
+        private String readText(long offset) {
+            try {
+                ByteBuffer length = ByteBuffer.allocate(4);
+                readFully(length, offset);
+                ByteBuffer bytes = ByteBuffer.allocate(length.getInt(0));
+                readFully(bytes, offset + 4);
+                return new String(bytes.array(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Erro ao ler detalhes do log", e);
+            }
+        }
+
+        private void readFully(ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (details.read(buffer, position + buffer.position()) < 0) {
+                    throw new EOFException();
+                }
+            }
+        }
+
+        /**
+         * Grava os registros depois do último publicado e só então os publica: os
+         * textos, o dicionário e os registros são forçados para o disco antes de a
+         * contagem do cabeçalho ser atualizada e forçada. Se algo falhar, a contagem
+         * não muda e os registros gravados são sobrescritos pela próxima gravação.
+         */
+        void appendAll(Collection<AccessLog> logs) throws IOException {
+            long first = count;
+            long index = first;
+            for (AccessLog log : logs) {
+                write(log, index++);
+            }
+
+            if (usersDirty) {
+                usersOut.flush();
+                usersFile.getFD().sync();
+                usersDirty = false;
+            }
+            if (detailsDirty) {
+                details.force(false);
+                detailsDirty = false;
+            }
+            MappedByteBuffer[] mapped = segments;
+            for (long segment = first / SEGMENT_RECORDS; segment <= (index - 1) / SEGMENT_RECORDS; segment++) {
+                mapped[(int) segment].force();
+            }
+            header.putLong(COUNT_OFFSET, index);
+            header.force();
+
+            // Publica os registros somente depois de gravados
+            count = index;
+            long position = first;
+            for (AccessLog log : logs) {
+                counters.increment(log);
+                positions.add(log.getStatus(), position++);
+            }
+        }
+
+        private void write(AccessLog log, long index) throws IOException {
+            int segment = (int) (index / SEGMENT_RECORDS);
+            MappedByteBuffer[] current = segments;
+            if (segment == current.length) {
+                current = Arrays.copyOf(current, segment + 1);
+                current[segment] = mapSegment(segment);
+                segments = current;
+            }
+
+            long idHigh = 0;
+            long idLow = 0;
+            byte flags = 0;
+            if (IdGenerator.isValid(log.getId())) {
+                idHigh = IdGenerator.decode(log.getId());
+                flags = ID_GENERATED;
+            } else if (log.getId() != null) {
+                try {
+                    UUID uuid = UUID.fromString(log.getId());
+                    idHigh = uuid.getMostSignificantBits();
+                    idLow = uuid.getLeastSignificantBits();
+                    flags = ID_UUID;
+                } catch (IllegalArgumentException e) {
+                    idHigh = writeText(log.getId());
+                    flags = ID_TEXT;
+                }
+            }
+            int user = userOrdinal(log);
+            long detailsRef = detailsOffset(log.getDetails());
+
+            MappedByteBuffer buffer = current[segment];
+            int base = (int) (index % SEGMENT_RECORDS) * RECORD_SIZE;
+            buffer.putLong(base + TIMESTAMP, toMillis(log.getTimestamp()));
+            buffer.putLong(base + ID_HIGH, idHigh);
+            buffer.putLong(base + ID_LOW, idLow);
+            buffer.putLong(base + DETAILS, detailsRef);
+            buffer.putInt(base + USER, user);
+            buffer.putFloat(base + CONFIDENCE, (float) log.getConfidenceScore());
+            buffer.put(base + STATUS, log.getStatus() != null ? (byte) log.getStatus().ordinal() : -1);
+            buffer.put(base + LEVEL, log.getAccessLevel() != null ? (byte) log.getAccessLevel().ordinal() : -1);
+            buffer.put(base + FLAGS, flags);
+            buffer.put(base + MESSAGE, log.getMessageCode() != null ? (byte) (log.getMessageCode().ordinal() + 1) : 0);
+            buffer.put(base + USER_LEVEL,
+                    log.getUserAccessLevel() != null ? (byte) (log.getUserAccessLevel().ordinal() + 1) : 0);
+        }
+
+        RecordView view() {
+            MappedByteBuffer[] mapped = segments; // Lido depois da contagem pelo chamador
+            return new RecordView(this, mapped, dictionary);
+        }
+
+        void close() {
+            try {
+                if (usersOut != null) {
+                    usersOut.close();
+                }
+            } catch (IOException e) {
+                System.err.println("Erro ao fechar logs binários: " + e.getMessage());
+            }
+            closeQuietly(records);
+            closeQuietly(details);
+        }
+
+        private static void closeQuietly(FileChannel channel) {
+            if (channel == null) {
+                return;
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Erro ao fechar logs binários: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Estado gravado no checkpoint de uma geração: o que a abertura precisaria
+     * percorrer os registros para reconstruir
+     */
+    private static final class CountersCheckpoint {
+        private long count;
+        private long lastTimestamp; // Último registro coberto, conferido na abertura
+        private long lastIdHigh;
+        private long lastIdLow;
+        private LogCounters.Snapshot counters;
+        private PositionMarks.Snapshot positions;
+    }
+
+    private static String dictionaryKey(String userId, String userName) {
+        return (userId != null ? userId : "") + '\u0000' + (userName != null ? userName : "\u0001");
+    }
+
+    private static void writeOptionalUtf(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    /**
+     * Dicionário de usuários referenciado pelos registros. Os arrays só recebem
+     * escritas em posições ainda não referenciadas por registros publicados.
+     */
+    private static final class UserDictionary {
+        private final String[] ids;
+        private final String[] names;
+
+        UserDictionary(String[] ids, String[] names) {
+            this.ids = ids;
+            this.names = names;
+        }
+    }
+
+    /**
+     * Visão reposicionável de um registro mapeado, lida campo a campo sem cópia
+     */
+    public static final class RecordView {
+        private final Generation generation;
+        private final MappedByteBuffer[] mapped;
+        private final UserDictionary users;
+        private MappedByteBuffer buffer;
+        private int base;
+
+        private RecordView(Generation generation, MappedByteBuffer[] mapped, UserDictionary users) {
+            this.generation = generation;
+            this.mapped = mapped;
+            this.users = users;
+        }
+
+        private void moveTo(long index) {
+            buffer = mapped[(int) (index / SEGMENT_RECORDS)];
+            base = (int) (index % SEGMENT_RECORDS) * RECORD_SIZE;
+        }
+
+        public long getTimestampMillis() {
+            return buffer.getLong(base + TIMESTAMP);
+        }
+
+        public LocalDateTime getTimestamp() {
+            return fromMillis(getTimestampMillis());
+        }
+
+        public int getUserOrdinal() {
+            return buffer.getInt(base + USER);
+        }
+
+        public String getUserId() {
+            int user = getUserOrdinal();
+            return user >= 0 ? users.ids[user] : null;
+        }
+
+        public String getUserName() {
+            int user = getUserOrdinal();
+            return user >= 0 ? users.names[user] : null;
+        }
+
+        public AccessStatus getStatus() {
+            byte status = buffer.get(base + STATUS);
+            return status >= 0 ? STATUSES[status] : null;
+        }
+
+        public AccessLevel getAccessLevel() {
+            byte level = buffer.get(base + LEVEL);
+            return level >= 0 ? LEVELS[level] : null;
+        }
+
+        public AccessMessage getMessageCode() {
+            byte message = buffer.get(base + MESSAGE);
+            return message > 0 ? MESSAGES[message - 1] : null;
+        }
+
+        public AccessLevel getUserAccessLevel() {
+            byte level = buffer.get(base + USER_LEVEL);
+            return level > 0 ? LEVELS[level - 1] : null;
+        }
+
+        public float getConfidenceScore() {
+            return buffer.getFloat(base + CONFIDENCE);
+        }
+
+        public String getDetails() {
+            long offset = buffer.getLong(base + DETAILS);
+            return offset >= 0 ? generation.readText(offset) : null;
+        }
+
+        public String getId() {
+            byte flags = buffer.get(base + FLAGS);
+            if (flags == ID_GENERATED) {
+                return IdGenerator.encode(buffer.getLong(base + ID_HIGH));
+            }
+            if (flags == ID_UUID) {
+                return new UUID(buffer.getLong(base + ID_HIGH), buffer.getLong(base + ID_LOW)).toString();
+            }
+            if (flags == ID_TEXT) {
+                return generation.readText(buffer.getLong(base + ID_HIGH));
+            }
+            return null;
+        }
+
+        /**
+         * Materializa o registro atual como um {@link AccessLog}
+         */
+        public AccessLog toAccessLog() {
+            AccessLog log = new AccessLog();
+            log.setId(getId());
+            log.setUserId(getUserId());
+            log.setUserName(getUserName());
+            log.setAccessLevel(getAccessLevel());
+            log.setTimestamp(getTimestamp());
+            log.setStatus(getStatus());
+            log.setDetails(getDetails());
+            log.setMessageCode(getMessageCode());
+            log.setUserAccessLevel(getUserAccessLevel());
+            log.setConfidenceScore(getConfidenceScore());
+            return log;
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package br.edu.biometric.repository;
+
+import br.edu.biometric.model.User;
+import br.edu.biometric.util.ImageProbe;
+import br.edu.biometric.util.ImageUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Armazenamento das imagens biométricas endereçado pelo conteúdo
+ *
+ * Cada imagem é gravada uma única vez, com o nome dado pelo SHA-256 do conteúdo, em
+ * data/biometric/store/ab/cd/abcd....jpeg (dois níveis de subdiretórios para que
+ * nenhum diretório acumule milhares de arquivos). Imagens iguais cadastradas para
+ * usuários diferentes, ou recadastradas, ocupam o espaço de uma só, e arquivos
+ * diferentes com o mesmo nome nunca se sobrescrevem. Como o caminho identifica o
+ * conteúdo, ele também serve de chave para caches de templates e miniaturas. O
+ * modelo extraído de cada imagem fica ao lado dela, com o sufixo
+ * {@value #TEMPLATE_SUFFIX}, e é apagado junto com ela.
+ *
+ * A origem é lida uma única vez: os bytes são copiados para um temporário no
+ * armazenamento e passam pelo SHA-256 no caminho. O temporário então recebe o nome
+ * dado pelo hash, ou é descartado se o conteúdo já existe.
+ *
+ * As referências de cada imagem são contadas a partir dos usuários cadastrados,
+ * montadas na inicialização e atualizadas pelos eventos do repositório; quando
+ * nenhum usuário referencia mais uma imagem do armazenamento, o arquivo é apagado.
+ * Imagens recém-importadas ficam protegidas até o chamador liberá-las com
+ * {@link #discardPending} (em um finally, depois de salvar o usuário ou desistir do
+ * cadastro), para que a exclusão de outro cadastro com o mesmo conteúdo não as apague
+ * nesse intervalo; as que não chegaram a ser salvas são apagadas na liberação.
+ * Caminhos fora do armazenamento (cadastros antigos) são ignorados.
+ *
+ * Na inicialização, uma varredura em segundo plano apaga os arquivos sem referências
+ * deixados por execuções interrompidas. Só são apagados arquivos sem modificação há
+ * mais de uma hora, para não alcançar imagens que outro processo (como a importação em
+ * lote) acabou de copiar e ainda não salvou.
+ */
+public class BiometricImageStore implements UserChangeListener {
+
+    private static final String STORE_DIR = "data/biometric/store";
+    private static final long SWEEP_GRACE_MS = 60 * 60 * 1000L;
+    private static final int COPY_BUFFER_SIZE = 1 << 20;
+
+    /** Sufixo do modelo gravado ao lado de cada imagem */
+    public static final String TEMPLATE_SUFFIX = ".template";
+
+    private final Path root;
+    private final Map<String, Integer> references = new HashMap<>();
+    private final Map<String, List<String>> pathsByUser = new HashMap<>();
+    private final Map<String, Integer> pending = new HashMap<>(); // Importações ainda não liberadas
+
+    /**
+     * @param userRepository Repositório cujos usuários referenciam as imagens; o
+     *                       armazenamento passa a observar suas alterações
+     */
+    public BiometricImageStore(UserRepository userRepository) {
+        this.root = Paths.get(STORE_DIR);
+        try {
+            Files.createDirectories(root);
+        } catch (IOException e) {
+            System.err.println("Erro ao criar diretório de imagens biométricas: " + e.getMessage());
+        }
+        synchronized (this) {
+            for (User user : userRepository.findAll()) {
+                track(user);
+            }
+        }
+        userRepository.addChangeListener(this);
+
+        Thread sweeper = new Thread(this::sweepUnreferenced, "biometric-store-sweep");
+        sweeper.setDaemon(true);
+        sweeper.start();
+    }
+
+    /**
+     * Copia uma imagem para o armazenamento, se o conteúdo ainda não estiver nele
+     *
+     * @param sourcePath Caminho da imagem original
+     * @return Caminho da imagem no armazenamento, a ser guardado no usuário e depois
+     *         liberado com {@link #discardPending}
+     * @throws IOException se o arquivo não for uma imagem válida ou a cópia falhar
+     */
+    public String importImage(String sourcePath) throws IOException {
+        Path source = Paths.get(sourcePath);
+        if (isStored(sourcePath)) {
+            synchronized (this) {
+                pending.merge(key(sourcePath), 1, Integer::sum);
+            }
+            return sourcePath;
+        }
+        ImageProbe probe = ImageUtils.probeImage(sourcePath);
+        if (!probe.isValid()) {
+            throw new IOException("Arquivo não é uma imagem válida: " + source.getFileName());
+        }
+
+        // Temporário exclusivo: a mesma imagem pode ser importada por duas threads
+        Path temp = Files.createTempFile(root, "import", ".tmp");
+        try {
+            Path target;
+            try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                target = pathFor(copyHashing(in, out), probe.getFormat());
+                synchronized (this) {
+                    pending.merge(key(target.toString()), 1, Integer::sum);
+                    if (Files.exists(target)) {
+                        // Reaproveitado: renova a data para a varredura de outro processo
+                        touch(target);
+                        return target.toString();
+                    }
+                }
+                out.force(true);
+            }
+            boolean moved = false;
+            try {
+                Files.createDirectories(target.getParent());
+                try {
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+                moved = true;
+            } finally {
+                if (!moved) {
+                    discardPending(Collections.singletonList(target.toString()));
+                }
+            }
+            return target.toString();
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Copia todo o conteúdo de in para out, calculando o SHA-256 dos bytes copiados
+     *
+     * @return Hash em hexadecimal
+     */
+    private static String copyHashing(FileChannel in, FileChannel out) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(COPY_BUFFER_SIZE);
+        while (in.read(buffer) >= 0) {
+            buffer.flip();
+            digest.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            buffer.clear();
+        }
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Importa todas as imagens de um cadastro, mantendo a ordem
+     *
+     * @return Caminhos no armazenamento, sem repetições; cada importação é liberada
+     *         com {@link #discardPending}, mesmo que o usuário não chegue a ser salvo
+     * @throws IOException na primeira imagem que não puder ser importada (as anteriores
+     *                     já são liberadas)
+     */
+    public List<String> importImages(List<String> sourcePaths) throws IOException {
+        List<String> imported = new ArrayList<>(sourcePaths.size());
+        boolean completed = false;
+        try {
+            for (String path : sourcePaths) {
+                imported.add(importImage(path));
+            }
+            completed = true;
+        } finally {
+            if (!completed) {
+                discardPending(imported);
+            }
+        }
+        // As repetições são liberadas já: a primeira ocorrência continua protegida
+        List<String> stored = new ArrayList<>(imported.size());
+        List<String> repeated = new ArrayList<>();
+        for (String path : imported) {
+            (stored.contains(path) ? repeated : stored).add(path);
+        }
+        discardPending(repeated);
+        return stored;
+    }
+
+    /**
+     * Libera imagens importadas; as que nenhum usuário referencia (cadastro que falhou
+     * ou foi abandonado) são apagadas. Deve ser chamado uma vez por importação, depois
+     * de salvar o usuário ou desistir dele.
+     *
+     * @param storedPaths Caminhos devolvidos por {@link #importImage} ou {@link #importImages}
+     */
+    public synchronized void discardPending(Collection<String> storedPaths) {
+        for (String path : storedPaths) {
+            if (!isStored(path)) {
+                continue;
+            }
+            String key = key(path);
+            Integer count = pending.get(key);
+            if (count == null) {
+                continue;
+            }
+            if (count > 1) {
+                pending.put(key, count - 1);
+            } else {
+                pending.remove(key);
+                if (!references.containsKey(key)) {
+                    delete(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true se o caminho aponta para uma imagem deste armazenamento
+     */
+    public boolean isStored(String path) {
+        return path != null && Paths.get(path).toAbsolutePath().normalize().startsWith(root.toAbsolutePath());
+    }
+
+    /**
+     * Quantidade de usuários que referenciam a imagem
+     */
+    public synchronized int getReferenceCount(String storedPath) {
+        return references.getOrDefault(key(storedPath), 0);
+    }
+
+    @Override
+    public synchronized void onUsersChanged(UserChangeEvent event) {
+        // Inclui as novas referências antes de liberar as antigas: uma imagem que
+        // apenas mudou de usuário não chega a zero referências
+        List<String> released = new ArrayList<>();
+        for (User user : event.getUpserted()) {
+            List<String> previous = pathsByUser.remove(user.getId());
+            track(user);
+            if (previous != null) {
+                released.addAll(previous);
+            }
+        }
+        for (String id : event.getDeletedIds()) {
+            List<String> previous = pathsByUser.remove(id);
+            if (previous != null) {
+                released.addAll(previous);
+            }
+        }
+        for (String path : released) {
+            release(path);
+        }
+    }
+
+    private void track(User user) {
+        List<String> stored = new ArrayList<>();
+        for (String path : user.getBiometricDataPaths()) {
+            if (isStored(path)) {
+                String key = key(path);
+                if (!stored.contains(key)) {
+                    stored.add(key);
+                    references.merge(key, 1, Integer::sum);
+                }
+            }
+        }
+        if (!stored.isEmpty()) {
+            pathsByUser.put(user.getId(), stored);
+        }
+    }
+
+    private void release(String key) {
+        int remaining = references.merge(key, -1, Integer::sum);
+        if (remaining > 0) {
+            return;
+        }
+        references.remove(key);
+        if (!pending.containsKey(key)) {
+            delete(key);
+        }
+    }
+
+    /**
+     * Apaga os arquivos do armazenamento que nenhum usuário referencia, inclusive
+     * temporários de cópias interrompidas
+     */
+    private void sweepUnreferenced() {
+        long cutoff = System.currentTimeMillis() - SWEEP_GRACE_MS;
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                String key = key(file.toString());
+                if (key.endsWith(TEMPLATE_SUFFIX)) {
+                    // Modelo que sobrou de uma imagem já apagada
+                    String image = key.substring(0, key.length() - TEMPLATE_SUFFIX.length());
+                    if (!Files.exists(Paths.get(image))) {
+                        delete(key);
+                    }
+                    continue;
+                }
+                synchronized (this) {
+                    if (!references.containsKey(key) && !pending.containsKey(key) && isOlderThan(file, cutoff)) {
+                        delete(key);
+                    }
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Erro na varredura de imagens biométricas: " + e.getMessage());
+        }
+    }
+
+    private static boolean isOlderThan(Path file, long cutoff) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis() < cutoff;
+        } catch (IOException e) {
+            return false; // Removido enquanto a varredura acontecia
+        }
+    }
+
+    private static void delete(String key) {
+        try {
+            Files.deleteIfExists(Paths.get(key + TEMPLATE_SUFFIX));
+            Files.deleteIfExists(Paths.get(key));
+        } catch (IOException e) {
+            System.err.println("Erro ao remover imagem biométrica: " + e.getMessage());
+        }
+    }
+
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            System.err.println("Erro ao atualizar imagem biométrica: " + e.getMessage());
+        }
+    }
+
+    // Chave única para o mesmo arquivo referenciado por caminhos relativos ou absolutos
+    private String key(String path) {
+        Path absolute = Paths.get(path).toAbsolutePath().normalize();
+        return root.resolve(root.toAbsolutePath().relativize(absolute)).toString();
+    }
+
+    private Path pathFor(String hash, String format) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash + "." + format);
+    }
+}
@@ -0,0 +1,869 @@
+package br.edu.biometric.repository;
+
+import br.edu.biometric.model.AccessLevel;
+import br.edu.biometric.model.AccessLog;
+import br.edu.biometric.model.AccessStatus;
+import br.edu.biometric.util.FileUtils;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Repositório para gerenciar logs de acesso em arquivo JSON
+ * 
+ * O arquivo é lido em streaming e apenas a cauda mais recente do histórico
+ * fica residente em memória. Registros mais antigos são lidos sob demanda,
+ * em blocos, e novos registros são acrescentados ao final do arquivo. A posição em
+ * bytes do início de cada bloco é conhecida, de modo que ler um bloco antigo
+ * posiciona o arquivo diretamente nele, sem reler o que vem antes.
+ * 
+ * A cada {@value #CHECKPOINT_INTERVAL} registros, os contadores, as marcas de
+ * posição e o início de cada bloco são gravados em segundo plano em um checkpoint
+ * (access_logs.checkpoint.json). A carga inicial parte do checkpoint e só lê do
+ * arquivo a cauda residente e os registros gravados depois dele; sem um checkpoint
+ * válido, o arquivo é percorrido uma vez do início.
+ * 
+ * Concorrência: as gravações são serializadas por um único lock de escrita e
+ * publicam um novo {@link LogState} imutável. As leituras não usam lock: cada
+ * consulta trabalha sobre o estado publicado no momento em que começou, e nunca
+ * espera por uma gravação em disco.
+ */
+public class JsonAccessLogRepository implements AccessLogRepository {
+
+    private static final String DATA_DIR = "data";
+    private static final String LOGS_FILE = DATA_DIR + "/access_logs.json";
+    private static final int RESIDENT_LOGS = 10_000; // Registros recentes mantidos em memória
+    private static final int CHUNK_SIZE = 1_000;     // Granularidade da leitura sob demanda
+    private static final String CHECKPOINT_FILE = DATA_DIR + "/access_logs.checkpoint.json";
+    private static final int CHECKPOINT_INTERVAL = 10_000; // Registros entre checkpoints
+    private static final int EXACT_COUNT_LIMIT = 20_000;   // Maior intervalo percorrido para um total exato
+    private static final int SAMPLE_CHUNKS = 16;           // Blocos lidos para estimar um total
+
+    private final Gson gson;
+    private final Gson checkpointGson;
+    private final Charset charset = Charset.defaultCharset(); // Mesmo charset de FileReader/FileWriter
+    private final Object writeLock = new Object();
+
+    private volatile LogState state = LogState.empty(0);
+
+    // Fim em bytes do último registro completo no arquivo (-1 se desconhecido); só o escritor usa
+    private long recordsEnd;
+
+    // Último bloco antigo lido do disco (compartilhado entre leitores; corridas são benignas)
+    private volatile CachedChunk cachedChunk;
+
+    // Grava os checkpoints em ordem, fora do lock de escrita
+    private final ExecutorService checkpointExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "log-checkpoint");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public JsonAccessLogRepository() {
+        this.gson = new GsonBuilder()
+                .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
+                .setPrettyPrinting()
+                .create();
+        this.checkpointGson = new GsonBuilder()
+                .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
+                .create();
+        initializeDataDirectory();
+        loadLogs();
+    }
+
+    private void initializeDataDirectory() {
+        try {
+            Files.createDirectories(Paths.get(DATA_DIR));
+        } catch (IOException e) {
+            System.err.println("Erro ao criar diretórios: " + e.getMessage());
+        }
+    }
+
+    private void loadLogs() {
+        synchronized (writeLock) {
+            state = LogState.empty(state.generation + 1);
+            recordsEnd = 0;
+            File file = new File(LOGS_FILE);
+            if (!file.exists() || file.length() == 0) {
+                return;
+            }
+            int checkpointed = restoreCheckpoint();
+            try {
+                // Sem checkpoint, recordsEnd é 0 e a leitura começa no colchete de abertura
+                scanFromDisk(recordsEnd, Integer.MAX_VALUE, (position, end, json) -> {
+                    state = state.append(gson.fromJson(json, AccessLog.class), position);
+                    recordsEnd = end;
+                });
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Erro ao carregar logs: " + e.getMessage());
+                // O restante do arquivo não foi lido: não é seguro repará-lo
+                recordsEnd = -1;
+                return;
+            }
+            if (state.count() - checkpointed >= CHECKPOINT_INTERVAL) {
+                scheduleCheckpoint();
+            }
+        }
+    }
+
+    /**
+     * Publica o estado gravado no checkpoint, lendo do arquivo apenas a cauda
+     * residente. O checkpoint só é aceito se o seu último registro estiver no
+     * arquivo, com o mesmo ID e terminando na mesma posição.
+     *
+     * @return Registros restaurados (0 se não havia checkpoint válido)
+     */
+    private int restoreCheckpoint() {
+        File file = new File(CHECKPOINT_FILE);
+        if (!file.exists()) {
+            return 0;
+        }
+        try (Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+                StandardCharsets.UTF_8))) {
+            LogCheckpoint checkpoint = checkpointGson.fromJson(reader, LogCheckpoint.class);
+            LogState restored = checkpoint != null ? LogState.restore(state.generation, checkpoint) : null;
+            if (restored == null || checkpoint.recordsEnd > new File(LOGS_FILE).length()) {
+                System.err.println("Checkpoint de logs inválido; lendo " + LOGS_FILE + " do início");
+                return 0;
+            }
+            int from = Math.max(0, checkpoint.count - RESIDENT_LOGS);
+            List<AccessLog> tail = new ArrayList<>(checkpoint.count - from);
+            long[] tailEnd = {-1};
+            int[] index = {(from / CHUNK_SIZE) * CHUNK_SIZE};
+            scanFromDisk(restored.chunkOffsets[from / CHUNK_SIZE], checkpoint.count - index[0],
+                    (position, end, json) -> {
+                        if (index[0]++ >= from) {
+                            tail.add(gson.fromJson(json, AccessLog.class));
+                            tailEnd[0] = end;
+                        }
+                    });
+            AccessLog last = tail.isEmpty() ? null : tail.get(tail.size() - 1);
+            if (tail.size() != checkpoint.count - from || tailEnd[0] != checkpoint.recordsEnd
+                    || !last.getId().equals(checkpoint.lastId)) {
+                System.err.println("Checkpoint de logs não corresponde a " + LOGS_FILE + "; lendo do início");
+                return 0;
+            }
+            state = restored.withResident(tail);
+            recordsEnd = checkpoint.recordsEnd;
+            return checkpoint.count;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Erro ao ler checkpoint de logs: " + e.getMessage() + "; lendo "
+                    + LOGS_FILE + " do início");
+            return 0;
+        }
+    }
+
+    /**
+     * Copia o estado publicado e grava o checkpoint em segundo plano. Deve ser chamado
+     * pelo escritor, com o lock de escrita, para que os contadores correspondam aos
+     * registros do estado.
+     */
+    private void scheduleCheckpoint() {
+        LogState s = state;
+        if (s.count() == 0 || recordsEnd <= 0) {
+            return;
+        }
+        LogCheckpoint checkpoint = s.checkpoint(recordsEnd);
+        checkpointExecutor.submit(() -> {
+            try {
+                FileUtils.writeAtomically(Paths.get(CHECKPOINT_FILE), StandardCharsets.UTF_8,
+                        writer -> checkpointGson.toJson(checkpoint, writer));
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Erro ao gravar checkpoint de logs: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Lê do arquivo os registros com índice em [from, to), começando no bloco de from
+     */
+    private void streamFromDisk(LogState s, int from, int to, Consumer<AccessLog> consumer) throws IOException {
+        int chunk = from / CHUNK_SIZE;
+        long position = s.chunkOffsets[chunk];
+        if (position < 0) {
+            throw new IOException("Posição do bloco " + chunk + " desconhecida");
+        }
+        int[] index = {chunk * CHUNK_SIZE};
+        scanFromDisk(position, to - index[0], (elementPosition, end, json) -> {
+            if (index[0]++ >= from) {
+                consumer.accept(gson.fromJson(json, AccessLog.class));
+            }
+        });
+    }
+
+    /**
+     * Percorre os elementos do array JSON a partir de uma posição do arquivo,
+     * separando-os pelos delimitadores sem desserializar os que forem ignorados. Um
+     * elemento incompleto no final do arquivo (gravação interrompida) é ignorado.
+     *
+     * @param position Início do arquivo (0) ou início de um elemento
+     * @param limit    Quantidade máxima de elementos
+     */
+    private void scanFromDisk(long position, int limit, ElementHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(LOGS_FILE), StandardOpenOption.READ);
+             InputStream in = new BufferedInputStream(Channels.newInputStream(channel.position(position)))) {
+            long offset = position;
+            int b = in.read();
+            if (position == 0) {
+                // Início do arquivo: avança até o colchete de abertura do array
+                while (b >= 0 && b != '[') {
+                    b = in.read();
+                    offset++;
+                }
+                if (b < 0) {
+                    return;
+                }
+                b = in.read();
+                offset++;
+            }
+            byte[] buffer = new byte[1024];
+            int count = 0;
+            while (count < limit) {
+                while (b == ',' || (b >= 0 && Character.isWhitespace(b))) {
+                    b = in.read();
+                    offset++;
+                }
+                if (b < 0 || b == ']') {
+                    return;
+                }
+                // Um elemento: termina quando o objeto fecha (fora de strings)
+                long start = offset;
+                int length = 0;
+                int depth = 0;
+                boolean inString = false;
+                boolean escaped = false;
+                while (b >= 0) {
+                    if (length == buffer.length) {
+                        buffer = Arrays.copyOf(buffer, length * 2);
+                    }
+                    buffer[length++] = (byte) b;
+                    if (inString) {
+                        if (escaped) {
+                            escaped = false;
+                        } else if (b == '\\') {
+                            escaped = true;
+                        } else if (b == '"') {
+                            inString = false;
+                        }
+                    } else if (b == '"') {
+                        inString = true;
+                    } else if (b == '{' || b == '[') {
+                        depth++;
+                    } else if (b == '}' || b == ']') {
+                        depth--;
+                    }
+                    b = in.read();
+                    offset++;
+                    if (depth == 0 && !inString) {
+                        break;
+                    }
+                }
+                if (depth != 0 || inString) {
+                    System.err.println("Registro incompleto no final de " + LOGS_FILE
+                            + " (posição " + start + "), ignorado");
+                    return;
+                }
+                handler.accept(start, offset, new String(buffer, 0, length, charset));
+                count++;
+            }
+        }
+    }
+
+    /**
+     * Recebe as posições em bytes do início e do fim (exclusivo) e o texto de um
+     * elemento do array
+     */
+    private interface ElementHandler {
+        void accept(long position, long end, String json);
+    }
+
+    /**
+     * Acrescenta um registro ao array JSON do arquivo, reescrevendo apenas o colchete final
+     *
+     * Se o arquivo não termina no colchete (gravação interrompida), ele é cortado no fim
+     * do último registro completo e o array é fechado de novo; o arquivo só é reescrito
+     * do início quando não contém registros. Se a carga não leu o arquivo inteiro, a
+     * posição do último registro não é conhecida e nada é gravado, termine ou não o
+     * arquivo no colchete: os registros publicados não corresponderiam ao arquivo.
+     *
+     * @return Posição em bytes do registro no arquivo
+     * @throws IOException se o registro não pôde ser gravado
+     */
+    private long appendToFile(AccessLog log, boolean firstEntry) throws IOException {
+        if (recordsEnd < 0) {
+            throw new IOException(LOGS_FILE + " não foi carregado por inteiro");
+        }
+        String json = gson.toJson(log);
+        try (RandomAccessFile file = new RandomAccessFile(LOGS_FILE, "rw")) {
+            long closing = findClosingBracket(file);
+            String prefix;
+            if (closing >= 0) {
+                file.seek(closing);
+                prefix = firstEntry ? "\n" : ",\n";
+            } else if (firstEntry && recordsEnd == 0) {
+                file.seek(0);
+                prefix = "[\n";
+            } else if (!firstEntry && recordsEnd > 0) {
+                System.err.println("Final de " + LOGS_FILE + " incompleto; descartando o que vem após a posição "
+                        + recordsEnd);
+                file.seek(recordsEnd);
+                prefix = ",\n";
+            } else {
+                throw new IOException(LOGS_FILE + " não termina em um registro completo");
+            }
+            long position = file.getFilePointer() + prefix.getBytes(charset).length;
+            file.write((prefix + json + "\n]").getBytes(charset));
+            file.setLength(file.getFilePointer());
+            recordsEnd = position + json.getBytes(charset).length;
+            return position;
+        }
+    }
+
+    private long findClosingBracket(RandomAccessFile file) throws IOException {
+        long position = file.length() - 1;
+        while (position >= 0) {
+            file.seek(position);
+            int b = file.read();
+            if (b == ']') {
+                return position;
+            }
+            if (!Character.isWhitespace(b)) {
+                return -1;
+            }
+            position--;
+        }
+        return -1;
+    }
+
+    private void writeEmptyFile() {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(LOGS_FILE), charset)) {
+            writer.write("[]");
+        } catch (IOException e) {
+            System.err.println("Erro ao salvar logs: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @throws UncheckedIOException se o registro não puder ser gravado; nesse caso ele
+     *                              não é publicado, e as posições dos blocos continuam
+     *                              correspondendo aos registros do arquivo
+     */
+    @Override
+    public AccessLog save(AccessLog log) {
+        synchronized (writeLock) {
+            LogState current = state;
+            long position;
+            try {
+                position = appendToFile(log, current.count() == 0);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Erro ao salvar logs: " + e.getMessage(), e);
+            }
+            state = current.append(log, position);
+            if (state.count() % CHECKPOINT_INTERVAL == 0) {
+                scheduleCheckpoint();
+            }
+        }
+        return log;
+    }
+
+    /**
+     * Obtém o registro pelo índice cronológico, lendo do disco se não estiver residente
+     */
+    private AccessLog get(LogState s, int index) {
+        if (index >= s.archivedCount) {
+            return s.resident[index - s.archivedCount];
+        }
+        int chunk = index / CHUNK_SIZE;
+        CachedChunk cached = cachedChunk;
+        if (cached == null || cached.generation != s.generation || cached.chunk != chunk) {
+            List<AccessLog> chunkLogs = new ArrayList<>(CHUNK_SIZE);
+            try {
+                streamFromDisk(s, chunk * CHUNK_SIZE, (chunk + 1) * CHUNK_SIZE, chunkLogs::add);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Erro ao ler logs antigos", e);
+            }
+            cached = new CachedChunk(s.generation, chunk, chunkLogs);
+            cachedChunk = cached;
+        }
+        return cached.logs.get(index - chunk * CHUNK_SIZE);
+    }
+
+    /**
+     * Percorre os registros em [from, to) em ordem cronológica, lendo a parte
+     * antiga do disco em uma única passada
+     */
+    private void forEachInRange(LogState s, int from, int to, Consumer<AccessLog> consumer) {
+        if (from < s.archivedCount) {
+            try {
+                streamFromDisk(s, from, Math.min(to, s.archivedCount), consumer);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Erro ao ler logs antigos", e);
+            }
+        }
+        for (int i = Math.max(from, s.archivedCount); i < to; i++) {
+            consumer.accept(s.resident[i - s.archivedCount]);
+        }
+    }
+
+    private List<AccessLog> collectNewestFirst(Predicate<AccessLog> filter) {
+        LogState s = state;
+        List<AccessLog> result = new ArrayList<>();
+        forEachInRange(s, 0, s.count(), log -> {
+            if (filter.test(log)) {
+                result.add(log);
+            }
+        });
+        result.sort(Comparator.comparing(AccessLog::getTimestamp).reversed());
+        return result;
+    }
+
+    @Override
+    public List<AccessLog> findAll() {
+        List<AccessLog> result = new ArrayList<>();
+        forEach(result::add);
+        return result;
+    }
+
+    @Override
+    public void forEach(Consumer<AccessLog> action) {
+        LogState s = state;
+        forEachInRange(s, 0, s.count(), action);
+    }
+
+    @Override
+    public List<AccessLog> findByUserId(String userId) {
+        return collectNewestFirst(log -> userId.equals(log.getUserId()));
+    }
+
+    @Override
+    public List<AccessLog> findByStatus(AccessStatus status) {
+        return collectNewestFirst(log -> log.getStatus() == status);
+    }
+
+    /**
+     * Apenas os registros da página são percorridos e copiados; o total usa os
+     * contadores incrementais sempre que os filtros permitem (veja
+     * {@link #countMatching}). O cursor é o índice do próximo registro a examinar, na
+     * direção da consulta, seguido do total quando ele exigiu percorrer registros, que
+     * então é calculado só na primeira página.
+     */
+    @Override
+    public LogPage findPage(LogQuery query) {
+        LogState s = state;
+        int lower = query.getStart() != null ? firstIndexNotBefore(s, query.getStart()) : 0;
+        int upper = query.getEnd() != null ? firstIndexAfter(s, query.getEnd()) : s.count();
+        boolean ascending = query.isAscending();
+
+        int index = ascending ? lower : upper - 1;
+        String carriedTotal = null;
+        if (query.getCursor() != null) {
+            String[] parts = query.getCursor().split(":", 2);
+            int cursor = parseCursor(parts[0]);
+            index = ascending ? Math.max(index, cursor) : Math.min(index, cursor);
+            carriedTotal = parts.length > 1 ? parts[1] : null;
+        }
+
+        long skip = query.getOffset();
+        if (skip > 0 && query.getStatus() == null && query.getUserId() == null) {
+            // Sem filtros, todo índice do intervalo corresponde: o deslocamento é direto
+            index = ascending ? (int) Math.min(upper, index + skip) : (int) Math.max(lower - 1, index - skip);
+            skip = 0;
+        } else if (skip > 0 && ascending && query.getCursor() == null
+                && query.getStart() == null && query.getUserId() == null) {
+            // Só status: a marca mais próxima limita o que é percorrido até a página
+            long[] mark = s.positions.seek(query.getStatus(), skip);
+            if (mark != null) {
+                index = (int) mark[0];
+                skip = mark[1];
+            }
+        }
+
+        int step = ascending ? 1 : -1;
+        int limit = Math.max(1, query.getLimit());
+        List<AccessLog> items = new ArrayList<>(Math.min(limit, Math.max(0, upper - lower)));
+        while (index >= lower && index < upper && items.size() < limit) {
+            AccessLog log = get(s, index);
+            index += step;
+            if (matches(log, query)) {
+                if (skip > 0) {
+                    skip--;
+                } else {
+                    items.add(log);
+                }
+            }
+        }
+
+        boolean scanned = needsScan(query);
+        boolean estimated;
+        long total;
+        if (scanned && carriedTotal != null) {
+            estimated = carriedTotal.startsWith("~");
+            total = parseCursor(estimated ? carriedTotal.substring(1) : carriedTotal);
+        } else {
+            estimated = scanned && upper - lower > EXACT_COUNT_LIMIT;
+            total = countMatching(s, query, lower, upper);
+        }
+        String nextCursor = null;
+        if (index >= lower && index < upper) {
+            nextCursor = scanned ? index + ":" + (estimated ? "~" : "") + total : String.valueOf(index);
+        }
+        return new LogPage(items, nextCursor, total, estimated);
+    }
+
+    /**
+     * @return true se os contadores não cobrem os filtros e o total exige olhar os registros
+     */
+    private static boolean needsScan(LogQuery query) {
+        boolean dateFiltered = query.getStart() != null || query.getEnd() != null;
+        return (query.getStatus() != null && query.getUserId() != null)
+                || (dateFiltered && (query.getStatus() != null || query.getUserId() != null));
+    }
+
+    private boolean matches(AccessLog log, LogQuery query) {
+        if (query.getStatus() != null && log.getStatus() != query.getStatus()) {
+            return false;
+        }
+        return query.getUserId() == null || query.getUserId().equals(log.getUserId());
+    }
+
+    /**
+     * Total de registros do intervalo [lower, upper) que atendem aos filtros. Sem
+     * status nem usuário, é o tamanho do intervalo; sem data, vem dos contadores. Nos
+     * demais casos, intervalos de até {@value #EXACT_COUNT_LIMIT} registros são
+     * percorridos; nos maiores, o total é estimado: só com status, pelas marcas de
+     * posição do status nos dois extremos (erro menor que {@value PositionMarks#INTERVAL}
+     * em cada um); com usuário, pela proporção em {@value #SAMPLE_CHUNKS} blocos
+     * distribuídos pelo intervalo.
+     */
+    private long countMatching(LogState s, LogQuery query, int lower, int upper) {
+        if (query.getStatus() == null && query.getUserId() == null) {
+            return Math.max(0, upper - lower);
+        }
+        if (!needsScan(query)) {
+            return query.getStatus() != null
+                    ? s.counters.byStatus(query.getStatus())
+                    : s.counters.byUser(query.getUserId());
+        }
+        if (upper - lower <= EXACT_COUNT_LIMIT) {
+            return countInRange(s, query, lower, upper);
+        }
+        if (query.getUserId() == null) {
+            long matched = s.counters.byStatus(query.getStatus());
+            double before = s.positions.estimateBefore(query.getStatus(), lower, matched, s.count());
+            double through = s.positions.estimateBefore(query.getStatus(), upper, matched, s.count());
+            return Math.max(0, Math.round(through - before));
+        }
+        long sampled = 0;
+        long matched = 0;
+        long step = (upper - lower) / SAMPLE_CHUNKS;
+        for (int i = 0; i < SAMPLE_CHUNKS; i++) {
+            // Alinhado ao início de um bloco, que é lido sem descartar registros
+            int from = (int) Math.max(lower, (lower + i * step) / CHUNK_SIZE * CHUNK_SIZE);
+            int to = Math.min(upper, from + CHUNK_SIZE);
+            matched += countInRange(s, query, from, to);
+            sampled += to - from;
+        }
+        long estimate = Math.round((double) matched * (upper - lower) / Math.max(1, sampled));
+        return Math.min(estimate, s.counters.byUser(query.getUserId()));
+    }
+
+    private long countInRange(LogState s, LogQuery query, int from, int to) {
+        long[] total = new long[1];
+        forEachInRange(s, from, to, log -> {
+            if (matches(log, query)) {
+                total[0]++;
+            }
+        });
+        return total[0];
+    }
+
+    private int parseCursor(String cursor) {
+        try {
+            return Integer.parseInt(cursor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor inválido: " + cursor, e);
+        }
+    }
+
+    // Os logs são gravados em ordem cronológica, permitindo busca binária por data:
+    // primeiro sobre o início de cada bloco (em memória), depois dentro de um único bloco
+    private int firstIndexNotBefore(LogState s, LocalDateTime start) {
+        int chunk = firstChunkMatching(s, ts -> !ts.isBefore(start));
+        int low = Math.max(0, (chunk - 1) * CHUNK_SIZE);
+        int high = (int) Math.min(s.count(), (long) chunk * CHUNK_SIZE);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (get(s, mid).getTimestamp().isBefore(start)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int firstIndexAfter(LogState s, LocalDateTime end) {
+        int chunk = firstChunkMatching(s, ts -> ts.isAfter(end));
+        int low = Math.max(0, (chunk - 1) * CHUNK_SIZE);
+        int high = (int) Math.min(s.count(), (long) chunk * CHUNK_SIZE);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (get(s, mid).getTimestamp().isAfter(end)) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    private int firstChunkMatching(LogState s, Predicate<LocalDateTime> condition) {
+        int low = 0;
+        int high = s.chunkCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (condition.test(s.chunkStarts[mid])) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public List<AccessLog> findByDateRange(LocalDateTime start, LocalDateTime end) {
+        LogState s = state;
+        List<AccessLog> result = new ArrayList<>();
+        forEachInRange(s, firstIndexNotBefore(s, start), firstIndexAfter(s, end), result::add);
+        result.sort(Comparator.comparing(AccessLog::getTimestamp).reversed());
+        return result;
+    }
+
+    @Override
+    public long countByStatus(AccessStatus status) {
+        return state.counters.byStatus(status);
+    }
+
+    @Override
+    public long countByAccessLevel(AccessLevel level) {
+        return state.counters.byLevel(level);
+    }
+
+    @Override
+    public long countByUserId(String userId) {
+        return state.counters.byUser(userId);
+    }
+
+    @Override
+    public long countSuccessful() {
+        return countByStatus(AccessStatus.SUCCESS);
+    }
+
+    @Override
+    public long countFailed() {
+        LogState s = state;
+        return s.count() - s.counters.byStatus(AccessStatus.SUCCESS);
+    }
+
+    @Override
+    public long count() {
+        return state.count();
+    }
+
+    @Override
+    public void clear() {
+        synchronized (writeLock) {
+            writeEmptyFile();
+            state = LogState.empty(state.generation + 1);
+            recordsEnd = 0;
+            // Na mesma fila dos checkpoints, depois dos que ainda estão pendentes
+            checkpointExecutor.submit(() -> {
+                try {
+                    Files.deleteIfExists(Paths.get(CHECKPOINT_FILE));
+                } catch (IOException e) {
+                    System.err.println("Erro ao remover checkpoint de logs: " + e.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * Estado publicado do repositório. Os arrays são compartilhados entre estados
+     * sucessivos, mas só recebem escritas em posições além do tamanho publicado,
+     * portanto o conteúdo visível por um estado nunca muda.
+     *
+     * Os contadores e as marcas de posição, por outro lado, são os mesmos objetos
+     * mutáveis em todos os estados de uma geração (copiá-los a cada inclusão custaria
+     * caro): os contadores de um estado antigo já podem incluir registros acrescentados
+     * depois dele, e as marcas além do seu tamanho também. Quem precisa de valores
+     * consistentes com o estado usa {@link #checkpoint}, com o lock de escrita.
+     */
+    private static final class LogState {
+        private final long generation;             // Muda a cada carga/limpeza do arquivo
+        private final AccessLog[] resident;        // Cauda residente (índices archivedCount em diante)
+        private final int residentSize;
+        private final int archivedCount;
+        private final LocalDateTime[] chunkStarts; // Timestamp do primeiro registro de cada bloco
+        private final long[] chunkOffsets;         // Posição em bytes do primeiro registro de cada bloco
+        private final int chunkCount;
+        private final LogCounters counters;
+        private final PositionMarks positions;
+
+        private LogState(long generation, AccessLog[] resident, int residentSize, int archivedCount,
+                         LocalDateTime[] chunkStarts, long[] chunkOffsets, int chunkCount, LogCounters counters,
+                         PositionMarks positions) {
+            this.generation = generation;
+            this.resident = resident;
+            this.residentSize = residentSize;
+            this.archivedCount = archivedCount;
+            this.chunkStarts = chunkStarts;
+            this.chunkOffsets = chunkOffsets;
+            this.chunkCount = chunkCount;
+            this.counters = counters;
+            this.positions = positions;
+        }
+
+        static LogState empty(long generation) {
+            return new LogState(generation, new AccessLog[16], 0, 0, new LocalDateTime[16], new long[16], 0,
+                    new LogCounters(), new PositionMarks());
+        }
+
+        int count() {
+            return archivedCount + residentSize;
+        }
+
+        /**
+         * @return Estado com os blocos, contadores e marcas de um checkpoint, ainda sem
+         *         a cauda residente, ou null se o checkpoint está incompleto
+         */
+        static LogState restore(long generation, LogCheckpoint checkpoint) {
+            LogCounters counters = LogCounters.restore(checkpoint.counters);
+            PositionMarks positions = PositionMarks.restore(checkpoint.positions);
+            int chunkCount = (checkpoint.count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            if (counters == null || positions == null || checkpoint.count <= 0 || checkpoint.lastId == null
+                    || checkpoint.chunkStarts == null || checkpoint.chunkOffsets == null
+                    || checkpoint.chunkStarts.length != chunkCount || checkpoint.chunkOffsets.length != chunkCount) {
+                return null;
+            }
+            int capacity = Math.max(16, chunkCount);
+            return new LogState(generation, new AccessLog[16], 0, checkpoint.count,
+                    Arrays.copyOf(checkpoint.chunkStarts, capacity), Arrays.copyOf(checkpoint.chunkOffsets, capacity),
+                    chunkCount, counters, positions);
+        }
+
+        /**
+         * @param tail Últimos registros do estado, que passam a ser residentes
+         */
+        LogState withResident(List<AccessLog> tail) {
+            AccessLog[] nextResident = tail.toArray(new AccessLog[Math.max(16, tail.size())]);
+            return new LogState(generation, nextResident, tail.size(), count() - tail.size(),
+                    chunkStarts, chunkOffsets, chunkCount, counters, positions);
+        }
+
+        /**
+         * Cópia do estado para o checkpoint. Deve ser chamado pelo escritor, com o lock
+         * de escrita, antes da próxima inclusão.
+         *
+         * @param recordsEnd Fim em bytes do último registro do estado
+         */
+        LogCheckpoint checkpoint(long recordsEnd) {
+            LogCheckpoint checkpoint = new LogCheckpoint();
+            checkpoint.count = count();
+            checkpoint.recordsEnd = recordsEnd;
+            checkpoint.lastId = resident[residentSize - 1].getId();
+            checkpoint.chunkStarts = Arrays.copyOf(chunkStarts, chunkCount);
+            checkpoint.chunkOffsets = Arrays.copyOf(chunkOffsets, chunkCount);
+            checkpoint.counters = counters.snapshot();
+            checkpoint.positions = positions.snapshot();
+            return checkpoint;
+        }
+
+        /**
+         * Cria o estado seguinte com o registro acrescentado. Deve ser chamado
+         * apenas pelo escritor, com o lock de escrita.
+         *
+         * @param position Posição em bytes do registro no arquivo (-1 se desconhecida)
+         */
+        LogState append(AccessLog log, long position) {
+            AccessLog[] nextResident = resident;
+            int nextSize = residentSize;
+            int nextArchived = archivedCount;
+
+            if (nextSize >= 2 * RESIDENT_LOGS) {
+                // Libera os registros mais antigos da cauda em lote, em um novo array
+                int evicted = nextSize - RESIDENT_LOGS;
+                nextResident = new AccessLog[2 * RESIDENT_LOGS];
+                System.arraycopy(resident, evicted, nextResident, 0, RESIDENT_LOGS);
+                nextSize = RESIDENT_LOGS;
+                nextArchived += evicted;
+            } else if (nextSize == nextResident.length) {
+                nextResident = Arrays.copyOf(resident, Math.min(2 * RESIDENT_LOGS, nextSize * 2));
+            }
+            nextResident[nextSize] = log;
+
+            LocalDateTime[] nextChunkStarts = chunkStarts;
+            long[] nextChunkOffsets = chunkOffsets;
+            int nextChunkCount = chunkCount;
+            if (count() % CHUNK_SIZE == 0) {
+                if (nextChunkCount == nextChunkStarts.length) {
+                    nextChunkStarts = Arrays.copyOf(chunkStarts, nextChunkCount * 2);
+                    nextChunkOffsets = Arrays.copyOf(chunkOffsets, nextChunkCount * 2);
+                }
+                nextChunkStarts[nextChunkCount] = log.getTimestamp();
+                nextChunkOffsets[nextChunkCount++] = position;
+            }
+
+            counters.increment(log);
+            positions.add(log.getStatus(), count());
+            return new LogState(generation, nextResident, nextSize + 1, nextArchived,
+                    nextChunkStarts, nextChunkOffsets, nextChunkCount, counters, positions);
+        }
+    }
+
+    /**
+     * Estado gravado no checkpoint: tudo o que a carga inicial precisaria percorrer o
+     * arquivo para reconstruir
+     */
+    private static final class LogCheckpoint {
+        private int count;
+        private long recordsEnd;  // Fim em bytes do último registro
+        private String lastId;    // ID do último registro, conferido na carga
+        private LocalDateTime[] chunkStarts;
+        private long[] chunkOffsets;
+        private LogCounters.Snapshot counters;
+        private PositionMarks.Snapshot positions;
+    }
+
+    /**
+     * Bloco de registros antigos lido do disco
+     */
+    private static final class CachedChunk {
+        private final long generation;
+        private final int chunk;
+        private final List<AccessLog> logs;
+
+        CachedChunk(long generation, int chunk, List<AccessLog> logs) {
+            this.generation = generation;
+            this.chunk = chunk;
+            this.logs = logs;
+        }
+    }
+}
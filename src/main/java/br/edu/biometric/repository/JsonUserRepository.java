@@ -0,0 +1,501 @@
+package br.edu.biometric.repository;
+
+import br.edu.biometric.model.AccessLevel;
+import br.edu.biometric.model.User;
+import br.edu.biometric.util.FileUtils;
+import br.edu.biometric.util.Validator;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Repositório para gerenciar a persistência de usuários em arquivo JSON
+ * 
+ * Os usuários ficam indexados em memória por ID, CPF normalizado (apenas dígitos)
+ * e email em minúsculas, permitindo buscas em tempo constante, e por prefixo das
+ * palavras do nome, do email e do CPF ({@link UserSearchIndex}).
+ * 
+ * Cada alteração é registrada em um journal (users.journal) em vez de reescrever
+ * o arquivo inteiro. Periodicamente o journal é compactado em segundo plano em um
+ * novo snapshot (users.json). Na inicialização, o snapshot é carregado e o journal
+ * é reaplicado sobre ele; se algum deles não puder ser lido por inteiro (além de
+ * um último registro incompleto no journal), a inicialização falha e os arquivos
+ * ficam como estão. O journal é travado pelo processo que abre o repositório
+ * ({@link UserJournal#lock}): um segundo processo com o backend JSON (como o
+ * importador em lote com a interface aberta) falha na abertura, em vez de gravar no
+ * mesmo journal alterações que o primeiro não veria e descartaria na compactação.
+ * 
+ * Concorrência: os índices são publicados como um {@link UserIndex} imutável
+ * (copy-on-write). As leituras usam o índice publicado sem lock; as gravações são
+ * serializadas por um único lock de escrita, que monta a nova versão, grava o journal
+ * e só então a publica; se o journal não puder ser gravado, a versão nova é
+ * descartada e a exceção chega ao chamador. A nova versão compartilha com a anterior
+ * tudo o que o lote não alterou ({@link SegmentedMap}), de modo que salvar custa o
+ * tamanho do lote, e não a quantidade de usuários.
+ *
+ * Os usuários publicados nunca são alterados: o save guarda uma cópia de cada
+ * usuário e as consultas devolvem cópias, que o chamador pode editar livremente
+ * (como as instâncias lidas do banco no {@link SqlUserRepository}). Assim leitores
+ * e a compactação não veem edições ainda não salvas.
+ */
+public class JsonUserRepository implements UserRepository {
+
+    private static final String DATA_DIR = "data";
+    private static final String USERS_FILE = DATA_DIR + "/users.json";
+    private static final String JOURNAL_FILE = DATA_DIR + "/users.journal";
+    private static final int COMPACTION_THRESHOLD = 1_000; // Registros no journal antes de compactar
+
+    private final Gson gson;
+    private final UserJournal journal;
+    private final AtomicBoolean compacting = new AtomicBoolean(false);
+    private final List<UserChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final ExecutorService compactionExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "user-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Object writeLock = new Object();
+    private volatile UserIndex index = UserIndex.EMPTY;
+
+    public JsonUserRepository() {
+        this.gson = new GsonBuilder()
+                .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
+                .setPrettyPrinting()
+                .create();
+        Gson journalGson = new GsonBuilder()
+                .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
+                .create();
+        this.journal = new UserJournal(Paths.get(JOURNAL_FILE), journalGson);
+        initializeDataDirectory();
+        try {
+            journal.lock();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao abrir usuários: " + e.getMessage(), e);
+        }
+        synchronized (writeLock) {
+            // Ordem de cadastro: a do snapshot, com os novos do journal no final
+            Map<String, User> loaded = new LinkedHashMap<>();
+            loadUsers(loaded);
+            recoverJournal(loaded);
+            UserIndex.Editor editor = UserIndex.EMPTY.edit();
+            for (User user : loaded.values()) {
+                editor.put(user);
+            }
+            index = editor.build(UserSearchIndex.build(loaded.values()));
+        }
+        compactIfNeeded();
+    }
+
+    private void initializeDataDirectory() {
+        try {
+            Files.createDirectories(Paths.get(DATA_DIR));
+            Files.createDirectories(Paths.get(DATA_DIR + "/biometric"));
+        } catch (IOException e) {
+            System.err.println("Erro ao criar diretórios: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @throws UncheckedIOException se o snapshot não puder ser lido por inteiro; a
+     *                              inicialização é interrompida em vez de continuar
+     *                              com parte dos usuários, que a recuperação e a
+     *                              compactação gravariam por cima do snapshot
+     */
+    private void loadUsers(Map<String, User> loaded) {
+        File file = new File(USERS_FILE);
+        if (file.exists() && file.length() > 0) {
+            // Leitura em streaming: cada usuário é desserializado e compactado individualmente,
+            // sem montar a árvore JSON nem a lista intermediária do arquivo inteiro
+            try (JsonReader reader = new JsonReader(new BufferedReader(new FileReader(file)))) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    User user = gson.fromJson(reader, User.class);
+                    if (user != null) {
+                        loaded.put(user.getId(), compact(user));
+                    }
+                }
+                reader.endArray();
+            } catch (IOException | JsonParseException | IllegalStateException e) {
+                throw new UncheckedIOException("Erro ao carregar usuários de " + USERS_FILE + ": " + e.getMessage(),
+                        e instanceof IOException ? (IOException) e : new IOException(e));
+            }
+        }
+    }
+
+    /**
+     * Reaplica o journal sobre o snapshot carregado. Se a última gravação foi
+     * interrompida ou uma compactação ficou pela metade, grava imediatamente um
+     * snapshot consolidado e recomeça o journal.
+     *
+     * @throws UncheckedIOException se o journal não puder ser lido até o fim; os
+     *                              arquivos são preservados e a inicialização é
+     *                              interrompida
+     */
+    private void recoverJournal(Map<String, User> loaded) {
+        boolean clean;
+        try {
+            clean = journal.replay(user -> loaded.put(user.getId(), compact(user)), loaded::remove);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao reaplicar journal de usuários: " + e.getMessage(), e);
+        }
+        if (!clean) {
+            try {
+                writeSnapshot(new ArrayList<>(loaded.values()));
+                journal.reset();
+            } catch (IOException e) {
+                System.err.println("Erro ao consolidar journal de usuários: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Reduz a forma residente do usuário, sem capacidade ociosa nas listas
+     */
+    private User compact(User user) {
+        List<String> paths = user.getBiometricDataPaths();
+        List<String> compactPaths = paths != null ? new ArrayList<>(paths) : new ArrayList<>(0);
+        LocalDateTime updatedAt = user.getUpdatedAt();
+        user.setBiometricDataPaths(compactPaths);
+        user.setUpdatedAt(updatedAt);
+        return user;
+    }
+
+    static String cpfKey(String cpf) {
+        if (cpf == null) {
+            return null;
+        }
+        String digits = Validator.normalizeCpf(cpf);
+        return digits.isEmpty() ? null : digits;
+    }
+
+    static String emailKey(String email) {
+        return email != null ? email.trim().toLowerCase(Locale.ROOT) : null;
+    }
+
+    private void writeSnapshot(List<User> snapshot) throws IOException {
+        FileUtils.writeAtomically(Paths.get(USERS_FILE), Charset.defaultCharset(),
+                writer -> gson.toJson(snapshot, writer));
+    }
+
+    /**
+     * Sela o journal e grava o snapshot em segundo plano quando o journal
+     * atinge o limite de registros. Se a gravação falhar, o journal selado volta a
+     * fazer parte do corrente, e a compactação é tentada de novo na próxima alteração.
+     */
+    private void compactIfNeeded() {
+        if (journal.getRecordCount() < COMPACTION_THRESHOLD || !compacting.compareAndSet(false, true)) {
+            return;
+        }
+        // Selar o journal e capturar o índice sob o lock de escrita garante que o
+        // snapshot contenha exatamente os registros do journal selado
+        UserIndex sealed;
+        synchronized (writeLock) {
+            try {
+                if (!journal.seal()) {
+                    compacting.set(false);
+                    return;
+                }
+            } catch (IOException e) {
+                System.err.println("Erro ao selar journal de usuários: " + e.getMessage());
+                compacting.set(false);
+                return;
+            }
+            sealed = index;
+        }
+        compactionExecutor.submit(() -> {
+            try {
+                // O índice capturado e seus usuários são imutáveis: a lista é montada fora do lock
+                List<User> snapshot = new ArrayList<>(sealed.usersById.size());
+                sealed.search.forEachId(id -> snapshot.add(sealed.usersById.get(id)));
+                writeSnapshot(snapshot);
+                journal.discardSealed();
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Erro ao gravar snapshot de usuários: " + e.getMessage());
+                try {
+                    journal.unseal();
+                } catch (IOException unsealError) {
+                    System.err.println("Erro ao restaurar journal de usuários: " + unsealError.getMessage());
+                }
+            } finally {
+                compacting.set(false);
+            }
+        });
+    }
+
+    /**
+     * @throws UncheckedIOException se o journal não puder ser gravado; nesse caso o
+     *                              lote não é aplicado
+     */
+    @Override
+    public List<User> saveAll(Collection<User> batch) {
+        List<User> saved = new ArrayList<>(batch);
+        if (saved.isEmpty()) {
+            return saved;
+        }
+        // Cópias: as instâncias do chamador continuam editáveis sem alterar o publicado
+        List<User> stored = new ArrayList<>(saved.size());
+        for (User user : saved) {
+            stored.add(new User(user));
+        }
+        synchronized (writeLock) {
+            UserIndex.Editor editor = index.edit();
+            for (User user : stored) {
+                editor.put(user);
+            }
+            UserIndex next = editor.build(index.search.update(stored, Collections.emptyList()));
+            // Só publica o que está no journal: se a gravação falhar, nada muda
+            try {
+                journal.appendUpserts(stored);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Erro ao salvar usuários: " + e.getMessage(), e);
+            }
+            index = next;
+        }
+        compactIfNeeded();
+        fireChange(new UserChangeEvent(saved, Collections.emptyList()));
+        return saved;
+    }
+
+    @Override
+    public Optional<User> findById(String id) {
+        return Optional.ofNullable(index.usersById.get(id)).map(User::new);
+    }
+
+    @Override
+    public Optional<User> findByCpf(String cpf) {
+        String key = cpfKey(cpf);
+        UserIndex current = index;
+        String id = key != null ? current.idsByCpf.get(key) : null;
+        return id != null ? Optional.ofNullable(current.usersById.get(id)).map(User::new) : Optional.empty();
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        String key = emailKey(email);
+        UserIndex current = index;
+        String id = key != null ? current.idsByEmail.get(key) : null;
+        return id != null ? Optional.ofNullable(current.usersById.get(id)).map(User::new) : Optional.empty();
+    }
+
+    @Override
+    public List<User> findAll() {
+        UserIndex current = index;
+        List<User> users = new ArrayList<>(current.usersById.size());
+        current.search.forEachId(id -> users.add(new User(current.usersById.get(id))));
+        return users;
+    }
+
+    @Override
+    public List<User> findAllActive() {
+        UserIndex current = index;
+        List<User> users = new ArrayList<>((int) current.activeCount);
+        current.search.forEachId(id -> {
+            User user = current.usersById.get(id);
+            if (user.isActive()) {
+                users.add(new User(user));
+            }
+        });
+        return users;
+    }
+
+    @Override
+    public List<String> searchIds(String query) {
+        return index.search.search(query);
+    }
+
+    /**
+     * @throws UncheckedIOException se o journal não puder ser gravado; nesse caso
+     *                              nenhum usuário é excluído
+     */
+    @Override
+    public int deleteAll(Collection<String> ids) {
+        List<String> deleted = new ArrayList<>();
+        synchronized (writeLock) {
+            UserIndex.Editor editor = index.edit();
+            for (String id : ids) {
+                if (editor.remove(id)) {
+                    deleted.add(id);
+                }
+            }
+            if (deleted.isEmpty()) {
+                return 0;
+            }
+            UserIndex next = editor.build(index.search.update(Collections.emptyList(), deleted));
+            try {
+                journal.appendDeletes(deleted);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Erro ao excluir usuários: " + e.getMessage(), e);
+            }
+            index = next;
+        }
+        compactIfNeeded();
+        fireChange(new UserChangeEvent(Collections.emptyList(), deleted));
+        return deleted.size();
+    }
+
+    @Override
+    public long count() {
+        return index.usersById.size();
+    }
+
+    @Override
+    public long countActive() {
+        return index.activeCount;
+    }
+
+    @Override
+    public void addChangeListener(UserChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeChangeListener(UserChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void fireChange(UserChangeEvent event) {
+        for (UserChangeListener listener : listeners) {
+            listener.onUsersChanged(event);
+        }
+    }
+
+    @Override
+    public long countByAccessLevel(AccessLevel level) {
+        return index.levelCounts[level.ordinal()];
+    }
+
+    /**
+     * Índices e contadores dos usuários. Uma instância publicada nunca mais é
+     * alterada; as novas versões são montadas por um {@link Editor}.
+     */
+    private static final class UserIndex {
+        static final UserIndex EMPTY = new UserIndex(SegmentedMap.empty(), SegmentedMap.empty(),
+                SegmentedMap.empty(), new long[AccessLevel.values().length], 0, UserSearchIndex.EMPTY);
+
+        // Índices por ID, CPF normalizado e email; a ordem de cadastro vem do índice de busca.
+        // Os usuários publicados não mudam, então o anterior guarda as chaves a remover.
+        private final SegmentedMap<String, User> usersById;
+        private final SegmentedMap<String, String> idsByCpf;
+        private final SegmentedMap<String, String> idsByEmail;
+        private final long[] levelCounts;
+        private final long activeCount;
+        private final UserSearchIndex search;
+
+        private UserIndex(SegmentedMap<String, User> usersById, SegmentedMap<String, String> idsByCpf,
+                          SegmentedMap<String, String> idsByEmail, long[] levelCounts, long activeCount,
+                          UserSearchIndex search) {
+            this.usersById = usersById;
+            this.idsByCpf = idsByCpf;
+            this.idsByEmail = idsByEmail;
+            this.levelCounts = levelCounts;
+            this.activeCount = activeCount;
+            this.search = search;
+        }
+
+        /**
+         * @return Editor de uma nova versão, partindo desta
+         */
+        Editor edit() {
+            return new Editor(this);
+        }
+
+        /**
+         * Alterações de uma nova versão do índice, feitas sob o lock de escrita
+         */
+        private static final class Editor {
+            private final SegmentedMap.Editor<String, User> usersById;
+            private final SegmentedMap.Editor<String, String> idsByCpf;
+            private final SegmentedMap.Editor<String, String> idsByEmail;
+            private final long[] levelCounts;
+            private long activeCount;
+
+            private Editor(UserIndex source) {
+                usersById = source.usersById.edit();
+                idsByCpf = source.idsByCpf.edit();
+                idsByEmail = source.idsByEmail.edit();
+                levelCounts = source.levelCounts.clone();
+                activeCount = source.activeCount;
+            }
+
+            /**
+             * Inclui ou atualiza o usuário nos índices e contadores
+             */
+            void put(User user) {
+                User previous = usersById.put(user.getId(), user);
+                if (previous != null) {
+                    unindex(previous);
+                }
+                String cpfKey = cpfKey(user.getCpf());
+                String emailKey = emailKey(user.getEmail());
+                if (cpfKey != null) {
+                    idsByCpf.put(cpfKey, user.getId());
+                }
+                if (emailKey != null) {
+                    idsByEmail.put(emailKey, user.getId());
+                }
+                if (user.getAccessLevel() != null) {
+                    levelCounts[user.getAccessLevel().ordinal()]++;
+                }
+                if (user.isActive()) {
+                    activeCount++;
+                }
+            }
+
+            boolean remove(String id) {
+                User previous = usersById.remove(id);
+                if (previous != null) {
+                    unindex(previous);
+                }
+                return previous != null;
+            }
+
+            /**
+             * Remove as chaves e contagens da versão publicada do usuário
+             */
+            private void unindex(User previous) {
+                String cpfKey = cpfKey(previous.getCpf());
+                String emailKey = emailKey(previous.getEmail());
+                if (cpfKey != null) {
+                    idsByCpf.remove(cpfKey, previous.getId());
+                }
+                if (emailKey != null) {
+                    idsByEmail.remove(emailKey, previous.getId());
+                }
+                if (previous.getAccessLevel() != null) {
+                    levelCounts[previous.getAccessLevel().ordinal()]--;
+                }
+                if (previous.isActive()) {
+                    activeCount--;
+                }
+            }
+
+            /**
+             * @param search Índice de busca já atualizado com as mesmas alterações
+             */
+            UserIndex build(UserSearchIndex search) {
+                return new UserIndex(usersById.build(), idsByCpf.build(), idsByEmail.build(),
+                        levelCounts, activeCount, search);
+            }
+        }
+    }
+}
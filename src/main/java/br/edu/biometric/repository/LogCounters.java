@@ -0,0 +1,100 @@
+package br.edu.biometric.repository;
+
+import br.edu.biometric.model.AccessLevel;
+import br.edu.biometric.model.AccessLog;
+import br.edu.biometric.model.AccessStatus;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Contadores incrementais dos logs, mantidos a cada inclusão para evitar varreduras.
+ * Uma limpeza do repositório cria um novo conjunto de contadores.
+ */
+class LogCounters {
+
+    private final AtomicLongArray statusCounts = new AtomicLongArray(AccessStatus.values().length);
+    private final AtomicLongArray levelCounts = new AtomicLongArray(AccessLevel.values().length);
+    private final ConcurrentHashMap<String, AtomicLong> userCounts = new ConcurrentHashMap<>();
+
+    void increment(AccessLog log) {
+        increment(log.getStatus(), log.getAccessLevel(), log.getUserId());
+    }
+
+    void increment(AccessStatus status, AccessLevel level, String userId) {
+        if (status != null) {
+            statusCounts.incrementAndGet(status.ordinal());
+        }
+        if (level != null) {
+            levelCounts.incrementAndGet(level.ordinal());
+        }
+        if (userId != null) {
+            userCounts.computeIfAbsent(userId, id -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    long byStatus(AccessStatus status) {
+        return statusCounts.get(status.ordinal());
+    }
+
+    long byLevel(AccessLevel level) {
+        return levelCounts.get(level.ordinal());
+    }
+
+    long byUser(String userId) {
+        AtomicLong count = userCounts.get(userId);
+        return count != null ? count.get() : 0;
+    }
+
+    /**
+     * Cópia dos valores, para gravação em um checkpoint. Deve ser obtida pelo
+     * escritor, sem inclusões em andamento.
+     */
+    Snapshot snapshot() {
+        Snapshot snapshot = new Snapshot();
+        snapshot.status = new long[statusCounts.length()];
+        for (int i = 0; i < snapshot.status.length; i++) {
+            snapshot.status[i] = statusCounts.get(i);
+        }
+        snapshot.level = new long[levelCounts.length()];
+        for (int i = 0; i < snapshot.level.length; i++) {
+            snapshot.level[i] = levelCounts.get(i);
+        }
+        snapshot.users = new HashMap<>(userCounts.size() * 4 / 3 + 1);
+        userCounts.forEach((userId, count) -> snapshot.users.put(userId, count.get()));
+        return snapshot;
+    }
+
+    /**
+     * @return Contadores com os valores de um checkpoint, ou null se ele não
+     *         corresponde aos status e níveis atuais
+     */
+    static LogCounters restore(Snapshot snapshot) {
+        LogCounters counters = new LogCounters();
+        if (snapshot == null || snapshot.status == null || snapshot.level == null || snapshot.users == null
+                || snapshot.status.length != counters.statusCounts.length()
+                || snapshot.level.length != counters.levelCounts.length()) {
+            return null;
+        }
+        for (int i = 0; i < snapshot.status.length; i++) {
+            counters.statusCounts.set(i, snapshot.status[i]);
+        }
+        for (int i = 0; i < snapshot.level.length; i++) {
+            counters.levelCounts.set(i, snapshot.level[i]);
+        }
+        snapshot.users.forEach((userId, count) -> counters.userCounts.put(userId, new AtomicLong(count)));
+        return counters;
+    }
+
+    /**
+     * Valores dos contadores, indexados pelo ordinal de status e nível
+     */
+    static final class Snapshot {
+        private long[] status;
+        private long[] level;
+        private Map<String, Long> users;
+    }
+}
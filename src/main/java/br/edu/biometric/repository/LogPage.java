@@ -0,0 +1,57 @@
+package br.edu.biometric.repository;
+
+import br.edu.biometric.model.AccessLog;
+
+import java.util.List;
+
+/**
+ * Página de resultados de uma consulta de logs de acesso
+ */
+public class LogPage {
+
+    private final List<AccessLog> items;
+    private final String nextCursor;
+    private final long totalCount;
+    private final boolean totalEstimated;
+
+    public LogPage(List<AccessLog> items, String nextCursor, long totalCount) {
+        this(items, nextCursor, totalCount, false);
+    }
+
+    public LogPage(List<AccessLog> items, String nextCursor, long totalCount, boolean totalEstimated) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.totalCount = totalCount;
+        this.totalEstimated = totalEstimated;
+    }
+
+    public List<AccessLog> getItems() {
+        return items;
+    }
+
+    /**
+     * @return Cursor opaco para a próxima página ou null se não houver mais registros
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    /**
+     * @return Total de registros que atendem aos filtros da consulta
+     */
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * @return true se o total é uma estimativa: contá-lo exigiria ler um período longo
+     *         registro a registro
+     */
+    public boolean isTotalEstimated() {
+        return totalEstimated;
+    }
+}
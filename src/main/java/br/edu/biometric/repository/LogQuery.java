@@ -0,0 +1,128 @@
+package br.edu.biometric.repository;
+
+import br.edu.biometric.model.AccessStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Critérios de consulta paginada de logs de acesso
+ * Filtros nulos são ignorados; os resultados vêm do mais recente para o mais antigo,
+ * ou do mais antigo para o mais recente com {@link #setAscending(boolean)}
+ */
+public class LogQuery {
+
+    public static final int DEFAULT_LIMIT = 100;
+
+    private AccessStatus status;
+    private String userId;
+    private LocalDateTime start;
+    private LocalDateTime end;
+    private String cursor;
+    private int limit = DEFAULT_LIMIT;
+    private long offset;
+    private boolean ascending;
+
+    public LogQuery() {
+    }
+
+    public LogQuery(AccessStatus status, int limit) {
+        this.status = status;
+        this.limit = limit;
+    }
+
+    /**
+     * Cria a consulta da página seguinte a partir do cursor retornado
+     * 
+     * @param page Página anterior
+     * @return Nova consulta com os mesmos filtros, sem deslocamento
+     */
+    public LogQuery next(LogPage page) {
+        LogQuery next = new LogQuery();
+        next.status = status;
+        next.userId = userId;
+        next.start = start;
+        next.end = end;
+        next.limit = limit;
+        next.ascending = ascending;
+        next.cursor = page.getNextCursor();
+        return next;
+    }
+
+    public boolean hasFilters() {
+        return status != null || userId != null || start != null || end != null;
+    }
+
+    // Getters e Setters
+    public AccessStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(AccessStatus status) {
+        this.status = status;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public LocalDateTime getStart() {
+        return start;
+    }
+
+    public void setStart(LocalDateTime start) {
+        this.start = start;
+    }
+
+    public LocalDateTime getEnd() {
+        return end;
+    }
+
+    public void setEnd(LocalDateTime end) {
+        this.end = end;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * @return Quantidade de registros que atendem aos filtros a pular antes da página,
+     *         contados a partir do cursor (ou do início, sem cursor). Em ordem crescente
+     *         e sem cursor, é a posição do primeiro registro da página a partir do mais
+     *         antigo, que não muda quando novos registros são gravados.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    public void setOffset(long offset) {
+        this.offset = offset;
+    }
+
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    /**
+     * @param ascending true para ler do registro mais antigo para o mais recente
+     */
+    public void setAscending(boolean ascending) {
+        this.ascending = ascending;
+    }
+}
@@ -0,0 +1,177 @@
+package br.edu.biometric.repository;
+
+import br.edu.biometric.model.AccessStatus;
+
+import java.util.Arrays;
+
+/**
+ * Posição de cada {@value #INTERVAL}º registro, no total e por status, mantida a
+ * cada inclusão. Permite que uma página distante do registro mais antigo seja
+ * encontrada pulando no máximo {@value #INTERVAL} registros, em vez de percorrer
+ * todo o deslocamento. A posição é a do repositório (índice no arquivo ou seq).
+ * Uma limpeza do repositório cria um novo conjunto de marcas.
+ */
+final class PositionMarks {
+
+    static final int INTERVAL = 1_024;
+
+    private final Marks all = new Marks();
+    private final Marks[] byStatus = new Marks[AccessStatus.values().length];
+
+    PositionMarks() {
+        for (int i = 0; i < byStatus.length; i++) {
+            byStatus[i] = new Marks();
+        }
+    }
+
+    /**
+     * Registra o próximo registro. Deve ser chamado pelo escritor, em ordem crescente
+     * de posição.
+     */
+    void add(AccessStatus status, long position) {
+        all.add(position);
+        if (status != null) {
+            byStatus[status.ordinal()].add(position);
+        }
+    }
+
+    /**
+     * Localiza a marca mais próxima antes do registro procurado
+     *
+     * @param status  Status filtrado, ou null para todos os registros
+     * @param ordinal Ordem do registro procurado entre os que atendem ao filtro
+     *                (0 = o mais antigo)
+     * @return {posição da marca, registros que atendem ao filtro a pular a partir
+     *         dela}, ou null se não há marca antes do registro
+     */
+    long[] seek(AccessStatus status, long ordinal) {
+        Marks marks = status != null ? byStatus[status.ordinal()] : all;
+        int size = marks.size; // Lido antes do array, que é publicado primeiro
+        long[] positions = marks.positions;
+        long mark = Math.min(ordinal / INTERVAL, size - 1);
+        if (mark <= 0) {
+            return null;
+        }
+        return new long[]{positions[(int) mark], ordinal - mark * INTERVAL};
+    }
+
+    /**
+     * Estimativa de quantos registros com o status ficam antes da posição, interpolada
+     * entre as marcas vizinhas; o erro é menor que {@value #INTERVAL}
+     *
+     * @param matched Total de registros com o status
+     * @param end     Posição seguinte à do último registro
+     */
+    double estimateBefore(AccessStatus status, long position, long matched, long end) {
+        Marks marks = byStatus[status.ordinal()];
+        int size = marks.size; // Lido antes do array, que é publicado primeiro
+        long[] positions = marks.positions;
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (positions[mid] < position) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if (low == 0) {
+            return 0;
+        }
+        // Entre a última marca antes da posição e a seguinte (ou o fim)
+        long fromPosition = positions[low - 1];
+        double fromOrdinal = (double) (low - 1) * INTERVAL;
+        long toPosition = low < size ? positions[low] : end;
+        double toOrdinal = low < size ? (double) low * INTERVAL : matched;
+        if (toPosition <= fromPosition) {
+            return fromOrdinal;
+        }
+        return fromOrdinal + (toOrdinal - fromOrdinal) * (position - fromPosition) / (toPosition - fromPosition);
+    }
+
+    /**
+     * Cópia das marcas, para gravação em um checkpoint. Deve ser obtida pelo
+     * escritor, sem inclusões em andamento.
+     */
+    Snapshot snapshot() {
+        Snapshot snapshot = new Snapshot();
+        snapshot.all = all.snapshot();
+        snapshot.byStatus = new Marks.Snapshot[byStatus.length];
+        for (int i = 0; i < byStatus.length; i++) {
+            snapshot.byStatus[i] = byStatus[i].snapshot();
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return Marcas de um checkpoint, ou null se ele não corresponde aos status atuais
+     */
+    static PositionMarks restore(Snapshot snapshot) {
+        PositionMarks marks = new PositionMarks();
+        if (snapshot == null || snapshot.all == null || snapshot.byStatus == null
+                || snapshot.byStatus.length != marks.byStatus.length
+                || !marks.all.restore(snapshot.all)) {
+            return null;
+        }
+        for (int i = 0; i < marks.byStatus.length; i++) {
+            if (!marks.byStatus[i].restore(snapshot.byStatus[i])) {
+                return null;
+            }
+        }
+        return marks;
+    }
+
+    /**
+     * Marcas gravadas em um checkpoint, indexadas pelo ordinal do status
+     */
+    static final class Snapshot {
+        private Marks.Snapshot all;
+        private Marks.Snapshot[] byStatus;
+    }
+
+    /**
+     * Marcas de um filtro. O array só recebe escritas em posições além do tamanho
+     * publicado, como os demais índices dos repositórios.
+     */
+    private static final class Marks {
+        private volatile long[] positions = new long[16];
+        private volatile int size;
+        private long matched; // Registros vistos; usado apenas pelo escritor
+
+        void add(long position) {
+            if (matched++ % INTERVAL != 0) {
+                return;
+            }
+            long[] current = positions;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, size * 2);
+                positions = current;
+            }
+            current[size] = position;
+            size = size + 1;
+        }
+
+        Snapshot snapshot() {
+            Snapshot snapshot = new Snapshot();
+            snapshot.positions = Arrays.copyOf(positions, size);
+            snapshot.matched = matched;
+            return snapshot;
+        }
+
+        boolean restore(Snapshot snapshot) {
+            if (snapshot == null || snapshot.positions == null) {
+                return false;
+            }
+            positions = Arrays.copyOf(snapshot.positions, Math.max(16, snapshot.positions.length));
+            size = snapshot.positions.length;
+            matched = snapshot.matched;
+            return true;
+        }
+
+        private static final class Snapshot {
+            private long[] positions;
+            private long matched;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package br.edu.biometric.repository;
+
+import br.edu.biometric.util.AppConfig;
+import br.edu.biometric.util.IdGenerator;
+
+import java.util.Locale;
+
+/**
+ * Cria os repositórios de acordo com o backend de armazenamento configurado
+ *
+ * biometric.storage=json (padrão) usa os arquivos JSON em data/;
+ * biometric.storage=sql usa o banco embarcado indicado em biometric.sql.url; um banco
+ * compartilhado entre processos (servidor H2 ou AUTO_SERVER) exige biometric.node.id
+ * distinto em cada processo, para que os IDs gerados não colidam.
+ * biometric.log.storage permite escolher outro backend só para os logs,
+ * incluindo binary (registros binários de tamanho fixo).
+ */
+public class RepositoryFactory {
+
+    public static final String STORAGE_KEY = "biometric.storage";
+    public static final String LOG_STORAGE_KEY = "biometric.log.storage";
+    public static final String SQL_URL_KEY = "biometric.sql.url";
+    public static final String DEFAULT_SQL_URL = "jdbc:h2:file:./data/biometric";
+
+    private static SqlDatabase database;
+
+    public static UserRepository createUserRepository() {
+        IdGenerator.checkNode();
+        String storage = AppConfig.getString(STORAGE_KEY, "json");
+        if (storage.equalsIgnoreCase("sql")) {
+            return new SqlUserRepository(getDatabase());
+        }
+        if (!storage.equalsIgnoreCase("json")) {
+            System.err.println("Backend de armazenamento desconhecido: " + storage + ". Usando json.");
+        }
+        return new JsonUserRepository();
+    }
+
+    public static AccessLogRepository createAccessLogRepository() {
+        IdGenerator.checkNode();
+        String storage = AppConfig.getString(LOG_STORAGE_KEY, AppConfig.getString(STORAGE_KEY, "json"));
+        if (storage.equalsIgnoreCase("sql")) {
+            return new SqlAccessLogRepository(getDatabase());
+        }
+        if (storage.equalsIgnoreCase("binary")) {
+            return new BinaryAccessLogRepository();
+        }
+        if (!storage.equalsIgnoreCase("json")) {
+            System.err.println("Backend de logs desconhecido: " + storage + ". Usando json.");
+        }
+        return new JsonAccessLogRepository();
+    }
+
+    /**
+     * Banco compartilhado pelos repositórios SQL da aplicação
+     */
+    public static synchronized SqlDatabase getDatabase() {
+        if (database == null) {
+            String url = AppConfig.getString(SQL_URL_KEY, DEFAULT_SQL_URL);
+            if (isShared(url) && !IdGenerator.isNodeConfigured()) {
+                throw new IllegalStateException("Banco compartilhado (" + url + ") exige " + IdGenerator.NODE_KEY
+                        + " configurado com um valor diferente (0 a 1023) em cada processo");
+            }
+            database = new SqlDatabase(url);
+        }
+        return database;
+    }
+
+    /**
+     * @return true se outros processos, possivelmente em outras máquinas, podem gravar no banco
+     */
+    private static boolean isShared(String url) {
+        String lower = url.toLowerCase(Locale.ROOT);
+        return lower.startsWith("jdbc:h2:tcp:") || lower.startsWith("jdbc:h2:ssl:")
+                || lower.contains(";auto_server=true");
+    }
+}
@@ -0,0 +1,115 @@
+package br.edu.biometric.repository;
+
+import br.edu.biometric.model.AccessLevel;
+import br.edu.biometric.model.AccessLog;
+import br.edu.biometric.model.AccessStatus;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Repositório de logs que atualiza os agregados de {@link AccessRollupStore} a cada
+ * gravação, delegando a persistência dos registros a outro repositório
+ */
+public class RollupAccessLogRepository implements AccessLogRepository {
+
+    private final AccessLogRepository delegate;
+    private final AccessRollupStore rollups;
+
+    public RollupAccessLogRepository(AccessLogRepository delegate) {
+        this.delegate = delegate;
+        this.rollups = new AccessRollupStore(delegate);
+    }
+
+    public AccessRollupStore getRollups() {
+        return rollups;
+    }
+
+    @Override
+    public AccessLog save(AccessLog log) {
+        AccessLog saved = delegate.save(log);
+        rollups.record(log);
+        return saved;
+    }
+
+    @Override
+    public void saveAll(Collection<AccessLog> logs) {
+        delegate.saveAll(logs);
+        for (AccessLog log : logs) {
+            rollups.record(log);
+        }
+    }
+
+    @Override
+    public List<AccessLog> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public void forEach(Consumer<AccessLog> action) {
+        delegate.forEach(action);
+    }
+
+    @Override
+    public List<AccessLog> findByUserId(String userId) {
+        return delegate.findByUserId(userId);
+    }
+
+    @Override
+    public List<AccessLog> findByStatus(AccessStatus status) {
+        return delegate.findByStatus(status);
+    }
+
+    @Override
+    public List<AccessLog> findRecent(int limit) {
+        return delegate.findRecent(limit);
+    }
+
+    @Override
+    public LogPage findPage(LogQuery query) {
+        return delegate.findPage(query);
+    }
+
+    @Override
+    public List<AccessLog> findByDateRange(LocalDateTime start, LocalDateTime end) {
+        return delegate.findByDateRange(start, end);
+    }
+
+    @Override
+    public long countByStatus(AccessStatus status) {
+        return delegate.countByStatus(status);
+    }
+
+    @Override
+    public long countByAccessLevel(AccessLevel level) {
+        return delegate.countByAccessLevel(level);
+    }
+
+    @Override
+    public long countByUserId(String userId) {
+        return delegate.countByUserId(userId);
+    }
+
+    @Override
+    public long countSuccessful() {
+        return delegate.countSuccessful();
+    }
+
+    @Override
+    public long countFailed() {
+        return delegate.countFailed();
+    }
+
+    @Override
+    public long count() {
+        return delegate.count();
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+        rollups.reset();
+    }
+}
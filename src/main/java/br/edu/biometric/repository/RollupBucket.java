@@ -0,0 +1,117 @@
+package br.edu.biometric.repository;
+
+import br.edu.biometric.model.AccessLevel;
+import br.edu.biometric.model.AccessLog;
+import br.edu.biometric.model.AccessStatus;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Totais de tentativas de acesso em um intervalo de tempo: por status, nível
+ * requerido e usuário, além da distribuição da confiança do reconhecimento
+ */
+public class RollupBucket {
+
+    public static final int CONFIDENCE_BINS = 10; // Faixas de 10 pontos percentuais
+
+    private final LocalDateTime start;
+    private long attempts;
+    private final long[] statusCounts = new long[AccessStatus.values().length];
+    private final long[] levelCounts = new long[AccessLevel.values().length];
+    private final Map<String, Long> userCounts = new HashMap<>();
+    private final long[] confidenceHistogram = new long[CONFIDENCE_BINS];
+    private double confidenceSum;
+
+    public RollupBucket(LocalDateTime start) {
+        this.start = start;
+    }
+
+    void add(AccessLog log) {
+        attempts++;
+        if (log.getStatus() != null) {
+            statusCounts[log.getStatus().ordinal()]++;
+        }
+        if (log.getAccessLevel() != null) {
+            levelCounts[log.getAccessLevel().ordinal()]++;
+        }
+        if (log.getUserId() != null) {
+            userCounts.merge(log.getUserId(), 1L, Long::sum);
+        }
+        double confidence = Math.max(0, Math.min(100, log.getConfidenceScore()));
+        confidenceHistogram[Math.min(CONFIDENCE_BINS - 1, (int) (confidence / (100.0 / CONFIDENCE_BINS)))]++;
+        confidenceSum += confidence;
+    }
+
+    void merge(RollupBucket other) {
+        attempts += other.attempts;
+        for (int i = 0; i < statusCounts.length; i++) {
+            statusCounts[i] += other.statusCounts[i];
+        }
+        for (int i = 0; i < levelCounts.length; i++) {
+            levelCounts[i] += other.levelCounts[i];
+        }
+        other.userCounts.forEach((userId, count) -> userCounts.merge(userId, count, Long::sum));
+        for (int i = 0; i < CONFIDENCE_BINS; i++) {
+            confidenceHistogram[i] += other.confidenceHistogram[i];
+        }
+        confidenceSum += other.confidenceSum;
+    }
+
+    /**
+     * Verifica se um agregado lido do disco tem o formato atual (ex.: mesmo número de status)
+     */
+    boolean isCompatible() {
+        return start != null && userCounts != null
+                && statusCounts != null && statusCounts.length == AccessStatus.values().length
+                && levelCounts != null && levelCounts.length == AccessLevel.values().length
+                && confidenceHistogram != null && confidenceHistogram.length == CONFIDENCE_BINS;
+    }
+
+    RollupBucket copy() {
+        RollupBucket copy = new RollupBucket(start);
+        copy.merge(this);
+        return copy;
+    }
+
+    public LocalDateTime getStart() {
+        return start;
+    }
+
+    public long getAttempts() {
+        return attempts;
+    }
+
+    public long getCount(AccessStatus status) {
+        return statusCounts[status.ordinal()];
+    }
+
+    public long getCount(AccessLevel level) {
+        return levelCounts[level.ordinal()];
+    }
+
+    public long getSuccessful() {
+        return getCount(AccessStatus.SUCCESS);
+    }
+
+    public long getFailed() {
+        return attempts - getSuccessful();
+    }
+
+    public Map<String, Long> getUserCounts() {
+        return Collections.unmodifiableMap(userCounts);
+    }
+
+    /**
+     * @return Quantidade de tentativas em cada faixa de confiança (0-10%, 10-20%, ...)
+     */
+    public long[] getConfidenceHistogram() {
+        return confidenceHistogram.clone();
+    }
+
+    public double getAverageConfidence() {
+        return attempts > 0 ? confidenceSum / attempts : 0;
+    }
+}
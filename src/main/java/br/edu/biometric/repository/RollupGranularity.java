@@ -0,0 +1,48 @@
+package br.edu.biometric.repository;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Granularidades dos agregados de acesso e quantos intervalos de cada uma são mantidos
+ */
+public enum RollupGranularity {
+
+    MINUTE("Minuto", ChronoUnit.MINUTES, 2 * 24 * 60),   // 2 dias
+    HOUR("Hora", ChronoUnit.HOURS, 90 * 24),             // 90 dias
+    DAY("Dia", ChronoUnit.DAYS, 5 * 366);                // 5 anos
+
+    private final String displayName;
+    private final ChronoUnit unit;
+    private final int retainedBuckets;
+
+    RollupGranularity(String displayName, ChronoUnit unit, int retainedBuckets) {
+        this.displayName = displayName;
+        this.unit = unit;
+        this.retainedBuckets = retainedBuckets;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public ChronoUnit getUnit() {
+        return unit;
+    }
+
+    public int getRetainedBuckets() {
+        return retainedBuckets;
+    }
+
+    /**
+     * @return Início do intervalo que contém o instante
+     */
+    public LocalDateTime bucketStart(LocalDateTime timestamp) {
+        return timestamp.truncatedTo(unit);
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
@@ -0,0 +1,137 @@
+package br.edu.biometric.repository;
+
+import java.util.HashMap;
+
+/**
+ * Mapa imutável dividido em segmentos, para os índices publicados por copy-on-write
+ *
+ * As chaves são distribuídas pelo hash entre 1024 mapas menores. Uma alteração não
+ * copia o mapa inteiro: o {@link Editor} copia o array de segmentos e, na primeira
+ * vez que toca cada segmento, apenas esse segmento. Com 500 mil chaves, salvar um
+ * usuário copia cerca de 500 entradas em vez de 500 mil. A versão anterior continua
+ * válida para os leitores e compartilha com a nova os segmentos não alterados.
+ */
+final class SegmentedMap<K, V> {
+
+    private static final int SEGMENT_BITS = 10;
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+
+    private final HashMap<K, V>[] segments; // null: segmento vazio
+    private final int size;
+
+    private SegmentedMap(HashMap<K, V>[] segments, int size) {
+        this.segments = segments;
+        this.size = size;
+    }
+
+    static <K, V> SegmentedMap<K, V> empty() {
+        return new SegmentedMap<>(newSegments(), 0);
+    }
+
+    // Não é possível criar um array de tipo genérico: o array de curinga é convertido,
+    // o que é seguro porque ele nasce vazio e só recebe HashMap<K, V>
+    @SuppressWarnings("unchecked")
+    private static <K, V> HashMap<K, V>[] newSegments() {
+        return (HashMap<K, V>[]) new HashMap<?, ?>[SEGMENTS];
+    }
+
+    /**
+     * @return Valor da chave, ou null se ela não existir ou for null (chaves nulas
+     *         não são armazenadas)
+     */
+    V get(Object key) {
+        if (key == null) {
+            return null;
+        }
+        HashMap<K, V> segment = segments[segmentOf(key)];
+        return segment != null ? segment.get(key) : null;
+    }
+
+    boolean containsKey(Object key) {
+        if (key == null) {
+            return false;
+        }
+        HashMap<K, V> segment = segments[segmentOf(key)];
+        return segment != null && segment.containsKey(key);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return Editor de uma nova versão, partindo desta
+     */
+    Editor<K, V> edit() {
+        return new Editor<>(segments.clone(), size);
+    }
+
+    // Bits altos do hash espalhado: os bits baixos são os que o HashMap de cada
+    // segmento usa, e repeti-los concentraria as chaves em poucos baldes
+    private static int segmentOf(Object key) {
+        return (key.hashCode() * 0x9E3779B9) >>> (Integer.SIZE - SEGMENT_BITS);
+    }
+
+    /**
+     * Alterações de uma nova versão, feitas por um único escritor. Depois de
+     * {@link #build()} o editor não deve mais ser usado.
+     */
+    static final class Editor<K, V> {
+
+        private final HashMap<K, V>[] segments;
+        private final boolean[] copied = new boolean[SEGMENTS];
+        private int size;
+
+        private Editor(HashMap<K, V>[] segments, int size) {
+            this.segments = segments;
+            this.size = size;
+        }
+
+        V get(Object key) {
+            HashMap<K, V> segment = segments[segmentOf(key)];
+            return segment != null ? segment.get(key) : null;
+        }
+
+        V put(K key, V value) {
+            HashMap<K, V> segment = writable(segmentOf(key));
+            int before = segment.size();
+            V previous = segment.put(key, value);
+            size += segment.size() - before;
+            return previous;
+        }
+
+        V remove(Object key) {
+            int index = segmentOf(key);
+            if (segments[index] == null || !segments[index].containsKey(key)) {
+                return null;
+            }
+            size--;
+            return writable(index).remove(key);
+        }
+
+        /**
+         * Remove a chave apenas se ela estiver associada ao valor
+         */
+        boolean remove(Object key, Object value) {
+            int index = segmentOf(key);
+            if (segments[index] == null || !value.equals(segments[index].get(key))) {
+                return false;
+            }
+            size--;
+            return writable(index).remove(key, value);
+        }
+
+        SegmentedMap<K, V> build() {
+            return new SegmentedMap<>(segments, size);
+        }
+
+        private HashMap<K, V> writable(int index) {
+            if (!copied[index]) {
+                HashMap<K, V> shared = segments[index];
+                segments[index] = shared != null ? new HashMap<>(shared) : new HashMap<>();
+                copied[index] = true;
+            }
+            return segments[index];
+        }
+    }
+}
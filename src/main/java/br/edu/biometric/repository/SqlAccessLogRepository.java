@@ -0,0 +1,710 @@
+package br.edu.biometric.repository;
+
+import br.edu.biometric.model.AccessLevel;
+import br.edu.biometric.model.AccessLog;
+import br.edu.biometric.model.AccessMessage;
+import br.edu.biometric.model.AccessStatus;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Repositório de logs de acesso em banco SQL embarcado
+ *
+ * Cada registro recebe um número sequencial (seq) na ordem de gravação, que
+ * também serve de cursor da paginação: as páginas são lidas pelo índice
+ * (filtro, seq) sem OFFSET, com custo independente da profundidade.
+ *
+ * Os contadores do dashboard e o total de cada usuário ficam na tabela
+ * access_log_counts, e o seq de cada
+ * {@value PositionMarks#INTERVAL}º registro (no total e por status) na tabela
+ * access_log_marks; as duas são atualizadas na mesma transação que grava os
+ * registros. Uma página pedida por deslocamento a partir do registro mais antigo
+ * começa no seq da marca mais próxima, e o OFFSET restante é menor que o intervalo
+ * entre marcas. Como nada disso fica em memória, outros processos que gravam no
+ * mesmo banco (servidor H2 ou AUTO_SERVER) são vistos nas contagens e nas páginas,
+ * e a inicialização não percorre a tabela. As gravações começam travando a linha do
+ * total, o que as serializa entre processos e mantém a numeração das marcas na
+ * ordem do seq.
+ */
+public class SqlAccessLogRepository implements AccessLogRepository {
+
+    private static final String COLUMNS =
+            "seq, id, user_id, user_name, access_level, ts, status, details, message_code, user_level, confidence";
+    private static final String INSERT =
+            "INSERT INTO access_logs (id, user_id, user_name, access_level, ts, status, details, "
+                    + "message_code, user_level, confidence) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final int BATCH_SIZE = 1_000;
+    private static final int FETCH_SIZE = 1_000;
+
+    // Contadores (kind, name): total (''), status e nível (nome do enum) e usuário (ID)
+    private static final String TOTAL = "total";
+    private static final String STATUS = "status";
+    private static final String LEVEL = "level";
+    private static final String USER = "user";
+    private static final String USERS_READY = "users"; // Linha do tipo total: contadores por usuário prontos
+    private static final String ALL_MARKS = ""; // Filtro das marcas sem status
+
+    private final SqlDatabase database;
+
+    private final Object writeLock = new Object();
+
+    public SqlAccessLogRepository(SqlDatabase database) {
+        this.database = database;
+        try {
+            database.execute(
+                    "CREATE TABLE IF NOT EXISTS access_logs ("
+                            + "seq BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                            + "id VARCHAR(64), "
+                            + "user_id VARCHAR(64), "
+                            + "user_name VARCHAR(255), "
+                            + "access_level VARCHAR(32), "
+                            + "ts TIMESTAMP, "
+                            + "status VARCHAR(32), "
+                            + "details VARCHAR, "
+                            + "message_code VARCHAR(32), "
+                            + "user_level VARCHAR(32), "
+                            + "confidence DOUBLE)",
+                    // Bancos criados antes dos códigos de mensagem
+                    "ALTER TABLE access_logs ADD COLUMN IF NOT EXISTS message_code VARCHAR(32)",
+                    "ALTER TABLE access_logs ADD COLUMN IF NOT EXISTS user_level VARCHAR(32)",
+                    "CREATE INDEX IF NOT EXISTS idx_logs_seq ON access_logs(seq DESC)",
+                    "CREATE INDEX IF NOT EXISTS idx_logs_ts ON access_logs(ts)",
+                    "CREATE INDEX IF NOT EXISTS idx_logs_status ON access_logs(status, seq DESC)",
+                    "CREATE INDEX IF NOT EXISTS idx_logs_status_asc ON access_logs(status, seq)",
+                    "CREATE INDEX IF NOT EXISTS idx_logs_user ON access_logs(user_id, seq DESC)",
+                    "CREATE TABLE IF NOT EXISTS access_log_counts ("
+                            + "kind VARCHAR(16), name VARCHAR(64), n BIGINT NOT NULL, PRIMARY KEY (kind, name))",
+                    // Bancos criados antes dos contadores por usuário
+                    "ALTER TABLE access_log_counts ALTER COLUMN name SET DATA TYPE VARCHAR(64)",
+                    "CREATE TABLE IF NOT EXISTS access_log_marks ("
+                            + "filter VARCHAR(32), mark BIGINT, seq BIGINT NOT NULL, PRIMARY KEY (filter, mark))");
+            initializeCounters();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Erro ao inicializar tabela de logs: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Cria os contadores e as marcas de um banco que ainda não os tem (criado antes
+     * deles), com uma única passada pela tabela. Nas inicializações seguintes, nada é
+     * lido. Se outro processo fizer o mesmo ao mesmo tempo, a transação de um deles
+     * falha na chave do total e o resultado do outro é mantido.
+     */
+    private void initializeCounters() throws SQLException {
+        try (Connection connection = database.getConnection()) {
+            if (readCount(connection, TOTAL, "", false) >= 0) {
+                initializeUserCounters(connection);
+                return;
+            }
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement();
+                 PreparedStatement markInsert = connection.prepareStatement(
+                         "INSERT INTO access_log_marks (filter, mark, seq) VALUES (?, ?, ?)")) {
+                long total = 0;
+                long[] byStatus = new long[AccessStatus.values().length];
+                long[] byLevel = new long[AccessLevel.values().length];
+                statement.execute("DELETE FROM access_log_marks");
+                statement.setFetchSize(FETCH_SIZE);
+                try (ResultSet rs = statement.executeQuery(
+                        "SELECT seq, status, access_level FROM access_logs ORDER BY seq")) {
+                    while (rs.next()) {
+                        long seq = rs.getLong(1);
+                        AccessStatus status = rs.getString(2) != null ? AccessStatus.valueOf(rs.getString(2)) : null;
+                        addMark(markInsert, ALL_MARKS, total++, seq);
+                        if (status != null) {
+                            addMark(markInsert, status.name(), byStatus[status.ordinal()]++, seq);
+                        }
+                        if (rs.getString(3) != null) {
+                            byLevel[AccessLevel.valueOf(rs.getString(3)).ordinal()]++;
+                        }
+                    }
+                }
+                markInsert.executeBatch();
+                try (PreparedStatement insert = connection.prepareStatement(
+                        "INSERT INTO access_log_counts (kind, name, n) VALUES (?, ?, ?)")) {
+                    for (AccessStatus status : AccessStatus.values()) {
+                        addCount(insert, STATUS, status.name(), byStatus[status.ordinal()]);
+                    }
+                    for (AccessLevel level : AccessLevel.values()) {
+                        addCount(insert, LEVEL, level.name(), byLevel[level.ordinal()]);
+                    }
+                    insertUserCounts(connection, insert);
+                    // O total por último: a sua presença indica contadores completos
+                    addCount(insert, TOTAL, "", total);
+                    insert.executeBatch();
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                if (readCount(connection, TOTAL, "", false) < 0) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Cria os contadores por usuário de um banco cujos demais contadores são
+     * anteriores a eles, com a trava do total
+     */
+    private static void initializeUserCounters(Connection connection) throws SQLException {
+        if (readCount(connection, TOTAL, USERS_READY, false) >= 0) {
+            return;
+        }
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO access_log_counts (kind, name, n) VALUES (?, ?, ?)")) {
+            readCount(connection, TOTAL, "", true);
+            // Outro processo pode ter feito o mesmo enquanto esperávamos a trava
+            if (readCount(connection, TOTAL, USERS_READY, false) < 0) {
+                insertUserCounts(connection, insert);
+                insert.executeBatch();
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        }
+    }
+
+    /**
+     * Acrescenta ao lote os contadores por usuário dos registros da tabela, seguidos da
+     * marca de contadores prontos
+     */
+    private static void insertUserCounts(Connection connection, PreparedStatement insert) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.setFetchSize(FETCH_SIZE);
+            try (ResultSet rs = statement.executeQuery(
+                    "SELECT user_id, COUNT(*) FROM access_logs WHERE user_id IS NOT NULL GROUP BY user_id")) {
+                while (rs.next()) {
+                    addCount(insert, USER, rs.getString(1), rs.getLong(2));
+                }
+            }
+        }
+        addCount(insert, TOTAL, USERS_READY, 0);
+    }
+
+    private static void addCount(PreparedStatement insert, String kind, String name, long n) throws SQLException {
+        insert.setString(1, kind);
+        insert.setString(2, name);
+        insert.setLong(3, n);
+        insert.addBatch();
+    }
+
+    /**
+     * Acrescenta a marca se o registro for o primeiro de um intervalo
+     *
+     * @param ordinal Ordem do registro entre os do filtro (0 = o mais antigo)
+     */
+    private static void addMark(PreparedStatement insert, String filter, long ordinal, long seq)
+            throws SQLException {
+        if (ordinal % PositionMarks.INTERVAL != 0) {
+            return;
+        }
+        insert.setString(1, filter);
+        insert.setLong(2, ordinal / PositionMarks.INTERVAL);
+        insert.setLong(3, seq);
+        insert.addBatch();
+    }
+
+    /**
+     * @param lock Trava a linha até o fim da transação
+     * @return Valor do contador, ou -1 se ele não existe
+     */
+    private static long readCount(Connection connection, String kind, String name, boolean lock)
+            throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT n FROM access_log_counts WHERE kind = ? AND name = ?" + (lock ? " FOR UPDATE" : ""))) {
+            select.setString(1, kind);
+            select.setString(2, name);
+            try (ResultSet rs = select.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : -1;
+            }
+        }
+    }
+
+    private long readCount(String kind, String name) {
+        try (Connection connection = database.getConnection()) {
+            return Math.max(0, readCount(connection, kind, name, false));
+        } catch (SQLException e) {
+            System.err.println("Erro ao contar logs: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * @throws UncheckedIOException se a transação falhar; nesse caso o registro não
+     *                              é gravado
+     */
+    @Override
+    public AccessLog save(AccessLog log) {
+        saveAll(Collections.singletonList(log));
+        return log;
+    }
+
+    /**
+     * Grava os registros em lotes (batch insert) dentro de uma única transação, junto
+     * com os contadores e as marcas de posição
+     *
+     * @throws UncheckedIOException se a transação falhar; nesse caso nenhum registro
+     *                              do lote é gravado
+     */
+    @Override
+    public void saveAll(Collection<AccessLog> logs) {
+        if (logs.isEmpty()) {
+            return;
+        }
+        synchronized (writeLock) {
+            try (Connection connection = database.getConnection()) {
+                connection.setAutoCommit(false);
+                try {
+                    insert(connection, logs);
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                }
+            } catch (SQLException e) {
+                throw new UncheckedIOException("Erro ao salvar logs: " + e.getMessage(),
+                        new IOException(e.getMessage(), e));
+            }
+        }
+    }
+
+    private void insert(Connection connection, Collection<AccessLog> logs) throws SQLException {
+        // A trava do total vem antes do INSERT: os seq de gravações concorrentes
+        // (inclusive de outros processos) seguem a ordem em que o total é contado
+        long total = readCount(connection, TOTAL, "", true);
+        long[] byStatus = new long[AccessStatus.values().length];
+        for (AccessStatus status : AccessStatus.values()) {
+            byStatus[status.ordinal()] = readCount(connection, STATUS, status.name(), false);
+        }
+        if (total < 0) {
+            throw new SQLException("Contadores de logs ausentes");
+        }
+
+        List<Long> seqs = new ArrayList<>(logs.size());
+        try (PreparedStatement insert = connection.prepareStatement(INSERT, new String[]{"seq"})) {
+            int pending = 0;
+            for (AccessLog log : logs) {
+                bind(insert, log);
+                insert.addBatch();
+                if (++pending == BATCH_SIZE) {
+                    executeBatch(insert, seqs);
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                executeBatch(insert, seqs);
+            }
+        }
+        if (seqs.size() != logs.size()) {
+            throw new SQLException("Seq dos logs gravados indisponível");
+        }
+
+        long[] statusDelta = new long[AccessStatus.values().length];
+        long[] levelDelta = new long[AccessLevel.values().length];
+        Map<String, Long> userDelta = new LinkedHashMap<>();
+        try (PreparedStatement markInsert = connection.prepareStatement(
+                "INSERT INTO access_log_marks (filter, mark, seq) VALUES (?, ?, ?)")) {
+            int i = 0;
+            for (AccessLog log : logs) {
+                long seq = seqs.get(i++);
+                addMark(markInsert, ALL_MARKS, total++, seq);
+                if (log.getStatus() != null) {
+                    int status = log.getStatus().ordinal();
+                    addMark(markInsert, log.getStatus().name(), byStatus[status] + statusDelta[status]++, seq);
+                }
+                if (log.getAccessLevel() != null) {
+                    levelDelta[log.getAccessLevel().ordinal()]++;
+                }
+                if (log.getUserId() != null) {
+                    userDelta.merge(log.getUserId(), 1L, Long::sum);
+                }
+            }
+            markInsert.executeBatch();
+        }
+        try (PreparedStatement update = connection.prepareStatement(
+                "UPDATE access_log_counts SET n = n + ? WHERE kind = ? AND name = ?")) {
+            addDelta(update, TOTAL, "", logs.size());
+            for (AccessStatus status : AccessStatus.values()) {
+                addDelta(update, STATUS, status.name(), statusDelta[status.ordinal()]);
+            }
+            for (AccessLevel level : AccessLevel.values()) {
+                addDelta(update, LEVEL, level.name(), levelDelta[level.ordinal()]);
+            }
+            update.executeBatch();
+        }
+        addUserDeltas(connection, userDelta);
+    }
+
+    /**
+     * Soma os registros de cada usuário aos seus contadores, criando os que ainda não
+     * existem; a trava do total impede que outra gravação crie o mesmo contador
+     */
+    private static void addUserDeltas(Connection connection, Map<String, Long> userDelta) throws SQLException {
+        if (userDelta.isEmpty()) {
+            return;
+        }
+        List<String> missing = new ArrayList<>();
+        try (PreparedStatement update = connection.prepareStatement(
+                "UPDATE access_log_counts SET n = n + ? WHERE kind = ? AND name = ?")) {
+            for (Map.Entry<String, Long> entry : userDelta.entrySet()) {
+                addDelta(update, USER, entry.getKey(), entry.getValue());
+            }
+            int[] updated = update.executeBatch();
+            int i = 0;
+            for (String userId : userDelta.keySet()) {
+                if (updated[i++] == 0) {
+                    missing.add(userId);
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO access_log_counts (kind, name, n) VALUES (?, ?, ?)")) {
+            for (String userId : missing) {
+                addCount(insert, USER, userId, userDelta.get(userId));
+            }
+            insert.executeBatch();
+        }
+    }
+
+    private static void addDelta(PreparedStatement update, String kind, String name, long delta)
+            throws SQLException {
+        if (delta == 0) {
+            return;
+        }
+        update.setLong(1, delta);
+        update.setString(2, kind);
+        update.setString(3, name);
+        update.addBatch();
+    }
+
+    private static void executeBatch(PreparedStatement insert, List<Long> seqs) throws SQLException {
+        insert.executeBatch();
+        try (ResultSet keys = insert.getGeneratedKeys()) {
+            while (keys.next()) {
+                seqs.add(keys.getLong(1));
+            }
+        }
+    }
+
+    private void bind(PreparedStatement statement, AccessLog log) throws SQLException {
+        statement.setString(1, log.getId());
+        statement.setString(2, log.getUserId());
+        statement.setString(3, log.getUserName());
+        statement.setString(4, log.getAccessLevel() != null ? log.getAccessLevel().name() : null);
+        statement.setTimestamp(5, SqlUserRepository.toTimestamp(log.getTimestamp()));
+        statement.setString(6, log.getStatus() != null ? log.getStatus().name() : null);
+        statement.setString(7, log.getDetails());
+        statement.setString(8, log.getMessageCode() != null ? log.getMessageCode().name() : null);
+        statement.setString(9, log.getUserAccessLevel() != null ? log.getUserAccessLevel().name() : null);
+        statement.setDouble(10, log.getConfidenceScore());
+    }
+
+    private AccessLog map(ResultSet rs) throws SQLException {
+        AccessLog log = new AccessLog();
+        log.setId(rs.getString("id"));
+        log.setUserId(rs.getString("user_id"));
+        log.setUserName(rs.getString("user_name"));
+        String level = rs.getString("access_level");
+        log.setAccessLevel(level != null ? AccessLevel.valueOf(level) : null);
+        log.setTimestamp(SqlUserRepository.toLocalDateTime(rs.getTimestamp("ts")));
+        String status = rs.getString("status");
+        log.setStatus(status != null ? AccessStatus.valueOf(status) : null);
+        log.setDetails(rs.getString("details"));
+        String messageCode = rs.getString("message_code");
+        log.setMessageCode(messageCode != null ? AccessMessage.valueOf(messageCode) : null);
+        String userLevel = rs.getString("user_level");
+        log.setUserAccessLevel(userLevel != null ? AccessLevel.valueOf(userLevel) : null);
+        log.setConfidenceScore(rs.getDouble("confidence"));
+        return log;
+    }
+
+    /**
+     * Executa a consulta repassando cada linha ao consumidor sem acumular o resultado
+     */
+    private void stream(String sql, List<Object> parameters, Consumer<AccessLog> consumer) {
+        try (Connection connection = database.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setFetchSize(FETCH_SIZE);
+            for (int i = 0; i < parameters.size(); i++) {
+                statement.setObject(i + 1, parameters.get(i));
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(map(rs));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Erro ao consultar logs: " + e.getMessage());
+        }
+    }
+
+    private List<AccessLog> list(String sql, Object... parameters) {
+        List<AccessLog> result = new ArrayList<>();
+        stream(sql, List.of(parameters), result::add);
+        return result;
+    }
+
+    @Override
+    public List<AccessLog> findAll() {
+        return list("SELECT " + COLUMNS + " FROM access_logs ORDER BY seq");
+    }
+
+    @Override
+    public void forEach(Consumer<AccessLog> action) {
+        stream("SELECT " + COLUMNS + " FROM access_logs ORDER BY seq", Collections.emptyList(), action);
+    }
+
+    @Override
+    public List<AccessLog> findByUserId(String userId) {
+        return list("SELECT " + COLUMNS + " FROM access_logs WHERE user_id = ? ORDER BY ts DESC", userId);
+    }
+
+    @Override
+    public List<AccessLog> findByStatus(AccessStatus status) {
+        return list("SELECT " + COLUMNS + " FROM access_logs WHERE status = ? ORDER BY ts DESC", status.name());
+    }
+
+    @Override
+    public List<AccessLog> findByDateRange(LocalDateTime start, LocalDateTime end) {
+        return list("SELECT " + COLUMNS + " FROM access_logs WHERE ts >= ? AND ts <= ? ORDER BY ts DESC",
+                SqlUserRepository.toTimestamp(start), SqlUserRepository.toTimestamp(end));
+    }
+
+    /**
+     * O cursor é o seq do último registro entregue; a próxima página começa
+     * imediatamente depois dele, na direção da consulta. Quando o total exige um
+     * COUNT no banco, ele é calculado só na primeira página e repassado no cursor.
+     */
+    @Override
+    public LogPage findPage(LogQuery query) {
+        StringBuilder where = new StringBuilder(" WHERE 1 = 1");
+        List<Object> parameters = new ArrayList<>();
+        if (query.getStatus() != null) {
+            where.append(" AND status = ?");
+            parameters.add(query.getStatus().name());
+        }
+        if (query.getUserId() != null) {
+            where.append(" AND user_id = ?");
+            parameters.add(query.getUserId());
+        }
+        if (query.getStart() != null) {
+            where.append(" AND ts >= ?");
+            parameters.add(SqlUserRepository.toTimestamp(query.getStart()));
+        }
+        if (query.getEnd() != null) {
+            where.append(" AND ts <= ?");
+            parameters.add(SqlUserRepository.toTimestamp(query.getEnd()));
+        }
+
+        Long afterSeq = null;
+        Long carriedTotal = null;
+        if (query.getCursor() != null) {
+            String[] parts = query.getCursor().split(":", 2);
+            afterSeq = parseCursor(parts[0]);
+            carriedTotal = parts.length > 1 ? parseCursor(parts[1]) : null;
+        }
+        boolean counted = needsCountQuery(query);
+        long totalCount = counted
+                ? (carriedTotal != null ? carriedTotal : countQuery(where.toString(), parameters))
+                : countFromCounters(query);
+
+        boolean ascending = query.isAscending();
+        long offset = Math.max(0, query.getOffset());
+        List<Object> pageParameters = new ArrayList<>(parameters);
+        StringBuilder pageWhere = new StringBuilder(where);
+        if (afterSeq != null) {
+            pageWhere.append(ascending ? " AND seq > ?" : " AND seq < ?");
+            pageParameters.add(afterSeq);
+        } else if (offset > 0 && ascending && query.getUserId() == null && query.getStart() == null) {
+            // Deslocamento a partir do mais antigo: começa na marca mais próxima
+            long[] mark = seekMark(query.getStatus(), offset);
+            if (mark != null) {
+                pageWhere.append(" AND seq >= ?");
+                pageParameters.add(mark[0]);
+                offset = mark[1];
+            }
+        }
+        int limit = Math.max(1, query.getLimit());
+        pageParameters.add(limit + 1);
+        pageParameters.add(offset);
+
+        // Ordenar pela coluna filtrada por igualdade antes do seq faz o H2 percorrer
+        // o índice (coluna, seq) já ordenado e parar no limite, sem ordenar o intervalo
+        String direction = ascending ? "" : " DESC";
+        String orderBy = query.getStatus() != null ? "status, seq" + direction
+                : query.getUserId() != null ? "user_id, seq" + direction
+                : "seq" + direction;
+
+        List<AccessLog> items = new ArrayList<>(limit);
+        long lastSeq = 0;
+        boolean hasMore = false;
+        try (Connection connection = database.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "SELECT " + COLUMNS + " FROM access_logs" + pageWhere + " ORDER BY " + orderBy + " LIMIT ? OFFSET ?")) {
+            for (int i = 0; i < pageParameters.size(); i++) {
+                statement.setObject(i + 1, pageParameters.get(i));
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    if (items.size() == limit) {
+                        hasMore = true;
+                        break;
+                    }
+                    items.add(map(rs));
+                    lastSeq = rs.getLong("seq");
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Erro ao consultar logs: " + e.getMessage());
+        }
+
+        String nextCursor = null;
+        if (hasMore) {
+            nextCursor = counted ? lastSeq + ":" + totalCount : String.valueOf(lastSeq);
+        }
+        return new LogPage(items, nextCursor, totalCount);
+    }
+
+    /**
+     * A tabela de contadores cobre consultas sem filtro, só por status ou só por
+     * usuário; as demais exigem COUNT sobre o intervalo
+     */
+    private boolean needsCountQuery(LogQuery query) {
+        boolean dateFiltered = query.getStart() != null || query.getEnd() != null;
+        return dateFiltered || (query.getStatus() != null && query.getUserId() != null);
+    }
+
+    private long countFromCounters(LogQuery query) {
+        if (query.getStatus() != null) {
+            return countByStatus(query.getStatus());
+        }
+        if (query.getUserId() != null) {
+            return countByUserId(query.getUserId());
+        }
+        return count();
+    }
+
+    /**
+     * Localiza a marca mais próxima antes do registro procurado, como
+     * {@link PositionMarks#seek}
+     *
+     * @return {seq da marca, registros que atendem ao filtro a pular a partir dela},
+     *         ou null se não há marca antes do registro
+     */
+    private long[] seekMark(AccessStatus status, long ordinal) {
+        long mark = ordinal / PositionMarks.INTERVAL;
+        if (mark <= 0) {
+            return null;
+        }
+        try (Connection connection = database.getConnection();
+             PreparedStatement select = connection.prepareStatement(
+                     "SELECT mark, seq FROM access_log_marks WHERE filter = ? AND mark <= ? "
+                             + "ORDER BY mark DESC LIMIT 1")) {
+            select.setString(1, status != null ? status.name() : ALL_MARKS);
+            select.setLong(2, mark);
+            try (ResultSet rs = select.executeQuery()) {
+                if (!rs.next() || rs.getLong(1) <= 0) {
+                    return null;
+                }
+                return new long[]{rs.getLong(2), ordinal - rs.getLong(1) * PositionMarks.INTERVAL};
+            }
+        } catch (SQLException e) {
+            System.err.println("Erro ao consultar marcas dos logs: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private long countQuery(String where, List<Object> parameters) {
+        try (Connection connection = database.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "SELECT COUNT(*) FROM access_logs" + where)) {
+            for (int i = 0; i < parameters.size(); i++) {
+                statement.setObject(i + 1, parameters.get(i));
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        } catch (SQLException e) {
+            System.err.println("Erro ao contar logs: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    private long parseCursor(String cursor) {
+        try {
+            return Long.parseLong(cursor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor inválido: " + cursor, e);
+        }
+    }
+
+    @Override
+    public long countByStatus(AccessStatus status) {
+        return readCount(STATUS, status.name());
+    }
+
+    @Override
+    public long countByAccessLevel(AccessLevel level) {
+        return readCount(LEVEL, level.name());
+    }
+
+    @Override
+    public long countByUserId(String userId) {
+        return readCount(USER, userId);
+    }
+
+    @Override
+    public long count() {
+        return readCount(TOTAL, "");
+    }
+
+    /**
+     * Apaga os registros, as marcas e os contadores em uma única transação, com a
+     * trava do total, para que gravações concorrentes de outros processos não fiquem
+     * contadas sem os registros
+     *
+     * @throws UncheckedIOException se a transação falhar; nesse caso nada é apagado
+     */
+    @Override
+    public void clear() {
+        synchronized (writeLock) {
+            try (Connection connection = database.getConnection()) {
+                connection.setAutoCommit(false);
+                try (Statement statement = connection.createStatement()) {
+                    readCount(connection, TOTAL, "", true);
+                    statement.execute("DELETE FROM access_logs");
+                    statement.execute("DELETE FROM access_log_marks");
+                    statement.execute("DELETE FROM access_log_counts WHERE kind = '" + USER + "'");
+                    statement.execute("UPDATE access_log_counts SET n = 0");
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                }
+            } catch (SQLException e) {
+                throw new UncheckedIOException("Erro ao limpar logs: " + e.getMessage(),
+                        new IOException(e.getMessage(), e));
+            }
+        }
+    }
+}
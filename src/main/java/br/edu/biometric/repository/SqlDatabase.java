@@ -0,0 +1,53 @@
+package br.edu.biometric.repository;
+
+import org.h2.jdbcx.JdbcConnectionPool;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Banco SQL embarcado (H2) executado no próprio processo, sem servidor externo
+ *
+ * Mantém um pool de conexões compartilhado pelos repositórios SQL. As leituras
+ * usam conexões independentes; as gravações de cada repositório são serializadas
+ * pelo próprio repositório.
+ */
+public class SqlDatabase implements AutoCloseable {
+
+    private static final int MAX_CONNECTIONS = 8;
+
+    private final String url;
+    private final JdbcConnectionPool pool;
+
+    public SqlDatabase(String url) {
+        this.url = url;
+        this.pool = JdbcConnectionPool.create(url, "sa", "");
+        this.pool.setMaxConnections(MAX_CONNECTIONS);
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    Connection getConnection() throws SQLException {
+        return pool.getConnection();
+    }
+
+    /**
+     * Executa instruções DDL idempotentes (CREATE ... IF NOT EXISTS)
+     */
+    void execute(String... statements) throws SQLException {
+        try (Connection connection = getConnection();
+             Statement statement = connection.createStatement()) {
+            for (String sql : statements) {
+                statement.execute(sql);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.dispose();
+    }
+}
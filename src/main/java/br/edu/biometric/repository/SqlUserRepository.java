@@ -0,0 +1,519 @@
+package br.edu.biometric.repository;
+
+import br.edu.biometric.model.AccessLevel;
+import br.edu.biometric.model.User;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Repositório de usuários em banco SQL embarcado
+ *
+ * As buscas por CPF e email usam colunas normalizadas indexadas (apenas dígitos e
+ * minúsculas), com a mesma semântica do {@link JsonUserRepository}. Os contadores
+ * do dashboard ficam na tabela user_counts e as palavras de nome, CPF e email
+ * (as mesmas do {@link UserSearchIndex}) na tabela user_tokens, ambas atualizadas
+ * na mesma transação que grava os usuários. Assim, gravações de outros processos
+ * no mesmo banco (servidor H2 ou AUTO_SERVER) aparecem nas contagens e nas buscas,
+ * e a inicialização não percorre a tabela. As gravações começam travando a linha
+ * do total, o que as serializa entre processos.
+ */
+public class SqlUserRepository implements UserRepository {
+
+    private static final String COLUMNS =
+            "id, name, cpf, email, access_level, active, created_at, updated_at, biometric_paths";
+    private static final Type PATHS_TYPE = new TypeToken<List<String>>() {}.getType();
+
+    private final SqlDatabase database;
+    private final Gson gson = new Gson();
+    private final List<UserChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    // Contadores: total, ativos e um por nível (nome do enum)
+    private static final String TOTAL = "total";
+    private static final String ACTIVE = "active";
+
+    private final Object writeLock = new Object();
+
+    public SqlUserRepository(SqlDatabase database) {
+        this.database = database;
+        try {
+            database.execute(
+                    "CREATE TABLE IF NOT EXISTS users ("
+                            + "id VARCHAR(64) PRIMARY KEY, "
+                            + "name VARCHAR(255), "
+                            + "cpf VARCHAR(32), "
+                            + "cpf_key VARCHAR(32), "
+                            + "email VARCHAR(255), "
+                            + "email_key VARCHAR(255), "
+                            + "access_level VARCHAR(32), "
+                            + "active BOOLEAN NOT NULL, "
+                            + "created_at TIMESTAMP, "
+                            + "updated_at TIMESTAMP, "
+                            + "biometric_paths CLOB)",
+                    "CREATE INDEX IF NOT EXISTS idx_users_cpf ON users(cpf_key)",
+                    "CREATE INDEX IF NOT EXISTS idx_users_email ON users(email_key)",
+                    "CREATE INDEX IF NOT EXISTS idx_users_active ON users(active, created_at)",
+                    "CREATE INDEX IF NOT EXISTS idx_users_created ON users(created_at, id)",
+                    "CREATE TABLE IF NOT EXISTS user_counts (name VARCHAR(32) PRIMARY KEY, n BIGINT NOT NULL)",
+                    "CREATE TABLE IF NOT EXISTS user_tokens ("
+                            + "token VARCHAR(255), id VARCHAR(64), PRIMARY KEY (token, id))",
+                    "CREATE INDEX IF NOT EXISTS idx_user_tokens_id ON user_tokens(id)");
+            initializeCounters();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Erro ao inicializar tabela de usuários: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Cria os contadores e as palavras de busca de um banco que ainda não os tem
+     * (criado antes deles), com uma única passada pela tabela. Se outro processo fizer
+     * o mesmo ao mesmo tempo, a transação de um deles falha na chave do total e o
+     * resultado do outro é mantido.
+     */
+    private void initializeCounters() throws SQLException {
+        try (Connection connection = database.getConnection()) {
+            if (readCount(connection, TOTAL, false) >= 0) {
+                return;
+            }
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement();
+                 PreparedStatement tokenInsert = connection.prepareStatement(
+                         "INSERT INTO user_tokens (token, id) VALUES (?, ?)")) {
+                long[] delta = new long[2 + AccessLevel.values().length];
+                List<String> tokens = new ArrayList<>();
+                statement.execute("DELETE FROM user_tokens");
+                try (ResultSet rs = statement.executeQuery(
+                        "SELECT id, name, cpf, email, access_level, active FROM users")) {
+                    while (rs.next()) {
+                        User user = new User();
+                        user.setId(rs.getString(1));
+                        user.setName(rs.getString(2));
+                        user.setCpf(rs.getString(3));
+                        user.setEmail(rs.getString(4));
+                        addTokens(tokenInsert, user, tokens);
+                        count(delta, parseLevel(rs.getString(5)), rs.getBoolean(6), 1);
+                    }
+                }
+                tokenInsert.executeBatch();
+                try (PreparedStatement insert = connection.prepareStatement(
+                        "INSERT INTO user_counts (name, n) VALUES (?, ?)")) {
+                    for (AccessLevel level : AccessLevel.values()) {
+                        addCount(insert, level.name(), delta[2 + level.ordinal()]);
+                    }
+                    addCount(insert, ACTIVE, delta[1]);
+                    // O total por último: a sua presença indica contadores completos
+                    addCount(insert, TOTAL, delta[0]);
+                    insert.executeBatch();
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                if (readCount(connection, TOTAL, false) < 0) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private static void addCount(PreparedStatement insert, String name, long n) throws SQLException {
+        insert.setString(1, name);
+        insert.setLong(2, n);
+        insert.addBatch();
+    }
+
+    /**
+     * @param lock Trava a linha até o fim da transação
+     * @return Valor do contador, ou -1 se ele não existe
+     */
+    private static long readCount(Connection connection, String name, boolean lock) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT n FROM user_counts WHERE name = ?" + (lock ? " FOR UPDATE" : ""))) {
+            select.setString(1, name);
+            try (ResultSet rs = select.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : -1;
+            }
+        }
+    }
+
+    private long readCount(String name) {
+        try (Connection connection = database.getConnection()) {
+            return Math.max(0, readCount(connection, name, false));
+        } catch (SQLException e) {
+            System.err.println("Erro ao contar usuários: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Acrescenta ao lote as palavras de busca do usuário
+     *
+     * @param tokens Lista de trabalho, reaproveitada entre usuários
+     */
+    private static void addTokens(PreparedStatement insert, User user, List<String> tokens) throws SQLException {
+        tokens.clear();
+        UserSearchIndex.tokensOf(user, tokens);
+        for (String token : tokens) {
+            insert.setString(1, token);
+            insert.setString(2, user.getId());
+            insert.addBatch();
+        }
+    }
+
+    /**
+     * Aplica a variação dos contadores dentro da transação do lote
+     */
+    private static void updateCounts(Connection connection, long[] delta) throws SQLException {
+        try (PreparedStatement update = connection.prepareStatement(
+                "UPDATE user_counts SET n = n + ? WHERE name = ?")) {
+            addDelta(update, TOTAL, delta[0]);
+            addDelta(update, ACTIVE, delta[1]);
+            for (AccessLevel level : AccessLevel.values()) {
+                addDelta(update, level.name(), delta[2 + level.ordinal()]);
+            }
+            update.executeBatch();
+        }
+    }
+
+    private static void addDelta(PreparedStatement update, String name, long delta) throws SQLException {
+        if (delta == 0) {
+            return;
+        }
+        update.setLong(1, delta);
+        update.setString(2, name);
+        update.addBatch();
+    }
+
+    /**
+     * Trava o total até o fim da transação, serializando as gravações entre processos
+     */
+    private static void lockCounts(Connection connection) throws SQLException {
+        if (readCount(connection, TOTAL, true) < 0) {
+            throw new SQLException("Contadores de usuários ausentes");
+        }
+    }
+
+    /**
+     * @throws UncheckedIOException se a transação falhar; nesse caso o lote não
+     *                              é aplicado
+     */
+    @Override
+    public List<User> saveAll(Collection<User> batch) {
+        List<User> saved = new ArrayList<>(batch);
+        if (saved.isEmpty()) {
+            return saved;
+        }
+        synchronized (writeLock) {
+            long[] delta = new long[2 + AccessLevel.values().length];
+            try (Connection connection = database.getConnection()) {
+                connection.setAutoCommit(false);
+                try (PreparedStatement select = connection.prepareStatement(
+                             "SELECT access_level, active FROM users WHERE id = ?");
+                     PreparedStatement merge = connection.prepareStatement(
+                             "MERGE INTO users (" + COLUMNS + ", cpf_key, email_key) KEY (id) "
+                                     + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+                     PreparedStatement tokenDelete = connection.prepareStatement(
+                             "DELETE FROM user_tokens WHERE id = ?");
+                     PreparedStatement tokenInsert = connection.prepareStatement(
+                             "INSERT INTO user_tokens (token, id) VALUES (?, ?)")) {
+                    lockCounts(connection);
+                    // Apenas a última versão de cada ID: o SELECT não enxerga o lote pendente
+                    Map<String, User> unique = new LinkedHashMap<>();
+                    List<String> tokens = new ArrayList<>();
+                    for (User user : saved) {
+                        unique.put(user.getId(), user);
+                    }
+                    for (User user : unique.values()) {
+                        // Desconta o estado anterior antes de contabilizar o novo
+                        select.setString(1, user.getId());
+                        try (ResultSet rs = select.executeQuery()) {
+                            if (rs.next()) {
+                                count(delta, parseLevel(rs.getString(1)), rs.getBoolean(2), -1);
+                            }
+                        }
+                        count(delta, user.getAccessLevel(), user.isActive(), 1);
+                        bind(merge, user);
+                        merge.addBatch();
+                        tokenDelete.setString(1, user.getId());
+                        tokenDelete.addBatch();
+                        addTokens(tokenInsert, user, tokens);
+                    }
+                    merge.executeBatch();
+                    tokenDelete.executeBatch();
+                    tokenInsert.executeBatch();
+                    updateCounts(connection, delta);
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                }
+            } catch (SQLException e) {
+                throw new UncheckedIOException("Erro ao salvar usuários: " + e.getMessage(),
+                        new IOException(e.getMessage(), e));
+            }
+        }
+        fireChange(new UserChangeEvent(saved, Collections.emptyList()));
+        return saved;
+    }
+
+    /**
+     * @throws UncheckedIOException se a transação falhar; nesse caso nenhum
+     *                              usuário é excluído
+     */
+    @Override
+    public int deleteAll(Collection<String> ids) {
+        List<String> deleted = new ArrayList<>();
+        synchronized (writeLock) {
+            long[] delta = new long[2 + AccessLevel.values().length];
+            try (Connection connection = database.getConnection()) {
+                connection.setAutoCommit(false);
+                try (PreparedStatement select = connection.prepareStatement(
+                             "SELECT access_level, active FROM users WHERE id = ?");
+                     PreparedStatement delete = connection.prepareStatement(
+                             "DELETE FROM users WHERE id = ?");
+                     PreparedStatement tokenDelete = connection.prepareStatement(
+                             "DELETE FROM user_tokens WHERE id = ?")) {
+                    lockCounts(connection);
+                    for (String id : new LinkedHashSet<>(ids)) {
+                        select.setString(1, id);
+                        try (ResultSet rs = select.executeQuery()) {
+                            if (!rs.next()) {
+                                continue;
+                            }
+                            count(delta, parseLevel(rs.getString(1)), rs.getBoolean(2), -1);
+                        }
+                        delete.setString(1, id);
+                        delete.addBatch();
+                        tokenDelete.setString(1, id);
+                        tokenDelete.addBatch();
+                        deleted.add(id);
+                    }
+                    delete.executeBatch();
+                    tokenDelete.executeBatch();
+                    updateCounts(connection, delta);
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                }
+            } catch (SQLException e) {
+                throw new UncheckedIOException("Erro ao excluir usuários: " + e.getMessage(),
+                        new IOException(e.getMessage(), e));
+            }
+        }
+        if (!deleted.isEmpty()) {
+            fireChange(new UserChangeEvent(Collections.emptyList(), deleted));
+        }
+        return deleted.size();
+    }
+
+    private static void count(long[] delta, AccessLevel level, boolean isActive, int sign) {
+        delta[0] += sign;
+        if (isActive) {
+            delta[1] += sign;
+        }
+        if (level != null) {
+            delta[2 + level.ordinal()] += sign;
+        }
+    }
+
+    private void bind(PreparedStatement statement, User user) throws SQLException {
+        statement.setString(1, user.getId());
+        statement.setString(2, user.getName());
+        statement.setString(3, user.getCpf());
+        statement.setString(4, user.getEmail());
+        statement.setString(5, user.getAccessLevel() != null ? user.getAccessLevel().name() : null);
+        statement.setBoolean(6, user.isActive());
+        statement.setTimestamp(7, toTimestamp(user.getCreatedAt()));
+        statement.setTimestamp(8, toTimestamp(user.getUpdatedAt()));
+        statement.setString(9, gson.toJson(user.getBiometricDataPaths()));
+        statement.setString(10, JsonUserRepository.cpfKey(user.getCpf()));
+        statement.setString(11, JsonUserRepository.emailKey(user.getEmail()));
+    }
+
+    private User map(ResultSet rs) throws SQLException {
+        User user = new User();
+        user.setId(rs.getString("id"));
+        user.setName(rs.getString("name"));
+        user.setCpf(rs.getString("cpf"));
+        user.setEmail(rs.getString("email"));
+        user.setAccessLevel(parseLevel(rs.getString("access_level")));
+        user.setActive(rs.getBoolean("active"));
+        List<String> paths = gson.fromJson(rs.getString("biometric_paths"), PATHS_TYPE);
+        user.setBiometricDataPaths(paths != null ? paths : new ArrayList<>());
+        // As datas por último: os setters acima atualizam updatedAt
+        user.setCreatedAt(toLocalDateTime(rs.getTimestamp("created_at")));
+        user.setUpdatedAt(toLocalDateTime(rs.getTimestamp("updated_at")));
+        return user;
+    }
+
+    private List<User> query(String sql, String parameter) {
+        List<User> result = new ArrayList<>();
+        try (Connection connection = database.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            if (parameter != null) {
+                statement.setString(1, parameter);
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    result.add(map(rs));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Erro ao consultar usuários: " + e.getMessage());
+        }
+        return result;
+    }
+
+    private Optional<User> findOne(String column, String key) {
+        if (key == null || key.isEmpty()) {
+            return Optional.empty();
+        }
+        List<User> found = query("SELECT " + COLUMNS + " FROM users WHERE " + column + " = ? LIMIT 1", key);
+        return found.stream().findFirst();
+    }
+
+    @Override
+    public Optional<User> findById(String id) {
+        return findOne("id", id);
+    }
+
+    @Override
+    public Optional<User> findByCpf(String cpf) {
+        return findOne("cpf_key", JsonUserRepository.cpfKey(cpf));
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        return findOne("email_key", JsonUserRepository.emailKey(email));
+    }
+
+    @Override
+    public List<User> findAll() {
+        return query("SELECT " + COLUMNS + " FROM users ORDER BY created_at, id", null);
+    }
+
+    @Override
+    public List<User> findAllActive() {
+        return query("SELECT " + COLUMNS + " FROM users WHERE active = TRUE ORDER BY created_at, id", null);
+    }
+
+    /**
+     * Mesma semântica de {@link UserSearchIndex#search}: cada termo é um intervalo
+     * da chave primária de user_tokens, e os IDs que atendem a todos os termos são
+     * ordenados pelo índice (created_at, id)
+     */
+    @Override
+    public List<String> searchIds(String query) {
+        List<String> terms = new ArrayList<>();
+        UserSearchIndex.split(query, terms);
+        List<String> result = new ArrayList<>();
+        try (Connection connection = database.getConnection()) {
+            if (terms.isEmpty()) {
+                try (Statement statement = connection.createStatement();
+                     ResultSet rs = statement.executeQuery("SELECT id FROM users ORDER BY created_at, id")) {
+                    while (rs.next()) {
+                        result.add(rs.getString(1));
+                    }
+                }
+                return result;
+            }
+            Set<String> matches = null;
+            try (PreparedStatement select = connection.prepareStatement(
+                    "SELECT DISTINCT id FROM user_tokens WHERE token >= ? AND token < ?")) {
+                for (String term : new LinkedHashSet<>(terms)) {
+                    select.setString(1, term);
+                    select.setString(2, UserSearchIndex.successor(term));
+                    Set<String> ids = new HashSet<>();
+                    try (ResultSet rs = select.executeQuery()) {
+                        while (rs.next()) {
+                            if (matches == null || matches.contains(rs.getString(1))) {
+                                ids.add(rs.getString(1));
+                            }
+                        }
+                    }
+                    matches = ids;
+                    if (matches.isEmpty()) {
+                        return result;
+                    }
+                }
+            }
+            try (PreparedStatement select = connection.prepareStatement(
+                    "SELECT id FROM users WHERE id = ANY(?) ORDER BY created_at, id")) {
+                select.setObject(1, matches.toArray(new String[0]));
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        result.add(rs.getString(1));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Erro ao buscar usuários: " + e.getMessage());
+            result.clear();
+        }
+        return result;
+    }
+
+    @Override
+    public long count() {
+        return readCount(TOTAL);
+    }
+
+    @Override
+    public long countActive() {
+        return readCount(ACTIVE);
+    }
+
+    @Override
+    public long countByAccessLevel(AccessLevel level) {
+        return readCount(level.name());
+    }
+
+    @Override
+    public void addChangeListener(UserChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeChangeListener(UserChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void fireChange(UserChangeEvent event) {
+        for (UserChangeListener listener : listeners) {
+            listener.onUsersChanged(event);
+        }
+    }
+
+    static AccessLevel parseLevel(String name) {
+        return name != null ? AccessLevel.valueOf(name) : null;
+    }
+
+    static Timestamp toTimestamp(LocalDateTime dateTime) {
+        return dateTime != null ? Timestamp.valueOf(dateTime) : null;
+    }
+
+    static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+}
@@ -0,0 +1,38 @@
+package br.edu.biometric.repository;
+
+import br.edu.biometric.model.User;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Alterações aplicadas ao repositório de usuários em uma única operação
+ */
+public class UserChangeEvent {
+
+    private final List<User> upserted;
+    private final List<String> deletedIds;
+
+    public UserChangeEvent(List<User> upserted, List<String> deletedIds) {
+        this.upserted = Collections.unmodifiableList(upserted);
+        this.deletedIds = Collections.unmodifiableList(deletedIds);
+    }
+
+    /**
+     * @return Usuários incluídos ou atualizados
+     */
+    public List<User> getUpserted() {
+        return upserted;
+    }
+
+    /**
+     * @return IDs dos usuários excluídos
+     */
+    public List<String> getDeletedIds() {
+        return deletedIds;
+    }
+
+    public boolean isEmpty() {
+        return upserted.isEmpty() && deletedIds.isEmpty();
+    }
+}
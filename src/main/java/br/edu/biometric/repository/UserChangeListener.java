@@ -0,0 +1,14 @@
+package br.edu.biometric.repository;
+
+/**
+ * Observador das alterações persistidas no repositório de usuários
+ */
+public interface UserChangeListener {
+
+    /**
+     * Chamado uma vez por operação (save, delete ou lote), após a persistência
+     * 
+     * @param event Alterações consolidadas da operação
+     */
+    void onUsersChanged(UserChangeEvent event);
+}
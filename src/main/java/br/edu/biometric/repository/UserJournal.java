@@ -0,0 +1,371 @@
+package br.edu.biometric.repository;
+
+import br.edu.biometric.model.User;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Journal de escrita antecipada (write-ahead) das alterações de usuários
+ * 
+ * Cada alteração é acrescentada como uma linha JSON e forçada para o disco antes
+ * de retornar. As alterações de uma mesma chamada formam um lote, numerado e
+ * encerrado por um registro COMMIT: na reaplicação, um lote sem COMMIT (gravação
+ * interrompida) é ignorado por inteiro, e uma gravação que falha é desfeita
+ * truncando o arquivo no início do lote. Registros sem número de lote (formato
+ * anterior) valem individualmente. Na compactação, o journal corrente é selado (renomeado) e um novo
+ * é iniciado; o journal selado é descartado depois que o snapshot é gravado, ou
+ * devolvido ao corrente se a gravação falhar.
+ *
+ * Um único processo pode usar o journal: {@link #lock} trava o arquivo users.journal.lock
+ * enquanto o processo estiver aberto. A trava fica em um arquivo à parte porque o
+ * journal é renomeado e apagado na compactação.
+ */
+class UserJournal {
+
+    static final String UPSERT = "UPSERT";
+    static final String DELETE = "DELETE";
+    static final String COMMIT = "COMMIT";
+
+    private static final Set<String> LOCKED = ConcurrentHashMap.newKeySet(); // Travas deste processo
+
+    private final Path file;
+    private final Path sealedFile;
+    private final Path lockFile;
+    private final Gson gson;
+
+    private FileChannel lockChannel;
+
+    private FileOutputStream output;
+    private Writer writer;
+    private int recordCount;
+    private long lastBatch;
+    private int sealedRecordCount;
+
+    UserJournal(Path file, Gson gson) {
+        this.file = file;
+        this.sealedFile = file.resolveSibling(file.getFileName() + ".1");
+        this.lockFile = file.resolveSibling(file.getFileName() + ".lock");
+        this.gson = gson;
+    }
+
+    /**
+     * Trava o journal para este processo até ele terminar; deve ser chamado antes da
+     * reaplicação
+     *
+     * @throws IOException se outro processo (ou outra instância neste) já usa o journal
+     */
+    synchronized void lock() throws IOException {
+        if (lockChannel != null) {
+            return;
+        }
+        // Verificado antes de abrir o canal: fechar um canal do arquivo libera, em alguns
+        // sistemas, as travas que o processo tem nele por qualquer outro canal
+        String key = lockFile.toAbsolutePath().normalize().toString();
+        if (!LOCKED.add(key)) {
+            throw new IOException(file + " já está aberto neste processo");
+        }
+        try {
+            FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (IOException | OverlappingFileLockException e) {
+                channel.close();
+                throw e;
+            }
+            if (lock == null) {
+                channel.close();
+                throw new IOException(file + " está em uso por outro processo");
+            }
+            lockChannel = channel;
+        } finally {
+            if (lockChannel == null) {
+                LOCKED.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Registro de uma alteração no journal
+     */
+    private static class Record {
+        private String op;
+        private String id;
+        private User user;
+        private Long batch;
+
+        Record(String op, String id, User user) {
+            this.op = op;
+            this.id = id;
+            this.user = user;
+        }
+    }
+
+    /**
+     * Registra a inclusão/atualização dos usuários em um lote, com uma única escrita
+     * e um único fsync
+     *
+     * @throws IOException se o lote não foi gravado; nesse caso nada dele é reaplicado
+     */
+    synchronized void appendUpserts(Collection<User> users) throws IOException {
+        List<Record> records = new ArrayList<>(users.size());
+        for (User user : users) {
+            records.add(new Record(UPSERT, user.getId(), user));
+        }
+        appendBatch(records);
+    }
+
+    /**
+     * Registra a exclusão dos usuários em um lote, com uma única escrita e um único fsync
+     *
+     * @throws IOException se o lote não foi gravado; nesse caso nada dele é reaplicado
+     */
+    synchronized void appendDeletes(Collection<String> ids) throws IOException {
+        List<Record> records = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            records.add(new Record(DELETE, id, null));
+        }
+        appendBatch(records);
+    }
+
+    private void appendBatch(List<Record> records) throws IOException {
+        if (writer == null) {
+            output = new FileOutputStream(file.toFile(), true);
+            writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        }
+        // O writer é esvaziado ao fim de cada lote, então o tamanho do arquivo é o início deste
+        long start = output.getChannel().size();
+        long batch = ++lastBatch;
+        try {
+            for (Record record : records) {
+                record.batch = batch;
+                write(record);
+            }
+            Record commit = new Record(COMMIT, null, null);
+            commit.batch = batch;
+            write(commit);
+            sync();
+        } catch (IOException e) {
+            discardFrom(start);
+            throw e;
+        }
+        recordCount += records.size();
+    }
+
+    private void write(Record record) throws IOException {
+        writer.write(gson.toJson(record));
+        writer.write('\n');
+    }
+
+    /**
+     * Remove o que foi gravado de um lote que falhou, para que os lotes seguintes não
+     * fiquem depois de uma linha incompleta
+     */
+    private void discardFrom(long start) {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            // O conteúdo pendente é descartado abaixo
+        }
+        writer = null;
+        output = null;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(start);
+            channel.force(false);
+        } catch (IOException e) {
+            System.err.println("Erro ao desfazer lote do journal de usuários: " + e.getMessage());
+        }
+    }
+
+    private void sync() throws IOException {
+        if (writer != null) {
+            writer.flush();
+            output.getChannel().force(false);
+        }
+    }
+
+    /**
+     * Reaplica os lotes completos do journal selado (se houver) e do journal corrente
+     * 
+     * @return true se todos os registros foram lidos; false se o journal terminava
+     *         em um registro ou lote incompleto (gravação interrompida) ou havia um
+     *         journal selado pendente. Em ambos os casos tudo o que foi confirmado foi
+     *         reaplicado.
+     * @throws IOException se um journal não pôde ser lido até o fim, por exemplo um
+     *                     registro inválido seguido de outros; os lotes seguintes não
+     *                     foram reaplicados, e os arquivos devem ser preservados
+     */
+    synchronized boolean replay(Consumer<User> upsert, Consumer<String> delete) throws IOException {
+        boolean clean = !Files.exists(sealedFile);
+        clean &= replayFile(sealedFile, upsert, delete) >= 0;
+        int records = replayFile(file, upsert, delete);
+        recordCount = Math.max(records, 0);
+        return clean && records >= 0;
+    }
+
+    /**
+     * @return Registros reaplicados, ou -1 se o arquivo termina em um registro ou
+     *         lote incompleto
+     */
+    private int replayFile(Path path, Consumer<User> upsert, Consumer<String> delete) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        int records = 0;
+        int lineNumber = 0;
+        List<Record> pending = new ArrayList<>(); // Registros do lote ainda sem COMMIT
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                Record record;
+                try {
+                    record = gson.fromJson(line, Record.class);
+                } catch (JsonParseException e) {
+                    // Só a última linha pode ter ficado incompleta por uma gravação interrompida
+                    if (hasMoreRecords(reader)) {
+                        throw new IOException("Registro inválido na linha " + lineNumber
+                                + " do journal de usuários " + path + ": " + e.getMessage(), e);
+                    }
+                    System.err.println("Registro incompleto ignorado no fim do journal de usuários " + path);
+                    return -1;
+                }
+                if (record.batch == null) {
+                    apply(record, upsert, delete);
+                    records++;
+                    continue;
+                }
+                lastBatch = Math.max(lastBatch, record.batch);
+                if (!COMMIT.equals(record.op)) {
+                    pending.add(record);
+                    continue;
+                }
+                for (Record committed : pending) {
+                    if (committed.batch.equals(record.batch)) {
+                        apply(committed, upsert, delete);
+                        records++;
+                    }
+                }
+                pending.clear();
+            }
+        }
+        if (!pending.isEmpty()) {
+            System.err.println("Lote incompleto ignorado no journal de usuários " + path + ": "
+                    + pending.size() + " registros");
+            return -1;
+        }
+        return records;
+    }
+
+    private static boolean hasMoreRecords(BufferedReader reader) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.isBlank()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void apply(Record record, Consumer<User> upsert, Consumer<String> delete) {
+        if (UPSERT.equals(record.op) && record.user != null) {
+            upsert.accept(record.user);
+        } else if (DELETE.equals(record.op) && record.id != null) {
+            delete.accept(record.id);
+        }
+    }
+
+    /**
+     * Sela o journal corrente para compactação e inicia um novo
+     * 
+     * @return false se ainda existe um journal selado aguardando compactação
+     */
+    synchronized boolean seal() throws IOException {
+        if (Files.exists(sealedFile)) {
+            return false;
+        }
+        close();
+        if (Files.exists(file)) {
+            Files.move(file, sealedFile, StandardCopyOption.ATOMIC_MOVE);
+        }
+        sealedRecordCount = recordCount;
+        recordCount = 0;
+        return true;
+    }
+
+    /**
+     * Devolve os registros do journal selado ao corrente, quando o snapshot não pôde
+     * ser gravado: os registros gravados depois da selagem são acrescentados ao selado,
+     * que volta a ser o journal corrente. Se o processo parar no meio, os dois
+     * arquivos são reaplicados na inicialização; como os registros do corrente ficam
+     * repetidos no fim do selado, o resultado é o mesmo.
+     */
+    synchronized void unseal() throws IOException {
+        if (!Files.exists(sealedFile)) {
+            return;
+        }
+        close();
+        if (Files.exists(file)) {
+            try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(sealedFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                long size = in.size();
+                long position = 0;
+                while (position < size) {
+                    position += in.transferTo(position, size - position, out);
+                }
+                out.force(true);
+            }
+        }
+        Files.move(sealedFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        recordCount += sealedRecordCount;
+        sealedRecordCount = 0;
+    }
+
+    /**
+     * Descarta o journal selado, já incorporado a um snapshot
+     */
+    synchronized void discardSealed() throws IOException {
+        Files.deleteIfExists(sealedFile);
+    }
+
+    /**
+     * Descarta todos os journals, após a gravação de um snapshot com o estado completo
+     */
+    synchronized void reset() throws IOException {
+        close();
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(sealedFile);
+        recordCount = 0;
+    }
+
+    synchronized int getRecordCount() {
+        return recordCount;
+    }
+
+    synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+            output = null;
+        }
+    }
+}
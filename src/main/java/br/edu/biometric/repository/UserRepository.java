@@ -1,127 +1,99 @@
 package br.edu.biometric.repository;
 
+import br.edu.biometric.model.AccessLevel;
 import br.edu.biometric.model.User;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
-
-import java.io.*;
-import java.lang.reflect.Type;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.time.LocalDateTime;
-import java.util.ArrayList;
+
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 /**
- * Repositório para gerenciar a persistência de usuários em arquivo JSON
+ * Contrato de persistência de usuários
+ * 
+ * Implementações: {@link JsonUserRepository} (arquivos JSON) e
+ * {@link SqlUserRepository} (banco SQL embarcado). A escolha é feita
+ * por configuração em {@link RepositoryFactory}.
  */
-public class UserRepository {
-
-    private static final String DATA_DIR = "data";
-    private static final String USERS_FILE = DATA_DIR + "/users.json";
-
-    private final Gson gson;
-    private List<User> users;
-
-    public UserRepository() {
-        this.gson = new GsonBuilder()
-                .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
-                .setPrettyPrinting()
-                .create();
-        initializeDataDirectory();
-        loadUsers();
-    }
-
-    private void initializeDataDirectory() {
-        try {
-            Files.createDirectories(Paths.get(DATA_DIR));
-            Files.createDirectories(Paths.get(DATA_DIR + "/biometric"));
-        } catch (IOException e) {
-            System.err.println("Erro ao criar diretórios: " + e.getMessage());
-        }
-    }
-
-    private void loadUsers() {
-        File file = new File(USERS_FILE);
-        if (file.exists()) {
-            try (Reader reader = new FileReader(file)) {
-                Type listType = new TypeToken<ArrayList<User>>(){}.getType();
-                users = gson.fromJson(reader, listType);
-                if (users == null) {
-                    users = new ArrayList<>();
-                }
-            } catch (IOException e) {
-                System.err.println("Erro ao carregar usuários: " + e.getMessage());
-                users = new ArrayList<>();
-            }
-        } else {
-            users = new ArrayList<>();
-        }
-    }
+public interface UserRepository {
 
-    private void saveUsers() {
-        try (Writer writer = new FileWriter(USERS_FILE)) {
-            gson.toJson(users, writer);
-        } catch (IOException e) {
-            System.err.println("Erro ao salvar usuários: " + e.getMessage());
-        }
-    }
-
-    public User save(User user) {
-        Optional<User> existing = findById(user.getId());
-        if (existing.isPresent()) {
-            users.remove(existing.get());
-        }
-        users.add(user);
-        saveUsers();
+    default User save(User user) {
+        saveAll(Collections.singletonList(user));
         return user;
     }
 
-    public Optional<User> findById(String id) {
-        return users.stream()
-                .filter(u -> u.getId().equals(id))
-                .findFirst();
+    /**
+     * Inclui ou atualiza vários usuários em uma única transação: as alterações são
+     * persistidas de uma só vez e notificadas aos observadores em um único evento
+     * 
+     * @param batch Usuários a salvar
+     * @return Usuários salvos
+     * @throws UncheckedIOException se a gravação falhar; nesse caso nenhum usuário do
+     *                              lote é salvo nem notificado
+     */
+    List<User> saveAll(Collection<User> batch);
+
+    Optional<User> findById(String id);
+
+    /**
+     * Busca um usuário pelo CPF, formatado ou apenas com dígitos
+     */
+    Optional<User> findByCpf(String cpf);
+
+    /**
+     * Busca um usuário pelo email, sem diferenciar maiúsculas e minúsculas
+     */
+    Optional<User> findByEmail(String email);
+
+    List<User> findAll();
+
+    List<User> findAllActive();
+
+    /**
+     * Busca por prefixo: cada termo da consulta deve iniciar alguma palavra do nome
+     * ou do email, ou o CPF (com ou sem pontuação). Não diferencia maiúsculas nem acentos.
+     * 
+     * @param query Termos da busca; vazia retorna todos os usuários
+     * @return IDs dos usuários encontrados, em ordem de cadastro
+     */
+    List<String> searchIds(String query);
+
+    /**
+     * Verifica um único usuário pelo critério de {@link #searchIds}, sem consultar o
+     * repositório; usado para aplicar alterações a uma busca já feita
+     */
+    static boolean matchesSearch(User user, String query) {
+        return UserSearchIndex.matches(user, query);
     }
 
-    public Optional<User> findByCpf(String cpf) {
-        return users.stream()
-                .filter(u -> u.getCpf().equals(cpf))
-                .findFirst();
+    default boolean delete(String id) {
+        return deleteAll(Collections.singletonList(id)) > 0;
     }
 
-    public Optional<User> findByEmail(String email) {
-        return users.stream()
-                .filter(u -> u.getEmail().equalsIgnoreCase(email))
-                .findFirst();
-    }
+    /**
+     * Exclui vários usuários em uma única transação
+     * 
+     * @param ids IDs dos usuários a excluir
+     * @return Quantidade de usuários efetivamente excluídos
+     * @throws UncheckedIOException se a gravação falhar; nesse caso nenhum usuário é
+     *                              excluído
+     */
+    int deleteAll(Collection<String> ids);
 
-    public List<User> findAll() {
-        return new ArrayList<>(users);
-    }
+    long count();
 
-    public List<User> findAllActive() {
-        return users.stream()
-                .filter(User::isActive)
-                .collect(Collectors.toList());
-    }
+    long countActive();
 
-    public boolean delete(String id) {
-        boolean removed = users.removeIf(u -> u.getId().equals(id));
-        if (removed) {
-            saveUsers();
-        }
-        return removed;
-    }
+    /**
+     * Conta os usuários cadastrados com um determinado nível de acesso
+     * 
+     * @param level Nível de acesso
+     * @return Quantidade de usuários
+     */
+    long countByAccessLevel(AccessLevel level);
 
-    public long count() {
-        return users.size();
-    }
+    void addChangeListener(UserChangeListener listener);
 
-    public long countActive() {
-        return users.stream().filter(User::isActive).count();
-    }
+    void removeChangeListener(UserChangeListener listener);
 }
-
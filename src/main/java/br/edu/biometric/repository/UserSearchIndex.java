@@ -0,0 +1,435 @@
+package br.edu.biometric.repository;
+
+import br.edu.biometric.model.User;
+import br.edu.biometric.util.Validator;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Índice de busca por prefixo sobre nome, email e CPF dos usuários
+ *
+ * Cada usuário recebe um número sequencial (a ordem de cadastro) e é indexado pelas
+ * palavras do nome e do email e pelos dígitos do CPF, normalizados (minúsculas, sem
+ * acentos). As ocorrências ficam em arrays ordenados por palavra, de modo que todas
+ * as palavras com um prefixo formam um intervalo contíguo encontrado por busca
+ * binária. Uma busca com vários termos exige todos eles e custa o tamanho dos
+ * intervalos, sem percorrer os usuários.
+ *
+ * As alterações não reescrevem os arrays principais: as ocorrências dos usuários
+ * alterados vão para um pequeno delta ordenado e as antigas são ignoradas, e os dois
+ * só são intercalados quando o delta cresce. O número de cada usuário vem de um mapa
+ * por ID, e os IDs por número ficam em blocos de tamanho fixo, dos quais só os
+ * alterados são copiados; assim uma atualização custa o tamanho do lote, e não a
+ * quantidade de usuários. A instância é imutável: {@link #update} devolve um novo
+ * índice, e leitores usam o publicado sem lock, como os demais índices dos
+ * repositórios.
+ */
+final class UserSearchIndex {
+
+    static final UserSearchIndex EMPTY = new UserSearchIndex(new String[0][], SegmentedMap.empty(), 0,
+            new String[0], new int[0], new String[0], new int[0], new BitSet());
+
+    private static final int MAX_DELTA_POSTINGS = 8_192; // Ocorrências no delta antes de intercalar
+    private static final int MAX_STALE_USERS = 4_096;    // Usuários com ocorrências antigas ignoradas
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS; // IDs por bloco
+
+    private final String[][] userIds; // Usuário de cada número, em blocos; null se excluído
+    private final SegmentedMap<String, Integer> docsById;
+    private final int docCount;
+    private final String[] tokens;  // Ordenado; uma entrada por (palavra, usuário)
+    private final int[] docs;
+    private final String[] deltaTokens;
+    private final int[] deltaDocs;
+    private final BitSet stale;     // Usuários cujas ocorrências em tokens/docs não valem mais
+
+    private UserSearchIndex(String[][] userIds, SegmentedMap<String, Integer> docsById, int docCount,
+                            String[] tokens, int[] docs, String[] deltaTokens, int[] deltaDocs, BitSet stale) {
+        this.userIds = userIds;
+        this.docsById = docsById;
+        this.docCount = docCount;
+        this.tokens = tokens;
+        this.docs = docs;
+        this.deltaTokens = deltaTokens;
+        this.deltaDocs = deltaDocs;
+        this.stale = stale;
+    }
+
+    /**
+     * Monta o índice completo, numerando os usuários na ordem recebida
+     */
+    static UserSearchIndex build(Collection<User> users) {
+        String[][] ids = new String[0][];
+        SegmentedMap.Editor<String, Integer> docsById = SegmentedMap.<String, Integer>empty().edit();
+        // Usuários de cada palavra, com a quantidade na primeira posição
+        Map<String, int[]> postings = new HashMap<>();
+        List<String> userTokens = new ArrayList<>();
+        int size = 0;
+        int doc = 0;
+        for (User user : users) {
+            ids = setId(ids, doc, user.getId(), null);
+            docsById.put(user.getId(), doc);
+            userTokens.clear();
+            tokensOf(user, userTokens);
+            for (String token : userTokens) {
+                int[] list = postings.get(token);
+                if (list == null) {
+                    list = new int[4];
+                    postings.put(token, list);
+                } else if (list[0] + 1 == list.length) {
+                    list = Arrays.copyOf(list, list.length * 2);
+                    postings.put(token, list);
+                }
+                list[++list[0]] = doc;
+                size++;
+            }
+            doc++;
+        }
+
+        String[] sortedTokens = postings.keySet().toArray(new String[0]);
+        Arrays.sort(sortedTokens);
+        String[] tokenArray = new String[size];
+        int[] docArray = new int[size];
+        int position = 0;
+        for (String token : sortedTokens) {
+            int[] list = postings.get(token);
+            for (int i = 1; i <= list[0]; i++) {
+                tokenArray[position] = token;
+                docArray[position++] = list[i];
+            }
+        }
+        return new UserSearchIndex(ids, docsById.build(), doc, tokenArray, docArray,
+                new String[0], new int[0], new BitSet());
+    }
+
+    /**
+     * Aplica inclusões, atualizações e exclusões. Usuários atualizados mantêm o número
+     * (e a posição na ordem de cadastro); novos usuários vão para o final.
+     */
+    UserSearchIndex update(Collection<User> upserted, Collection<String> deletedIds) {
+        if (upserted.isEmpty() && deletedIds.isEmpty()) {
+            return this;
+        }
+        Map<String, User> pending = new LinkedHashMap<>(); // Novos usuários numerados na ordem do lote
+        for (User user : upserted) {
+            pending.put(user.getId(), user);
+        }
+        Set<String> deleted = new HashSet<>(deletedIds);
+        deleted.removeAll(pending.keySet());
+
+        // Só os blocos de IDs alterados são copiados (os demais são compartilhados)
+        String[][] ids = userIds.clone();
+        boolean[] copiedChunks = new boolean[(docCount + pending.size() + CHUNK_SIZE - 1) >> CHUNK_BITS];
+        SegmentedMap.Editor<String, Integer> nextDocsById = docsById.edit();
+        BitSet changed = new BitSet();
+        Map<String, Integer> docsOfPending = new HashMap<>();
+        for (String id : deleted) {
+            Integer doc = nextDocsById.remove(id);
+            if (doc != null) {
+                changed.set(doc);
+                ids = setId(ids, doc, null, copiedChunks);
+            }
+        }
+        int count = docCount;
+        for (String id : pending.keySet()) {
+            Integer doc = nextDocsById.get(id);
+            if (doc != null) {
+                changed.set(doc);
+            } else {
+                doc = count++;
+                ids = setId(ids, doc, id, copiedChunks);
+                nextDocsById.put(id, doc);
+            }
+            docsOfPending.put(id, doc);
+        }
+
+        // Novo delta: ocorrências atuais dos alterados mais as que continuam valendo
+        List<Posting> delta = new ArrayList<>();
+        for (int i = 0; i < deltaTokens.length; i++) {
+            if (!changed.get(deltaDocs[i])) {
+                delta.add(new Posting(deltaTokens[i], deltaDocs[i]));
+            }
+        }
+        List<String> userTokens = new ArrayList<>();
+        for (User user : pending.values()) {
+            int doc = docsOfPending.get(user.getId());
+            userTokens.clear();
+            tokensOf(user, userTokens);
+            for (String token : userTokens) {
+                delta.add(new Posting(token, doc));
+            }
+        }
+        delta.sort(Posting.ORDER);
+
+        BitSet nextStale = (BitSet) stale.clone();
+        nextStale.or(changed);
+        if (delta.size() > MAX_DELTA_POSTINGS || nextStale.cardinality() > MAX_STALE_USERS) {
+            return compact(ids, nextDocsById.build(), count, delta, nextStale);
+        }
+        String[] nextDeltaTokens = new String[delta.size()];
+        int[] nextDeltaDocs = new int[delta.size()];
+        for (int i = 0; i < delta.size(); i++) {
+            nextDeltaTokens[i] = delta.get(i).token;
+            nextDeltaDocs[i] = delta.get(i).doc;
+        }
+        return new UserSearchIndex(ids, nextDocsById.build(), count, tokens, docs,
+                nextDeltaTokens, nextDeltaDocs, nextStale);
+    }
+
+    /**
+     * Grava o ID de um número, criando o bloco se preciso
+     *
+     * @param copied Blocos já copiados nesta atualização (null na montagem, em que os
+     *               blocos são novos)
+     * @return Array de blocos, realocado se precisou crescer
+     */
+    private static String[][] setId(String[][] chunks, int doc, String id, boolean[] copied) {
+        int chunk = doc >> CHUNK_BITS;
+        if (chunk >= chunks.length) {
+            chunks = Arrays.copyOf(chunks, Math.max(chunk + 1, chunks.length * 2));
+        }
+        if (chunks[chunk] == null) {
+            chunks[chunk] = new String[CHUNK_SIZE];
+        } else if (copied != null && !copied[chunk]) {
+            chunks[chunk] = chunks[chunk].clone();
+        }
+        if (copied != null) {
+            copied[chunk] = true;
+        }
+        chunks[chunk][doc & (CHUNK_SIZE - 1)] = id;
+        return chunks;
+    }
+
+    private String idOf(int doc) {
+        return userIds[doc >> CHUNK_BITS][doc & (CHUNK_SIZE - 1)];
+    }
+
+    /**
+     * Percorre os IDs de todos os usuários em ordem de cadastro
+     */
+    void forEachId(Consumer<String> action) {
+        for (int doc = 0; doc < docCount; doc++) {
+            String id = idOf(doc);
+            if (id != null) {
+                action.accept(id);
+            }
+        }
+    }
+
+    /**
+     * Intercala o delta nos arrays principais, descartando as ocorrências antigas
+     */
+    private UserSearchIndex compact(String[][] ids, SegmentedMap<String, Integer> nextDocsById, int count,
+                                    List<Posting> delta, BitSet staleDocs) {
+        int kept = 0;
+        for (int doc : docs) {
+            if (!staleDocs.get(doc)) {
+                kept++;
+            }
+        }
+        String[] nextTokens = new String[kept + delta.size()];
+        int[] nextDocs = new int[nextTokens.length];
+        int i = 0;
+        int j = 0;
+        int out = 0;
+        while (i < tokens.length || j < delta.size()) {
+            if (i < tokens.length && staleDocs.get(docs[i])) {
+                i++;
+                continue;
+            }
+            boolean takeExisting = j == delta.size()
+                    || (i < tokens.length && Posting.compare(tokens[i], docs[i], delta.get(j)) <= 0);
+            if (takeExisting) {
+                nextTokens[out] = tokens[i];
+                nextDocs[out++] = docs[i++];
+            } else {
+                Posting posting = delta.get(j++);
+                nextTokens[out] = posting.token;
+                nextDocs[out++] = posting.doc;
+            }
+        }
+        return new UserSearchIndex(ids, nextDocsById, count, nextTokens, nextDocs,
+                new String[0], new int[0], new BitSet());
+    }
+
+    /**
+     * Busca usuários em que cada termo da consulta é prefixo de alguma palavra do
+     * nome ou do email, ou dos dígitos do CPF
+     *
+     * @param query Termos separados por espaço ou pontuação; vazia retorna todos
+     * @return IDs em ordem de cadastro
+     */
+    List<String> search(String query) {
+        List<String> terms = new ArrayList<>();
+        split(query, terms);
+        BitSet matches = null;
+        if (!terms.isEmpty()) {
+            // Começa pelo termo mais seletivo, parando assim que nada mais corresponder
+            List<int[]> ranges = new ArrayList<>();
+            for (String term : new LinkedHashSet<>(terms)) {
+                ranges.add(new int[]{
+                        lowerBound(tokens, term), lowerBound(tokens, successor(term)),
+                        lowerBound(deltaTokens, term), lowerBound(deltaTokens, successor(term))});
+            }
+            ranges.sort(Comparator.comparingInt(range -> range[1] - range[0] + range[3] - range[2]));
+            for (int[] range : ranges) {
+                BitSet bits = new BitSet(docCount);
+                for (int p = range[0]; p < range[1]; p++) {
+                    bits.set(docs[p]);
+                }
+                bits.andNot(stale);
+                for (int p = range[2]; p < range[3]; p++) {
+                    bits.set(deltaDocs[p]);
+                }
+                if (matches == null) {
+                    matches = bits;
+                } else {
+                    matches.and(bits);
+                }
+                if (matches.isEmpty()) {
+                    return new ArrayList<>();
+                }
+            }
+        }
+
+        List<String> result = new ArrayList<>(matches != null ? matches.cardinality() : docsById.size());
+        if (matches == null) {
+            forEachId(result::add);
+        } else {
+            for (int doc = matches.nextSetBit(0); doc >= 0; doc = matches.nextSetBit(doc + 1)) {
+                String id = idOf(doc);
+                if (id != null) {
+                    result.add(id);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return true se o usuário atende à busca, pelo mesmo critério de {@link #search},
+     *         sem consultar o índice
+     */
+    static boolean matches(User user, String query) {
+        List<String> terms = new ArrayList<>();
+        split(query, terms);
+        if (terms.isEmpty()) {
+            return true;
+        }
+        List<String> userTokens = new ArrayList<>();
+        tokensOf(user, userTokens);
+        for (String term : terms) {
+            boolean found = false;
+            for (String token : userTokens) {
+                if (token.startsWith(term)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Menor texto maior que todos os que começam com o prefixo
+    static String successor(String prefix) {
+        int last = prefix.length() - 1;
+        return prefix.substring(0, last) + (char) (prefix.charAt(last) + 1);
+    }
+
+    private static int lowerBound(String[] sorted, String key) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    static void tokensOf(User user, List<String> result) {
+        split(user.getName(), result);
+        split(user.getEmail(), result);
+        if (user.getCpf() != null) {
+            // Os dígitos juntos permitem buscar o CPF sem pontuação; as partes, com pontuação
+            split(user.getCpf(), result);
+            String digits = Validator.normalizeCpf(user.getCpf());
+            if (!digits.isEmpty()) {
+                result.add(digits);
+            }
+        }
+        // Uma ocorrência por palavra e usuário
+        if (result.size() > 1) {
+            Set<String> unique = new LinkedHashSet<>(result);
+            result.clear();
+            result.addAll(unique);
+        }
+    }
+
+    /**
+     * Separa o texto em palavras de letras e dígitos, em minúsculas e sem acentos
+     */
+    static void split(String text, List<String> result) {
+        if (text == null) {
+            return;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                text = Normalizer.normalize(text, Normalizer.Form.NFD);
+                break;
+            }
+        }
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(c));
+            } else if (word.length() > 0) {
+                result.add(word.toString());
+                word.setLength(0);
+            }
+        }
+    }
+
+    /**
+     * Ocorrência de uma palavra em um usuário, usada ao montar o delta
+     */
+    private static final class Posting {
+        static final Comparator<Posting> ORDER = (a, b) -> compare(a.token, a.doc, b);
+
+        final String token;
+        final int doc;
+
+        Posting(String token, int doc) {
+            this.token = token;
+            this.doc = doc;
+        }
+
+        static int compare(String token, int doc, Posting other) {
+            int result = token.compareTo(other.token);
+            return result != 0 ? result : Integer.compare(doc, other.doc);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package br.edu.biometric.service;
+
+import br.edu.biometric.model.AccessLog;
+import br.edu.biometric.model.User;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Lote de eventos entregue aos assinantes do barramento: logs novos, variação dos
+ * contadores e usuários incluídos, atualizados ou excluídos desde o lote anterior
+ */
+public class AccessEventBatch {
+
+    private final List<AccessLog> newLogs;
+    private final boolean logsTruncated;
+    private final boolean logsCleared;
+    private final long successfulDelta;
+    private final long failedDelta;
+    private final List<User> upsertedUsers;
+    private final List<String> deletedUserIds;
+
+    AccessEventBatch(List<AccessLog> newLogs, boolean logsTruncated, boolean logsCleared,
+                     long successfulDelta, long failedDelta,
+                     List<User> upsertedUsers, List<String> deletedUserIds) {
+        this.newLogs = Collections.unmodifiableList(newLogs);
+        this.logsTruncated = logsTruncated;
+        this.logsCleared = logsCleared;
+        this.successfulDelta = successfulDelta;
+        this.failedDelta = failedDelta;
+        this.upsertedUsers = Collections.unmodifiableList(upsertedUsers);
+        this.deletedUserIds = Collections.unmodifiableList(deletedUserIds);
+    }
+
+    /**
+     * @return Logs gravados desde o lote anterior, do mais antigo para o mais recente
+     *         (após uma limpeza, apenas os gravados depois dela)
+     */
+    public List<AccessLog> getNewLogs() {
+        return newLogs;
+    }
+
+    /**
+     * @return true se chegaram mais logs do que cabem em um lote; nesse caso
+     *         {@link #getNewLogs()} traz só os mais recentes e o assinante deve recarregar
+     */
+    public boolean isLogsTruncated() {
+        return logsTruncated;
+    }
+
+    /**
+     * @return true se os logs foram apagados durante o intervalo do lote
+     */
+    public boolean isLogsCleared() {
+        return logsCleared;
+    }
+
+    /**
+     * @return Acessos concedidos no lote (os contadores são exatos mesmo com truncamento)
+     */
+    public long getSuccessfulDelta() {
+        return successfulDelta;
+    }
+
+    /**
+     * @return Acessos negados ou com erro no lote
+     */
+    public long getFailedDelta() {
+        return failedDelta;
+    }
+
+    public long getLogDelta() {
+        return successfulDelta + failedDelta;
+    }
+
+    /**
+     * @return Estado final de cada usuário incluído ou atualizado (um por usuário)
+     */
+    public List<User> getUpsertedUsers() {
+        return upsertedUsers;
+    }
+
+    /**
+     * @return IDs dos usuários excluídos
+     */
+    public List<String> getDeletedUserIds() {
+        return deletedUserIds;
+    }
+
+    public boolean hasLogChanges() {
+        return logsCleared || successfulDelta + failedDelta > 0;
+    }
+
+    public boolean hasUserChanges() {
+        return !upsertedUsers.isEmpty() || !deletedUserIds.isEmpty();
+    }
+}
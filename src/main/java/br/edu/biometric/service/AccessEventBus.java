@@ -0,0 +1,150 @@
+package br.edu.biometric.service;
+
+import br.edu.biometric.model.AccessLog;
+import br.edu.biometric.model.AccessStatus;
+import br.edu.biometric.model.User;
+import br.edu.biometric.repository.UserChangeEvent;
+import br.edu.biometric.util.AppConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Barramento de eventos de acesso e de usuários para atualização incremental das telas
+ *
+ * Os eventos publicados são acumulados por uma pequena janela e entregues em lote,
+ * em uma thread própria: vários logs viram uma lista e um par de contadores, e
+ * alterações sucessivas do mesmo usuário são reduzidas ao estado final. Assim, mesmo
+ * com centenas de acessos por segundo, cada assinante recebe poucos lotes por segundo.
+ */
+public class AccessEventBus {
+
+    private static final Logger logger = LoggerFactory.getLogger(AccessEventBus.class);
+
+    public static final String WINDOW_KEY = "biometric.events.window.ms";
+    private static final int DEFAULT_WINDOW_MS = 200;
+    private static final int MAX_LOGS_PER_BATCH = 1000;
+
+    private final List<AccessEventListener> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService dispatcher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "access-event-bus");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final long windowMillis;
+
+    // Estado pendente, protegido por this
+    private final ArrayDeque<AccessLog> pendingLogs = new ArrayDeque<>();
+    private boolean logsTruncated;
+    private boolean logsCleared;
+    private long successfulDelta;
+    private long failedDelta;
+    private final Map<String, User> pendingUpserts = new LinkedHashMap<>();
+    private final Set<String> pendingDeletes = new LinkedHashSet<>();
+    private boolean scheduled;
+
+    public AccessEventBus() {
+        this(AppConfig.getInt(WINDOW_KEY, DEFAULT_WINDOW_MS));
+    }
+
+    /**
+     * @param windowMillis Intervalo de acumulação dos eventos antes da entrega
+     */
+    public AccessEventBus(long windowMillis) {
+        this.windowMillis = Math.max(0, windowMillis);
+    }
+
+    public void subscribe(AccessEventListener listener) {
+        listeners.add(listener);
+    }
+
+    public void unsubscribe(AccessEventListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Publica um log recém-gravado
+     */
+    public synchronized void publishLog(AccessLog log) {
+        if (pendingLogs.size() == MAX_LOGS_PER_BATCH) {
+            pendingLogs.removeFirst();
+            logsTruncated = true;
+        }
+        pendingLogs.addLast(log);
+        if (log.getStatus() == AccessStatus.SUCCESS) {
+            successfulDelta++;
+        } else {
+            failedDelta++;
+        }
+        schedule();
+    }
+
+    /**
+     * Publica a limpeza dos logs; logs pendentes anteriores a ela são descartados
+     */
+    public synchronized void publishLogsCleared() {
+        pendingLogs.clear();
+        logsTruncated = false;
+        logsCleared = true;
+        successfulDelta = 0;
+        failedDelta = 0;
+        schedule();
+    }
+
+    /**
+     * Publica alterações do repositório de usuários
+     */
+    public synchronized void publishUsers(UserChangeEvent event) {
+        for (User user : event.getUpserted()) {
+            pendingDeletes.remove(user.getId());
+            pendingUpserts.put(user.getId(), user);
+        }
+        for (String id : event.getDeletedIds()) {
+            pendingUpserts.remove(id);
+            pendingDeletes.add(id);
+        }
+        schedule();
+    }
+
+    private void schedule() {
+        if (!scheduled) {
+            scheduled = true;
+            dispatcher.schedule(this::dispatch, windowMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void dispatch() {
+        AccessEventBatch batch;
+        synchronized (this) {
+            scheduled = false;
+            batch = new AccessEventBatch(new ArrayList<>(pendingLogs), logsTruncated, logsCleared,
+                    successfulDelta, failedDelta,
+                    new ArrayList<>(pendingUpserts.values()), new ArrayList<>(pendingDeletes));
+            pendingLogs.clear();
+            logsTruncated = false;
+            logsCleared = false;
+            successfulDelta = 0;
+            failedDelta = 0;
+            pendingUpserts.clear();
+            pendingDeletes.clear();
+        }
+        for (AccessEventListener listener : listeners) {
+            try {
+                listener.onEvents(batch);
+            } catch (RuntimeException e) {
+                logger.error("Erro ao entregar eventos a um assinante", e);
+            }
+        }
+    }
+}
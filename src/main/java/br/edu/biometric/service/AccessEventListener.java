@@ -0,0 +1,15 @@
+package br.edu.biometric.service;
+
+/**
+ * Assinante dos eventos publicados em {@link AccessEventBus}
+ */
+public interface AccessEventListener {
+
+    /**
+     * Chamado na thread do barramento com os eventos acumulados desde o último lote.
+     * Assinantes de interface gráfica devem repassar o lote para a thread do Swing.
+     *
+     * @param batch Eventos consolidados
+     */
+    void onEvents(AccessEventBatch batch);
+}
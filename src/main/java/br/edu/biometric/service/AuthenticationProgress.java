@@ -0,0 +1,42 @@
+package br.edu.biometric.service;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Acompanhamento de uma autenticação em andamento: recebe a etapa atual e
+ * informa se a operação foi cancelada
+ */
+public interface AuthenticationProgress {
+
+    /**
+     * Sem acompanhamento e sem cancelamento
+     */
+    AuthenticationProgress NONE = new AuthenticationProgress() {
+        @Override
+        public void stageChanged(AuthenticationStage stage) {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    /**
+     * Chamado na thread da autenticação ao iniciar cada etapa
+     */
+    void stageChanged(AuthenticationStage stage);
+
+    boolean isCancelled();
+
+    /**
+     * Interrompe a autenticação entre etapas se ela foi cancelada
+     *
+     * @throws CancellationException se {@link #isCancelled()}
+     */
+    default void checkCancelled() {
+        if (isCancelled()) {
+            throw new CancellationException("Autenticação cancelada");
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package br.edu.biometric.service;
 
+import br.edu.biometric.model.AccessLevel;
+import br.edu.biometric.model.AccessMessage;
 import br.edu.biometric.model.AccessStatus;
 import br.edu.biometric.model.User;
 
@@ -11,7 +13,9 @@ public class AuthenticationResult {
     private boolean success;
     private User user;
     private AccessStatus status;
-    private String message;
+    private AccessMessage messageCode;
+    private AccessLevel requiredLevel;
+    private String message; // Montada sob demanda a partir de messageCode
     private double confidence; // 0-100%
 
     public AuthenticationResult() {
@@ -43,7 +47,28 @@ public class AuthenticationResult {
         this.status = status;
     }
 
+    public AccessMessage getMessageCode() {
+        return messageCode;
+    }
+
+    public void setMessageCode(AccessMessage messageCode) {
+        this.messageCode = messageCode;
+        this.message = null;
+    }
+
+    public AccessLevel getRequiredLevel() {
+        return requiredLevel;
+    }
+
+    public void setRequiredLevel(AccessLevel requiredLevel) {
+        this.requiredLevel = requiredLevel;
+    }
+
     public String getMessage() {
+        if (message == null && messageCode != null) {
+            message = messageCode.render(user != null ? user.getName() : null, confidence,
+                    requiredLevel, user != null ? user.getAccessLevel() : null);
+        }
         return message;
     }
 
@@ -2,14 +2,24 @@ package br.edu.biometric.service;
 
 import br.edu.biometric.model.*;
 import br.edu.biometric.repository.AccessLogRepository;
+import br.edu.biometric.repository.AccessRollupStore;
+import br.edu.biometric.repository.BiometricImageStore;
+import br.edu.biometric.repository.RepositoryFactory;
+import br.edu.biometric.repository.RollupAccessLogRepository;
 import br.edu.biometric.repository.UserRepository;
+import org.opencv.core.Mat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Serviço responsável pela autenticação biométrica e controle de acesso
@@ -20,24 +30,71 @@ public class AuthenticationService {
 
     private final UserRepository userRepository;
     private final AccessLogRepository logRepository;
+    private final AccessRollupStore rollups;
+    private final AccessEventBus eventBus;
+    private final BiometricImageStore imageStore;
     private final FacialRecognitionService faceRecognitionService;
-    private final Map<String, Integer> userLabelMap; // Mapeia userId para label numérico
-    private int nextLabel = 1;
-    private boolean modelTrained = false;
+    private final TemplateSelector templateSelector = new TemplateSelector();
+    private final List<TrainingListener> trainingListeners = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean retrainPending = new AtomicBoolean();
+    private final ExecutorService trainer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "model-trainer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile FaceGallery gallery = FaceGallery.EMPTY;
 
     public AuthenticationService() {
+        this(RepositoryFactory.createUserRepository(), RepositoryFactory.createAccessLogRepository());
+    }
+
+    public AuthenticationService(UserRepository userRepository, AccessLogRepository logRepository) {
         logger.info("Inicializando AuthenticationService...");
-        this.userRepository = new UserRepository();
-        this.logRepository = new AccessLogRepository();
+        this.userRepository = userRepository;
+        RollupAccessLogRepository rollupRepository = new RollupAccessLogRepository(logRepository);
+        this.logRepository = rollupRepository;
+        this.rollups = rollupRepository.getRollups();
+        this.eventBus = new AccessEventBus();
+        this.imageStore = new BiometricImageStore(userRepository);
         this.faceRecognitionService = new FacialRecognitionService();
-        this.userLabelMap = new HashMap<>();
         trainModel();
+
+        // Alterações de usuários retreinam em segundo plano, agrupando as que chegam juntas
+        userRepository.addChangeListener(event -> requestRetrain());
+        userRepository.addChangeListener(eventBus::publishUsers);
     }
 
     /**
-     * Treina o modelo de reconhecimento facial com todos os usuários cadastrados
+     * Treina o modelo de reconhecimento facial com todos os usuários cadastrados,
+     * na thread chamadora
      */
     public void trainModel() {
+        rebuildGallery();
+    }
+
+    /**
+     * Agenda o retreinamento em segundo plano. Pedidos feitos antes de a atualização
+     * começar são atendidos por ela; as autenticações continuam usando a galeria
+     * anterior até a nova ficar pronta.
+     */
+    public void requestRetrain() {
+        if (retrainPending.compareAndSet(false, true)) {
+            trainer.execute(() -> {
+                retrainPending.set(false);
+                try {
+                    rebuildGallery();
+                } catch (RuntimeException e) {
+                    logger.error("Erro ao retreinar o modelo", e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Monta a nova galeria reaproveitando os modelos dos usuários cujas imagens não
+     * mudaram; só as imagens novas ou alteradas são processadas
+     */
+    private synchronized void rebuildGallery() {
         logger.info("Iniciando treinamento do modelo...");
 
         if (!faceRecognitionService.isInitialized()) {
@@ -45,29 +102,78 @@ public class AuthenticationService {
             return;
         }
 
+        FaceGallery previous = gallery;
         List<User> users = userRepository.findAllActive();
         if (users.isEmpty()) {
             logger.warn("Nenhum usuário cadastrado para treinamento.");
-            return;
         }
 
-        userLabelMap.clear();
-        nextLabel = 1;
-
+        // Os modelos reaproveitados são copiados, já quantizados, para o novo conjunto
+        TemplateArena previousTemplates = previous.getTemplates();
+        TemplateArena.Builder templates = new TemplateArena.Builder(previousTemplates.getBits(),
+                previousTemplates.size());
+        List<User> changed = new ArrayList<>();
+        Map<String, FaceGallery.Entry> entries = new LinkedHashMap<>();
         for (User user : users) {
-            if (!user.getBiometricDataPaths().isEmpty()) {
-                int label = nextLabel++;
-                userLabelMap.put(user.getId(), label);
-                logger.debug("Treinando usuário {} ({}): label {}, {} imagens",
-                        user.getName(), user.getId(), label, user.getBiometricDataPaths().size());
-                faceRecognitionService.trainRecognizer(user.getBiometricDataPaths(), label);
-            } else {
+            FaceGallery.Entry entry = previous.getEntry(user.getId());
+            if (user.getBiometricDataPaths().isEmpty()) {
                 logger.warn("Usuário {} ({}) não possui imagens biométricas", user.getName(), user.getId());
+            } else if (entry != null && entry.imagePaths.equals(user.getBiometricDataPaths())) {
+                entries.put(user.getId(), entry.movedTo(templates.size()));
+                templates.copy(previousTemplates, entry.offset, entry.count);
+            } else {
+                changed.add(user);
             }
         }
 
-        modelTrained = !userLabelMap.isEmpty();
-        logger.info("Modelo treinado com sucesso! Total de usuários: {}", userLabelMap.size());
+        int nextLabel = previous.getNextLabel();
+        int processed = 0;
+        notifyTrainingProgress(processed, changed.size());
+        for (User user : changed) {
+            FaceGallery.Entry entry = previous.getEntry(user.getId());
+            int label = entry != null ? entry.label : nextLabel++;
+            logger.debug("Treinando usuário {} ({}): label {}, {} imagens",
+                    user.getName(), user.getId(), label, user.getBiometricDataPaths().size());
+            List<Mat> histograms = faceRecognitionService.computeTemplates(user.getBiometricDataPaths());
+            int offset = templates.size();
+            if (histograms.isEmpty()) {
+                logger.error("Nenhuma face foi extraída para treinamento do usuário {} ({})!",
+                        user.getName(), user.getId());
+            } else {
+                List<Mat> selected = templateSelector.select(histograms);
+                selected.forEach(templates::add);
+                logger.debug("Usuário {}: {} faces extraídas, {} modelos mantidos",
+                        user.getId(), histograms.size(), selected.size());
+                // A galeria guarda só os modelos quantizados
+                selected.forEach(Mat::release);
+                histograms.forEach(Mat::release);
+            }
+            entries.put(user.getId(), new FaceGallery.Entry(user.getId(), label,
+                    user.getBiometricDataPaths(), offset, templates.size() - offset));
+            notifyTrainingProgress(++processed, changed.size());
+        }
+
+        FaceGallery rebuilt = new FaceGallery(entries, templates.build(), nextLabel);
+        gallery = rebuilt;
+        logger.info("Modelo treinado com sucesso! Total de usuários: {} ({} reprocessados), {} modelos, {} KB",
+                rebuilt.size(), changed.size(), rebuilt.getTemplateCount(), rebuilt.getMemoryBytes() / 1024);
+        for (TrainingListener listener : trainingListeners) {
+            listener.onTrainingFinished(rebuilt.size());
+        }
+    }
+
+    private void notifyTrainingProgress(int processed, int total) {
+        for (TrainingListener listener : trainingListeners) {
+            listener.onTrainingProgress(processed, total);
+        }
+    }
+
+    public void addTrainingListener(TrainingListener listener) {
+        trainingListeners.add(listener);
+    }
+
+    public void removeTrainingListener(TrainingListener listener) {
+        trainingListeners.remove(listener);
     }
 
     /**
@@ -78,39 +184,56 @@ public class AuthenticationService {
      * @return Resultado da autenticação
      */
     public AuthenticationResult authenticate(String imagePath, AccessLevel requiredLevel) {
+        return authenticate(imagePath, requiredLevel, AuthenticationProgress.NONE);
+    }
+
+    /**
+     * Autentica um usuário informando cada etapa; pode ser chamado fora da thread do Swing.
+     * Uma autenticação cancelada antes do registro não gera log de acesso.
+     * 
+     * @param imagePath     Caminho da imagem para autenticação
+     * @param requiredLevel Nível de acesso requerido
+     * @param progress      Acompanhamento e cancelamento da operação
+     * @return Resultado da autenticação
+     * @throws java.util.concurrent.CancellationException se a operação for cancelada
+     */
+    public AuthenticationResult authenticate(String imagePath, AccessLevel requiredLevel,
+                                             AuthenticationProgress progress) {
         logger.info("Iniciando autenticação: imagem={}, nivelRequerido={}", imagePath, requiredLevel);
         AuthenticationResult result = new AuthenticationResult();
+        result.setRequiredLevel(requiredLevel);
 
         // Verifica se o serviço está disponível
         if (!faceRecognitionService.isInitialized()) {
             logger.error("Falha na autenticação: serviço de reconhecimento facial não inicializado");
             result.setSuccess(false);
             result.setStatus(AccessStatus.ERROR);
-            result.setMessage("Serviço de reconhecimento facial não disponível.");
-            logAccess(null, requiredLevel, result);
+            result.setMessageCode(AccessMessage.SERVICE_UNAVAILABLE);
+            logAccess(null, requiredLevel, result, progress);
             return result;
         }
 
-        // Verifica se há modelo treinado
-        if (!modelTrained || userLabelMap.isEmpty()) {
+        // Verifica se há modelo treinado; a mesma galeria é usada até o fim da autenticação
+        FaceGallery currentGallery = gallery;
+        if (currentGallery.isEmpty()) {
             logger.error("Falha na autenticação: modelo não treinado ou sem usuários");
             result.setSuccess(false);
             result.setStatus(AccessStatus.ERROR);
-            result.setMessage("Nenhum usuário cadastrado no sistema.");
-            logAccess(null, requiredLevel, result);
+            result.setMessageCode(AccessMessage.NO_USERS);
+            logAccess(null, requiredLevel, result, progress);
             return result;
         }
 
         // Tenta reconhecer a face
-        int[] recognition = faceRecognitionService.recognizeFace(imagePath);
+        int[] recognition = faceRecognitionService.recognizeFace(imagePath, currentGallery, progress);
 
         if (recognition == null) {
             logger.warn("Nenhuma face reconhecida na imagem: {}", imagePath);
             result.setSuccess(false);
             result.setStatus(AccessStatus.DENIED_NOT_RECOGNIZED);
-            result.setMessage("Nenhuma face detectada ou reconhecida.");
+            result.setMessageCode(AccessMessage.NO_FACE);
             result.setConfidence(0.0);
-            logAccess(null, requiredLevel, result);
+            logAccess(null, requiredLevel, result, progress);
             return result;
         }
 
@@ -128,19 +251,21 @@ public class AuthenticationService {
                     faceRecognitionService.getConfidenceThreshold());
             result.setSuccess(false);
             result.setStatus(AccessStatus.DENIED_LOW_CONFIDENCE);
-            result.setMessage(String.format("Confiança insuficiente: %.2f%%", confidencePercentage));
-            logAccess(null, requiredLevel, result);
+            result.setMessageCode(AccessMessage.LOW_CONFIDENCE);
+            logAccess(null, requiredLevel, result, progress);
             return result;
         }
 
         // Busca o usuário pelo label
-        String userId = getUserIdByLabel(label);
+        progress.checkCancelled();
+        progress.stageChanged(AuthenticationStage.VERIFYING);
+        String userId = currentGallery.getUserId(label);
         if (userId == null) {
             logger.error("Label {} não mapeado para nenhum usuário", label);
             result.setSuccess(false);
             result.setStatus(AccessStatus.DENIED_NOT_RECOGNIZED);
-            result.setMessage("Usuário não encontrado.");
-            logAccess(null, requiredLevel, result);
+            result.setMessageCode(AccessMessage.USER_NOT_FOUND);
+            logAccess(null, requiredLevel, result, progress);
             return result;
         }
 
@@ -149,8 +274,8 @@ public class AuthenticationService {
             logger.error("Usuário com ID {} não encontrado no repositório", userId);
             result.setSuccess(false);
             result.setStatus(AccessStatus.DENIED_NOT_RECOGNIZED);
-            result.setMessage("Usuário não encontrado.");
-            logAccess(null, requiredLevel, result);
+            result.setMessageCode(AccessMessage.USER_NOT_FOUND);
+            logAccess(null, requiredLevel, result, progress);
             return result;
         }
 
@@ -163,8 +288,8 @@ public class AuthenticationService {
             logger.warn("Usuário {} está inativo", user.getName());
             result.setSuccess(false);
             result.setStatus(AccessStatus.DENIED_INACTIVE_USER);
-            result.setMessage("Usuário inativo.");
-            logAccess(user, requiredLevel, result);
+            result.setMessageCode(AccessMessage.INACTIVE_USER);
+            logAccess(user, requiredLevel, result, progress);
             return result;
         }
 
@@ -174,10 +299,8 @@ public class AuthenticationService {
                     user.getAccessLevel(), requiredLevel);
             result.setSuccess(false);
             result.setStatus(AccessStatus.DENIED_INSUFFICIENT_PERMISSION);
-            result.setMessage(String.format("Acesso negado. Requer: %s, Possui: %s",
-                    requiredLevel.getDisplayName(),
-                    user.getAccessLevel().getDisplayName()));
-            logAccess(user, requiredLevel, result);
+            result.setMessageCode(AccessMessage.INSUFFICIENT_PERMISSION);
+            logAccess(user, requiredLevel, result, progress);
             return result;
         }
 
@@ -185,9 +308,8 @@ public class AuthenticationService {
         logger.info("Autenticação bem-sucedida: usuário={}, confiança={}%", user.getName(), confidencePercentage);
         result.setSuccess(true);
         result.setStatus(AccessStatus.SUCCESS);
-        result.setMessage(String.format("Bem-vindo(a), %s! Confiança: %.2f%%",
-                user.getName(), confidencePercentage));
-        logAccess(user, requiredLevel, result);
+        result.setMessageCode(AccessMessage.WELCOME);
+        logAccess(user, requiredLevel, result, progress);
 
         return result;
     }
@@ -195,24 +317,27 @@ public class AuthenticationService {
     /**
      * Registra o log de acesso
      */
-    private void logAccess(User user, AccessLevel requiredLevel, AuthenticationResult result) {
-        AccessLog log = new AccessLog();
-        log.setUserId(user != null ? user.getId() : null);
-        log.setUserName(user != null ? user.getName() : "Desconhecido");
-        log.setAccessLevel(requiredLevel);
-        log.setStatus(result.getStatus());
-        log.setDetails(result.getMessage());
-        log.setConfidenceScore(result.getConfidence());
+    private void logAccess(User user, AccessLevel requiredLevel, AuthenticationResult result,
+                           AuthenticationProgress progress) {
+        progress.checkCancelled();
+        progress.stageChanged(AuthenticationStage.LOGGING);
+
+        AccessLog log = new AccessLog(user != null ? user.getId() : null,
+                user != null ? user.getName() : "Desconhecido", requiredLevel, result.getStatus(), null,
+                result.getConfidence());
+        log.setMessageCode(result.getMessageCode());
+        log.setUserAccessLevel(user != null ? user.getAccessLevel() : null);
 
         logRepository.save(log);
+        eventBus.publishLog(log);
     }
 
-    private String getUserIdByLabel(int label) {
-        return userLabelMap.entrySet().stream()
-                .filter(entry -> entry.getValue() == label)
-                .map(Map.Entry::getKey)
-                .findFirst()
-                .orElse(null);
+    /**
+     * Apaga todos os logs de acesso e avisa os assinantes do barramento
+     */
+    public void clearLogs() {
+        logRepository.clear();
+        eventBus.publishLogsCleared();
     }
 
     public UserRepository getUserRepository() {
@@ -223,7 +348,19 @@ public class AuthenticationService {
         return logRepository;
     }
 
+    public AccessRollupStore getRollups() {
+        return rollups;
+    }
+
+    public AccessEventBus getEventBus() {
+        return eventBus;
+    }
+
+    public BiometricImageStore getImageStore() {
+        return imageStore;
+    }
+
     public boolean isModelTrained() {
-        return modelTrained;
+        return !gallery.isEmpty();
     }
 }
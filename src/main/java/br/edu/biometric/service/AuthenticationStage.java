@@ -0,0 +1,28 @@
+package br.edu.biometric.service;
+
+/**
+ * Etapas de uma autenticação, na ordem em que são executadas
+ */
+public enum AuthenticationStage {
+
+    DECODING("Decodificando imagem..."),
+    DETECTING("Detectando face..."),
+    MATCHING("Comparando com usuários cadastrados..."),
+    VERIFYING("Verificando permissões..."),
+    LOGGING("Registrando acesso...");
+
+    private final String description;
+
+    AuthenticationStage(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+}
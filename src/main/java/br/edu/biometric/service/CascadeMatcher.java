@@ -0,0 +1,186 @@
+package br.edu.biometric.service;
+
+import br.edu.biometric.util.AppConfig;
+
+/**
+ * Busca 1:N em duas etapas
+ *
+ * A primeira etapa calcula, pela assinatura grosseira (16 posições), um limite
+ * inferior da distância de cada modelo da galeria à consulta
+ * ({@link TemplateArena#lowerBound}) e guarda os biometric.match.candidates de menor
+ * limite; só eles passam pela comparação completa de 256 posições. Se o melhor deles
+ * ainda estiver acima do limite de algum modelo descartado, os modelos cujo limite
+ * não o ultrapassa também são comparados por completo. Como nenhum modelo descartado
+ * pode estar mais perto do que o seu limite, o vencedor é sempre o mesmo da
+ * comparação com todos os modelos; o número de candidatos só muda quanto trabalho
+ * completo é feito. Como a maior parte dos modelos de uma galeria grande é claramente
+ * de outras pessoas, quase todo esse trabalho deixa de ser feito.
+ */
+final class CascadeMatcher {
+
+    static final String CANDIDATES_KEY = "biometric.match.candidates";
+    private static final int DEFAULT_CANDIDATES = 64;
+    private static final int CANCEL_CHECK_INTERVAL = 4096; // Modelos entre verificações
+    // Folga para o arredondamento do limite inferior em ponto flutuante
+    private static final double BOUND_SLACK = 1e-9;
+
+    private final int candidates;
+
+    CascadeMatcher() {
+        this(AppConfig.getInt(CANDIDATES_KEY, DEFAULT_CANDIDATES));
+    }
+
+    /**
+     * @param candidates Modelos comparados por completo antes de verificar os limites
+     */
+    CascadeMatcher(int candidates) {
+        this.candidates = Math.max(1, candidates);
+    }
+
+    /**
+     * Procura o modelo mais próximo da consulta; em caso de empate, o de menor posição,
+     * como na comparação com todos os modelos
+     *
+     * @param gallery  Galeria comparada
+     * @param probe    Modelo da face consultada (índice 0)
+     * @param progress Verificado periodicamente para permitir o cancelamento
+     * @return Melhor resultado ou null se a galeria não tiver modelos
+     */
+    Match match(FaceGallery gallery, TemplateArena probe, AuthenticationProgress progress) {
+        if (gallery.getTemplateCount() <= candidates) {
+            return fullScan(gallery, probe, progress);
+        }
+
+        // Primeira etapa: os modelos de menor limite inferior
+        TemplateArena templates = gallery.getTemplates();
+        CandidateHeap heap = new CandidateHeap(candidates);
+        for (int t = 0; t < templates.size(); t++) {
+            if (t % CANCEL_CHECK_INTERVAL == 0) {
+                progress.checkCancelled();
+            }
+            heap.offer(templates.lowerBound(t, probe, 0), t);
+        }
+
+        // Segunda etapa: distância completa dos sobreviventes
+        int best = -1;
+        double bestDistance = Double.MAX_VALUE;
+        for (int c = 0; c < heap.size; c++) {
+            int t = heap.templates[c];
+            double distance = templates.distance(t, probe, 0);
+            if (best < 0 || distance < bestDistance || (distance == bestDistance && t < best)) {
+                best = t;
+                bestDistance = distance;
+            }
+        }
+
+        // Os descartados têm limite de pelo menos heap.distances[0]; se algum ainda
+        // pode empatar ou vencer, todos os que podem são comparados por completo
+        if (heap.distances[0] - BOUND_SLACK <= bestDistance) {
+            for (int t = 0; t < templates.size(); t++) {
+                if (t % CANCEL_CHECK_INTERVAL == 0) {
+                    progress.checkCancelled();
+                }
+                if (templates.lowerBound(t, probe, 0) - BOUND_SLACK > bestDistance) {
+                    continue;
+                }
+                double distance = templates.distance(t, probe, 0);
+                if (distance < bestDistance || (distance == bestDistance && t < best)) {
+                    best = t;
+                    bestDistance = distance;
+                }
+            }
+        }
+        return new Match(gallery.getLabel(best), bestDistance);
+    }
+
+    private static Match fullScan(FaceGallery gallery, TemplateArena probe, AuthenticationProgress progress) {
+        TemplateArena templates = gallery.getTemplates();
+        int best = -1;
+        double bestDistance = Double.MAX_VALUE;
+        for (int t = 0; t < templates.size(); t++) {
+            if (t % CANCEL_CHECK_INTERVAL == 0) {
+                progress.checkCancelled();
+            }
+            double distance = templates.distance(t, probe, 0);
+            if (best < 0 || distance < bestDistance) {
+                best = t;
+                bestDistance = distance;
+            }
+        }
+        return best < 0 ? null : new Match(gallery.getLabel(best), bestDistance);
+    }
+
+    /**
+     * Modelo vencedor: label do usuário e distância completa
+     */
+    static final class Match {
+        final int label;
+        final double distance;
+
+        Match(int label, double distance) {
+            this.label = label;
+            this.distance = distance;
+        }
+    }
+
+    /**
+     * Os N candidatos de menor limite, em um heap de máximo com arrays primitivos:
+     * a raiz é o pior candidato mantido, substituído quando aparece um melhor
+     */
+    private static final class CandidateHeap {
+        final double[] distances;
+        final int[] templates;
+        int size;
+
+        CandidateHeap(int capacity) {
+            distances = new double[capacity];
+            templates = new int[capacity];
+        }
+
+        void offer(double distance, int template) {
+            if (size < distances.length) {
+                int child = size++;
+                set(child, distance, template);
+                while (child > 0) {
+                    int parent = (child - 1) / 2;
+                    if (distances[parent] >= distances[child]) {
+                        break;
+                    }
+                    swap(parent, child);
+                    child = parent;
+                }
+            } else if (distance < distances[0]) {
+                set(0, distance, template);
+                int parent = 0;
+                while (true) {
+                    int largest = parent;
+                    int left = 2 * parent + 1;
+                    int right = left + 1;
+                    if (left < size && distances[left] > distances[largest]) {
+                        largest = left;
+                    }
+                    if (right < size && distances[right] > distances[largest]) {
+                        largest = right;
+                    }
+                    if (largest == parent) {
+                        break;
+                    }
+                    swap(parent, largest);
+                    parent = largest;
+                }
+            }
+        }
+
+        private void set(int position, double distance, int template) {
+            distances[position] = distance;
+            templates[position] = template;
+        }
+
+        private void swap(int a, int b) {
+            double distance = distances[a];
+            int template = templates[a];
+            set(a, distances[b], templates[b]);
+            set(b, distance, template);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package br.edu.biometric.service;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Galeria de modelos faciais usada no reconhecimento: histogramas quantizados de
+ * cada usuário ativo e o label numérico associado a ele
+ *
+ * Os modelos de todos os usuários ficam em um único {@link TemplateArena}; cada
+ * entrada guarda apenas a posição e a quantidade dos seus, e um array paralelo dá o
+ * label de cada modelo, para que a busca percorra o conjunto sem passar pelas entradas.
+ *
+ * Uma galeria nunca é alterada depois de criada. O retreinamento monta uma nova
+ * galeria, reaproveitando as entradas dos usuários cujas imagens não mudaram, e a
+ * troca de uma pela outra é atômica: autenticações em andamento terminam com a galeria
+ * que estavam usando.
+ */
+public final class FaceGallery {
+
+    static final FaceGallery EMPTY = new FaceGallery(Collections.emptyMap(),
+            new TemplateArena.Builder(TemplateArena.CONFIGURED_BITS, 0).build(), 1);
+
+    private final Map<String, Entry> entriesByUser;
+    private final Map<Integer, Entry> entriesByLabel;
+    private final TemplateArena templates;
+    private final int[] labels; // Label do usuário de cada modelo
+    private final int nextLabel;
+    private final int trainedCount;
+
+    /**
+     * @param entriesByUser Entradas cujos intervalos apontam para posições de templates
+     * @param templates     Modelos de todas as entradas
+     */
+    FaceGallery(Map<String, Entry> entriesByUser, TemplateArena templates, int nextLabel) {
+        this.entriesByUser = Collections.unmodifiableMap(new LinkedHashMap<>(entriesByUser));
+        this.templates = templates;
+        Map<Integer, Entry> byLabel = new HashMap<>();
+        int[] labelsByTemplate = new int[templates.size()];
+        int trained = 0;
+        for (Entry entry : entriesByUser.values()) {
+            byLabel.put(entry.label, entry);
+            if (entry.count > 0) {
+                trained++;
+                Arrays.fill(labelsByTemplate, entry.offset, entry.offset + entry.count, entry.label);
+            }
+        }
+        this.entriesByLabel = byLabel;
+        this.labels = labelsByTemplate;
+        this.nextLabel = nextLabel;
+        this.trainedCount = trained;
+    }
+
+    Entry getEntry(String userId) {
+        return entriesByUser.get(userId);
+    }
+
+    /**
+     * @return Modelos de todos os usuários; os de uma entrada ficam em
+     *         [offset, offset + count)
+     */
+    TemplateArena getTemplates() {
+        return templates;
+    }
+
+    /**
+     * @return Label do usuário dono do modelo
+     */
+    int getLabel(int template) {
+        return labels[template];
+    }
+
+    /**
+     * Próximo label livre; labels não são reutilizados, então um label removido
+     * nunca passa a apontar para outro usuário
+     */
+    int getNextLabel() {
+        return nextLabel;
+    }
+
+    /**
+     * @return ID do usuário do label ou null se não estiver na galeria
+     */
+    public String getUserId(int label) {
+        Entry entry = entriesByLabel.get(label);
+        return entry != null ? entry.userId : null;
+    }
+
+    /**
+     * @return Usuários com ao menos uma face extraída
+     */
+    public int size() {
+        return trainedCount;
+    }
+
+    /**
+     * @return Total de modelos comparados em cada reconhecimento
+     */
+    public int getTemplateCount() {
+        return templates.size();
+    }
+
+    /**
+     * @return Bytes ocupados pelos modelos e pelos labels de cada modelo (sem as entradas)
+     */
+    public long getMemoryBytes() {
+        return templates.getMemoryBytes() + 16 + (long) labels.length * Integer.BYTES;
+    }
+
+    public boolean isEmpty() {
+        return trainedCount == 0;
+    }
+
+    /**
+     * Modelos de um usuário, válidos enquanto as imagens cadastradas forem as mesmas.
+     * Fica sem modelos (count 0) se nenhuma face foi detectada, para que as mesmas
+     * imagens não sejam processadas de novo a cada retreinamento.
+     */
+    static final class Entry {
+
+        final String userId;
+        final int label;
+        final List<String> imagePaths;
+        final int offset; // Primeiro modelo no conjunto da galeria
+        final int count;
+
+        Entry(String userId, int label, List<String> imagePaths, int offset, int count) {
+            this.userId = userId;
+            this.label = label;
+            this.imagePaths = List.copyOf(imagePaths);
+            this.offset = offset;
+            this.count = count;
+        }
+
+        /**
+         * A mesma entrada em outra posição do conjunto
+         */
+        Entry movedTo(int newOffset) {
+            return new Entry(userId, label, imagePaths, newOffset, count);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package br.edu.biometric.service;
 
+import br.edu.biometric.util.ImageProbe;
+import br.edu.biometric.util.ImageUtils;
 import org.opencv.core.*;
 import org.opencv.imgcodecs.Imgcodecs;
 import org.opencv.imgproc.Imgproc;
@@ -10,9 +12,8 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CancellationException;
 
 /**
  * Serviço responsável pelo reconhecimento facial usando OpenCV
@@ -23,10 +24,10 @@ public class FacialRecognitionService {
     private static final String HAAR_CASCADE_PATH = "haarcascades/haarcascade_frontalface_default.xml";
     private static final int CONFIDENCE_THRESHOLD = 70; // Quanto menor, mais confiança
     private static final Size FACE_SIZE = new Size(200, 200);
+    private static final int MAX_DECODE_SIDE = 1600; // Maior lado mínimo ao decodificar reduzido
 
+    private final CascadeMatcher matcher = new CascadeMatcher();
     private CascadeClassifier faceDetector;
-    // Armazena os histogramas das faces treinadas por label
-    private Map<Integer, List<Mat>> trainedFaces = new HashMap<>();
     private boolean initialized;
 
     public FacialRecognitionService() {
@@ -116,33 +117,65 @@ public class FacialRecognitionService {
      * @return Lista de retângulos representando faces detectadas
      */
     public List<Rect> detectFaces(String imagePath) {
-        List<Rect> faces = new ArrayList<>();
-
         if (!initialized) {
             logger.error("Serviço de reconhecimento facial não inicializado!");
-            return faces;
+            return new ArrayList<>();
         }
 
-        try {
-            Mat image = Imgcodecs.imread(imagePath);
-            if (image.empty()) {
-                logger.error("Não foi possível carregar a imagem: {}", imagePath);
-                return faces;
+        Mat image = decodeGray(imagePath);
+        if (image.empty()) {
+            logger.error("Não foi possível carregar a imagem: {}", imagePath);
+            return new ArrayList<>();
+        }
+        List<Rect> faces = detectFaces(image);
+        logger.info("Detectadas {} face(s) na imagem: {}", faces.size(), imagePath);
+        return faces;
+    }
+
+    /**
+     * Decodifica a imagem diretamente em tons de cinza. Fotos muito grandes são
+     * decodificadas já reduzidas (1/2, 1/4 ou 1/8, o que no JPEG evita expandir todos
+     * os pixels), mantendo o maior lado com pelo menos MAX_DECODE_SIDE pixels: bem
+     * acima do necessário para detectar e recortar a face em FACE_SIZE.
+     */
+    private Mat decodeGray(String imagePath) {
+        int flags = Imgcodecs.IMREAD_GRAYSCALE;
+        ImageProbe probe = ImageUtils.probeImage(imagePath);
+        if (probe.isValid()) {
+            int longSide = Math.max(probe.getWidth(), probe.getHeight());
+            if (longSide >= 8 * MAX_DECODE_SIDE) {
+                flags = Imgcodecs.IMREAD_REDUCED_GRAYSCALE_8;
+            } else if (longSide >= 4 * MAX_DECODE_SIDE) {
+                flags = Imgcodecs.IMREAD_REDUCED_GRAYSCALE_4;
+            } else if (longSide >= 2 * MAX_DECODE_SIDE) {
+                flags = Imgcodecs.IMREAD_REDUCED_GRAYSCALE_2;
             }
+        }
+        return Imgcodecs.imread(imagePath, flags);
+    }
 
-            Mat grayImage = new Mat();
-            Imgproc.cvtColor(image, grayImage, Imgproc.COLOR_BGR2GRAY);
-            Imgproc.equalizeHist(grayImage, grayImage);
+    /**
+     * Detecta faces em uma imagem já decodificada em tons de cinza
+     */
+    private List<Rect> detectFaces(Mat grayImage) {
+        List<Rect> faces = new ArrayList<>();
+
+        try {
+            // A equalização é feita em uma cópia; o recorte da face usa a imagem original
+            Mat equalized = new Mat();
+            Imgproc.equalizeHist(grayImage, equalized);
 
             MatOfRect faceDetections = new MatOfRect();
             // Parâmetros baseados no projeto de referência
-            faceDetector.detectMultiScale(grayImage, faceDetections, 1.3, 3, 0, new Size(30, 30), new Size());
+            // O classificador guarda buffers internos: autenticação e retreinamento
+            // rodam em threads diferentes e não podem usá-lo ao mesmo tempo
+            synchronized (faceDetector) {
+                faceDetector.detectMultiScale(equalized, faceDetections, 1.3, 3, 0, new Size(30, 30), new Size());
+            }
 
             for (Rect rect : faceDetections.toArray()) {
                 faces.add(rect);
             }
-
-            logger.info("Detectadas {} face(s) na imagem: {}", faces.size(), imagePath);
         } catch (Exception e) {
             logger.error("Erro ao detectar faces: {}", e.getMessage(), e);
         }
@@ -157,15 +190,27 @@ public class FacialRecognitionService {
      * @return Mat contendo a face normalizada ou null se não encontrar face
      */
     public Mat extractFace(String imagePath) {
-        List<Rect> faces = detectFaces(imagePath);
+        if (!initialized) {
+            logger.error("Serviço de reconhecimento facial não inicializado!");
+            return null;
+        }
 
-        if (faces.isEmpty()) {
+        // A imagem é decodificada uma única vez para detecção e recorte
+        Mat image = decodeGray(imagePath);
+        if (image.empty()) {
+            logger.error("Não foi possível carregar a imagem: {}", imagePath);
             return null;
         }
+        return extractFace(image);
+    }
+
+    private Mat extractFace(Mat grayImage) {
+        List<Rect> faces = detectFaces(grayImage);
+        logger.debug("Detectadas {} face(s)", faces.size());
 
-        Mat image = Imgcodecs.imread(imagePath);
-        Mat grayImage = new Mat();
-        Imgproc.cvtColor(image, grayImage, Imgproc.COLOR_BGR2GRAY);
+        if (faces.isEmpty()) {
+            return null;
+        }
 
         // Pega a maior face detectada
         Rect faceRect = faces.get(0);
@@ -179,85 +224,106 @@ public class FacialRecognitionService {
     }
 
     /**
-     * Treina o reconhecedor com as imagens de um usuário
-     * Armazena as faces normalizadas para comparação posterior
+     * Extrai os modelos (histogramas normalizados das faces) das imagens de um usuário.
+     * Os modelos de imagens do armazenamento são lidos do {@link TemplateCache} ou
+     * gravados nele.
+     * 
+     * @param imagePaths Imagens biométricas do usuário
+     * @return Um histograma por imagem com face detectada; vazio se nenhuma face for
+     *         encontrada. Os Mats devem ser liberados pelo chamador.
      */
-    public void trainRecognizer(List<String> imagePaths, int label) {
+    public List<Mat> computeTemplates(List<String> imagePaths) {
+        List<Mat> histograms = new ArrayList<>();
         if (!initialized) {
             logger.error("Serviço não inicializado!");
-            return;
+            return histograms;
         }
 
-        List<Mat> faces = new ArrayList<>();
-
         for (String path : imagePaths) {
             try {
+                float[] cached = TemplateCache.read(path);
+                if (cached != null) {
+                    if (cached.length > 0) {
+                        Mat hist = new Mat(cached.length, 1, CvType.CV_32F);
+                        hist.put(0, 0, cached);
+                        histograms.add(hist);
+                    } else {
+                        logger.warn("Nenhuma face detectada em: {}", path);
+                    }
+                    continue;
+                }
                 Mat face = extractFace(path);
                 if (face != null) {
-                    faces.add(face);
+                    Mat hist = normalize(calculateHistogram(face));
+                    histograms.add(hist);
+                    // Só o histograma é mantido; a face libera a memória nativa já
+                    face.release();
+                    float[] values = new float[(int) hist.total()];
+                    hist.get(0, 0, values);
+                    TemplateCache.write(path, values);
                     logger.debug("Face extraída com sucesso de: {}", path);
                 } else {
+                    if (new File(path).isFile()) {
+                        TemplateCache.write(path, new float[0]);
+                    }
                     logger.warn("Nenhuma face detectada em: {}", path);
                 }
             } catch (Exception e) {
                 logger.error("Erro ao extrair face de {}: {}", path, e.getMessage());
             }
         }
-
-        if (faces.isEmpty()) {
-            logger.error("Nenhuma face foi extraída para treinamento do label {}!", label);
-            return;
-        }
-
-        trainedFaces.put(label, faces);
-        logger.info("Reconhecedor treinado para label {} com {} face(s)", label, faces.size());
+        return histograms;
     }
 
     /**
-     * Reconhece uma face na imagem usando comparação de histogramas
+     * Reconhece uma face comparando-a com a galeria, informando cada etapa
+     * (decodificação, detecção e comparação)
      * 
      * @param imagePath Caminho da imagem a ser reconhecida
+     * @param gallery   Galeria usada em toda a comparação
+     * @param progress  Acompanhamento da operação, verificado entre as etapas
      * @return Array com [label, confidence] ou null se não reconhecer
+     * @throws CancellationException se a operação for cancelada
      */
-    public int[] recognizeFace(String imagePath) {
-        if (!initialized || trainedFaces.isEmpty()) {
-            logger.warn("Reconhecimento impossível: initialized={}, trainedFaces={}", initialized, trainedFaces.size());
+    public int[] recognizeFace(String imagePath, FaceGallery gallery, AuthenticationProgress progress) {
+        if (!initialized || gallery.isEmpty()) {
+            logger.warn("Reconhecimento impossível: initialized={}, usuários na galeria={}", initialized, gallery.size());
             return null;
         }
 
         try {
-            Mat face = extractFace(imagePath);
+            progress.stageChanged(AuthenticationStage.DECODING);
+            Mat image = decodeGray(imagePath);
+            if (image.empty()) {
+                logger.error("Não foi possível carregar a imagem: {}", imagePath);
+                return null;
+            }
+
+            progress.checkCancelled();
+            progress.stageChanged(AuthenticationStage.DETECTING);
+            Mat face = extractFace(image);
             if (face == null) {
                 logger.warn("Nenhuma face detectada em: {}", imagePath);
                 return null;
             }
 
-            // Calcula histograma da face a ser reconhecida
-            Mat hist = calculateHistogram(face);
-
-            int bestLabel = -1;
-            double bestDistance = Double.MAX_VALUE;
+            progress.checkCancelled();
+            progress.stageChanged(AuthenticationStage.MATCHING);
 
-            // Compara com todas as faces treinadas
-            for (Map.Entry<Integer, List<Mat>> entry : trainedFaces.entrySet()) {
-                int label = entry.getKey();
-                List<Mat> trainedFacesForLabel = entry.getValue();
+            // Calcula e quantiza o histograma da face a ser reconhecida; os da galeria já estão prontos
+            Mat hist = normalize(calculateHistogram(face));
+            face.release();
+            TemplateArena probe = TemplateArena.quantize(java.util.Collections.singletonList(hist));
+            hist.release();
 
-                for (Mat trainedFace : trainedFacesForLabel) {
-                    Mat trainedHist = calculateHistogram(trainedFace);
-                    double distance = compareHistograms(hist, trainedHist);
-
-                    if (distance < bestDistance) {
-                        bestDistance = distance;
-                        bestLabel = label;
-                    }
-                }
-            }
-
-            if (bestLabel == -1) {
+            // Compara primeiro as assinaturas grosseiras e só os candidatos por completo
+            CascadeMatcher.Match match = matcher.match(gallery, probe, progress);
+            if (match == null) {
                 logger.warn("Nenhum match encontrado para a imagem: {}", imagePath);
                 return null;
             }
+            int bestLabel = match.label;
+            double bestDistance = match.distance;
 
             // Converte distância para confiança (quanto menor a distância, maior a
             // confiança)
@@ -267,6 +333,8 @@ public class FacialRecognitionService {
                     bestDistance);
             return new int[] { bestLabel, confidence };
 
+        } catch (CancellationException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Erro ao reconhecer face: {}", e.getMessage(), e);
             return null;
@@ -294,14 +362,19 @@ public class FacialRecognitionService {
     }
 
     /**
-     * Compara dois histogramas usando correlação
-     * Retorna um valor de distância (quanto menor, mais similar)
+     * Normaliza o histograma para o intervalo 0-1, no próprio Mat
      */
-    private double compareHistograms(Mat hist1, Mat hist2) {
-        // Normaliza os histogramas
-        Core.normalize(hist1, hist1, 0, 1, Core.NORM_MINMAX, -1, new Mat());
-        Core.normalize(hist2, hist2, 0, 1, Core.NORM_MINMAX, -1, new Mat());
+    private Mat normalize(Mat hist) {
+        Core.normalize(hist, hist, 0, 1, Core.NORM_MINMAX, -1, new Mat());
+        return hist;
+    }
 
+    /**
+     * Compara dois histogramas já normalizados usando correlação
+     * Retorna um valor de distância (quanto menor, mais similar).
+     * Não altera os histogramas, que podem ser compartilhados entre threads.
+     */
+    public static double distance(Mat hist1, Mat hist2) {
         // Usa correlação (quanto maior, mais similar)
         // Invertemos para ter distância (quanto menor, mais similar)
         double correlation = Imgproc.compareHist(hist1, hist2, Imgproc.HISTCMP_CORREL);
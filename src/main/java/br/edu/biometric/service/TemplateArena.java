@@ -0,0 +1,297 @@
+package br.edu.biometric.service;
+
+import br.edu.biometric.util.AppConfig;
+import org.opencv.core.Mat;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Modelos faciais quantizados, guardados em um único array primitivo
+ *
+ * Cada modelo é um histograma normalizado (0 a 1) de 256 posições, quantizado em 8 bits
+ * (0 a 255, em um byte[]) ou em 16 bits (0 a 32767, em um short[]): 256 ou 512 bytes
+ * por modelo, contra 1 KB de floats em memória nativa mais o Mat que os envolve. A
+ * soma e a norma de cada modelo são calculadas na criação, e a correlação entre dois
+ * modelos usa apenas aritmética inteira sobre os bins; o resultado é o mesmo de
+ * Imgproc.compareHist com HISTCMP_CORREL, a menos do erro de quantização.
+ *
+ * Cada modelo tem também uma assinatura grosseira de 16 posições (a soma de cada
+ * grupo de 16 bins), comparada com 1/16 do custo. A partir dela, {@link #lowerBound}
+ * calcula um limite inferior exato da distância completa: a distância de correlação
+ * é metade do quadrado da distância euclidiana entre os histogramas centrados e
+ * normalizados, e substituir cada bin pela média do seu grupo é uma projeção
+ * ortogonal, que não aumenta distâncias. A busca 1:N usa o limite para descartar
+ * modelos sem risco de perder o mais próximo.
+ *
+ * A galeria inteira fica em um único conjunto, montado com {@link Builder}: cada
+ * usuário ocupa um intervalo contíguo de posições, sem objetos nem arrays próprios.
+ *
+ * A quantidade de bits é configurável em biometric.templates.bits (8 ou 16); modelos
+ * com quantidades diferentes não podem ser comparados entre si.
+ */
+public final class TemplateArena {
+
+    public static final String BITS_KEY = "biometric.templates.bits";
+    public static final int BINS = 256;
+    public static final int COARSE_BINS = 16;
+    private static final int FOLD = BINS / COARSE_BINS;
+    private static final int ARRAY_HEADER_BYTES = 16;
+    static final int CONFIGURED_BITS = AppConfig.getInt(BITS_KEY, 8) == 16 ? 16 : 8;
+
+    private final int bits;
+    private final int count;
+    private final byte[] bytes;   // 8 bits, lidos sem sinal
+    private final short[] shorts; // 16 bits
+    private final int[] sums;
+    private final double[] norms; // Raiz da soma dos quadrados centrados na média
+    private final int[] coarse;   // Somas de cada grupo de FOLD bins
+    private final double[] coarseEnergy; // Quadrado da norma da projeção, dividido pelo da norma
+
+    private TemplateArena(int bits, int count, byte[] bytes, short[] shorts, int[] sums, double[] norms,
+                          int[] coarse, double[] coarseEnergy) {
+        this.bits = bits;
+        this.count = count;
+        this.bytes = bytes;
+        this.shorts = shorts;
+        this.sums = sums;
+        this.norms = norms;
+        this.coarse = coarse;
+        this.coarseEnergy = coarseEnergy;
+    }
+
+    /**
+     * Quantiza histogramas com a quantidade de bits configurada
+     */
+    static TemplateArena quantize(List<Mat> histograms) {
+        return quantize(histograms, CONFIGURED_BITS);
+    }
+
+    /**
+     * @param histograms Histogramas de 256 posições normalizados para 0-1
+     * @param bits       8 ou 16
+     * @return Modelos na mesma ordem dos histogramas
+     */
+    public static TemplateArena quantize(List<Mat> histograms, int bits) {
+        Builder builder = new Builder(bits, histograms.size());
+        for (Mat histogram : histograms) {
+            builder.add(histogram);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Distância entre um modelo deste conjunto e um de outro (1 - correlação; quanto
+     * menor, mais similar), na mesma escala de {@link FacialRecognitionService#distance}
+     *
+     * @throws IllegalArgumentException se os conjuntos tiverem quantizações diferentes
+     */
+    public double distance(int index, TemplateArena other, int otherIndex) {
+        if (other.bits != bits) {
+            throw new IllegalArgumentException("Modelos com quantizações diferentes: " + bits + " e " + other.bits);
+        }
+        int a = index * BINS;
+        int b = otherIndex * BINS;
+        long dot;
+        if (bytes != null) {
+            // 255 * 255 * 256 cabe em um int
+            int sum = 0;
+            byte[] otherBytes = other.bytes;
+            for (int i = 0; i < BINS; i++) {
+                sum += (bytes[a + i] & 0xFF) * (otherBytes[b + i] & 0xFF);
+            }
+            dot = sum;
+        } else {
+            dot = 0;
+            short[] otherShorts = other.shorts;
+            for (int i = 0; i < BINS; i++) {
+                dot += shorts[a + i] * otherShorts[b + i];
+            }
+        }
+        return correlationDistance(dot, sums[index], other.sums[otherIndex], BINS,
+                norms[index] * other.norms[otherIndex]);
+    }
+
+    /**
+     * Limite inferior de {@link #distance} calculado pelas assinaturas grosseiras: a
+     * distância entre as projeções dos dois modelos na média de cada grupo de bins.
+     * Nunca é maior que a distância completa, a menos do arredondamento de ponto
+     * flutuante.
+     */
+    public double lowerBound(int index, TemplateArena other, int otherIndex) {
+        double denominator = norms[index] * other.norms[otherIndex];
+        if (denominator <= 0) {
+            return 0; // A distância completa de um histograma constante é 0
+        }
+        int a = index * COARSE_BINS;
+        int b = otherIndex * COARSE_BINS;
+        int[] otherCoarse = other.coarse;
+        long dot = 0;
+        for (int i = 0; i < COARSE_BINS; i++) {
+            dot += (long) coarse[a + i] * otherCoarse[b + i];
+        }
+        double covariance = dot - (double) sums[index] * other.sums[otherIndex] / COARSE_BINS;
+        double squared = coarseEnergy[index] + other.coarseEnergy[otherIndex] - 2 * covariance / denominator;
+        return Math.max(0, squared / (2 * FOLD));
+    }
+
+    private static double correlationDistance(long dot, int sumA, int sumB, int bins, double denominator) {
+        double covariance = dot - (double) sumA * sumB / bins;
+        // Histograma constante: compareHist considera a correlação igual a 1
+        double correlation = denominator > 0 ? covariance / denominator : 1.0;
+        return 1.0 - correlation;
+    }
+
+    /**
+     * @return Quantidade de modelos
+     */
+    public int size() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public int getBits() {
+        return bits;
+    }
+
+    /**
+     * @return Bytes ocupados pelos arrays do conjunto, incluindo seus cabeçalhos
+     */
+    public long getMemoryBytes() {
+        long bins = bytes != null ? bytes.length : (long) shorts.length * Short.BYTES;
+        return 6L * ARRAY_HEADER_BYTES + bins
+                + (long) (sums.length + coarse.length) * Integer.BYTES
+                + (long) (norms.length + coarseEnergy.length) * Double.BYTES;
+    }
+
+    /**
+     * Monta um conjunto acrescentando modelos ao fim; os arrays crescem por duplicação
+     * e são cortados no tamanho exato em {@link #build()}
+     */
+    static final class Builder {
+
+        private final int bits;
+        private final int scale;
+        private final float[] values = new float[BINS];
+        private int count;
+        private byte[] bytes;
+        private short[] shorts;
+        private int[] sums;
+        private double[] norms;
+        private int[] coarse;
+        private double[] coarseEnergy;
+
+        /**
+         * @param bits     8 ou 16
+         * @param capacity Quantidade de modelos esperada
+         */
+        Builder(int bits, int capacity) {
+            if (bits != 8 && bits != 16) {
+                throw new IllegalArgumentException("Quantização deve ter 8 ou 16 bits: " + bits);
+            }
+            this.bits = bits;
+            this.scale = bits == 8 ? 255 : Short.MAX_VALUE;
+            int initial = Math.max(1, capacity);
+            bytes = bits == 8 ? new byte[initial * BINS] : null;
+            shorts = bits == 16 ? new short[initial * BINS] : null;
+            sums = new int[initial];
+            norms = new double[initial];
+            coarse = new int[initial * COARSE_BINS];
+            coarseEnergy = new double[initial];
+        }
+
+        /**
+         * @return Quantidade de modelos já acrescentados (posição do próximo)
+         */
+        int size() {
+            return count;
+        }
+
+        /**
+         * Quantiza e acrescenta um histograma de 256 posições normalizado para 0-1
+         */
+        void add(Mat histogram) {
+            if (histogram.total() != BINS) {
+                throw new IllegalArgumentException("Histograma deve ter " + BINS + " posições: " + histogram.total());
+            }
+            ensureCapacity(count + 1);
+            histogram.get(0, 0, values);
+            int t = count++;
+            int sum = 0;
+            long squares = 0;
+            long coarseSquares = 0;
+            int group = 0;
+            for (int i = 0; i < BINS; i++) {
+                int q = Math.round(Math.max(0f, Math.min(1f, values[i])) * scale);
+                if (bytes != null) {
+                    bytes[t * BINS + i] = (byte) q;
+                } else {
+                    shorts[t * BINS + i] = (short) q;
+                }
+                sum += q;
+                squares += (long) q * q;
+                group += q;
+                if ((i + 1) % FOLD == 0) {
+                    coarse[t * COARSE_BINS + i / FOLD] = group;
+                    coarseSquares += (long) group * group;
+                    group = 0;
+                }
+            }
+            sums[t] = sum;
+            double centered = Math.max(0, squares - (double) sum * sum / BINS);
+            norms[t] = Math.sqrt(centered);
+            double coarseCentered = Math.max(0, coarseSquares - (double) sum * sum / COARSE_BINS);
+            coarseEnergy[t] = centered > 0 ? coarseCentered / centered : 0;
+        }
+
+        /**
+         * Acrescenta modelos já quantizados de outro conjunto, sem recalculá-los
+         *
+         * @throws IllegalArgumentException se os conjuntos tiverem quantizações diferentes
+         */
+        void copy(TemplateArena source, int from, int length) {
+            if (source.bits != bits) {
+                throw new IllegalArgumentException("Modelos com quantizações diferentes: " + bits + " e " + source.bits);
+            }
+            ensureCapacity(count + length);
+            if (bytes != null) {
+                System.arraycopy(source.bytes, from * BINS, bytes, count * BINS, length * BINS);
+            } else {
+                System.arraycopy(source.shorts, from * BINS, shorts, count * BINS, length * BINS);
+            }
+            System.arraycopy(source.sums, from, sums, count, length);
+            System.arraycopy(source.norms, from, norms, count, length);
+            System.arraycopy(source.coarse, from * COARSE_BINS, coarse, count * COARSE_BINS, length * COARSE_BINS);
+            System.arraycopy(source.coarseEnergy, from, coarseEnergy, count, length);
+            count += length;
+        }
+
+        TemplateArena build() {
+            return new TemplateArena(bits, count,
+                    bytes != null ? Arrays.copyOf(bytes, count * BINS) : null,
+                    shorts != null ? Arrays.copyOf(shorts, count * BINS) : null,
+                    Arrays.copyOf(sums, count), Arrays.copyOf(norms, count),
+                    Arrays.copyOf(coarse, count * COARSE_BINS), Arrays.copyOf(coarseEnergy, count));
+        }
+
+        private void ensureCapacity(int required) {
+            int capacity = sums.length;
+            if (required <= capacity) {
+                return;
+            }
+            int grown = Math.max(required, capacity * 2);
+            if (bytes != null) {
+                bytes = Arrays.copyOf(bytes, grown * BINS);
+            } else {
+                shorts = Arrays.copyOf(shorts, grown * BINS);
+            }
+            sums = Arrays.copyOf(sums, grown);
+            norms = Arrays.copyOf(norms, grown);
+            coarse = Arrays.copyOf(coarse, grown * COARSE_BINS);
+            coarseEnergy = Arrays.copyOf(coarseEnergy, grown);
+        }
+    }
+}
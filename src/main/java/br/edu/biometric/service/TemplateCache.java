@@ -0,0 +1,106 @@
+package br.edu.biometric.service;
+
+import br.edu.biometric.repository.BiometricImageStore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Pattern;
+
+/**
+ * Cache em disco dos modelos (histogramas) das imagens do {@link BiometricImageStore}
+ *
+ * O nome de cada imagem do armazenamento é o hash do conteúdo, então o modelo dela
+ * nunca muda: ele é gravado ao lado da imagem (abcd....jpeg.template) como os valores
+ * do histograma em float, ou vazio quando a imagem não tem face detectável. A
+ * importação em lote extrai os modelos ao validar os cadastros, e o treinamento os lê
+ * em vez de decodificar a imagem e detectar a face de novo. O armazenamento apaga o
+ * modelo junto com a imagem.
+ *
+ * Imagens fora do armazenamento (cadastros antigos) não são guardadas: o conteúdo
+ * pode mudar sob o mesmo caminho.
+ */
+public final class TemplateCache {
+
+    private static final Pattern STORED_NAME = Pattern.compile("[0-9a-f]{64}\\.[a-z]+");
+
+    private TemplateCache() {
+    }
+
+    /**
+     * @return Valores do histograma; vazio se a imagem não tem face; null se o modelo
+     *         não está no cache
+     */
+    static float[] read(String imagePath) {
+        Path file = templatePath(imagePath);
+        if (file == null) {
+            return null;
+        }
+        try {
+            ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+            float[] values = new float[bytes.remaining() / Float.BYTES];
+            bytes.asFloatBuffer().get(values);
+            return values;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            System.err.println("Erro ao ler modelo em cache: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Grava o modelo da imagem; falhas apenas deixam de guardá-lo
+     *
+     * @param values Valores do histograma, ou vazio se a imagem não tem face
+     */
+    static void write(String imagePath, float[] values) {
+        Path file = templatePath(imagePath);
+        if (file == null) {
+            return;
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(values.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.asFloatBuffer().put(values);
+        try {
+            // Temporário exclusivo: a mesma imagem pode ser processada por duas threads
+            Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try {
+                // Forçado antes da renomeação: um arquivo vazio significa "sem face"
+                try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                    while (bytes.hasRemaining()) {
+                        out.write(bytes);
+                    }
+                    out.force(true);
+                }
+                try {
+                    Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            System.err.println("Erro ao gravar modelo em cache: " + e.getMessage());
+        }
+    }
+
+    private static Path templatePath(String imagePath) {
+        if (imagePath == null) {
+            return null;
+        }
+        Path image = Paths.get(imagePath);
+        if (image.getFileName() == null || !STORED_NAME.matcher(image.getFileName().toString()).matches()) {
+            return null;
+        }
+        return image.resolveSibling(image.getFileName() + BiometricImageStore.TEMPLATE_SUFFIX);
+    }
+}
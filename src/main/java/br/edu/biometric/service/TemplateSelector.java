@@ -0,0 +1,144 @@
+package br.edu.biometric.service;
+
+import br.edu.biometric.util.AppConfig;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Seleção dos modelos de um usuário no treinamento
+ *
+ * Fotos quase iguais (sequências, reenvios) geram histogramas quase iguais, que só
+ * aumentam a memória e o tempo de comparação. Os modelos a menos de
+ * biometric.templates.duplicate.distance de um já mantido são descartados; dos
+ * restantes, ficam no máximo biometric.templates.max, escolhidos a partir do mais
+ * central e depois sempre o mais distante dos já escolhidos, o que cobre as variações
+ * de pose e iluminação do usuário. Com biometric.templates.centroid=true, a média de
+ * todos os modelos é incluída como um modelo extra. Assim o tamanho da galeria
+ * acompanha a quantidade de usuários, e não a de fotos cadastradas.
+ */
+final class TemplateSelector {
+
+    static final String MAX_KEY = "biometric.templates.max";
+    static final String DUPLICATE_KEY = "biometric.templates.duplicate.distance";
+    static final String CENTROID_KEY = "biometric.templates.centroid";
+    private static final int DEFAULT_MAX = 5;
+    private static final double DEFAULT_DUPLICATE_DISTANCE = 0.01;
+
+    private final int maxTemplates;
+    private final double duplicateDistance;
+    private final boolean includeCentroid;
+
+    TemplateSelector() {
+        this(AppConfig.getInt(MAX_KEY, DEFAULT_MAX),
+                AppConfig.getDouble(DUPLICATE_KEY, DEFAULT_DUPLICATE_DISTANCE),
+                AppConfig.getBoolean(CENTROID_KEY, false));
+    }
+
+    /**
+     * @param maxTemplates      Modelos mantidos por usuário, sem contar o centroide
+     * @param duplicateDistance Distância abaixo da qual dois modelos são considerados iguais
+     * @param includeCentroid   Se a média dos modelos é mantida como modelo extra
+     */
+    TemplateSelector(int maxTemplates, double duplicateDistance, boolean includeCentroid) {
+        this.maxTemplates = Math.max(1, maxTemplates);
+        this.duplicateDistance = Math.max(0, duplicateDistance);
+        this.includeCentroid = includeCentroid;
+    }
+
+    /**
+     * @param histograms Histogramas normalizados das faces do usuário, na ordem das imagens
+     * @return Modelos a manter na galeria, na ordem das imagens (centroide por último)
+     */
+    List<Mat> select(List<Mat> histograms) {
+        int count = histograms.size();
+        if (count <= 1) {
+            return histograms;
+        }
+
+        double[][] distances = new double[count][count];
+        for (int i = 0; i < count; i++) {
+            for (int j = i + 1; j < count; j++) {
+                distances[i][j] = distances[j][i] =
+                        FacialRecognitionService.distance(histograms.get(i), histograms.get(j));
+            }
+        }
+
+        // Descarta quase duplicatas, mantendo a primeira ocorrência
+        List<Integer> distinct = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            boolean duplicate = false;
+            for (int kept : distinct) {
+                if (distances[i][kept] < duplicateDistance) {
+                    duplicate = true;
+                    break;
+                }
+            }
+            if (!duplicate) {
+                distinct.add(i);
+            }
+        }
+
+        boolean[] selected = new boolean[count];
+        if (distinct.size() <= maxTemplates) {
+            for (int i : distinct) {
+                selected[i] = true;
+            }
+        } else {
+            // Começa pelo modelo mais central (menor soma de distâncias aos demais)
+            int first = distinct.get(0);
+            double bestSum = Double.MAX_VALUE;
+            for (int i : distinct) {
+                double sum = 0;
+                for (int j : distinct) {
+                    sum += distances[i][j];
+                }
+                if (sum < bestSum) {
+                    bestSum = sum;
+                    first = i;
+                }
+            }
+            selected[first] = true;
+            double[] nearest = new double[count];
+            for (int i : distinct) {
+                nearest[i] = distances[i][first];
+            }
+            for (int chosen = 1; chosen < maxTemplates; chosen++) {
+                int farthest = -1;
+                for (int i : distinct) {
+                    if (!selected[i] && (farthest < 0 || nearest[i] > nearest[farthest])) {
+                        farthest = i;
+                    }
+                }
+                selected[farthest] = true;
+                for (int i : distinct) {
+                    nearest[i] = Math.min(nearest[i], distances[i][farthest]);
+                }
+            }
+        }
+
+        List<Mat> templates = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (selected[i]) {
+                templates.add(histograms.get(i));
+            }
+        }
+        if (includeCentroid) {
+            templates.add(centroid(histograms));
+        }
+        return templates;
+    }
+
+    private static Mat centroid(List<Mat> histograms) {
+        Mat sum = Mat.zeros(histograms.get(0).size(), CvType.CV_32F);
+        for (Mat histogram : histograms) {
+            Core.add(sum, histogram, sum);
+        }
+        // A normalização para 0-1 dispensa dividir pela quantidade
+        Core.normalize(sum, sum, 0, 1, Core.NORM_MINMAX, -1, new Mat());
+        return sum;
+    }
+}
@@ -0,0 +1,22 @@
+package br.edu.biometric.service;
+
+/**
+ * Observador do retreinamento do modelo em segundo plano
+ */
+public interface TrainingListener {
+
+    /**
+     * Chamado na thread de treinamento a cada usuário processado
+     *
+     * @param processed Usuários cujas imagens já foram processadas
+     * @param total     Usuários com imagens novas ou alteradas nesta atualização
+     */
+    void onTrainingProgress(int processed, int total);
+
+    /**
+     * Chamado na thread de treinamento quando a nova galeria passa a ser usada
+     *
+     * @param trainedUsers Usuários na galeria
+     */
+    void onTrainingFinished(int trainedUsers);
+}
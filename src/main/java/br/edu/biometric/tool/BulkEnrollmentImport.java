@@ -0,0 +1,647 @@
+package br.edu.biometric.tool;
+
+import br.edu.biometric.model.AccessLevel;
+import br.edu.biometric.model.User;
+import br.edu.biometric.repository.BiometricImageStore;
+import br.edu.biometric.repository.RepositoryFactory;
+import br.edu.biometric.repository.UserRepository;
+import br.edu.biometric.service.FacialRecognitionService;
+import br.edu.biometric.util.AppConfig;
+import br.edu.biometric.util.FileUtils;
+import br.edu.biometric.util.ImageUtils;
+import br.edu.biometric.util.Validator;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.opencv.core.Mat;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Cadastro de usuários em lote, sem interface gráfica
+ *
+ * Fontes aceitas:
+ * - manifesto CSV com cabeçalho name,cpf,email,level,images (imagens separadas por ';');
+ * - manifesto JSON: array de objetos {"name", "cpf", "email", "level", "images": [...]};
+ * - diretório com um subdiretório por pessoa, contendo person.properties (name, cpf,
+ *   email, level) e as imagens da pessoa.
+ * Caminhos relativos de imagens são resolvidos a partir do diretório do manifesto. O
+ * nível é o número (1 a 3) ou o nome (NIVEL_1...).
+ *
+ * Os registros são processados em lotes, na ordem da fonte. Em cada lote, a validação
+ * dos dados e das imagens, a cópia das imagens para o {@link BiometricImageStore} e a
+ * extração das faces (cada thread com seu próprio detector) rodam em paralelo; os
+ * modelos extraídos ficam no TemplateCache para o treinamento, e os aprovados são
+ * gravados com um único saveAll. Registros sem face detectável são rejeitados (e as
+ * cópias apagadas), e CPFs ou emails já cadastrados são ignorados, o que torna
+ * seguro repetir um lote.
+ *
+ * Depois de cada lote, a quantidade de registros concluídos é gravada em
+ * &lt;fonte&gt;.checkpoint; uma importação interrompida continua do primeiro registro
+ * não concluído. Os motivos das rejeições são anotados em &lt;fonte&gt;.rejected.csv.
+ * Para importar de novo desde o início, apague o checkpoint.
+ *
+ * Uso: java -cp biometric-auth-system.jar br.edu.biometric.tool.BulkEnrollmentImport
+ * &lt;manifesto.csv|manifesto.json|diretório&gt; [--threads N] [--batch N]
+ */
+public class BulkEnrollmentImport {
+
+    private static final int DEFAULT_BATCH = 500;
+    private static final String PERSON_FILE = "person.properties";
+    private static final Set<String> IMAGE_EXTENSIONS = new HashSet<>(Arrays.asList("jpg", "jpeg", "png", "bmp"));
+
+    private final Path source;
+    private final Path checkpointFile;
+    private final Path rejectedFile;
+    private final int threads;
+    private final int batchSize;
+    private final UserRepository userRepository;
+    private final BiometricImageStore imageStore;
+    private final ExecutorService workers;
+    // Detector por thread: o classificador do OpenCV não pode ser compartilhado
+    private final ThreadLocal<FacialRecognitionService> recognizers =
+            ThreadLocal.withInitial(FacialRecognitionService::new);
+
+    private long imported;
+    private long rejected;
+    private long skipped;
+
+    public BulkEnrollmentImport(Path source, int threads, int batchSize, UserRepository userRepository) {
+        this.source = source;
+        this.checkpointFile = Paths.get(source + ".checkpoint");
+        this.rejectedFile = Paths.get(source + ".rejected.csv");
+        this.threads = threads;
+        this.batchSize = batchSize;
+        this.userRepository = userRepository;
+        this.imageStore = new BiometricImageStore(userRepository);
+        this.workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "bulk-import");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Uso: BulkEnrollmentImport <manifesto.csv|manifesto.json|diretório> "
+                    + "[--threads N] [--batch N]");
+            System.exit(1);
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        int batch = DEFAULT_BATCH;
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            if (args[i].equals("--threads")) {
+                threads = Math.max(1, Integer.parseInt(args[i + 1]));
+            } else if (args[i].equals("--batch")) {
+                batch = Math.max(1, Integer.parseInt(args[i + 1]));
+            }
+        }
+
+        Path source = Paths.get(args[0]).toAbsolutePath().normalize();
+        int status = 0;
+        try {
+            new BulkEnrollmentImport(source, threads, batch, RepositoryFactory.createUserRepository()).run();
+        } catch (IOException | RuntimeException e) {
+            // Falhas do repositório (ex.: lote não gravado) também encerram com erro
+            System.err.println("Erro na importação: " + e.getMessage());
+            status = 1;
+        } finally {
+            if (AppConfig.getString(RepositoryFactory.STORAGE_KEY, "json").equalsIgnoreCase("sql")) {
+                RepositoryFactory.getDatabase().close();
+            }
+        }
+        // Só depois de fechar o banco: System.exit não executa blocos finally pendentes
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    /**
+     * Importa os registros ainda não concluídos da fonte
+     */
+    public void run() throws IOException {
+        long done = readCheckpoint();
+        if (done > 0) {
+            System.out.println("Retomando após " + done + " registros já processados ("
+                    + imported + " importados, " + rejected + " rejeitados, " + skipped + " já cadastrados)");
+        }
+        System.out.println("Importando " + source + " com " + threads + " threads, lotes de " + batchSize);
+
+        long started = System.nanoTime();
+        long processedNow = 0;
+        try (RecordReader reader = openReader()) {
+            for (long i = 0; i < done; i++) {
+                if (reader.next() == null) {
+                    break;
+                }
+            }
+            List<Record> batch = new ArrayList<>(batchSize);
+            Record record;
+            while ((record = reader.next()) != null) {
+                batch.add(record);
+                if (batch.size() == batchSize) {
+                    done = processBatch(batch, done);
+                    processedNow += batch.size();
+                    batch.clear();
+                    printProgress(done, processedNow, started);
+                }
+            }
+            if (!batch.isEmpty()) {
+                done = processBatch(batch, done);
+                processedNow += batch.size();
+                printProgress(done, processedNow, started);
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        System.out.println("Importação concluída: " + imported + " importados, " + rejected
+                + " rejeitados, " + skipped + " já cadastrados");
+        if (rejected > 0) {
+            System.out.println("Motivos das rejeições em " + rejectedFile);
+        }
+    }
+
+    private long processBatch(List<Record> batch, long done) throws IOException {
+        // Os campos são validados por coluna antes do trabalho com as imagens
+        List<String> names = new ArrayList<>(batch.size());
+        List<String> cpfs = new ArrayList<>(batch.size());
+        List<String> emails = new ArrayList<>(batch.size());
+        for (Record record : batch) {
+            names.add(record.name);
+            cpfs.add(record.cpf);
+            emails.add(record.email);
+        }
+        BitSet invalidNames = Validator.findInvalidNames(names);
+        BitSet invalidCpfs = Validator.findInvalidCpfs(cpfs);
+        BitSet invalidEmails = Validator.findInvalidEmails(emails);
+
+        // Repetições (registros de um lote interrompido ou duplicados na própria fonte) são
+        // descartadas antes de prepare(), que copia as imagens para o armazenamento; a
+        // primeira ocorrência de um CPF ou email no lote é a que segue adiante
+        Set<String> batchKeys = new HashSet<>();
+        boolean[] duplicates = new boolean[batch.size()];
+        List<Future<Outcome>> futures = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Record record = batch.get(i);
+            if (invalidNames.get(i)) {
+                futures.add(CompletableFuture.completedFuture(Outcome.reject("nome inválido")));
+            } else if (invalidCpfs.get(i)) {
+                futures.add(CompletableFuture.completedFuture(Outcome.reject("CPF inválido")));
+            } else if (invalidEmails.get(i)) {
+                futures.add(CompletableFuture.completedFuture(Outcome.reject("email inválido")));
+            } else if (isDuplicate(record, batchKeys)) {
+                duplicates[i] = true;
+                futures.add(null);
+            } else {
+                futures.add(workers.submit(() -> prepare(record)));
+            }
+        }
+
+        List<User> accepted = new ArrayList<>();
+        List<String> rejections = new ArrayList<>();
+        List<String> storedPaths = new ArrayList<>();
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                if (duplicates[i]) {
+                    skipped++;
+                    continue;
+                }
+                Outcome outcome;
+                try {
+                    outcome = futures.get(i).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Importação interrompida", e);
+                } catch (ExecutionException e) {
+                    outcome = Outcome.reject("erro inesperado: " + e.getCause().getMessage());
+                }
+                if (outcome.user == null) {
+                    Record record = batch.get(i);
+                    rejected++;
+                    rejections.add(record.number + ";" + record.label() + ";" + outcome.reason);
+                    continue;
+                }
+                storedPaths.addAll(outcome.user.getBiometricDataPaths());
+                accepted.add(outcome.user);
+            }
+
+            try {
+                userRepository.saveAll(accepted);
+            } catch (UncheckedIOException e) {
+                // O lote não foi gravado: a importação para e é retomada deste ponto
+                throw e.getCause();
+            }
+        } finally {
+            // Depois de salvas, as imagens ficam referenciadas; se o lote falhou, são apagadas
+            imageStore.discardPending(storedPaths);
+        }
+        imported += accepted.size();
+        appendRejections(rejections);
+        done += batch.size();
+        writeCheckpoint(done);
+        return done;
+    }
+
+    /**
+     * @return true se o CPF ou o email já aparece no lote ou está cadastrado
+     */
+    private boolean isDuplicate(Record record, Set<String> batchKeys) {
+        String cpf = record.cpf.trim();
+        String email = record.email.trim();
+        // As duas chaves são sempre registradas, mesmo que a primeira já repita
+        boolean repeatedCpf = !batchKeys.add("cpf:" + Validator.normalizeCpf(cpf));
+        boolean repeatedEmail = !batchKeys.add("email:" + email.toLowerCase(Locale.ROOT));
+        return repeatedCpf || repeatedEmail
+                || userRepository.findByCpf(cpf).isPresent()
+                || userRepository.findByEmail(email).isPresent();
+    }
+
+    /**
+     * Verifica o nível, as imagens e as faces e copia as imagens; roda nas threads de trabalho
+     */
+    private Outcome prepare(Record record) throws IOException {
+        AccessLevel level = parseLevel(record.level);
+        if (level == null) {
+            return Outcome.reject("nível de acesso inválido: " + record.level);
+        }
+        if (record.images.isEmpty()) {
+            return Outcome.reject("nenhuma imagem");
+        }
+        for (String image : record.images) {
+            if (!ImageUtils.isValidImage(image)) {
+                return Outcome.reject("imagem inválida ou inexistente: " + image);
+            }
+        }
+        List<String> stored = imageStore.importImages(record.images);
+        boolean accepted = false;
+        try {
+            // Extraídos das cópias no armazenamento: os modelos ficam no TemplateCache
+            // e o treinamento não precisa processar as imagens de novo
+            List<Mat> templates = recognizers.get().computeTemplates(stored);
+            boolean hasFace = !templates.isEmpty();
+            templates.forEach(Mat::release);
+            if (!hasFace) {
+                return Outcome.reject("nenhuma face detectada nas imagens");
+            }
+
+            User user = new User(record.name.trim(), record.cpf.trim(), record.email.trim(), level);
+            for (String path : stored) {
+                user.addBiometricData(path);
+            }
+            accepted = true;
+            return Outcome.accept(user);
+        } finally {
+            if (!accepted) {
+                imageStore.discardPending(stored);
+            }
+        }
+    }
+
+    private static AccessLevel parseLevel(String level) {
+        if (level == null || level.trim().isEmpty()) {
+            return null;
+        }
+        String value = level.trim();
+        try {
+            return AccessLevel.fromLevel(Integer.parseInt(value));
+        } catch (NumberFormatException e) {
+            try {
+                return AccessLevel.valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException invalid) {
+                return null;
+            }
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void printProgress(long done, long processedNow, long started) {
+        double seconds = (System.nanoTime() - started) / 1e9;
+        System.out.printf("Registros processados: %d (%d importados, %d rejeitados, %d já cadastrados) - %.1f registros/s%n",
+                done, imported, rejected, skipped, processedNow / Math.max(seconds, 0.001));
+    }
+
+    private long readCheckpoint() throws IOException {
+        if (!Files.isRegularFile(checkpointFile)) {
+            return 0;
+        }
+        Properties checkpoint = new Properties();
+        try (InputStream in = Files.newInputStream(checkpointFile)) {
+            checkpoint.load(in);
+        }
+        imported = Long.parseLong(checkpoint.getProperty("imported", "0"));
+        rejected = Long.parseLong(checkpoint.getProperty("rejected", "0"));
+        skipped = Long.parseLong(checkpoint.getProperty("skipped", "0"));
+        return Long.parseLong(checkpoint.getProperty("processed", "0"));
+    }
+
+    private void writeCheckpoint(long done) throws IOException {
+        FileUtils.writeAtomically(checkpointFile, StandardCharsets.UTF_8, writer -> {
+            writer.write("processed=" + done + "\n");
+            writer.write("imported=" + imported + "\n");
+            writer.write("rejected=" + rejected + "\n");
+            writer.write("skipped=" + skipped + "\n");
+        });
+    }
+
+    private void appendRejections(List<String> rejections) throws IOException {
+        if (rejections.isEmpty()) {
+            return;
+        }
+        boolean header = !Files.exists(rejectedFile);
+        try (Writer writer = Files.newBufferedWriter(rejectedFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            if (header) {
+                writer.write("registro;pessoa;motivo\n");
+            }
+            for (String line : rejections) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        }
+    }
+
+    private RecordReader openReader() throws IOException {
+        if (Files.isDirectory(source)) {
+            return new DirectoryReader(source);
+        }
+        String name = source.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".json")) {
+            return new JsonManifestReader(source);
+        }
+        if (name.endsWith(".csv")) {
+            return new CsvManifestReader(source);
+        }
+        throw new IOException("Fonte não reconhecida (use .csv, .json ou um diretório): " + source);
+    }
+
+    /**
+     * Pessoa lida da fonte, com os caminhos das imagens já resolvidos
+     */
+    private static final class Record {
+        long number;
+        String name;
+        String cpf;
+        String email;
+        String level;
+        List<String> images = new ArrayList<>();
+
+        String label() {
+            return (name != null ? name : "").replace(';', ',');
+        }
+    }
+
+    /**
+     * Resultado da preparação de um registro: o usuário a gravar ou o motivo da rejeição
+     */
+    private static final class Outcome {
+        final User user;
+        final String reason;
+
+        private Outcome(User user, String reason) {
+            this.user = user;
+            this.reason = reason;
+        }
+
+        static Outcome accept(User user) {
+            return new Outcome(user, null);
+        }
+
+        static Outcome reject(String reason) {
+            return new Outcome(null, reason);
+        }
+    }
+
+    /**
+     * Leitura sequencial dos registros de uma fonte
+     */
+    private interface RecordReader extends Closeable {
+        /**
+         * @return Próximo registro ou null no fim da fonte
+         */
+        Record next() throws IOException;
+    }
+
+    private static String resolve(Path base, String image) {
+        return base.resolve(image.trim()).toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * Manifesto CSV, com campos opcionalmente entre aspas
+     */
+    private static final class CsvManifestReader implements RecordReader {
+        private final BufferedReader reader;
+        private final Path base;
+        private final Map<String, Integer> columns = new HashMap<>();
+        private long number;
+
+        CsvManifestReader(Path file) throws IOException {
+            this.reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+            this.base = file.getParent();
+            String header = reader.readLine();
+            if (header == null) {
+                return;
+            }
+            List<String> names = parseLine(header.replace("\uFEFF", ""));
+            for (int i = 0; i < names.size(); i++) {
+                columns.put(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+            }
+            for (String required : new String[]{"name", "cpf", "email", "level", "images"}) {
+                if (!columns.containsKey(required)) {
+                    throw new IOException("Coluna ausente no manifesto CSV: " + required);
+                }
+            }
+        }
+
+        @Override
+        public Record next() throws IOException {
+            String line;
+            do {
+                line = reader.readLine();
+                if (line == null) {
+                    return null;
+                }
+            } while (line.trim().isEmpty());
+            List<String> values = parseLine(line);
+            Record record = new Record();
+            record.number = ++number;
+            record.name = value(values, "name");
+            record.cpf = value(values, "cpf");
+            record.email = value(values, "email");
+            record.level = value(values, "level");
+            String images = value(values, "images");
+            if (images != null) {
+                for (String image : images.split(";")) {
+                    if (!image.trim().isEmpty()) {
+                        record.images.add(resolve(base, image));
+                    }
+                }
+            }
+            return record;
+        }
+
+        private String value(List<String> values, String column) {
+            int index = columns.get(column);
+            return index < values.size() ? values.get(index) : null;
+        }
+
+        private static List<String> parseLine(String line) {
+            List<String> values = new ArrayList<>();
+            StringBuilder current = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        current.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    values.add(current.toString());
+                    current.setLength(0);
+                } else {
+                    current.append(c);
+                }
+            }
+            values.add(current.toString());
+            return values;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    /**
+     * Manifesto JSON, lido elemento a elemento sem carregar o array inteiro
+     */
+    private static final class JsonManifestReader implements RecordReader {
+        private final JsonReader reader;
+        private final Path base;
+        private final Gson gson = new Gson();
+        private long number;
+
+        JsonManifestReader(Path file) throws IOException {
+            this.reader = new JsonReader(Files.newBufferedReader(file, StandardCharsets.UTF_8));
+            this.base = file.getParent();
+            reader.beginArray();
+        }
+
+        @Override
+        public Record next() throws IOException {
+            if (!reader.hasNext() || reader.peek() == JsonToken.END_ARRAY) {
+                return null;
+            }
+            JsonPerson person = gson.fromJson(reader, JsonPerson.class);
+            Record record = new Record();
+            record.number = ++number;
+            if (person != null) {
+                record.name = person.name;
+                record.cpf = person.cpf;
+                record.email = person.email;
+                record.level = person.level;
+                if (person.images != null) {
+                    for (String image : person.images) {
+                        record.images.add(resolve(base, image));
+                    }
+                }
+            }
+            return record;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+
+        private static final class JsonPerson {
+            String name;
+            String cpf;
+            String email;
+            String level;
+            List<String> images;
+        }
+    }
+
+    /**
+     * Diretório com um subdiretório por pessoa, em ordem alfabética
+     */
+    private static final class DirectoryReader implements RecordReader {
+        private final Iterator<Path> people;
+        private long number;
+
+        DirectoryReader(Path root) throws IOException {
+            try (Stream<Path> children = Files.list(root)) {
+                this.people = children.filter(Files::isDirectory).sorted().collect(Collectors.toList()).iterator();
+            }
+        }
+
+        @Override
+        public Record next() throws IOException {
+            if (!people.hasNext()) {
+                return null;
+            }
+            Path dir = people.next();
+            Record record = new Record();
+            record.number = ++number;
+            Path personFile = dir.resolve(PERSON_FILE);
+            if (Files.isRegularFile(personFile)) {
+                Properties person = new Properties();
+                try (BufferedReader in = Files.newBufferedReader(personFile, StandardCharsets.UTF_8)) {
+                    person.load(in);
+                }
+                record.name = person.getProperty("name");
+                record.cpf = person.getProperty("cpf");
+                record.email = person.getProperty("email");
+                record.level = person.getProperty("level");
+            } else {
+                record.name = dir.getFileName().toString();
+            }
+            try (Stream<Path> files = Files.list(dir)) {
+                files.filter(file -> IMAGE_EXTENSIONS.contains(ImageUtils.getFileExtension(file.toString())))
+                        .sorted()
+                        .forEach(file -> record.images.add(file.toAbsolutePath().normalize().toString()));
+            }
+            return record;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
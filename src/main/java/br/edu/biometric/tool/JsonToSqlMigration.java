@@ -0,0 +1,66 @@
+package br.edu.biometric.tool;
+
+import br.edu.biometric.model.AccessLog;
+import br.edu.biometric.model.User;
+import br.edu.biometric.repository.JsonAccessLogRepository;
+import br.edu.biometric.repository.JsonUserRepository;
+import br.edu.biometric.repository.RepositoryFactory;
+import br.edu.biometric.repository.SqlAccessLogRepository;
+import br.edu.biometric.repository.SqlDatabase;
+import br.edu.biometric.repository.SqlUserRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Copia os usuários e logs dos arquivos JSON em data/ para o banco SQL configurado
+ * em biometric.sql.url
+ *
+ * Os usuários são regravados (MERGE pelo ID), então a cópia pode ser repetida. Os
+ * logs só são copiados se a tabela de destino estiver vazia, evitando duplicação.
+ *
+ * Uso: java -cp biometric-auth-system.jar br.edu.biometric.tool.JsonToSqlMigration
+ */
+public class JsonToSqlMigration {
+
+    private static final int USER_BATCH = 1_000;
+    private static final int LOG_BATCH = 5_000;
+
+    public static void main(String[] args) {
+        SqlDatabase database = RepositoryFactory.getDatabase();
+        System.out.println("Migrando dados JSON para " + database.getUrl());
+        try {
+            SqlUserRepository sqlUsers = new SqlUserRepository(database);
+            SqlAccessLogRepository sqlLogs = new SqlAccessLogRepository(database);
+
+            List<User> users = new JsonUserRepository().findAll();
+            for (int i = 0; i < users.size(); i += USER_BATCH) {
+                sqlUsers.saveAll(users.subList(i, Math.min(users.size(), i + USER_BATCH)));
+            }
+            System.out.println("Usuários migrados: " + users.size());
+
+            if (sqlLogs.count() > 0) {
+                System.err.println("A tabela de logs de destino não está vazia ("
+                        + sqlLogs.count() + " registros). Logs não migrados.");
+                return;
+            }
+            JsonAccessLogRepository jsonLogs = new JsonAccessLogRepository();
+            List<AccessLog> batch = new ArrayList<>(LOG_BATCH);
+            long[] migrated = new long[1];
+            jsonLogs.forEach(log -> {
+                batch.add(log);
+                if (batch.size() == LOG_BATCH) {
+                    sqlLogs.saveAll(batch);
+                    migrated[0] += batch.size();
+                    batch.clear();
+                    System.out.println("Logs migrados: " + migrated[0] + " de " + jsonLogs.count());
+                }
+            });
+            sqlLogs.saveAll(batch);
+            migrated[0] += batch.size();
+            System.out.println("Logs migrados: " + migrated[0]);
+        } finally {
+            database.close();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package br.edu.biometric.tool;
+
+import br.edu.biometric.service.FacialRecognitionService;
+import br.edu.biometric.service.TemplateArena;
+import br.edu.biometric.util.ImageUtils;
+import org.opencv.core.Mat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compara a precisão dos modelos quantizados com a dos histogramas em ponto flutuante
+ *
+ * O conjunto rotulado é um diretório com um subdiretório por pessoa, contendo as fotos
+ * dela. Cada face é usada como consulta contra todas as outras (leave-one-out), e o
+ * vizinho mais próximo é procurado com os histogramas originais e com os modelos de 8
+ * e 16 bits. O relatório mostra o acerto no primeiro lugar de cada representação,
+ * quantas consultas tiveram o mesmo vizinho que a versão em ponto flutuante, o erro
+ * médio e máximo das distâncias e a memória por modelo.
+ *
+ * Uso: java -cp biometric-auth-system.jar br.edu.biometric.tool.TemplateAccuracyReport
+ * &lt;diretório&gt;
+ */
+public class TemplateAccuracyReport {
+
+    private static final Set<String> IMAGE_EXTENSIONS = new HashSet<>(Arrays.asList("jpg", "jpeg", "png", "bmp"));
+    private static final int[] BITS = {8, 16};
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Uso: TemplateAccuracyReport <diretório com uma pasta por pessoa>");
+            System.exit(1);
+        }
+
+        FacialRecognitionService recognizer = new FacialRecognitionService();
+        if (!recognizer.isInitialized()) {
+            System.err.println("Serviço de reconhecimento facial não disponível");
+            System.exit(1);
+        }
+
+        List<Mat> histograms = new ArrayList<>();
+        List<String> labels = new ArrayList<>();
+        try (Stream<Path> people = Files.list(Paths.get(args[0]))) {
+            for (Path person : people.filter(Files::isDirectory).sorted().collect(Collectors.toList())) {
+                List<String> images;
+                try (Stream<Path> files = Files.list(person)) {
+                    images = files.map(Path::toString)
+                            .filter(file -> IMAGE_EXTENSIONS.contains(ImageUtils.getFileExtension(file)))
+                            .sorted()
+                            .collect(Collectors.toList());
+                }
+                for (Mat histogram : recognizer.computeTemplates(images)) {
+                    histograms.add(histogram);
+                    labels.add(person.getFileName().toString());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Erro ao ler o conjunto rotulado: " + e.getMessage());
+            System.exit(1);
+        }
+
+        int count = histograms.size();
+        if (count < 2) {
+            System.err.println("São necessárias ao menos duas faces detectadas; encontradas: " + count);
+            System.exit(1);
+        }
+        System.out.println("Faces: " + count + ", pessoas: " + new HashSet<>(labels).size());
+
+        int[] floatNearest = new int[count];
+        double[][] floatDistances = new double[count][count];
+        for (int i = 0; i < count; i++) {
+            for (int j = i + 1; j < count; j++) {
+                floatDistances[i][j] = floatDistances[j][i] =
+                        FacialRecognitionService.distance(histograms.get(i), histograms.get(j));
+            }
+            floatNearest[i] = nearest(floatDistances[i], i);
+        }
+        System.out.printf("%-8s acerto %6.2f%%   memória/modelo %7d bytes%n", "float",
+                100.0 * correct(floatNearest, labels) / count, TemplateArena.BINS * Float.BYTES);
+
+        for (int bits : BITS) {
+            TemplateArena arena = TemplateArena.quantize(histograms, bits);
+            int[] quantizedNearest = new int[count];
+            double[] row = new double[count];
+            double errorSum = 0;
+            double errorMax = 0;
+            for (int i = 0; i < count; i++) {
+                for (int j = 0; j < count; j++) {
+                    row[j] = i == j ? 0 : arena.distance(i, arena, j);
+                    double error = Math.abs(row[j] - floatDistances[i][j]);
+                    errorSum += error;
+                    errorMax = Math.max(errorMax, error);
+                }
+                quantizedNearest[i] = nearest(row, i);
+            }
+            int agreement = 0;
+            for (int i = 0; i < count; i++) {
+                if (quantizedNearest[i] == floatNearest[i]) {
+                    agreement++;
+                }
+            }
+            // Memória real dos arrays do conjunto, com os cabeçalhos, dividida pelos modelos
+            System.out.printf("%-8s acerto %6.2f%%   memória/modelo %7.1f bytes   mesmo vizinho %6.2f%%   "
+                            + "erro da distância médio %.5f, máximo %.5f%n",
+                    bits + " bits", 100.0 * correct(quantizedNearest, labels) / count,
+                    (double) arena.getMemoryBytes() / count, 100.0 * agreement / count,
+                    errorSum / ((double) count * (count - 1)), errorMax);
+        }
+    }
+
+    private static int nearest(double[] distances, int self) {
+        int best = -1;
+        for (int j = 0; j < distances.length; j++) {
+            if (j != self && (best < 0 || distances[j] < distances[best])) {
+                best = j;
+            }
+        }
+        return best;
+    }
+
+    private static int correct(int[] nearest, List<String> labels) {
+        int correct = 0;
+        for (int i = 0; i < nearest.length; i++) {
+            if (labels.get(nearest[i]).equals(labels.get(i))) {
+                correct++;
+            }
+        }
+        return correct;
+    }
+}
@@ -0,0 +1,72 @@
+package br.edu.biometric.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Configurações da aplicação
+ *
+ * Os valores são lidos do arquivo opcional biometric.properties no diretório de
+ * trabalho. Propriedades de sistema (-Dchave=valor) têm precedência sobre o arquivo.
+ */
+public class AppConfig {
+
+    private static final String CONFIG_FILE = "biometric.properties";
+    private static final Properties properties = load();
+
+    private static Properties load() {
+        Properties loaded = new Properties();
+        Path file = Paths.get(CONFIG_FILE);
+        if (Files.isRegularFile(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                loaded.load(in);
+            } catch (IOException e) {
+                System.err.println("Erro ao carregar configurações: " + e.getMessage());
+            }
+        }
+        return loaded;
+    }
+
+    public static String getString(String key, String defaultValue) {
+        String value = System.getProperty(key, properties.getProperty(key));
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        return value.trim();
+    }
+
+    public static int getInt(String key, int defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            System.err.println("Valor inválido para " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    public static double getDouble(String key, double defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            System.err.println("Valor inválido para " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+}
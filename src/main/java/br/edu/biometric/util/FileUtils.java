@@ -0,0 +1,55 @@
+package br.edu.biometric.util;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Utilitários para gravação segura de arquivos
+ */
+public class FileUtils {
+
+    /**
+     * Ação que escreve o conteúdo de um arquivo
+     */
+    public interface WriterAction {
+        void write(Writer writer) throws IOException;
+    }
+
+    /**
+     * Grava um arquivo de forma atômica: escreve em um arquivo temporário no mesmo
+     * diretório, força os dados para o disco (fsync) e o renomeia sobre o destino.
+     * Em caso de falha, o arquivo original permanece intacto.
+     * 
+     * @param target  Arquivo de destino
+     * @param charset Codificação do conteúdo
+     * @param action  Escrita do conteúdo
+     * @throws IOException se a gravação falhar
+     */
+    public static void writeAtomically(Path target, Charset charset, WriterAction action) throws IOException {
+        Path absolute = target.toAbsolutePath();
+        Files.createDirectories(absolute.getParent());
+        Path temp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp.toFile());
+                 Writer writer = new OutputStreamWriter(out, charset)) {
+                action.write(writer);
+                writer.flush();
+                out.getChannel().force(true);
+            }
+            try {
+                Files.move(temp, absolute, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package br.edu.biometric.util;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gerador de IDs ordenados por tempo, no estilo Snowflake
+ *
+ * Cada ID tem 64 bits: 41 bits de milissegundos desde 01/01/2024 (UTC), 10 bits
+ * do nó e 12 bits de sequência. O nó vem de biometric.node.id (0 a 1023; outro valor
+ * é recusado por {@link #checkNode()}) ou, na falta dele, dos 10 bits mais baixos do
+ * PID do processo, o que só é seguro enquanto um único processo grava nos dados:
+ * processos em máquinas diferentes podem ter o mesmo valor, e por isso o banco
+ * compartilhado exige o nó configurado. Os IDs são
+ * estritamente crescentes dentro do processo e a geração não usa lock nem
+ * SecureRandom: apenas uma operação CAS.
+ *
+ * A forma textual tem 13 caracteres em base32 de Crockford, de tamanho fixo, então
+ * a ordem alfabética dos textos é a mesma ordem numérica (e temporal) dos IDs.
+ *
+ * Os repositórios de logs não usam o ID como chave de ordenação nem de busca por
+ * período: eles já guardam os registros na ordem de gravação e localizam períodos
+ * pela data/hora (busca binária ou índice), e os logs antigos têm IDs UUID, sem
+ * tempo, que ficariam fora de qualquer intervalo de IDs.
+ */
+public class IdGenerator {
+
+    public static final String NODE_KEY = "biometric.node.id";
+
+    private static final long EPOCH = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_NODE = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int TIME_SHIFT = NODE_BITS + SEQUENCE_BITS;
+
+    private static final int TEXT_LENGTH = 13;
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final byte[] DECODE = new byte[128];
+
+    static {
+        Arrays.fill(DECODE, (byte) -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            DECODE[ALPHABET[i]] = (byte) i;
+        }
+    }
+
+    // Só o padrão derivado do PID é reduzido aos 10 bits; um valor configurado fora da
+    // faixa é recusado (-1), pois reduzi-lo poderia repetir o nó de outro processo
+    private static final String NODE_SETTING = AppConfig.getString(NODE_KEY, null);
+    private static final long NODE = NODE_SETTING != null
+            ? parseNode(NODE_SETTING)
+            : ProcessHandle.current().pid() & MAX_NODE;
+    private static final boolean NODE_CONFIGURED = NODE_SETTING != null;
+
+    /**
+     * Nó já deslocado para a posição no ID, verificado uma única vez, na carga da
+     * classe (primeiro ID gerado); se o nó configurado for inválido, nenhum ID é gerado
+     */
+    private static final class CheckedNode {
+        static final long SHIFTED;
+
+        static {
+            checkNode();
+            SHIFTED = NODE << SEQUENCE_BITS;
+        }
+    }
+
+    // Tempo e sequência do último ID, sem o nó: (millis << SEQUENCE_BITS) | sequência.
+    // Quando a sequência de um milissegundo se esgota, avança para o milissegundo seguinte.
+    private static final AtomicLong last = new AtomicLong();
+
+    /**
+     * @return Próximo ID numérico, maior que todos os gerados antes neste processo
+     */
+    public static long nextLong() {
+        long shiftedNode = CheckedNode.SHIFTED;
+        long now = (System.currentTimeMillis() - EPOCH) << SEQUENCE_BITS;
+        long previous;
+        long next;
+        do {
+            previous = last.get();
+            next = Math.max(now, previous + 1);
+        } while (!last.compareAndSet(previous, next));
+        return (next >>> SEQUENCE_BITS) << TIME_SHIFT | shiftedNode | (next & SEQUENCE_MASK);
+    }
+
+    private static long parseNode(String value) {
+        try {
+            long node = Long.parseLong(value.trim());
+            return node >= 0 && node <= MAX_NODE ? node : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Verifica o nó configurado; chamado na inicialização, antes de qualquer ID ser gerado
+     *
+     * @throws IllegalStateException se biometric.node.id não for um inteiro de 0 a 1023
+     */
+    public static void checkNode() {
+        if (NODE < 0) {
+            throw new IllegalStateException(NODE_KEY + " deve ser um inteiro de 0 a " + MAX_NODE
+                    + " (valor configurado: " + NODE_SETTING + ")");
+        }
+    }
+
+    /**
+     * @return Próximo ID em texto (13 caracteres)
+     */
+    public static String nextId() {
+        return encode(nextLong());
+    }
+
+    public static String encode(long id) {
+        char[] text = new char[TEXT_LENGTH];
+        for (int i = TEXT_LENGTH - 1; i >= 0; i--) {
+            text[i] = ALPHABET[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(text);
+    }
+
+    /**
+     * Converte o texto de volta para o ID numérico
+     *
+     * @throws IllegalArgumentException se o texto não for um ID deste gerador
+     */
+    public static long decode(String text) {
+        if (!isValid(text)) {
+            throw new IllegalArgumentException("ID inválido: " + text);
+        }
+        long id = 0;
+        for (int i = 0; i < TEXT_LENGTH; i++) {
+            id = id << 5 | DECODE[text.charAt(i)];
+        }
+        return id;
+    }
+
+    public static boolean isValid(String text) {
+        if (text == null || text.length() != TEXT_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < TEXT_LENGTH; i++) {
+            char c = text.charAt(i);
+            if (c >= 128 || DECODE[c] < 0) {
+                return false;
+            }
+        }
+        // 13 caracteres carregam 65 bits: o primeiro só usa os 4 bits mais baixos
+        return DECODE[text.charAt(0)] < 16;
+    }
+
+    /**
+     * @return true se o nó foi definido em biometric.node.id, e não derivado do PID
+     */
+    public static boolean isNodeConfigured() {
+        return NODE_CONFIGURED;
+    }
+}
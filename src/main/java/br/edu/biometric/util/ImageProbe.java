@@ -0,0 +1,47 @@
+package br.edu.biometric.util;
+
+/**
+ * Formato e dimensões de uma imagem, obtidos apenas do cabeçalho do arquivo
+ *
+ * @see ImageUtils#probeImage(String)
+ */
+public final class ImageProbe {
+
+    /**
+     * Resultado para arquivos que não são imagens legíveis
+     */
+    public static final ImageProbe INVALID = new ImageProbe(null, 0, 0);
+
+    private final String format;
+    private final int width;
+    private final int height;
+
+    ImageProbe(String format, int width, int height) {
+        this.format = format;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * @return Nome do formato em minúsculas (jpeg, png, bmp...) ou null se inválida
+     */
+    public String getFormat() {
+        return format;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public long getPixelCount() {
+        return (long) width * height;
+    }
+
+    public boolean isValid() {
+        return format != null && width > 0 && height > 0;
+    }
+}
@@ -1,25 +1,28 @@
 package br.edu.biometric.util;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.Locale;
 
 /**
  * Utilitários para manipulação de imagens
  */
 public class ImageUtils {
 
-    private static final String BIOMETRIC_DATA_DIR = "data/biometric";
-
     /**
      * Redimensiona uma imagem mantendo a proporção
      * 
+     * Reduções grandes são feitas em etapas, dividindo a imagem ao meio com
+     * interpolação bilinear até chegar ao tamanho final: o resultado é tão suave
+     * quanto o de getScaledInstance(SCALE_SMOOTH) e muitas vezes mais rápido.
+     * 
      * @param image     Imagem original
      * @param maxWidth  Largura máxima
      * @param maxHeight Altura máxima
@@ -34,19 +37,72 @@ public class ImageUtils {
         double heightRatio = (double) maxHeight / height;
         double ratio = Math.min(widthRatio, heightRatio);
 
-        int newWidth = (int) (width * ratio);
-        int newHeight = (int) (height * ratio);
-
-        // Redimensiona a imagem
-        Image scaledImage = image.getScaledInstance(newWidth, newHeight, Image.SCALE_SMOOTH);
-        BufferedImage resizedImage = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_INT_RGB);
-
-        Graphics2D g2d = resizedImage.createGraphics();
-        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-        g2d.drawImage(scaledImage, 0, 0, null);
-        g2d.dispose();
+        int newWidth = Math.max(1, (int) (width * ratio));
+        int newHeight = Math.max(1, (int) (height * ratio));
+
+        BufferedImage current = image;
+        int currentWidth = width;
+        int currentHeight = height;
+        do {
+            // Cada etapa reduz no máximo à metade; a última chega ao tamanho final
+            int stepWidth = Math.max(newWidth, currentWidth / 2);
+            int stepHeight = Math.max(newHeight, currentHeight / 2);
+            if (currentWidth <= newWidth || currentHeight <= newHeight) {
+                stepWidth = newWidth;
+                stepHeight = newHeight;
+            }
+            BufferedImage step = new BufferedImage(stepWidth, stepHeight, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g2d = step.createGraphics();
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2d.drawImage(current, 0, 0, stepWidth, stepHeight, null);
+            g2d.dispose();
+            current = step;
+            currentWidth = stepWidth;
+            currentHeight = stepHeight;
+        } while (currentWidth != newWidth || currentHeight != newHeight);
+
+        return current;
+    }
 
-        return resizedImage;
+    /**
+     * Carrega uma imagem já reduzida para caber nas dimensões indicadas
+     * 
+     * O decodificador lê apenas uma a cada N linhas e colunas (subamostragem), com
+     * N escolhido para que a imagem decodificada ainda seja maior que o destino;
+     * assim uma foto de 20 MP nunca é expandida por inteiro na memória. O ajuste
+     * final é feito por {@link #resizeImage}.
+     * 
+     * @param filePath  Caminho do arquivo
+     * @param maxWidth  Largura máxima
+     * @param maxHeight Altura máxima
+     * @return Imagem reduzida ou null se houver erro
+     */
+    public static BufferedImage loadScaledImage(String filePath, int maxWidth, int maxHeight) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new File(filePath))) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int subsampling = Math.max(1, Math.min(width / maxWidth, height / maxHeight));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                BufferedImage image = reader.read(0, param);
+                if (image.getWidth() <= maxWidth && image.getHeight() <= maxHeight) {
+                    return image;
+                }
+                return resizeImage(image, maxWidth, maxHeight);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Erro ao carregar imagem: " + e.getMessage());
+            return null;
+        }
     }
 
     /**
@@ -86,74 +142,44 @@ public class ImageUtils {
     /**
      * Verifica se um arquivo é uma imagem válida
      * 
+     * Apenas o cabeçalho é lido (veja {@link #probeImage}); um arquivo truncado
+     * depois do cabeçalho só é detectado ao ser decodificado.
+     * 
      * @param filePath Caminho do arquivo
      * @return true se é uma imagem válida
      */
     public static boolean isValidImage(String filePath) {
-        try {
-            BufferedImage image = ImageIO.read(new File(filePath));
-            return image != null;
-        } catch (IOException e) {
-            return false;
-        }
+        return probeImage(filePath).isValid();
     }
 
     /**
-     * Copia uma imagem biométrica para o diretório do usuário
+     * Identifica formato e dimensões de uma imagem sem decodificar os pixels
      * 
-     * @param sourcePath Caminho da imagem original
-     * @param userId     ID do usuário
-     * @return Caminho da imagem copiada ou null se houver erro
-     */
-    public static String copyBiometricImage(String sourcePath, String userId) {
-        try {
-            // Cria o diretório do usuário se não existir
-            Path userDir = Paths.get(BIOMETRIC_DATA_DIR, userId);
-            Files.createDirectories(userDir);
-
-            // Obtém o nome do arquivo e extensão
-            File sourceFile = new File(sourcePath);
-            String fileName = sourceFile.getName();
-
-            // Define o caminho de destino
-            Path destPath = userDir.resolve(fileName);
-
-            // Copia o arquivo
-            Files.copy(sourceFile.toPath(), destPath, StandardCopyOption.REPLACE_EXISTING);
-
-            return destPath.toString();
-        } catch (IOException e) {
-            System.err.println("Erro ao copiar imagem biométrica: " + e.getMessage());
-            return null;
-        }
-    }
-
-    /**
-     * Deleta todas as imagens biométricas de um usuário
+     * O leitor do formato lê somente o cabeçalho do arquivo, de modo que a
+     * verificação custa o mesmo para uma foto de 20 MP ou uma miniatura.
      * 
-     * @param userId ID do usuário
-     * @return true se deletou com sucesso
+     * @param filePath Caminho do arquivo
+     * @return Dados da imagem, ou {@link ImageProbe#INVALID} se não for uma imagem legível
      */
-    public static boolean deleteBiometricImages(String userId) {
-        try {
-            Path userDir = Paths.get(BIOMETRIC_DATA_DIR, userId);
-            if (Files.exists(userDir)) {
-                // Deleta todos os arquivos do diretório
-                Files.walk(userDir)
-                        .sorted((p1, p2) -> -p1.compareTo(p2)) // Reverse order to delete files before directories
-                        .forEach(path -> {
-                            try {
-                                Files.delete(path);
-                            } catch (IOException e) {
-                                System.err.println("Erro ao deletar: " + path);
-                            }
-                        });
-                return true;
+    public static ImageProbe probeImage(String filePath) {
+        if (filePath == null || !new File(filePath).isFile()) {
+            return ImageProbe.INVALID;
+        }
+        try (ImageInputStream input = ImageIO.createImageInputStream(new File(filePath))) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                return ImageProbe.INVALID;
             }
-            return false;
-        } catch (IOException e) {
-            System.err.println("Erro ao deletar imagens biométricas: " + e.getMessage());
-            return false;
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                return new ImageProbe(reader.getFormatName().toLowerCase(Locale.ROOT),
+                        reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            return ImageProbe.INVALID;
         }
     }
 
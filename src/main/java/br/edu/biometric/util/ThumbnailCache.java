@@ -0,0 +1,241 @@
+package br.edu.biometric.util;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache de miniaturas de imagens para as telas de pré-visualização
+ *
+ * As miniaturas ficam em memória (as mais usadas recentemente) e em disco, em
+ * data/thumbnails. A chave inclui o caminho, a data de modificação e o tamanho do
+ * arquivo, de modo que uma imagem alterada gera uma nova miniatura. Quando não há
+ * miniatura, a imagem é decodificada por {@link ImageUtils#loadScaledImage}.
+ *
+ * A quantidade mantida em memória é configurável em biometric.thumbnails.memory, e o
+ * espaço em disco é limitado a biometric.thumbnails.disk.mb megabytes: passado o
+ * limite, as miniaturas usadas há mais tempo são apagadas. A data de modificação de
+ * cada arquivo é renovada quando ele é lido e serve de data do último uso, de modo que
+ * a ordem se mantém entre execuções; o índice é montado a partir da pasta no primeiro
+ * acesso ao disco.
+ */
+public class ThumbnailCache {
+
+    private static final String CACHE_DIR = "data/thumbnails";
+    private static final String FORMAT = "jpg";
+    private static final int MAX_IN_MEMORY = AppConfig.getInt("biometric.thumbnails.memory", 256);
+    private static final long MAX_ON_DISK = AppConfig.getInt("biometric.thumbnails.disk.mb", 64) * 1024L * 1024L;
+
+    private static final Map<String, BufferedImage> memory = new LinkedHashMap<String, BufferedImage>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, BufferedImage> eldest) {
+            return size() > MAX_IN_MEMORY;
+        }
+    };
+
+    // Arquivos em disco e seus tamanhos, do usado há mais tempo para o mais recente
+    private static final Map<Path, Long> disk = new LinkedHashMap<>(16, 0.75f, true);
+    private static long diskBytes;
+    private static boolean diskLoaded;
+
+    /**
+     * Miniatura da imagem, lida do cache ou gerada e gravada nele. Pode decodificar a
+     * imagem original, portanto não deve ser chamada na thread do Swing.
+     *
+     * @param filePath Caminho da imagem
+     * @param maxSize  Largura e altura máximas da miniatura
+     * @return Miniatura ou null se a imagem não puder ser lida
+     */
+    public static BufferedImage getThumbnail(String filePath, int maxSize) {
+        String key = cacheKey(filePath, maxSize);
+        if (key == null) {
+            return null;
+        }
+        BufferedImage thumbnail = getFromMemory(key);
+        if (thumbnail != null) {
+            return thumbnail;
+        }
+
+        Path cached = Paths.get(CACHE_DIR, hash(key) + "." + FORMAT);
+        if (Files.isRegularFile(cached)) {
+            thumbnail = ImageUtils.loadImage(cached.toString());
+            if (thumbnail != null) {
+                markUsed(cached);
+            }
+        }
+        if (thumbnail == null) {
+            thumbnail = ImageUtils.loadScaledImage(filePath, maxSize, maxSize);
+            if (thumbnail == null) {
+                return null;
+            }
+            if (store(cached, thumbnail)) {
+                recordStored(cached);
+            }
+        }
+        synchronized (memory) {
+            memory.put(key, thumbnail);
+        }
+        return thumbnail;
+    }
+
+    /**
+     * Miniatura já presente em memória, sem acesso a disco; para uso na pintura de
+     * componentes, que então pedem a miniatura em segundo plano se ela faltar
+     *
+     * @return Miniatura ou null se ainda não foi carregada
+     */
+    public static BufferedImage getCachedThumbnail(String filePath, int maxSize) {
+        String key = cacheKey(filePath, maxSize);
+        return key != null ? getFromMemory(key) : null;
+    }
+
+    private static BufferedImage getFromMemory(String key) {
+        synchronized (memory) {
+            return memory.get(key);
+        }
+    }
+
+    private static String cacheKey(String filePath, int maxSize) {
+        if (filePath == null) {
+            return null;
+        }
+        File file = new File(filePath).getAbsoluteFile();
+        if (!file.isFile()) {
+            return null;
+        }
+        return file.getPath() + "|" + file.lastModified() + "|" + file.length() + "|" + maxSize;
+    }
+
+    private static void markUsed(Path file) {
+        synchronized (disk) {
+            loadDiskIndex();
+            disk.get(file);
+        }
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // Apagada por outra thread; a ordem em memória já foi atualizada
+        }
+    }
+
+    private static void recordStored(Path file) {
+        long size;
+        try {
+            size = Files.size(file);
+        } catch (IOException e) {
+            return;
+        }
+        synchronized (disk) {
+            loadDiskIndex();
+            Long previous = disk.put(file, size);
+            diskBytes += size - (previous != null ? previous : 0);
+            Iterator<Map.Entry<Path, Long>> eldest = disk.entrySet().iterator();
+            while (diskBytes > MAX_ON_DISK && disk.size() > 1) {
+                Map.Entry<Path, Long> entry = eldest.next();
+                try {
+                    Files.deleteIfExists(entry.getKey());
+                } catch (IOException e) {
+                    System.err.println("Erro ao remover miniatura: " + e.getMessage());
+                }
+                diskBytes -= entry.getValue();
+                eldest.remove();
+            }
+        }
+    }
+
+    // Chamado com o lock de disk
+    private static void loadDiskIndex() {
+        if (diskLoaded) {
+            return;
+        }
+        diskLoaded = true;
+        List<Path> files = new ArrayList<>();
+        Map<Path, Long> lastUsed = new HashMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(Paths.get(CACHE_DIR), "*." + FORMAT)) {
+            for (Path file : stream) {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                files.add(file);
+                lastUsed.put(file, attributes.lastModifiedTime().toMillis());
+                disk.put(file, attributes.size());
+                diskBytes += attributes.size();
+            }
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException e) {
+            System.err.println("Erro ao ler o cache de miniaturas: " + e.getMessage());
+        }
+        // Reinsere na ordem do último uso, do mais antigo para o mais recente
+        files.sort(Comparator.comparing(lastUsed::get));
+        for (Path file : files) {
+            disk.get(file);
+        }
+    }
+
+    /**
+     * @return true se a miniatura foi gravada
+     */
+    private static boolean store(Path target, BufferedImage thumbnail) {
+        Path temp = null;
+        try {
+            Files.createDirectories(target.getParent());
+            // Temporário exclusivo: duas threads podem gerar a mesma miniatura
+            temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            // JPEG não tem canal alfa: imagens em outros formatos são convertidas para RGB
+            BufferedImage rgb = thumbnail.getType() == BufferedImage.TYPE_INT_RGB ? thumbnail
+                    : ImageUtils.resizeImage(thumbnail, thumbnail.getWidth(), thumbnail.getHeight());
+            if (!ImageIO.write(rgb, FORMAT, temp.toFile())) {
+                return false;
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Erro ao salvar miniatura: " + e.getMessage());
+            return false;
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    System.err.println("Erro ao remover miniatura temporária: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,106 +1,163 @@
 package br.edu.biometric.util;
 
-import java.util.regex.Pattern;
+import java.util.BitSet;
+import java.util.List;
 
 /**
  * Utilitários para validação de dados
+ *
+ * As validações percorrem a string uma única vez, sem expressões regulares nem
+ * cópias intermediárias, pois são chamadas para cada registro em importações em lote
+ * e nas buscas por CPF. Os métodos find* validam uma coluna inteira de uma vez.
  */
 public class Validator {
 
-    private static final Pattern EMAIL_PATTERN = Pattern.compile(
-            "^[A-Za-z0-9+_.-]+@(.+)$");
-
     /**
-     * Valida um email
+     * Valida um email (usuario@dominio: parte local com letras, dígitos e + _ . -,
+     * seguida de um domínio não vazio)
      * 
      * @param email Email a ser validado
      * @return true se o email é válido
      */
     public static boolean isValidEmail(String email) {
-        if (email == null || email.trim().isEmpty()) {
+        if (email == null) {
             return false;
         }
-        return EMAIL_PATTERN.matcher(email.trim()).matches();
+        int start = trimStart(email);
+        int end = trimEnd(email, start);
+        int at = start;
+        while (at < end && isEmailLocalChar(email.charAt(at))) {
+            at++;
+        }
+        if (at == start || at >= end - 1 || email.charAt(at) != '@') {
+            return false;
+        }
+        for (int i = at + 1; i < end; i++) {
+            if (isLineTerminator(email.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
      * Valida um CPF com dígitos verificadores (algoritmo módulo 11)
      * 
-     * @param cpf CPF a ser validado
+     * @param cpf CPF a ser validado, formatado ou não
      * @return true se o CPF é válido
      */
     public static boolean isValidCpf(String cpf) {
-        if (cpf == null || cpf.trim().isEmpty()) {
-            return false;
-        }
-
-        // Remove formatação
-        String cleanCpf = cpf.replaceAll("[^0-9]", "");
-
-        // Verifica se tem 11 dígitos
-        if (cleanCpf.length() != 11) {
-            return false;
-        }
-
-        // Verifica se não são todos os dígitos iguais
-        if (cleanCpf.matches("(\\d)\\1{10}")) {
+        if (cpf == null) {
             return false;
         }
-
-        // Valida dígitos verificadores
-        try {
-            // Calcula primeiro dígito verificador
-            int sum = 0;
-            for (int i = 0; i < 9; i++) {
-                sum += Character.getNumericValue(cleanCpf.charAt(i)) * (10 - i);
-            }
-            int firstDigit = 11 - (sum % 11);
-            if (firstDigit >= 10) {
-                firstDigit = 0;
+        // Ignora a formatação e acumula as somas dos dois dígitos verificadores
+        int count = 0;
+        int firstSum = 0;
+        int secondSum = 0;
+        int firstDigit = 0;
+        int tenthDigit = 0;
+        int lastDigit = 0;
+        boolean allSame = true;
+        for (int i = 0; i < cpf.length(); i++) {
+            char c = cpf.charAt(i);
+            if (c < '0' || c > '9') {
+                continue;
             }
-
-            // Verifica primeiro dígito
-            if (firstDigit != Character.getNumericValue(cleanCpf.charAt(9))) {
+            if (count == 11) {
                 return false;
             }
-
-            // Calcula segundo dígito verificador
-            sum = 0;
-            for (int i = 0; i < 10; i++) {
-                sum += Character.getNumericValue(cleanCpf.charAt(i)) * (11 - i);
+            int digit = c - '0';
+            if (count == 0) {
+                firstDigit = digit;
+            } else if (digit != firstDigit) {
+                allSame = false;
             }
-            int secondDigit = 11 - (sum % 11);
-            if (secondDigit >= 10) {
-                secondDigit = 0;
+            if (count < 9) {
+                firstSum += digit * (10 - count);
             }
+            if (count < 10) {
+                secondSum += digit * (11 - count);
+            }
+            if (count == 9) {
+                tenthDigit = digit;
+            } else if (count == 10) {
+                lastDigit = digit;
+            }
+            count++;
+        }
+        // Sequências de dígitos iguais passam no módulo 11, mas não são CPFs válidos
+        return count == 11 && !allSame
+                && checkDigit(firstSum) == tenthDigit
+                && checkDigit(secondSum) == lastDigit;
+    }
 
-            // Verifica segundo dígito
-            return secondDigit == Character.getNumericValue(cleanCpf.charAt(10));
+    private static int checkDigit(int sum) {
+        int digit = 11 - (sum % 11);
+        return digit >= 10 ? 0 : digit;
+    }
 
-        } catch (Exception e) {
-            return false;
+    /**
+     * Normaliza um CPF, mantendo apenas os dígitos
+     * 
+     * @param cpf CPF formatado ou não
+     * @return Apenas os dígitos do CPF (string vazia se nulo)
+     */
+    public static String normalizeCpf(String cpf) {
+        if (cpf == null) {
+            return "";
+        }
+        int length = cpf.length();
+        int i = 0;
+        while (i < length && cpf.charAt(i) >= '0' && cpf.charAt(i) <= '9') {
+            i++;
         }
+        // Já normalizado: devolve a própria string, sem cópia
+        if (i == length) {
+            return cpf;
+        }
+        char[] digits = new char[length];
+        cpf.getChars(0, i, digits, 0);
+        int count = i;
+        for (i++; i < length; i++) {
+            char c = cpf.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits[count++] = c;
+            }
+        }
+        return new String(digits, 0, count);
     }
 
     /**
      * Formata um CPF
      * 
      * @param cpf CPF sem formatação
-     * @return CPF formatado (XXX.XXX.XXX-XX)
+     * @return CPF formatado (XXX.XXX.XXX-XX), ou o valor original se não tiver 11 dígitos
      */
     public static String formatCpf(String cpf) {
         if (cpf == null) {
             return "";
         }
-        String cleanCpf = cpf.replaceAll("[^0-9]", "");
-        if (cleanCpf.length() != 11) {
+        char[] formatted = new char[14];
+        int count = 0;
+        for (int i = 0; i < cpf.length(); i++) {
+            char c = cpf.charAt(i);
+            if (c < '0' || c > '9') {
+                continue;
+            }
+            if (count == 11) {
+                return cpf;
+            }
+            // Cada grupo de três dígitos desloca os seguintes por um separador
+            formatted[count + count / 3] = c;
+            count++;
+        }
+        if (count != 11) {
             return cpf;
         }
-        return String.format("%s.%s.%s-%s",
-                cleanCpf.substring(0, 3),
-                cleanCpf.substring(3, 6),
-                cleanCpf.substring(6, 9),
-                cleanCpf.substring(9, 11));
+        formatted[3] = '.';
+        formatted[7] = '.';
+        formatted[11] = '-';
+        return new String(formatted);
     }
 
     /**
@@ -120,11 +177,24 @@ public class Validator {
      * @return true se o nome é válido
      */
     public static boolean isValidName(String name) {
-        if (name == null || name.trim().length() < 3) {
+        if (name == null) {
             return false;
         }
-        // Permite letras (incluindo acentuadas) e espaços
-        return name.trim().matches("^[a-zA-ZÀ-ÿ\\s]+$");
+        int start = trimStart(name);
+        int end = trimEnd(name, start);
+        if (end - start < 3) {
+            return false;
+        }
+        // Permite letras (incluindo acentuadas, U+00C0 a U+00FF) e espaços
+        for (int i = start; i < end; i++) {
+            char c = name.charAt(i);
+            boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+                    || (c >= '\u00C0' && c <= '\u00FF') || isWhitespace(c);
+            if (!valid) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -137,4 +207,90 @@ public class Validator {
     public static boolean hasMinLength(String value, int minLength) {
         return value != null && value.trim().length() >= minLength;
     }
+
+    /**
+     * Valida uma coluna inteira de CPFs, como a de um arquivo de importação
+     * 
+     * @param cpfs CPFs na ordem dos registros
+     * @return Índices dos CPFs inválidos
+     */
+    public static BitSet findInvalidCpfs(List<String> cpfs) {
+        BitSet invalid = new BitSet(cpfs.size());
+        int index = 0;
+        for (String cpf : cpfs) {
+            if (!isValidCpf(cpf)) {
+                invalid.set(index);
+            }
+            index++;
+        }
+        return invalid;
+    }
+
+    /**
+     * Valida uma coluna inteira de emails
+     * 
+     * @param emails Emails na ordem dos registros
+     * @return Índices dos emails inválidos
+     */
+    public static BitSet findInvalidEmails(List<String> emails) {
+        BitSet invalid = new BitSet(emails.size());
+        int index = 0;
+        for (String email : emails) {
+            if (!isValidEmail(email)) {
+                invalid.set(index);
+            }
+            index++;
+        }
+        return invalid;
+    }
+
+    /**
+     * Valida uma coluna inteira de nomes
+     * 
+     * @param names Nomes na ordem dos registros
+     * @return Índices dos nomes inválidos
+     */
+    public static BitSet findInvalidNames(List<String> names) {
+        BitSet invalid = new BitSet(names.size());
+        int index = 0;
+        for (String name : names) {
+            if (!isValidName(name)) {
+                invalid.set(index);
+            }
+            index++;
+        }
+        return invalid;
+    }
+
+    // Limites equivalentes aos de String.trim(), sem criar a substring
+    private static int trimStart(String value) {
+        int start = 0;
+        while (start < value.length() && value.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(String value, int start) {
+        int end = value.length();
+        while (end > start && value.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    private static boolean isEmailLocalChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '+' || c == '_' || c == '.' || c == '-';
+    }
+
+    // Caracteres de \s em expressões regulares
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    // Caracteres que não casam com '.' em expressões regulares
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
 }
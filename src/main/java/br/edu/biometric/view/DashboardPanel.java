@@ -1,9 +1,22 @@
 package br.edu.biometric.view;
 
+import br.edu.biometric.model.AccessLog;
+import br.edu.biometric.repository.AccessLogRepository;
+import br.edu.biometric.repository.RollupBucket;
+import br.edu.biometric.repository.RollupGranularity;
+import br.edu.biometric.service.AccessEventBatch;
 import br.edu.biometric.service.AuthenticationService;
+import br.edu.biometric.service.TrainingListener;
 
 import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * Painel de dashboard com estatísticas do sistema
@@ -18,10 +31,26 @@ public class DashboardPanel extends JPanel {
     private JLabel successfulLogsLabel;
     private JLabel failedLogsLabel;
     private JLabel modelTrainedLabel;
+    private JComboBox<RollupGranularity> granularityCombo;
+    private DefaultTableModel trendModel;
+    private RollupGranularity trendGranularity;
+    private DateTimeFormatter trendFormatter;
+    private final List<LocalDateTime> trendStarts = new ArrayList<>(); // Início do intervalo de cada linha
 
     public DashboardPanel(AuthenticationService authService) {
         this.authService = authService;
         initializePanel();
+        authService.getEventBus().subscribe(batch -> SwingUtilities.invokeLater(() -> applyEvents(batch)));
+        authService.addTrainingListener(new TrainingListener() {
+            @Override
+            public void onTrainingProgress(int processed, int total) {
+            }
+
+            @Override
+            public void onTrainingFinished(int trainedUsers) {
+                SwingUtilities.invokeLater(() -> updateModelStatus());
+            }
+        });
     }
 
     private void initializePanel() {
@@ -64,7 +93,10 @@ public class DashboardPanel extends JPanel {
         gbc.gridy = 2;
         statsPanel.add(createStatCard("Status do Modelo", modelTrainedLabel = new JLabel("Não treinado")), gbc);
 
-        add(statsPanel, BorderLayout.CENTER);
+        JPanel centerPanel = new JPanel(new BorderLayout(10, 10));
+        centerPanel.add(statsPanel, BorderLayout.NORTH);
+        centerPanel.add(createTrendPanel(), BorderLayout.CENTER);
+        add(centerPanel, BorderLayout.CENTER);
 
         // Botão atualizar
         JPanel buttonPanel = new JPanel(new FlowLayout());
@@ -74,6 +106,118 @@ public class DashboardPanel extends JPanel {
         add(buttonPanel, BorderLayout.SOUTH);
     }
 
+    /**
+     * Tendência de acessos por período, calculada a partir dos agregados
+     */
+    private JPanel createTrendPanel() {
+        JPanel panel = new JPanel(new BorderLayout(5, 5));
+        panel.setBorder(BorderFactory.createTitledBorder("Tendência de Acessos"));
+
+        JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        filterPanel.add(new JLabel("Agrupar por:"));
+        granularityCombo = new JComboBox<>(RollupGranularity.values());
+        granularityCombo.setSelectedItem(RollupGranularity.DAY);
+        granularityCombo.addActionListener(e -> refreshTrend());
+        filterPanel.add(granularityCombo);
+        panel.add(filterPanel, BorderLayout.NORTH);
+
+        String[] columns = {"Período", "Tentativas", "Concedidos", "Negados", "Confiança Média"};
+        trendModel = new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JTable trendTable = new JTable(trendModel);
+        panel.add(new JScrollPane(trendTable), BorderLayout.CENTER);
+        return panel;
+    }
+
+    private void refreshTrend() {
+        RollupGranularity granularity = (RollupGranularity) granularityCombo.getSelectedItem();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime from;
+        DateTimeFormatter formatter;
+        switch (granularity) {
+            case MINUTE:
+                from = now.minusHours(1);
+                formatter = DateTimeFormatter.ofPattern("dd/MM HH:mm");
+                break;
+            case HOUR:
+                from = now.minusDays(2);
+                formatter = DateTimeFormatter.ofPattern("dd/MM HH'h'");
+                break;
+            default:
+                from = now.minusDays(90);
+                formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+                break;
+        }
+
+        trendGranularity = granularity;
+        trendFormatter = formatter;
+        trendModel.setRowCount(0);
+        trendStarts.clear();
+        List<RollupBucket> buckets = authService.getRollups().query(granularity, from, now.plusMinutes(1));
+        // Mais recente primeiro, como na tela de logs
+        for (int i = buckets.size() - 1; i >= 0; i--) {
+            RollupBucket bucket = buckets.get(i);
+            trendModel.addRow(trendRow(bucket));
+            trendStarts.add(bucket.getStart());
+        }
+    }
+
+    /**
+     * Atualiza só as linhas dos intervalos que receberam logs no lote (normalmente a
+     * do intervalo atual), relendo cada uma dos agregados; um intervalo novo entra no
+     * topo. A tabela inteira só é recarregada após limpeza, lote truncado ou log de um
+     * intervalo antigo que ainda não aparece nela.
+     */
+    private void updateTrend(AccessEventBatch batch) {
+        if (trendGranularity == null || batch.isLogsCleared() || batch.isLogsTruncated()) {
+            refreshTrend();
+            return;
+        }
+        RollupGranularity granularity = trendGranularity;
+        Set<LocalDateTime> starts = new TreeSet<>();
+        for (AccessLog log : batch.getNewLogs()) {
+            if (log.getTimestamp() != null) {
+                starts.add(granularity.bucketStart(log.getTimestamp()));
+            }
+        }
+        // Do mais antigo para o mais recente, para que os novos fiquem no topo na ordem certa
+        for (LocalDateTime start : starts) {
+            int row = trendStarts.indexOf(start);
+            if (row < 0 && !trendStarts.isEmpty() && start.isBefore(trendStarts.get(0))) {
+                refreshTrend();
+                return;
+            }
+            List<RollupBucket> found = authService.getRollups()
+                    .query(granularity, start, start.plus(1, granularity.getUnit()));
+            if (found.isEmpty()) {
+                continue;
+            }
+            Object[] values = trendRow(found.get(0));
+            if (row < 0) {
+                trendModel.insertRow(0, values);
+                trendStarts.add(0, start);
+            } else {
+                for (int column = 0; column < values.length; column++) {
+                    trendModel.setValueAt(values[column], row, column);
+                }
+            }
+        }
+    }
+
+    private Object[] trendRow(RollupBucket bucket) {
+        return new Object[]{
+                bucket.getStart().format(trendFormatter),
+                bucket.getAttempts(),
+                bucket.getSuccessful(),
+                bucket.getFailed(),
+                String.format("%.2f%%", bucket.getAverageConfidence())
+        };
+    }
+
     private JPanel createStatCard(String title, JLabel valueLabel) {
         JPanel card = new JPanel(new BorderLayout(10, 10));
         card.setBorder(BorderFactory.createCompoundBorder(
@@ -97,20 +241,44 @@ public class DashboardPanel extends JPanel {
 
     public void refresh() {
         // Atualiza estatísticas de usuários
-        long totalUsers = authService.getUserRepository().count();
-        long activeUsers = authService.getUserRepository().countActive();
-        totalUsersLabel.setText(String.valueOf(totalUsers));
-        activeUsersLabel.setText(String.valueOf(activeUsers));
+        updateUserLabels();
 
         // Atualiza estatísticas de logs
-        long totalLogs = authService.getLogRepository().count();
-        long successfulLogs = authService.getLogRepository().countSuccessful();
-        long failedLogs = authService.getLogRepository().countFailed();
-        totalLogsLabel.setText(String.valueOf(totalLogs));
-        successfulLogsLabel.setText(String.valueOf(successfulLogs));
-        failedLogsLabel.setText(String.valueOf(failedLogs));
+        updateLogLabels();
+        refreshTrend();
+        updateModelStatus();
+    }
 
-        // Status do modelo
+    /**
+     * Atualiza os cartões afetados pelo lote. Os contadores são relidos do repositório
+     * (consultas diretas, sem varredura) em vez de somar as variações do lote, que podem já
+     * estar incluídas em um refresh() feito entre a publicação e a entrega. Da
+     * tendência, só as linhas dos intervalos do lote são relidas.
+     */
+    private void applyEvents(AccessEventBatch batch) {
+        if (batch.hasLogChanges()) {
+            updateLogLabels();
+            updateTrend(batch);
+        }
+        if (batch.hasUserChanges()) {
+            updateUserLabels();
+            updateModelStatus();
+        }
+    }
+
+    private void updateUserLabels() {
+        totalUsersLabel.setText(String.valueOf(authService.getUserRepository().count()));
+        activeUsersLabel.setText(String.valueOf(authService.getUserRepository().countActive()));
+    }
+
+    private void updateLogLabels() {
+        AccessLogRepository logs = authService.getLogRepository();
+        totalLogsLabel.setText(String.valueOf(logs.count()));
+        successfulLogsLabel.setText(String.valueOf(logs.countSuccessful()));
+        failedLogsLabel.setText(String.valueOf(logs.countFailed()));
+    }
+
+    private void updateModelStatus() {
         if (authService.isModelTrained()) {
             modelTrainedLabel.setText("Treinado");
             modelTrainedLabel.setForeground(new Color(0, 150, 0));
@@ -0,0 +1,244 @@
+package br.edu.biometric.view;
+
+import br.edu.biometric.model.AccessLog;
+import br.edu.biometric.model.AccessStatus;
+import br.edu.biometric.repository.AccessLogRepository;
+import br.edu.biometric.repository.LogPage;
+import br.edu.biometric.repository.LogQuery;
+import br.edu.biometric.service.AccessEventBatch;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Modelo de tabela de logs que lê as linhas do repositório sob demanda
+ *
+ * As linhas são buscadas em blocos pela posição, em segundo plano, quando ficam
+ * visíveis; apenas os blocos usados mais recentemente ficam em memória e as células
+ * são formatadas só ao serem exibidas. O filtro por status é aplicado pelo repositório.
+ *
+ * Os blocos são identificados pela posição cronológica (0 = log mais antigo que atende
+ * ao filtro), que não muda quando novos logs são gravados no final; por isso novos
+ * acessos e a troca da ordenação não descartam o que já foi lido, e um bloco lido
+ * enquanto chegam novos logs continua válido. Cada bloco é pedido ao repositório em
+ * ordem crescente a partir dessa posição; quando o bloco anterior já foi lido, o
+ * cursor dele continua a leitura sem deslocamento.
+ * Deve ser usado apenas na thread do Swing.
+ */
+public class LogTableModel extends AbstractTableModel {
+
+    public static final int TIMESTAMP_COLUMN = 0;
+    public static final int STATUS_COLUMN = 3;
+
+    private static final int BLOCK_SIZE = 200;
+    private static final int MAX_CACHED_BLOCKS = 32;
+    private static final String LOADING = "Carregando...";
+    private static final String[] COLUMN_NAMES = {
+            "Data/Hora", "Usuário", "Nível de Acesso", "Status", "Confiança (%)", "Detalhes"};
+
+    private final AccessLogRepository repository;
+    private final Map<Long, Block> blocks = new LinkedHashMap<Long, Block>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Block> eldest) {
+            return size() > MAX_CACHED_BLOCKS;
+        }
+    };
+    private final Set<Long> loading = new HashSet<>();
+
+    private AccessStatus statusFilter;
+    private boolean ascending;
+    private long total;
+    private int generation; // Descarta leituras iniciadas antes de uma recarga
+
+    public LogTableModel(AccessLogRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Descarta os blocos lidos e recalcula o total de registros do filtro
+     */
+    public void reload() {
+        generation++;
+        blocks.clear();
+        loading.clear();
+        total = countMatching();
+        fireTableDataChanged();
+    }
+
+    public void setStatusFilter(AccessStatus statusFilter) {
+        this.statusFilter = statusFilter;
+        reload();
+    }
+
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    /**
+     * Alterna entre mais recentes primeiro e mais antigos primeiro, sem reler blocos
+     */
+    public void setAscending(boolean ascending) {
+        this.ascending = ascending;
+        fireTableDataChanged();
+    }
+
+    public long getTotalCount() {
+        return total;
+    }
+
+    /**
+     * Acrescenta as linhas dos novos logs do lote sem reler as existentes
+     */
+    public void applyEvents(AccessEventBatch batch) {
+        if (!batch.hasLogChanges()) {
+            return;
+        }
+        long current = countMatching();
+        if (batch.isLogsCleared() || current < total) {
+            reload();
+            return;
+        }
+        if (current == total) {
+            return;
+        }
+        long previous = total;
+        total = current;
+        if (ascending) {
+            fireTableRowsInserted(toRow(previous), toRow(total - 1));
+        } else {
+            fireTableRowsInserted(0, toRow(total - previous - 1));
+        }
+    }
+
+    private long countMatching() {
+        return statusFilter != null ? repository.countByStatus(statusFilter) : repository.count();
+    }
+
+    @Override
+    public int getRowCount() {
+        return toRow(total);
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        if (column == TIMESTAMP_COLUMN) {
+            return COLUMN_NAMES[column] + (ascending ? " ▲" : " ▼");
+        }
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        AccessLog log = getLog(row);
+        if (log == null) {
+            return column == TIMESTAMP_COLUMN ? LOADING : null;
+        }
+        switch (column) {
+            case 0:
+                return log.getFormattedTimestamp();
+            case 1:
+                return log.getUserName();
+            case 2:
+                return log.getAccessLevel() != null ? log.getAccessLevel().getDisplayName() : "N/A";
+            case 3:
+                return log.getStatus();
+            case 4:
+                return String.format("%.2f", log.getConfidenceScore());
+            default:
+                return log.getMessage();
+        }
+    }
+
+    /**
+     * @return Log da linha ou null se o bloco ainda está sendo lido
+     */
+    public AccessLog getLog(int row) {
+        long position = ascending ? row : total - 1 - row;
+        long block = position / BLOCK_SIZE;
+        Block cached = blocks.get(block);
+        int index = (int) (position - block * BLOCK_SIZE);
+        if (cached == null || index >= cached.logs.length) {
+            // Bloco ausente ou o último bloco, lido antes de novos logs o completarem
+            requestBlock(block);
+            return null;
+        }
+        return cached.logs[index];
+    }
+
+    private void requestBlock(long block) {
+        if (!loading.add(block)) {
+            return;
+        }
+        int requestGeneration = generation;
+        long first = block * BLOCK_SIZE;
+
+        LogQuery query = new LogQuery(statusFilter, BLOCK_SIZE);
+        query.setAscending(true);
+        Block previous = blocks.get(block - 1);
+        if (previous != null && previous.nextCursor != null) {
+            query.setCursor(previous.nextCursor);
+        } else {
+            query.setOffset(first);
+        }
+
+        new SwingWorker<LogPage, Void>() {
+            @Override
+            protected LogPage doInBackground() {
+                return repository.findPage(query);
+            }
+
+            @Override
+            protected void done() {
+                if (requestGeneration != generation) {
+                    return;
+                }
+                loading.remove(block);
+                LogPage page;
+                try {
+                    page = get();
+                } catch (InterruptedException | ExecutionException e) {
+                    System.err.println("Erro ao carregar logs: " + e.getMessage());
+                    return;
+                }
+                // Posições contadas do mais antigo não mudam com novos logs: a página vale
+                // mesmo que o total tenha mudado durante a leitura
+                AccessLog[] logs = page.getItems().toArray(new AccessLog[0]);
+                blocks.put(block, new Block(logs, logs.length == BLOCK_SIZE ? page.getNextCursor() : null));
+                long end = Math.min(total, first + logs.length);
+                if (end <= first) {
+                    return;
+                }
+                int firstRow = toRow(ascending ? first : total - end);
+                int lastRow = toRow(ascending ? end - 1 : total - 1 - first);
+                fireTableRowsUpdated(firstRow, Math.min(lastRow, getRowCount() - 1));
+            }
+        }.execute();
+    }
+
+    /**
+     * Logs de um bloco, do mais antigo para o mais recente, e o cursor do bloco seguinte
+     */
+    private static final class Block {
+        private final AccessLog[] logs;
+        private final String nextCursor;
+
+        Block(AccessLog[] logs, String nextCursor) {
+            this.logs = logs;
+            this.nextCursor = nextCursor;
+        }
+    }
+
+    private static int toRow(long value) {
+        return (int) Math.min(value, Integer.MAX_VALUE);
+    }
+}
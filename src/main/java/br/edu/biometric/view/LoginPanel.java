@@ -1,19 +1,30 @@
 package br.edu.biometric.view;
 
 import br.edu.biometric.model.AccessLevel;
+import br.edu.biometric.service.AuthenticationProgress;
 import br.edu.biometric.service.AuthenticationService;
 import br.edu.biometric.service.AuthenticationResult;
+import br.edu.biometric.service.AuthenticationStage;
+import br.edu.biometric.util.ImageUtils;
+import br.edu.biometric.util.ThumbnailCache;
 
 import javax.swing.*;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
+import java.awt.image.BufferedImage;
 import java.io.File;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Painel de autenticação biométrica
  */
 public class LoginPanel extends JPanel {
 
+    private static final int PREVIEW_SIZE = 300;
+
     private AuthenticationService authService;
 
     private JComboBox<AccessLevel> levelComboBox;
@@ -21,7 +32,11 @@ public class LoginPanel extends JPanel {
     private JLabel statusLabel;
     private JButton selectImageButton;
     private JButton authenticateButton;
+    private JButton cancelButton;
+    private JProgressBar progressBar;
     private String selectedImagePath;
+    private SwingWorker<AuthenticationResult, AuthenticationStage> authWorker;
+    private AtomicBoolean cancelRequested; // Pedido de cancelamento da autenticação em andamento
 
     public LoginPanel(AuthenticationService authService) {
         this.authService = authService;
@@ -58,7 +73,7 @@ public class LoginPanel extends JPanel {
         // Label para exibir imagem
         gbc.gridy = 2;
         imageLabel = new JLabel("Nenhuma imagem selecionada", JLabel.CENTER);
-        imageLabel.setPreferredSize(new Dimension(300, 300));
+        imageLabel.setPreferredSize(new Dimension(PREVIEW_SIZE, PREVIEW_SIZE));
         imageLabel.setBorder(BorderFactory.createLineBorder(Color.GRAY));
         topPanel.add(imageLabel, gbc);
 
@@ -71,6 +86,13 @@ public class LoginPanel extends JPanel {
         authenticateButton.setEnabled(false);
         topPanel.add(authenticateButton, gbc);
 
+        // Botão cancelar
+        gbc.gridy = 4;
+        cancelButton = new JButton("Cancelar");
+        cancelButton.addActionListener(e -> cancelAuthentication());
+        cancelButton.setEnabled(false);
+        topPanel.add(cancelButton, gbc);
+
         add(topPanel, BorderLayout.CENTER);
 
         // Painel inferior - Status
@@ -78,6 +100,9 @@ public class LoginPanel extends JPanel {
         statusLabel = new JLabel("Selecione uma imagem para autenticação", JLabel.CENTER);
         statusLabel.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 12));
         bottomPanel.add(statusLabel, BorderLayout.CENTER);
+        progressBar = new JProgressBar(0, AuthenticationStage.values().length);
+        progressBar.setVisible(false);
+        bottomPanel.add(progressBar, BorderLayout.SOUTH);
         add(bottomPanel, BorderLayout.SOUTH);
     }
 
@@ -90,20 +115,56 @@ public class LoginPanel extends JPanel {
         int result = fileChooser.showOpenDialog(this);
         if (result == JFileChooser.APPROVE_OPTION) {
             File selectedFile = fileChooser.getSelectedFile();
+            if (!ImageUtils.isValidImage(selectedFile.getAbsolutePath())) {
+                JOptionPane.showMessageDialog(this,
+                        "O arquivo selecionado não é uma imagem válida.",
+                        "Aviso",
+                        JOptionPane.WARNING_MESSAGE);
+                return;
+            }
             selectedImagePath = selectedFile.getAbsolutePath();
 
-            // Exibe preview da imagem
-            ImageIcon icon = new ImageIcon(selectedImagePath);
-            Image img = icon.getImage();
-            Image scaledImg = img.getScaledInstance(300, 300, Image.SCALE_SMOOTH);
-            imageLabel.setIcon(new ImageIcon(scaledImg));
-            imageLabel.setText("");
+            showPreview(selectedImagePath);
 
             authenticateButton.setEnabled(true);
             statusLabel.setText("Imagem selecionada. Clique em 'Autenticar' para continuar.");
         }
     }
 
+    /**
+     * Exibe a miniatura da imagem, lida do cache ou decodificada em segundo plano
+     */
+    private void showPreview(String imagePath) {
+        BufferedImage cached = ThumbnailCache.getCachedThumbnail(imagePath, PREVIEW_SIZE);
+        if (cached != null) {
+            imageLabel.setIcon(new ImageIcon(cached));
+            imageLabel.setText("");
+            return;
+        }
+        imageLabel.setIcon(null);
+        imageLabel.setText("Carregando imagem...");
+        new SwingWorker<BufferedImage, Void>() {
+            @Override
+            protected BufferedImage doInBackground() {
+                return ThumbnailCache.getThumbnail(imagePath, PREVIEW_SIZE);
+            }
+
+            @Override
+            protected void done() {
+                if (!imagePath.equals(selectedImagePath)) {
+                    return; // Outra imagem foi selecionada enquanto esta carregava
+                }
+                try {
+                    BufferedImage thumbnail = get();
+                    imageLabel.setIcon(thumbnail != null ? new ImageIcon(thumbnail) : null);
+                    imageLabel.setText(thumbnail != null ? "" : "Não foi possível exibir a imagem");
+                } catch (InterruptedException | ExecutionException e) {
+                    imageLabel.setText("Não foi possível exibir a imagem");
+                }
+            }
+        }.execute();
+    }
+
     private void authenticate() {
         if (selectedImagePath == null || selectedImagePath.isEmpty()) {
             JOptionPane.showMessageDialog(this,
@@ -113,57 +174,133 @@ public class LoginPanel extends JPanel {
             return;
         }
 
+        String imagePath = selectedImagePath;
         AccessLevel requiredLevel = (AccessLevel) levelComboBox.getSelectedItem();
 
         // Desabilita botões durante autenticação
-        authenticateButton.setEnabled(false);
-        selectImageButton.setEnabled(false);
+        setAuthenticating(true);
         statusLabel.setText("Processando autenticação...");
+        statusLabel.setForeground(Color.BLACK);
 
-        // Executa autenticação em thread separada para não travar a UI
-        SwingUtilities.invokeLater(() -> {
-            try {
-                AuthenticationResult result = authService.authenticate(selectedImagePath, requiredLevel);
-
-                // Atualiza UI com resultado
-                if (result.isSuccess()) {
-                    statusLabel.setText(result.getMessage());
-                    statusLabel.setForeground(new Color(0, 150, 0));
-
-                    JOptionPane.showMessageDialog(this,
-                            String.format("Autenticação bem-sucedida!\n\n" +
-                                    "Usuário: %s\n" +
-                                    "Nível: %s\n" +
-                                    "Confiança: %.2f%%",
-                                    result.getUser().getName(),
-                                    result.getUser().getAccessLevel().getDisplayName(),
-                                    result.getConfidence()),
-                            "Acesso Concedido",
-                            JOptionPane.INFORMATION_MESSAGE);
-                } else {
-                    statusLabel.setText(result.getMessage());
-                    statusLabel.setForeground(Color.RED);
+        // Executa autenticação fora da thread do Swing; etapas e resultado voltam para ela.
+        // O cancelamento usa um sinal próprio em vez de SwingWorker.cancel, que chamaria
+        // done() antes de a thread parar
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        cancelRequested = cancelled;
+        authWorker = new SwingWorker<AuthenticationResult, AuthenticationStage>() {
+            @Override
+            protected AuthenticationResult doInBackground() {
+                return authService.authenticate(imagePath, requiredLevel, new AuthenticationProgress() {
+                    @Override
+                    public void stageChanged(AuthenticationStage stage) {
+                        publish(stage);
+                    }
 
-                    JOptionPane.showMessageDialog(this,
-                            result.getMessage(),
-                            "Acesso Negado",
+                    @Override
+                    public boolean isCancelled() {
+                        return cancelled.get();
+                    }
+                });
+            }
+
+            @Override
+            protected void process(List<AuthenticationStage> stages) {
+                if (cancelled.get()) {
+                    return;
+                }
+                AuthenticationStage stage = stages.get(stages.size() - 1);
+                statusLabel.setText(stage.getDescription());
+                progressBar.setValue(stage.ordinal() + 1);
+            }
+
+            @Override
+            protected void done() {
+                setAuthenticating(false);
+                try {
+                    AuthenticationResult result = get();
+                    if (cancelled.get()) {
+                        // O pedido chegou depois de a tentativa ser registrada
+                        statusLabel.setText("Cancelamento não aplicado: a tentativa já havia sido registrada. "
+                                + result.getMessage());
+                        statusLabel.setForeground(Color.BLACK);
+                    } else {
+                        showResult(result);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    if (cause instanceof CancellationException) {
+                        statusLabel.setText("Autenticação cancelada. Nenhuma tentativa foi registrada.");
+                        statusLabel.setForeground(Color.BLACK);
+                        return;
+                    }
+                    statusLabel.setText("Erro durante autenticação: " + cause.getMessage());
+                    statusLabel.setForeground(Color.RED);
+                    JOptionPane.showMessageDialog(LoginPanel.this,
+                            "Erro durante autenticação: " + cause.getMessage(),
+                            "Erro",
                             JOptionPane.ERROR_MESSAGE);
                 }
-            } catch (Exception e) {
-                statusLabel.setText("Erro durante autenticação: " + e.getMessage());
-                statusLabel.setForeground(Color.RED);
-                JOptionPane.showMessageDialog(this,
-                        "Erro durante autenticação: " + e.getMessage(),
-                        "Erro",
-                        JOptionPane.ERROR_MESSAGE);
-            } finally {
-                authenticateButton.setEnabled(true);
-                selectImageButton.setEnabled(true);
             }
-        });
+        };
+        authWorker.execute();
+    }
+
+    /**
+     * Solicita o cancelamento da autenticação em andamento; o serviço para na próxima
+     * etapa. Os controles continuam desabilitados até a thread terminar, e o resultado
+     * informado é o que ela de fato fez: se o pedido chegar depois de a tentativa ser
+     * registrada, ela é concluída normalmente.
+     */
+    private void cancelAuthentication() {
+        if (authWorker != null && !authWorker.isDone() && !cancelRequested.get()) {
+            // Sem interrupção: a thread pode estar gravando o log e canais de arquivo
+            // interrompidos são fechados
+            cancelRequested.set(true);
+            cancelButton.setEnabled(false);
+            statusLabel.setText("Cancelamento solicitado; aguardando a etapa atual...");
+            statusLabel.setForeground(Color.BLACK);
+        }
+    }
+
+    private void setAuthenticating(boolean authenticating) {
+        authenticateButton.setEnabled(!authenticating && selectedImagePath != null);
+        selectImageButton.setEnabled(!authenticating);
+        levelComboBox.setEnabled(!authenticating);
+        cancelButton.setEnabled(authenticating);
+        progressBar.setValue(0);
+        progressBar.setVisible(authenticating);
+    }
+
+    private void showResult(AuthenticationResult result) {
+        if (result.isSuccess()) {
+            statusLabel.setText(result.getMessage());
+            statusLabel.setForeground(new Color(0, 150, 0));
+
+            JOptionPane.showMessageDialog(this,
+                    String.format("Autenticação bem-sucedida!\n\n" +
+                            "Usuário: %s\n" +
+                            "Nível: %s\n" +
+                            "Confiança: %.2f%%",
+                            result.getUser().getName(),
+                            result.getUser().getAccessLevel().getDisplayName(),
+                            result.getConfidence()),
+                    "Acesso Concedido",
+                    JOptionPane.INFORMATION_MESSAGE);
+        } else {
+            statusLabel.setText(result.getMessage());
+            statusLabel.setForeground(Color.RED);
+
+            JOptionPane.showMessageDialog(this,
+                    result.getMessage(),
+                    "Acesso Negado",
+                    JOptionPane.ERROR_MESSAGE);
+        }
     }
 
     public void refresh() {
+        cancelAuthentication();
         selectedImagePath = null;
         imageLabel.setIcon(null);
         imageLabel.setText("Nenhuma imagem selecionada");
@@ -1,14 +1,14 @@
 package br.edu.biometric.view;
 
-import br.edu.biometric.model.AccessLog;
 import br.edu.biometric.model.AccessStatus;
 import br.edu.biometric.service.AuthenticationService;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableCellRenderer;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.util.List;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.Map;
 
 /**
  * Painel para visualização de logs de acesso
@@ -18,39 +18,26 @@ public class LogsPanel extends JPanel {
     private AuthenticationService authService;
     
     private JTable logsTable;
-    private DefaultTableModel tableModel;
+    private LogTableModel tableModel;
     private JComboBox<AccessStatus> filterComboBox;
     private JButton refreshButton;
     private JButton clearButton;
+    private JLabel infoLabel;
 
     public LogsPanel(AuthenticationService authService) {
         this.authService = authService;
         initializePanel();
         refresh(); // Carrega os logs ao inicializar
+        authService.getEventBus().subscribe(batch -> SwingUtilities.invokeLater(() -> tableModel.applyEvents(batch)));
     }
     
     public void refresh() {
-        tableModel.setRowCount(0);
-        
-        List<AccessLog> logs;
-        AccessStatus selectedStatus = (AccessStatus) filterComboBox.getSelectedItem();
-        
-        if (selectedStatus != null) {
-            logs = authService.getLogRepository().findByStatus(selectedStatus);
-        } else {
-            logs = authService.getLogRepository().findAll();
-        }
+        // Apenas o total é consultado aqui; as linhas são lidas conforme ficam visíveis
+        tableModel.setStatusFilter((AccessStatus) filterComboBox.getSelectedItem());
+    }
 
-        for (AccessLog log : logs) {
-            tableModel.addRow(new Object[]{
-                    log.getFormattedTimestamp(),
-                    log.getUserName(),
-                    log.getAccessLevel() != null ? log.getAccessLevel().getDisplayName() : "N/A",
-                    log.getStatus().getDisplayName(),
-                    String.format("%.2f", log.getConfidenceScore()),
-                    log.getDetails()
-            });
-        }
+    private void updateInfo() {
+        infoLabel.setText(String.format("Total de registros: %d", tableModel.getTotalCount()));
     }
 
     private void initializePanel() {
@@ -87,19 +74,26 @@ public class LogsPanel extends JPanel {
         add(filterPanel, BorderLayout.NORTH);
 
         // Tabela de logs
-        String[] columnNames = {"Data/Hora", "Usuário", "Nível de Acesso", "Status", "Confiança (%)", "Detalhes"};
-        tableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        tableModel = new LogTableModel(authService.getLogRepository());
+        tableModel.addTableModelListener(e -> updateInfo());
         logsTable = new JTable(tableModel);
         logsTable.setAutoResizeMode(JTable.AUTO_RESIZE_ALL_COLUMNS);
         logsTable.setRowHeight(25);
         
         // Renderizador de cores para status
-        logsTable.getColumnModel().getColumn(3).setCellRenderer(new StatusCellRenderer());
+        logsTable.getColumnModel().getColumn(LogTableModel.STATUS_COLUMN).setCellRenderer(new StatusCellRenderer());
+
+        // Clique no cabeçalho de Data/Hora inverte a ordenação
+        logsTable.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int column = logsTable.convertColumnIndexToModel(logsTable.columnAtPoint(e.getPoint()));
+                if (column == LogTableModel.TIMESTAMP_COLUMN) {
+                    tableModel.setAscending(!tableModel.isAscending());
+                    logsTable.getTableHeader().repaint();
+                }
+            }
+        });
 
         JScrollPane scrollPane = new JScrollPane(logsTable);
         scrollPane.setPreferredSize(new Dimension(900, 500));
@@ -107,7 +101,7 @@ public class LogsPanel extends JPanel {
 
         // Painel de informações
         JPanel infoPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
-        JLabel infoLabel = new JLabel("Total de registros: 0");
+        infoLabel = new JLabel("Total de registros: 0");
         infoPanel.add(infoLabel);
         add(infoPanel, BorderLayout.SOUTH);
     }
@@ -121,7 +115,15 @@ public class LogsPanel extends JPanel {
                 JOptionPane.WARNING_MESSAGE);
 
         if (confirm == JOptionPane.YES_OPTION) {
-            authService.getLogRepository().clear();
+            try {
+                authService.clearLogs();
+            } catch (RuntimeException e) {
+                JOptionPane.showMessageDialog(this,
+                        "Erro ao limpar logs: " + e.getMessage(),
+                        "Erro",
+                        JOptionPane.ERROR_MESSAGE);
+                return;
+            }
             refresh();
             JOptionPane.showMessageDialog(this,
                     "Logs limpos com sucesso!",
@@ -131,23 +133,25 @@ public class LogsPanel extends JPanel {
     }
 
     /**
-     * Renderizador de células para colorir status
+     * Renderizador de células para colorir status pela severidade
      */
-    private class StatusCellRenderer extends DefaultTableCellRenderer {
+    private static class StatusCellRenderer extends DefaultTableCellRenderer {
+
+        private static final Map<String, Color> SEVERITY_COLORS = Map.of(
+                "success", new Color(200, 255, 200),
+                "warning", new Color(255, 235, 190),
+                "danger", new Color(255, 200, 200));
+
         @Override
         public Component getTableCellRendererComponent(JTable table, Object value,
                 boolean isSelected, boolean hasFocus, int row, int column) {
             Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
             
             if (!isSelected) {
-                String status = value.toString();
-                if (status.contains("Concedido")) {
-                    c.setBackground(new Color(200, 255, 200));
-                } else if (status.contains("Negado")) {
-                    c.setBackground(new Color(255, 200, 200));
-                } else {
-                    c.setBackground(Color.WHITE);
-                }
+                Color color = value instanceof AccessStatus
+                        ? SEVERITY_COLORS.get(((AccessStatus) value).getSeverity())
+                        : null;
+                c.setBackground(color != null ? color : Color.WHITE);
             }
             
             return c;
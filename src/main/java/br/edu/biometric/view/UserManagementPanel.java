@@ -2,25 +2,38 @@ package br.edu.biometric.view;
 
 import br.edu.biometric.model.AccessLevel;
 import br.edu.biometric.model.User;
+import br.edu.biometric.service.AccessEventBatch;
 import br.edu.biometric.service.AuthenticationService;
+import br.edu.biometric.service.TrainingListener;
+import br.edu.biometric.util.ImageUtils;
+import br.edu.biometric.util.ThumbnailCache;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.filechooser.FileNameExtensionFilter;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Painel para gerenciamento de usuários
  */
 public class UserManagementPanel extends JPanel {
 
+    private static final int THUMBNAIL_SIZE = 64;
+
     private AuthenticationService authService;
 
     private JTable userTable;
-    private DefaultTableModel tableModel;
+    private UserTableModel tableModel;
+    private JTextField searchField;
+    private boolean updatingTable; // Evita recarregar o formulário ao restaurar a seleção
     private JTextField nameField;
     private JTextField cpfField;
     private JTextField emailField;
@@ -33,6 +46,8 @@ public class UserManagementPanel extends JPanel {
     private JButton saveButton;
     private JButton deleteButton;
     private JButton newButton;
+    private JProgressBar trainingProgressBar;
+    private JLabel trainingLabel;
 
     private User currentUser;
 
@@ -40,6 +55,18 @@ public class UserManagementPanel extends JPanel {
         this.authService = authService;
         this.biometricImagePaths = new ArrayList<>();
         initializePanel();
+        authService.getEventBus().subscribe(batch -> SwingUtilities.invokeLater(() -> applyEvents(batch)));
+        authService.addTrainingListener(new TrainingListener() {
+            @Override
+            public void onTrainingProgress(int processed, int total) {
+                SwingUtilities.invokeLater(() -> showTrainingProgress(processed, total));
+            }
+
+            @Override
+            public void onTrainingFinished(int trainedUsers) {
+                SwingUtilities.invokeLater(() -> showTrainingFinished(trainedUsers));
+            }
+        });
     }
 
     private void initializePanel() {
@@ -62,18 +89,34 @@ public class UserManagementPanel extends JPanel {
     private JPanel createUserListPanel() {
         JPanel panel = new JPanel(new BorderLayout());
 
-        // Tabela de usuários
-        String[] columnNames = { "Nome", "CPF", "Email", "Nível", "Status" };
-        tableModel = new DefaultTableModel(columnNames, 0) {
+        // Busca por nome, CPF ou email a cada tecla, pelo índice do repositório
+        JPanel searchPanel = new JPanel(new BorderLayout(5, 5));
+        searchPanel.add(new JLabel("Buscar:"), BorderLayout.WEST);
+        searchField = new JTextField();
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                updateTable(() -> tableModel.setQuery(searchField.getText()));
+            }
+
             @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
+            public void removeUpdate(DocumentEvent e) {
+                updateTable(() -> tableModel.setQuery(searchField.getText()));
             }
-        };
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+        searchPanel.add(searchField, BorderLayout.CENTER);
+        panel.add(searchPanel, BorderLayout.NORTH);
+
+        // Tabela de usuários
+        tableModel = new UserTableModel(authService.getUserRepository());
         userTable = new JTable(tableModel);
         userTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         userTable.getSelectionModel().addListSelectionListener(e -> {
-            if (!e.getValueIsAdjusting()) {
+            if (!e.getValueIsAdjusting() && !updatingTable) {
                 int selectedRow = userTable.getSelectedRow();
                 if (selectedRow >= 0) {
                     loadUserFromTable(selectedRow);
@@ -89,7 +132,19 @@ public class UserManagementPanel extends JPanel {
         newButton = new JButton("Novo Usuário");
         newButton.addActionListener(e -> newUser());
         buttonPanel.add(newButton);
-        panel.add(buttonPanel, BorderLayout.SOUTH);
+
+        // Andamento do retreinamento do modelo, feito em segundo plano
+        trainingLabel = new JLabel(" ");
+        trainingProgressBar = new JProgressBar();
+        trainingProgressBar.setVisible(false);
+        JPanel trainingPanel = new JPanel(new BorderLayout(5, 5));
+        trainingPanel.add(trainingLabel, BorderLayout.NORTH);
+        trainingPanel.add(trainingProgressBar, BorderLayout.CENTER);
+
+        JPanel southPanel = new JPanel(new BorderLayout());
+        southPanel.add(buttonPanel, BorderLayout.NORTH);
+        southPanel.add(trainingPanel, BorderLayout.SOUTH);
+        panel.add(southPanel, BorderLayout.SOUTH);
 
         return panel;
     }
@@ -163,6 +218,8 @@ public class UserManagementPanel extends JPanel {
         gbc.weighty = 1.0;
         imagesListModel = new DefaultListModel<>();
         biometricImagesList = new JList<>(imagesListModel);
+        biometricImagesList.setCellRenderer(new ThumbnailRenderer());
+        biometricImagesList.setFixedCellHeight(THUMBNAIL_SIZE + 4);
         JScrollPane imagesScroll = new JScrollPane(biometricImagesList);
         imagesScroll.setPreferredSize(new Dimension(300, 150));
         formPanel.add(imagesScroll, gbc);
@@ -198,12 +255,7 @@ public class UserManagementPanel extends JPanel {
     }
 
     private void loadUserFromTable(int row) {
-        String name = (String) tableModel.getValueAt(row, 0);
-        List<User> users = authService.getUserRepository().findAll();
-        currentUser = users.stream()
-                .filter(u -> u.getName().equals(name))
-                .findFirst()
-                .orElse(null);
+        currentUser = authService.getUserRepository().findById(tableModel.getUserId(row)).orElse(null);
 
         if (currentUser != null) {
             nameField.setText(currentUser.getName());
@@ -241,13 +293,24 @@ public class UserManagementPanel extends JPanel {
         int result = fileChooser.showOpenDialog(this);
         if (result == JFileChooser.APPROVE_OPTION) {
             File[] selectedFiles = fileChooser.getSelectedFiles();
+            List<String> rejected = new ArrayList<>();
             for (File file : selectedFiles) {
                 String path = file.getAbsolutePath();
-                if (!biometricImagePaths.contains(path)) {
+                // Só o cabeçalho é lido: a verificação não decodifica as fotos
+                if (!ImageUtils.isValidImage(path)) {
+                    rejected.add(file.getName());
+                } else if (!biometricImagePaths.contains(path)) {
                     imagesListModel.addElement(file.getName());
                     biometricImagePaths.add(path);
                 }
             }
+            if (!rejected.isEmpty()) {
+                JOptionPane.showMessageDialog(this,
+                        "Os arquivos a seguir não são imagens válidas e foram ignorados:\n"
+                                + String.join("\n", rejected),
+                        "Aviso",
+                        JOptionPane.WARNING_MESSAGE);
+            }
         }
     }
 
@@ -307,6 +370,7 @@ public class UserManagementPanel extends JPanel {
             return;
         }
 
+        List<String> storedPaths = Collections.emptyList();
         try {
             if (currentUser == null) {
                 // Novo usuário
@@ -323,29 +387,31 @@ public class UserManagementPanel extends JPanel {
                 currentUser.setAccessLevel((AccessLevel) accessLevelComboBox.getSelectedItem());
             }
 
-            // Adiciona imagens biométricas
+            // Adiciona imagens biométricas, copiadas para o armazenamento (uma cópia por conteúdo)
+            storedPaths = authService.getImageStore().importImages(biometricImagePaths);
             currentUser.getBiometricDataPaths().clear();
-            for (String path : biometricImagePaths) {
+            for (String path : storedPaths) {
                 currentUser.addBiometricData(path);
             }
 
-            // Salva usuário
+            // Salva usuário (o modelo é retreinado em segundo plano pelo serviço ao ser notificado)
             authService.getUserRepository().save(currentUser);
 
-            // Retreina o modelo
-            authService.trainModel();
-
             JOptionPane.showMessageDialog(this,
                     "Usuário salvo com sucesso!",
                     "Sucesso",
                     JOptionPane.INFORMATION_MESSAGE);
 
-            refresh();
+            // A tabela é atualizada pelo barramento de eventos
+            newUser();
         } catch (Exception e) {
             JOptionPane.showMessageDialog(this,
                     "Erro ao salvar usuário: " + e.getMessage(),
                     "Erro",
                     JOptionPane.ERROR_MESSAGE);
+        } finally {
+            // Salvas, continuam referenciadas pelo usuário; se o save falhou, são apagadas
+            authService.getImageStore().discardPending(storedPaths);
         }
     }
 
@@ -364,31 +430,112 @@ public class UserManagementPanel extends JPanel {
                 JOptionPane.YES_NO_OPTION);
 
         if (confirm == JOptionPane.YES_OPTION) {
-            authService.getUserRepository().delete(currentUser.getId());
-            authService.trainModel();
+            try {
+                authService.getUserRepository().delete(currentUser.getId());
+            } catch (RuntimeException e) {
+                JOptionPane.showMessageDialog(this,
+                        "Erro ao excluir usuário: " + e.getMessage(),
+                        "Erro",
+                        JOptionPane.ERROR_MESSAGE);
+                return;
+            }
             JOptionPane.showMessageDialog(this,
                     "Usuário excluído com sucesso!",
                     "Sucesso",
                     JOptionPane.INFORMATION_MESSAGE);
-            refresh();
+            newUser();
         }
     }
 
     public void refresh() {
         // Atualiza tabela
-        tableModel.setRowCount(0);
-        List<User> users = authService.getUserRepository().findAll();
-        for (User user : users) {
-            tableModel.addRow(new Object[] {
-                    user.getName(),
-                    user.getCpf(),
-                    user.getEmail(),
-                    user.getAccessLevel().getDisplayName(),
-                    user.isActive() ? "Ativo" : "Inativo"
-            });
-        }
+        updateTable(() -> tableModel.reload());
 
         // Limpa formulário
         newUser();
     }
+
+    /**
+     * Atualiza a tabela com os usuários alterados, preservando seleção e formulário
+     */
+    private void applyEvents(AccessEventBatch batch) {
+        if (currentUser != null && batch.getDeletedUserIds().contains(currentUser.getId())) {
+            newUser();
+        }
+        updateTable(() -> tableModel.applyEvents(batch));
+    }
+
+    /**
+     * Executa uma alteração do modelo e volta a selecionar o usuário em edição,
+     * se ele continuar entre os resultados, sem recarregar o formulário
+     */
+    private void updateTable(Runnable change) {
+        updatingTable = true;
+        try {
+            change.run();
+            int row = currentUser != null ? tableModel.rowOf(currentUser.getId()) : -1;
+            if (row >= 0) {
+                userTable.setRowSelectionInterval(row, row);
+                userTable.scrollRectToVisible(userTable.getCellRect(row, 0, true));
+            }
+        } finally {
+            updatingTable = false;
+        }
+    }
+
+    private void showTrainingProgress(int processed, int total) {
+        trainingProgressBar.setVisible(true);
+        trainingProgressBar.setMaximum(Math.max(1, total));
+        trainingProgressBar.setValue(processed);
+        trainingLabel.setText(String.format("Atualizando modelo de reconhecimento (%d de %d)...", processed, total));
+    }
+
+    private void showTrainingFinished(int trainedUsers) {
+        trainingProgressBar.setVisible(false);
+        trainingLabel.setText(String.format("Modelo atualizado: %d usuário(s) treinado(s)", trainedUsers));
+    }
+
+    /**
+     * Exibe cada imagem biométrica com sua miniatura. As que ainda não estão em memória
+     * são carregadas em segundo plano e a lista é repintada quando ficam prontas.
+     */
+    private class ThumbnailRenderer extends DefaultListCellRenderer {
+
+        private final Set<String> requested = new HashSet<>();
+
+        @Override
+        public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                      boolean isSelected, boolean cellHasFocus) {
+            JLabel label = (JLabel) super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+            String path = index < biometricImagePaths.size() ? biometricImagePaths.get(index) : null;
+            BufferedImage thumbnail = path != null ? ThumbnailCache.getCachedThumbnail(path, THUMBNAIL_SIZE) : null;
+            if (thumbnail != null) {
+                label.setIcon(new ImageIcon(thumbnail));
+            } else if (path != null) {
+                requestThumbnail(path);
+            }
+            return label;
+        }
+
+        private void requestThumbnail(String path) {
+            // Uma leitura por imagem; imagens ilegíveis não são tentadas de novo a cada pintura
+            if (!requested.add(path)) {
+                return;
+            }
+            new SwingWorker<BufferedImage, Void>() {
+                @Override
+                protected BufferedImage doInBackground() {
+                    return ThumbnailCache.getThumbnail(path, THUMBNAIL_SIZE);
+                }
+
+                @Override
+                protected void done() {
+                    if (ThumbnailCache.getCachedThumbnail(path, THUMBNAIL_SIZE) != null) {
+                        requested.remove(path);
+                    }
+                    biometricImagesList.repaint();
+                }
+            }.execute();
+        }
+    }
 }
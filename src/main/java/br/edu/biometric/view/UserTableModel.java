@@ -0,0 +1,218 @@
+package br.edu.biometric.view;
+
+import br.edu.biometric.model.User;
+import br.edu.biometric.repository.UserRepository;
+import br.edu.biometric.service.AccessEventBatch;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Modelo de tabela de usuários guiado pela busca do repositório
+ *
+ * O modelo guarda apenas os IDs que atendem à busca atual, em ordem de cadastro; os
+ * usuários são lidos pelo ID quando a linha é exibida e apenas os mais recentes ficam
+ * em memória. Linhas são sempre identificadas pelo ID do usuário, de modo que a seleção
+ * sobrevive a buscas e a alterações feitas em outras telas.
+ * Deve ser usado apenas na thread do Swing.
+ */
+public class UserTableModel extends AbstractTableModel {
+
+    private static final int MAX_CACHED_USERS = 500;
+    private static final String[] COLUMN_NAMES = {"Nome", "CPF", "Email", "Nível", "Status"};
+
+    private final UserRepository repository;
+    private final Map<String, User> users = new LinkedHashMap<String, User>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, User> eldest) {
+            return size() > MAX_CACHED_USERS;
+        }
+    };
+
+    private List<String> userIds = new ArrayList<>();
+    private Map<String, Integer> rowsById; // Montado na primeira consulta após cada busca
+    private String query = "";
+
+    public UserTableModel(UserRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Descarta os usuários lidos e refaz a busca atual
+     */
+    public void reload() {
+        users.clear();
+        setUserIds(repository.searchIds(query));
+    }
+
+    public void setQuery(String query) {
+        this.query = query != null ? query : "";
+        setUserIds(repository.searchIds(this.query));
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * Aplica as alterações à busca atual sem refazê-la: só os usuários do lote são
+     * conferidos com os termos digitados. Excluídos e os que deixaram de atender saem
+     * da tabela, novos que atendem entram no final (ordem de cadastro) e os demais têm
+     * apenas a linha repintada.
+     */
+    public void applyEvents(AccessEventBatch batch) {
+        if (!batch.hasUserChanges()) {
+            return;
+        }
+        List<String> removed = new ArrayList<>(batch.getDeletedUserIds());
+        List<Integer> updatedRows = new ArrayList<>();
+        List<User> added = new ArrayList<>();
+        for (String id : batch.getDeletedUserIds()) {
+            users.remove(id);
+        }
+        for (User user : batch.getUpsertedUsers()) {
+            users.put(user.getId(), user);
+            boolean matches = UserRepository.matchesSearch(user, query);
+            int row = rowOf(user.getId());
+            if (row >= 0) {
+                if (matches) {
+                    updatedRows.add(row);
+                } else {
+                    removed.add(user.getId());
+                }
+            } else if (matches) {
+                added.add(user);
+            }
+        }
+        // Um usuário antigo que passou a atender não entra no final: a posição dele na
+        // ordem de cadastro só é conhecida refazendo a busca
+        if (!added.isEmpty() && !userIds.isEmpty()) {
+            User last = getUser(userIds.get(userIds.size() - 1));
+            for (User user : added) {
+                if (last != null && user.getCreatedAt() != null && last.getCreatedAt() != null
+                        && user.getCreatedAt().isBefore(last.getCreatedAt())) {
+                    setUserIds(repository.searchIds(query));
+                    return;
+                }
+            }
+        }
+
+        for (int row : updatedRows) {
+            fireTableRowsUpdated(row, row);
+        }
+        removeRows(removed);
+        if (!added.isEmpty()) {
+            int first = userIds.size();
+            for (User user : added) {
+                if (rowsById != null) {
+                    rowsById.put(user.getId(), userIds.size());
+                }
+                userIds.add(user.getId());
+            }
+            fireTableRowsInserted(first, userIds.size() - 1);
+        }
+    }
+
+    /**
+     * Remove as linhas dos usuários, do fim para o início, avisando cada intervalo
+     * contíguo removido
+     */
+    private void removeRows(List<String> ids) {
+        List<Integer> rows = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            int row = rowOf(id);
+            if (row >= 0) {
+                rows.add(row);
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+        rows.sort(Collections.reverseOrder());
+        int i = 0;
+        while (i < rows.size()) {
+            int last = rows.get(i);
+            int first = last;
+            while (++i < rows.size() && rows.get(i) == first - 1) {
+                first--;
+            }
+            userIds.subList(first, last + 1).clear();
+            fireTableRowsDeleted(first, last);
+        }
+        rowsById = null; // As linhas seguintes mudaram de posição
+    }
+
+    private void setUserIds(List<String> ids) {
+        userIds = new ArrayList<>(ids);
+        rowsById = null;
+        fireTableDataChanged();
+    }
+
+    public String getUserId(int row) {
+        return userIds.get(row);
+    }
+
+    /**
+     * Linha do usuário na busca atual, ou -1 se ele não aparece
+     */
+    public int rowOf(String userId) {
+        if (rowsById == null) {
+            rowsById = new HashMap<>(userIds.size() * 4 / 3 + 1);
+            for (int row = 0; row < userIds.size(); row++) {
+                rowsById.put(userIds.get(row), row);
+            }
+        }
+        return rowsById.getOrDefault(userId, -1);
+    }
+
+    @Override
+    public int getRowCount() {
+        return userIds.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        User user = getUser(userIds.get(rowIndex));
+        if (user == null) {
+            return "";
+        }
+        switch (columnIndex) {
+            case 0:
+                return user.getName();
+            case 1:
+                return user.getCpf();
+            case 2:
+                return user.getEmail();
+            case 3:
+                return user.getAccessLevel() != null ? user.getAccessLevel().getDisplayName() : "";
+            default:
+                return user.isActive() ? "Ativo" : "Inativo";
+        }
+    }
+
+    private User getUser(String id) {
+        User user = users.get(id);
+        if (user == null) {
+            user = repository.findById(id).orElse(null);
+            if (user != null) {
+                users.put(id, user);
+            }
+        }
+        return user;
+    }
+}
@@ -0,0 +1,165 @@
+package br.edu.biometric.repository;
+
+import br.edu.biometric.model.AccessLevel;
+import br.edu.biometric.model.User;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testes da reaplicação do journal de usuários após gravações interrompidas
+ */
+class UserJournalTest {
+
+    private static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
+            .create();
+
+    @TempDir
+    Path dir;
+
+    private final List<String> upserted = new ArrayList<>();
+    private final List<String> deleted = new ArrayList<>();
+
+    @Test
+    void tornLastRecordIsIgnored() throws IOException {
+        Path file = dir.resolve("users.journal");
+        User first = user("Ana");
+        User second = user("Bruno");
+        UserJournal journal = new UserJournal(file, GSON);
+        journal.appendUpserts(List.of(first));
+        journal.appendUpserts(List.of(second));
+        journal.close();
+
+        // Gravação interrompida no meio de uma linha
+        append(file, "{\"op\":\"UPSERT\",\"id\":\"x\",\"ba");
+
+        UserJournal reopened = new UserJournal(file, GSON);
+        assertFalse(replay(reopened));
+        assertEquals(List.of(first.getId(), second.getId()), upserted);
+    }
+
+    @Test
+    void batchWithoutCommitIsIgnored() throws IOException {
+        Path file = dir.resolve("users.journal");
+        User first = user("Ana");
+        UserJournal journal = new UserJournal(file, GSON);
+        journal.appendUpserts(List.of(first));
+        journal.close();
+
+        // Lote com registros completos, mas interrompido antes do COMMIT
+        append(file, "{\"op\":\"DELETE\",\"id\":\"" + first.getId() + "\",\"batch\":2}\n"
+                + "{\"op\":\"UPSERT\",\"id\":\"y\",\"user\":" + GSON.toJson(user("Carla")) + ",\"batch\":2}\n");
+
+        UserJournal reopened = new UserJournal(file, GSON);
+        assertFalse(replay(reopened));
+        assertEquals(List.of(first.getId()), upserted);
+        assertTrue(deleted.isEmpty());
+    }
+
+    @Test
+    void appendAfterTornBatchIsReplayed() throws IOException {
+        Path file = dir.resolve("users.journal");
+        User first = user("Ana");
+        User second = user("Bruno");
+        UserJournal journal = new UserJournal(file, GSON);
+        journal.appendUpserts(List.of(first));
+        journal.close();
+        append(file, "{\"op\":\"UPSERT\",\"id\":\"x\",\"batch\":2}\n");
+
+        // O lote seguinte recebe número maior que o do lote incompleto
+        UserJournal reopened = new UserJournal(file, GSON);
+        replay(reopened);
+        reopened.appendDeletes(List.of(first.getId()));
+        reopened.appendUpserts(List.of(second));
+        reopened.close();
+
+        upserted.clear();
+        UserJournal again = new UserJournal(file, GSON);
+        replay(again);
+        assertEquals(List.of(first.getId(), second.getId()), upserted);
+        assertEquals(List.of(first.getId()), deleted);
+    }
+
+    @Test
+    void corruptMiddleRecordFails() throws IOException {
+        Path file = dir.resolve("users.journal");
+        UserJournal journal = new UserJournal(file, GSON);
+        journal.appendUpserts(List.of(user("Ana")));
+        journal.close();
+        append(file, "{corrompido\n");
+        journal.appendUpserts(List.of(user("Bruno")));
+        journal.close();
+
+        UserJournal reopened = new UserJournal(file, GSON);
+        assertThrows(IOException.class, () -> replay(reopened));
+        assertTrue(Files.exists(file));
+    }
+
+    @Test
+    void unsealRestoresRecordsAfterFailedCompaction() throws IOException {
+        Path file = dir.resolve("users.journal");
+        Path sealed = dir.resolve("users.journal.1");
+        User first = user("Ana");
+        User second = user("Bruno");
+        UserJournal journal = new UserJournal(file, GSON);
+        journal.appendUpserts(List.of(first));
+        assertTrue(journal.seal());
+        assertTrue(Files.exists(sealed));
+        assertFalse(journal.seal());
+
+        // Alteração gravada enquanto o snapshot era escrito, que então falhou
+        journal.appendUpserts(List.of(second));
+        journal.unseal();
+        journal.close();
+
+        assertFalse(Files.exists(sealed));
+        assertEquals(2, journal.getRecordCount());
+
+        UserJournal reopened = new UserJournal(file, GSON);
+        assertTrue(replay(reopened));
+        assertEquals(List.of(first.getId(), second.getId()), upserted);
+        assertEquals(2, reopened.getRecordCount());
+    }
+
+    @Test
+    void sealedJournalIsReplayedAfterCrash() throws IOException {
+        Path file = dir.resolve("users.journal");
+        User first = user("Ana");
+        User second = user("Bruno");
+        UserJournal journal = new UserJournal(file, GSON);
+        journal.appendUpserts(List.of(first));
+        journal.seal();
+        journal.appendUpserts(List.of(second));
+        journal.close();
+
+        // Processo parou antes de o snapshot ser gravado: os dois arquivos são reaplicados
+        UserJournal reopened = new UserJournal(file, GSON);
+        assertFalse(replay(reopened));
+        assertEquals(List.of(first.getId(), second.getId()), upserted);
+    }
+
+    private boolean replay(UserJournal journal) throws IOException {
+        return journal.replay(user -> upserted.add(user.getId()), deleted::add);
+    }
+
+    private static User user(String name) {
+        return new User(name, "52998224725", name.toLowerCase() + "@exemplo.com", AccessLevel.NIVEL_1);
+    }
+
+    private static void append(Path file, String text) throws IOException {
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+}